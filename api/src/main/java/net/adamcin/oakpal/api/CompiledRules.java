@@ -0,0 +1,356 @@
+/*
+ * Copyright 2020 Mark Adamcin
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.adamcin.oakpal.api;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Optional;
+import java.util.function.Function;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.regex.PatternSyntaxException;
+
+/**
+ * A precompiled form of a list of {@link Rule}s that returns the same result as
+ * {@link Rules#lastMatch(List, String, Function)} without evaluating every pattern in sequence.
+ * <p>
+ * Patterns that are plain literals, or literals followed by {@code .*} or {@code (/.*)?}, are indexed in a prefix trie
+ * that is walked once per value. The remaining patterns are combined into a single alternation in descending rule
+ * order, so that the first alternative to match is the last matching rule, and it is only evaluated when it could
+ * produce a later match than the trie. Patterns with flags, back references, or quoted sections, and rules that
+ * override {@link Rule#matches(String)}, are evaluated individually, in descending rule order.
+ *
+ * @since 2.1.0
+ */
+public final class CompiledRules {
+    private static final String META_CHARS = "^$.|?*+()[]{}";
+    private static final String SUFFIX_ANY = ".*";
+    private static final String SUFFIX_SUBTREE = "(/.*)?";
+
+    private final List<Rule> rules;
+    private final Rule defaultRule;
+    private final TrieNode trie;
+    private final Pattern combined;
+    private final int[] combinedRuleIndexes;
+    private final int[] combinedGroups;
+    private final int[] linearRuleIndexes;
+
+    private CompiledRules(final @NotNull List<Rule> rules,
+                          final @NotNull Rule defaultRule,
+                          final @NotNull TrieNode trie,
+                          final @Nullable Pattern combined,
+                          final int[] combinedRuleIndexes,
+                          final int[] combinedGroups,
+                          final int[] linearRuleIndexes) {
+        this.rules = rules;
+        this.defaultRule = defaultRule;
+        this.trie = trie;
+        this.combined = combined;
+        this.combinedRuleIndexes = combinedRuleIndexes;
+        this.combinedGroups = combinedGroups;
+        this.linearRuleIndexes = linearRuleIndexes;
+    }
+
+    /**
+     * Compile the rules list, using {@link Rules#fuzzyDefaultInclude(List)} to select the default rule.
+     *
+     * @param rules a list of rules to be evaluated in sequence
+     * @return the compiled rules
+     */
+    public static CompiledRules compile(final @NotNull List<Rule> rules) {
+        return compile(rules, Rules::fuzzyDefaultInclude);
+    }
+
+    /**
+     * Compile the rules list, using the provided selector function to select the default rule when none match.
+     *
+     * @param rules         a list of rules to be evaluated in sequence
+     * @param selectDefault a function to select the default rule based on the specified list of rules
+     * @return the compiled rules
+     */
+    public static CompiledRules compile(final @NotNull List<Rule> rules,
+                                        final @Nullable Function<List<Rule>, Rule> selectDefault) {
+        final List<Rule> ruleList = Collections.unmodifiableList(new ArrayList<>(rules));
+        final Rule defaultRule = Optional.ofNullable(selectDefault)
+                .map(func -> func.apply(ruleList)).orElse(Rules.DEFAULT_INCLUDE);
+        final TrieNode trie = new TrieNode();
+        final List<Integer> regexIndexes = new ArrayList<>();
+        final List<Integer> linearIndexes = new ArrayList<>();
+        for (int i = ruleList.size() - 1; i >= 0; i--) {
+            final Pattern pattern = ruleList.get(i).getPattern();
+            if (pattern.flags() != 0 || !usesPatternMatch(ruleList.get(i))) {
+                linearIndexes.add(i);
+            } else if (!indexLiteral(trie, pattern.pattern(), i)) {
+                if (isCombinable(pattern.pattern())) {
+                    regexIndexes.add(i);
+                } else {
+                    linearIndexes.add(i);
+                }
+            }
+        }
+
+        Pattern combined = null;
+        final int[] combinedGroups = new int[regexIndexes.size()];
+        if (!regexIndexes.isEmpty()) {
+            final StringBuilder alternation = new StringBuilder();
+            int group = 0;
+            for (int k = 0; k < regexIndexes.size(); k++) {
+                final Pattern pattern = ruleList.get(regexIndexes.get(k)).getPattern();
+                if (k > 0) {
+                    alternation.append('|');
+                }
+                alternation.append('(').append(pattern.pattern()).append(')');
+                combinedGroups[k] = ++group;
+                group += pattern.matcher("").groupCount();
+            }
+            try {
+                combined = Pattern.compile(alternation.toString());
+            } catch (PatternSyntaxException e) {
+                // e.g. duplicate named groups across patterns. evaluate them individually instead.
+                linearIndexes.addAll(regexIndexes);
+                linearIndexes.sort(Collections.reverseOrder());
+                regexIndexes.clear();
+            }
+        }
+        return new CompiledRules(ruleList, defaultRule, trie, combined,
+                toArray(regexIndexes), combined != null ? combinedGroups : new int[0], toArray(linearIndexes));
+    }
+
+    private static int[] toArray(final @NotNull List<Integer> indexes) {
+        return indexes.stream().mapToInt(Integer::intValue).toArray();
+    }
+
+    /**
+     * Get the rules in evaluation order.
+     *
+     * @return the rules
+     */
+    public List<Rule> getRules() {
+        return rules;
+    }
+
+    /**
+     * Get the rule that is returned when no rule matches.
+     *
+     * @return the default rule
+     */
+    public Rule getDefaultRule() {
+        return defaultRule;
+    }
+
+    /**
+     * Evaluate the rules against the String value.
+     *
+     * @param value the string value to match against.
+     * @return the last rule in the list that matches the value, or the default rule
+     */
+    public Rule lastMatch(final @NotNull String value) {
+        int lastIndex = trie.lastMatch(value);
+        if (combined != null && combinedRuleIndexes[0] > lastIndex) {
+            final Matcher matcher = combined.matcher(value);
+            if (matcher.matches()) {
+                for (int k = 0; k < combinedGroups.length; k++) {
+                    if (matcher.start(combinedGroups[k]) >= 0) {
+                        lastIndex = Math.max(lastIndex, combinedRuleIndexes[k]);
+                        break;
+                    }
+                }
+            }
+        }
+        for (int ruleIndex : linearRuleIndexes) {
+            if (ruleIndex <= lastIndex) {
+                break;
+            }
+            if (rules.get(ruleIndex).matches(value)) {
+                lastIndex = ruleIndex;
+                break;
+            }
+        }
+        return lastIndex >= 0 ? rules.get(lastIndex) : defaultRule;
+    }
+
+    /**
+     * Only rules that match by {@link Rule#matches(String)} as declared by {@link Rule} can be indexed by pattern.
+     *
+     * @param rule the rule
+     * @return true if the rule does not override {@link Rule#matches(String)}
+     */
+    static boolean usesPatternMatch(final @NotNull Rule rule) {
+        try {
+            return rule.getClass().getMethod("matches", String.class).getDeclaringClass() == Rule.class;
+        } catch (NoSuchMethodException e) {
+            return false;
+        }
+    }
+
+    /**
+     * Add the pattern to the trie if it is a literal, a literal followed by {@code .*}, or a literal followed by
+     * {@code (/.*)?}.
+     *
+     * @return true if the pattern was indexed
+     */
+    static boolean indexLiteral(final @NotNull TrieNode trie, final @NotNull String regex, final int ruleIndex) {
+        if (regex.endsWith(SUFFIX_SUBTREE)) {
+            final String literal = unescapeLiteral(regex.substring(0, regex.length() - SUFFIX_SUBTREE.length()));
+            if (literal != null) {
+                final TrieNode exact = trie.insert(literal);
+                exact.exactRule = Math.max(exact.exactRule, ruleIndex);
+                final TrieNode descendants = trie.insert(literal + "/");
+                descendants.prefixRule = Math.max(descendants.prefixRule, ruleIndex);
+                return true;
+            }
+        } else if (regex.endsWith(SUFFIX_ANY)) {
+            final String literal = unescapeLiteral(regex.substring(0, regex.length() - SUFFIX_ANY.length()));
+            if (literal != null) {
+                final TrieNode prefix = trie.insert(literal);
+                prefix.prefixRule = Math.max(prefix.prefixRule, ruleIndex);
+                return true;
+            }
+        }
+        final String literal = unescapeLiteral(regex);
+        if (literal != null) {
+            final TrieNode exact = trie.insert(literal);
+            exact.exactRule = Math.max(exact.exactRule, ruleIndex);
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * Return the literal string matched by the regex, if it contains no unescaped metacharacters and escapes only
+     * non-alphanumeric characters.
+     *
+     * @param regex the regular expression
+     * @return the literal string, or null if the regex is not a literal
+     */
+    static @Nullable String unescapeLiteral(final @NotNull String regex) {
+        final StringBuilder literal = new StringBuilder(regex.length());
+        for (int i = 0; i < regex.length(); i++) {
+            final char c = regex.charAt(i);
+            if (c == '\\') {
+                if (i + 1 >= regex.length() || Character.isLetterOrDigit(regex.charAt(i + 1))) {
+                    return null;
+                }
+                literal.append(regex.charAt(++i));
+            } else if (META_CHARS.indexOf(c) >= 0) {
+                return null;
+            } else {
+                literal.append(c);
+            }
+        }
+        return literal.toString();
+    }
+
+    /**
+     * Patterns with back references or quoted sections can not be safely wrapped in an alternation group, because
+     * group numbers shift and an unterminated quote would consume the following alternatives.
+     *
+     * @param regex the regular expression
+     * @return true if the regex can be combined with others
+     */
+    static boolean isCombinable(final @NotNull String regex) {
+        for (int i = 0; i < regex.length() - 1; i++) {
+            if (regex.charAt(i) == '\\') {
+                final char next = regex.charAt(++i);
+                if (Character.isDigit(next) || next == 'k' || next == 'Q') {
+                    return false;
+                }
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Return true if the character is a line terminator, which {@code .} does not match without
+     * {@link Pattern#DOTALL}.
+     */
+    static boolean isLineTerminator(final char c) {
+        return c == '\n' || c == '\r' || c == '\u0085' || c == '\u2028' || c == '\u2029';
+    }
+
+    /**
+     * A prefix trie node tracking the highest index of any rule that matches a value exactly equal to the prefix, and
+     * of any rule that matches every value starting with the prefix.
+     */
+    static final class TrieNode {
+        private char[] keys = new char[0];
+        private TrieNode[] children = new TrieNode[0];
+        int exactRule = -1;
+        int prefixRule = -1;
+
+        TrieNode insert(final @NotNull String literal) {
+            TrieNode node = this;
+            for (int i = 0; i < literal.length(); i++) {
+                node = node.getOrCreateChild(literal.charAt(i));
+            }
+            return node;
+        }
+
+        private TrieNode getOrCreateChild(final char key) {
+            TrieNode child = getChild(key);
+            if (child == null) {
+                child = new TrieNode();
+                keys = Arrays.copyOf(keys, keys.length + 1);
+                children = Arrays.copyOf(children, children.length + 1);
+                keys[keys.length - 1] = key;
+                children[children.length - 1] = child;
+            }
+            return child;
+        }
+
+        private @Nullable TrieNode getChild(final char key) {
+            for (int i = 0; i < keys.length; i++) {
+                if (keys[i] == key) {
+                    return children[i];
+                }
+            }
+            return null;
+        }
+
+        /**
+         * Walk the value through the trie and return the highest matching rule index, or -1. A prefix rule only
+         * matches when the rest of the value contains no line terminators, like {@code .*}.
+         */
+        int lastMatch(final @NotNull String value) {
+            int lastTerminator = -1;
+            for (int i = value.length() - 1; i >= 0; i--) {
+                if (isLineTerminator(value.charAt(i))) {
+                    lastTerminator = i;
+                    break;
+                }
+            }
+            int lastIndex = -1;
+            TrieNode node = this;
+            for (int depth = 0; node != null; depth++) {
+                if (lastTerminator < depth) {
+                    lastIndex = Math.max(lastIndex, node.prefixRule);
+                }
+                if (depth == value.length()) {
+                    lastIndex = Math.max(lastIndex, node.exactRule);
+                    break;
+                }
+                node = node.getChild(value.charAt(depth));
+            }
+            return lastIndex;
+        }
+    }
+}
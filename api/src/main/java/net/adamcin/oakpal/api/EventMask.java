@@ -0,0 +1,305 @@
+/*
+ * Copyright 2020 Mark Adamcin
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.adamcin.oakpal.api;
+
+import org.jetbrains.annotations.NotNull;
+import org.osgi.annotation.versioning.ProviderType;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Objects;
+import java.util.Set;
+
+/**
+ * Declares the {@link ProgressCheck} events that a check consumes, so that the {@code OakMachine} can skip the
+ * dispatch of events that no check is interested in. In particular, when no check consumes
+ * {@link Event#IMPORTED_PATH} with a materialized {@link javax.jcr.Node}, the per-path node lookup is skipped
+ * entirely. {@link ScanListener#startedScan()} and {@link ScanListener#finishedScan()} are always dispatched.
+ * <p>
+ * A mask may also limit the scope of {@link Event#IMPORTED_PATH} and {@link Event#DELETED_PATH} events to a set of
+ * included and excluded root paths, similar to a workspace filter. A path is in scope if it is equal to or descends
+ * from an included root (or if no included roots are declared), unless it is also equal to or descends from an
+ * excluded root.
+ * <p>
+ * A mask may also opt in to receiving {@link Event#IMPORTED_PATH} events in batches through
+ * {@link ProgressCheck#importedPaths(org.apache.jackrabbit.vault.packaging.PackageId, List)}, which saves one callback
+ * per path and defers the node lookup until the check asks for it.
+ *
+ * @see ProgressCheck#getEventMask()
+ * @since 2.1.0
+ */
+@ProviderType
+public final class EventMask {
+
+    /**
+     * Enumeration of maskable progress check events.
+     */
+    public enum Event {
+        /**
+         * {@link ProgressCheck#identifyPackage(org.apache.jackrabbit.vault.packaging.PackageId, java.io.File)}.
+         */
+        IDENTIFY_PACKAGE,
+        /**
+         * {@link ProgressCheck#identifySubpackage(org.apache.jackrabbit.vault.packaging.PackageId,
+         * org.apache.jackrabbit.vault.packaging.PackageId)}.
+         */
+        IDENTIFY_SUBPACKAGE,
+        /**
+         * {@link ProgressCheck#readManifest(org.apache.jackrabbit.vault.packaging.PackageId,
+         * java.util.jar.Manifest)}.
+         */
+        READ_MANIFEST,
+        /**
+         * {@link ProgressCheck#beforeExtract(org.apache.jackrabbit.vault.packaging.PackageId, javax.jcr.Session,
+         * org.apache.jackrabbit.vault.packaging.PackageProperties, org.apache.jackrabbit.vault.fs.config.MetaInf,
+         * java.util.List)}.
+         */
+        BEFORE_EXTRACT,
+        /**
+         * {@link ProgressCheck#importedPath(org.apache.jackrabbit.vault.packaging.PackageId, String, javax.jcr.Node,
+         * PathAction)}.
+         */
+        IMPORTED_PATH,
+        /**
+         * {@link ProgressCheck#deletedPath(org.apache.jackrabbit.vault.packaging.PackageId, String,
+         * javax.jcr.Session)}.
+         */
+        DELETED_PATH,
+        /**
+         * {@link ProgressCheck#afterExtract(org.apache.jackrabbit.vault.packaging.PackageId, javax.jcr.Session)}.
+         */
+        AFTER_EXTRACT
+    }
+
+    /**
+     * The default mask, which includes all events and requires a materialized node for imported paths.
+     */
+    public static final EventMask ALL = new EventMask(EnumSet.allOf(Event.class), true, false,
+            Collections.emptyList(), Collections.emptyList());
+
+    private final Set<Event> events;
+    private final boolean importedNodeRequired;
+    private final boolean importedPathsBatched;
+    private final List<String> includedRoots;
+    private final List<String> excludedRoots;
+
+    private EventMask(final @NotNull Set<Event> events, final boolean importedNodeRequired,
+                      final boolean importedPathsBatched,
+                      final @NotNull List<String> includedRoots, final @NotNull List<String> excludedRoots) {
+        this.events = Collections.unmodifiableSet(events);
+        this.importedNodeRequired = importedNodeRequired && events.contains(Event.IMPORTED_PATH);
+        this.importedPathsBatched = importedPathsBatched && events.contains(Event.IMPORTED_PATH);
+        this.includedRoots = Collections.unmodifiableList(includedRoots);
+        this.excludedRoots = Collections.unmodifiableList(excludedRoots);
+    }
+
+    /**
+     * Create a mask that includes only the specified events. If {@link Event#IMPORTED_PATH} is included, a
+     * materialized node will be required, unless {@link #withoutImportedNode()} is also called.
+     *
+     * @param events the consumed events
+     * @return a new event mask
+     */
+    public static EventMask of(final @NotNull Event... events) {
+        final Set<Event> eventSet = EnumSet.noneOf(Event.class);
+        eventSet.addAll(Arrays.asList(events));
+        return new EventMask(eventSet, true, false, Collections.emptyList(), Collections.emptyList());
+    }
+
+    /**
+     * Return a copy of this mask which does not require a materialized node for imported paths. Checks with such a
+     * mask will receive a {@code null} node argument for
+     * {@link ProgressCheck#importedPath(org.apache.jackrabbit.vault.packaging.PackageId, String, javax.jcr.Node,
+     * PathAction)}.
+     *
+     * @return a new event mask
+     */
+    public EventMask withoutImportedNode() {
+        return new EventMask(copyEvents(), false, importedPathsBatched, includedRoots, excludedRoots);
+    }
+
+    /**
+     * Return a copy of this mask which receives imported paths in batches, through
+     * {@link ProgressCheck#importedPaths(org.apache.jackrabbit.vault.packaging.PackageId, List)} instead of
+     * {@link ProgressCheck#importedPath(org.apache.jackrabbit.vault.packaging.PackageId, String, javax.jcr.Node,
+     * PathAction)}. Each batch holds the in-scope paths imported since the previous batch, in import order, and a
+     * batch is delivered before any deleted path event, and before the end of each package extraction. The node of
+     * each imported path is looked up only when requested, so {@link #isImportedNodeRequired()} does not apply.
+     *
+     * @return a new event mask
+     */
+    public EventMask withImportedPathBatches() {
+        return new EventMask(copyEvents(), importedNodeRequired, true, includedRoots, excludedRoots);
+    }
+
+    /**
+     * Return a copy of this mask which limits path events to the provided root paths and their descendants, in
+     * addition to any previously included roots.
+     *
+     * @param roots absolute root paths
+     * @return a new event mask
+     * @throws IllegalArgumentException if a root path is not absolute
+     */
+    public EventMask withIncludedRoots(final @NotNull String... roots) {
+        final List<String> newRoots = new ArrayList<>(includedRoots);
+        newRoots.addAll(normalizeRoots(roots));
+        return new EventMask(copyEvents(), importedNodeRequired, importedPathsBatched, newRoots, excludedRoots);
+    }
+
+    /**
+     * Return a copy of this mask which excludes path events for the provided root paths and their descendants, in
+     * addition to any previously excluded roots.
+     *
+     * @param roots absolute root paths
+     * @return a new event mask
+     * @throws IllegalArgumentException if a root path is not absolute
+     */
+    public EventMask withExcludedRoots(final @NotNull String... roots) {
+        final List<String> newRoots = new ArrayList<>(excludedRoots);
+        newRoots.addAll(normalizeRoots(roots));
+        return new EventMask(copyEvents(), importedNodeRequired, importedPathsBatched, includedRoots, newRoots);
+    }
+
+    /**
+     * Get the set of consumed events.
+     *
+     * @return the set of consumed events
+     */
+    public Set<Event> getEvents() {
+        return events;
+    }
+
+    /**
+     * Returns true if the event is consumed.
+     *
+     * @param event the event type
+     * @return true if the event is consumed
+     */
+    public boolean includes(final @NotNull Event event) {
+        return events.contains(event);
+    }
+
+    /**
+     * Get the included root paths. An empty list means that all paths are included.
+     *
+     * @return the included root paths
+     */
+    public List<String> getIncludedRoots() {
+        return includedRoots;
+    }
+
+    /**
+     * Get the excluded root paths.
+     *
+     * @return the excluded root paths
+     */
+    public List<String> getExcludedRoots() {
+        return excludedRoots;
+    }
+
+    /**
+     * Returns true if the path is in the scope of the included and excluded roots of this mask.
+     *
+     * @param path the absolute path of an imported or deleted item
+     * @return true if path events should be dispatched for the path
+     */
+    public boolean isPathInScope(final @NotNull String path) {
+        return (includedRoots.isEmpty() || includedRoots.stream().anyMatch(root -> isRootOf(root, path)))
+                && excludedRoots.stream().noneMatch(root -> isRootOf(root, path));
+    }
+
+    /**
+     * Returns true if the path is equal to or a descendant of the root path.
+     *
+     * @param root a normalized root path
+     * @param path the path to test
+     * @return true if the path is within the root
+     */
+    static boolean isRootOf(final @NotNull String root, final @NotNull String path) {
+        return "/".equals(root) || path.equals(root)
+                || (path.startsWith(root) && path.length() > root.length() && path.charAt(root.length()) == '/');
+    }
+
+    static List<String> normalizeRoots(final @NotNull String... roots) {
+        final List<String> normalized = new ArrayList<>(roots.length);
+        for (String root : roots) {
+            if (root == null || !root.startsWith("/")) {
+                throw new IllegalArgumentException("root path must be absolute: " + root);
+            }
+            String trimmed = root;
+            while (trimmed.length() > 1 && trimmed.endsWith("/")) {
+                trimmed = trimmed.substring(0, trimmed.length() - 1);
+            }
+            normalized.add(trimmed);
+        }
+        return normalized;
+    }
+
+    private Set<Event> copyEvents() {
+        final Set<Event> eventSet = EnumSet.noneOf(Event.class);
+        eventSet.addAll(events);
+        return eventSet;
+    }
+
+    /**
+     * Returns true if a materialized node must be provided for imported paths.
+     *
+     * @return true if a materialized node is required
+     */
+    public boolean isImportedNodeRequired() {
+        return importedNodeRequired;
+    }
+
+    /**
+     * Returns true if imported paths are delivered in batches.
+     *
+     * @return true if imported paths are batched
+     * @see #withImportedPathBatches()
+     */
+    public boolean isImportedPathsBatched() {
+        return importedPathsBatched;
+    }
+
+    @Override
+    public boolean equals(final Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (o == null || getClass() != o.getClass()) {
+            return false;
+        }
+        final EventMask eventMask = (EventMask) o;
+        return importedNodeRequired == eventMask.importedNodeRequired
+                && importedPathsBatched == eventMask.importedPathsBatched && events.equals(eventMask.events)
+                && includedRoots.equals(eventMask.includedRoots) && excludedRoots.equals(eventMask.excludedRoots);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(events, importedNodeRequired, importedPathsBatched, includedRoots, excludedRoots);
+    }
+
+    @Override
+    public String toString() {
+        return "EventMask{events=" + events + ", importedNodeRequired=" + importedNodeRequired
+                + ", importedPathsBatched=" + importedPathsBatched
+                + ", includedRoots=" + includedRoots + ", excludedRoots=" + excludedRoots + '}';
+    }
+}
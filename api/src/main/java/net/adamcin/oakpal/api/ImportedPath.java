@@ -0,0 +1,93 @@
+/*
+ * Copyright 2020 Mark Adamcin
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.adamcin.oakpal.api;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+import org.osgi.annotation.versioning.ProviderType;
+
+import javax.jcr.Node;
+import javax.jcr.RepositoryException;
+import javax.jcr.Session;
+
+/**
+ * A single imported path event delivered in a batch to
+ * {@link ProgressCheck#importedPaths(org.apache.jackrabbit.vault.packaging.PackageId, java.util.List)}. The node is
+ * not looked up until {@link #getNode()} is first called, and it reflects the repository state at that time, which may
+ * include changes imported after the path event within the same batch.
+ *
+ * @since 2.1.0
+ */
+@ProviderType
+public final class ImportedPath {
+    private final String path;
+    private final PathAction action;
+    private final Session session;
+    private Node node;
+
+    /**
+     * Constructor.
+     *
+     * @param path    the imported path
+     * @param action  the reported path action type
+     * @param session the session used to resolve the node
+     * @param node    the node, if already resolved
+     */
+    public ImportedPath(final @NotNull String path, final @NotNull PathAction action, final @NotNull Session session,
+                        final @Nullable Node node) {
+        this.path = path;
+        this.action = action;
+        this.session = session;
+        this.node = node;
+    }
+
+    /**
+     * Get the imported path.
+     *
+     * @return the imported path
+     */
+    public @NotNull String getPath() {
+        return path;
+    }
+
+    /**
+     * Get the reported path action type.
+     *
+     * @return the path action type
+     */
+    public @NotNull PathAction getAction() {
+        return action;
+    }
+
+    /**
+     * Get the imported node, looking it up from the session on the first call.
+     *
+     * @return the imported node
+     * @throws RepositoryException if the node can not be retrieved
+     */
+    public @NotNull Node getNode() throws RepositoryException {
+        if (node == null) {
+            node = session.getNode(path);
+        }
+        return node;
+    }
+
+    @Override
+    public String toString() {
+        return "ImportedPath{path='" + path + "', action=" + action + '}';
+    }
+}
@@ -55,6 +55,21 @@ public interface ProgressCheck extends ScanListener, ViolationReporter {
         return getClass().getSimpleName();
     }
 
+    /**
+     * Declare the events consumed by this check, and whether it requires a materialized {@link Node} for
+     * {@link #importedPath(PackageId, String, Node, PathAction)}. The {@code OakMachine} reads the mask once when it
+     * is constructed, and does not call the methods for events which are excluded by the mask, nor the path event
+     * methods for paths outside of the mask's included and excluded roots. When the mask does
+     * not require an imported node, {@code importedPath} is called with a {@code null} node, but only for paths that
+     * exist as nodes.
+     *
+     * @return the event mask for this check
+     * @since 2.1.0
+     */
+    default EventMask getEventMask() {
+        return EventMask.ALL;
+    }
+
     /**
      * Called after the package is uploaded to the package manager at the beginning of the scan. Track subsequent
      * events using the package ID provided to this method. This method will only be called once for each package
@@ -132,6 +147,26 @@ public interface ProgressCheck extends ScanListener, ViolationReporter {
         importedPath(packageId, path, node);
     }
 
+    /**
+     * Notified with a batch of imported paths, in import order, when the event mask of this check opts in with
+     * {@link EventMask#withImportedPathBatches()}. The default implementation calls
+     * {@link #importedPath(PackageId, String, Node, PathAction)} for each path, looking up the node only if the event
+     * mask requires it.
+     *
+     * @param packageId     the current package
+     * @param importedPaths the imported paths
+     * @throws RepositoryException because of access to a {@link Node}
+     * @since 2.1.0
+     */
+    default void importedPaths(PackageId packageId, List<ImportedPath> importedPaths) throws RepositoryException {
+        final EventMask eventMask = getEventMask();
+        final boolean importedNodeRequired = eventMask == null || eventMask.isImportedNodeRequired();
+        for (ImportedPath importedPath : importedPaths) {
+            importedPath(packageId, importedPath.getPath(), importedNodeRequired ? importedPath.getNode() : null,
+                    importedPath.getAction());
+        }
+    }
+
     /**
      * Notified when package importer deletes an existing node.
      *
@@ -16,10 +16,13 @@
 
 package net.adamcin.oakpal.api;
 
+import org.jetbrains.annotations.Nullable;
+
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.List;
+import java.util.function.Consumer;
 
 /**
  * Simple collector of violations for use by {@link ProgressCheck} implementations.
@@ -27,8 +30,27 @@ import java.util.List;
 public final class ReportCollector implements ViolationReporter {
     private final List<Violation> violations = new ArrayList<>();
 
+    private Consumer<Violation> listener;
+
     public void reportViolation(Violation violation) {
-        violations.add(violation);
+        if (listener != null) {
+            listener.accept(violation);
+        } else {
+            violations.add(violation);
+        }
+    }
+
+    /**
+     * Pass each violation reported while the listener is set to the listener, instead of retaining it.
+     *
+     * @param listener the violation listener, or null to retain violations again
+     * @return true
+     * @since 2.1.0
+     */
+    @Override
+    public boolean setViolationListener(final @Nullable Consumer<Violation> listener) {
+        this.listener = listener;
+        return true;
     }
 
     @SuppressWarnings("WeakerAccess")
@@ -126,6 +126,11 @@ public class SimpleProgressCheck implements ProgressCheck {
         collector.clearViolations();
     }
 
+    @Override
+    public boolean setViolationListener(final @Nullable Consumer<Violation> listener) {
+        return collector.setViolationListener(listener);
+    }
+
     @Override
     public Collection<Violation> getReportedViolations() {
         return collector.getReportedViolations();
@@ -21,6 +21,7 @@ import org.osgi.annotation.versioning.ConsumerType;
 
 import java.util.Collection;
 import java.util.ResourceBundle;
+import java.util.function.Consumer;
 
 /**
  * Base interface for violation reporters.
@@ -50,6 +51,21 @@ public interface ViolationReporter {
 
     }
 
+    /**
+     * Called by the framework before a scan to provide a listener which receives each violation as soon as it is
+     * reported, and with null after the scan to remove it. A reporter which supports a listener passes each violation
+     * reported while the listener is set to the listener instead of retaining it, so that it is not returned by
+     * {@link #getReportedViolations()}, and returns true. Returns false by default, in which case the framework
+     * collects the violations from {@link #getReportedViolations()} at the end of the scan instead.
+     *
+     * @param listener the violation listener, or null to retain violations again
+     * @return true if the listener receives each violation reported while it is set
+     * @since 2.1.0
+     */
+    default boolean setViolationListener(@Nullable Consumer<Violation> listener) {
+        return false;
+    }
+
     /**
      * Called at the end of execution to collect any detected violations.
      *
@@ -0,0 +1,182 @@
+/*
+ * Copyright 2020 Mark Adamcin
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.adamcin.oakpal.api;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import java.util.regex.Pattern;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class CompiledRulesTest {
+
+    static final List<String> PATTERNS = Arrays.asList(
+            ".*",
+            "/apps",
+            "/apps(/.*)?",
+            "/apps/.*",
+            "/apps/acme(/.*)?",
+            "/apps/acme/components/.*",
+            "/apps/acme\\.site(/.*)?",
+            "/content/[a-z]+/en(/.*)?",
+            "/content/(acme|other)/.*",
+            "/content/dam/.*\\.png",
+            "(/.*)?",
+            "/etc/packages/.*\\.zip",
+            "/var(/.*)?",
+            "(?i)/VAR/audit(/.*)?",
+            "/conf/(?<tenant>[^/]+)/settings(/.*)?",
+            "/conf/(?<tenant>[^/]+)/cloudconfigs(/.*)?",
+            "/home/(users|groups)/(.)\\2.*",
+            "\\Q/libs/cq.*\\E",
+            "/tmp/.*",
+            "");
+
+    static final List<String> VALUES = Arrays.asList(
+            "",
+            "/",
+            "/apps",
+            "/apps/",
+            "/appsfoo",
+            "/apps/acme",
+            "/apps/acme/components/page",
+            "/apps/acme.site",
+            "/apps/acmexsite",
+            "/apps/acme.site/config",
+            "/content/acme/en",
+            "/content/acme/en/home",
+            "/content/other/fr",
+            "/content/dam/acme/logo.png",
+            "/content/dam/acme/logo.jpg",
+            "/etc/packages/acme/acme-ui.zip",
+            "/var",
+            "/var/audit/x",
+            "/VAR/AUDIT",
+            "/conf/acme/settings/wcm",
+            "/conf/acme/cloudconfigs",
+            "/home/users/aa/admin",
+            "/home/users/ab/admin",
+            "/libs/cq.*",
+            "/libs/cq/core",
+            "/tmp/multi\nline",
+            "/tmp/\u2028",
+            "/apps\n",
+            "\n",
+            "acme:package:1.0");
+
+    static List<Rule> rulesOf(final Random random, final int count) {
+        final RuleType[] types = RuleType.values();
+        final List<Rule> rules = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            rules.add(new Rule(types[random.nextInt(types.length)],
+                    Pattern.compile(PATTERNS.get(random.nextInt(PATTERNS.size())))));
+        }
+        return rules;
+    }
+
+    static void assertSameAsLinear(final List<Rule> rules) {
+        final CompiledRules compiled = CompiledRules.compile(rules);
+        for (String value : VALUES) {
+            assertSame("same rule for " + rules + " and value " + value,
+                    Rules.lastMatch(rules, value), compiled.lastMatch(value));
+        }
+    }
+
+    @Test
+    public void testLastMatch_sameAsLinear() {
+        assertSameAsLinear(Collections.emptyList());
+        for (String pattern : PATTERNS) {
+            assertSameAsLinear(Collections.singletonList(new Rule(RuleType.DENY, Pattern.compile(pattern))));
+        }
+        final Random random = new Random(0L);
+        for (int i = 0; i < 2000; i++) {
+            assertSameAsLinear(rulesOf(random, 1 + random.nextInt(12)));
+        }
+    }
+
+    @Test
+    public void testLastMatch_flagsAndSubclasses() {
+        final List<Rule> rules = Arrays.asList(
+                new Rule(RuleType.ALLOW, Pattern.compile("/apps(/.*)?", Pattern.CASE_INSENSITIVE)),
+                new Rule(RuleType.DENY, Pattern.compile("/apps/.*", Pattern.DOTALL)),
+                new Rule(RuleType.ALLOW, Pattern.compile("/apps/acme")) {
+                    @Override
+                    public boolean matches(final String value) {
+                        return value.startsWith("/APPS");
+                    }
+                });
+        assertSameAsLinear(rules);
+        final CompiledRules compiled = CompiledRules.compile(rules);
+        assertSame("case insensitive", rules.get(0), compiled.lastMatch("/Apps"));
+        assertSame("dotall", rules.get(1), compiled.lastMatch("/apps/\n"));
+        assertSame("overridden matches", rules.get(2), compiled.lastMatch("/APPS/other"));
+    }
+
+    @Test
+    public void testCompile_defaultRule() {
+        final List<Rule> allowFirst = Collections.singletonList(new Rule(RuleType.ALLOW, Pattern.compile("/apps")));
+        assertSame("fuzzy default include", Rules.DEFAULT_EXCLUDE,
+                CompiledRules.compile(allowFirst).getDefaultRule());
+        assertSame("explicit default", Rules.DEFAULT_DENY,
+                CompiledRules.compile(allowFirst, rules -> Rules.DEFAULT_DENY).lastMatch("/content"));
+        assertSame("null selector", Rules.DEFAULT_INCLUDE,
+                CompiledRules.compile(allowFirst, null).getDefaultRule());
+        assertEquals("rules", allowFirst, CompiledRules.compile(allowFirst).getRules());
+    }
+
+    @Test
+    public void testUnescapeLiteral() {
+        assertEquals("plain", "/apps/acme", CompiledRules.unescapeLiteral("/apps/acme"));
+        assertEquals("escaped dot", "/apps/acme.site", CompiledRules.unescapeLiteral("/apps/acme\\.site"));
+        assertEquals("escaped backslash", "a\\b", CompiledRules.unescapeLiteral("a\\\\b"));
+        assertNull("dot", CompiledRules.unescapeLiteral("/apps/acme.site"));
+        assertNull("class", CompiledRules.unescapeLiteral("/apps/[a-z]"));
+        assertNull("escaped letter", CompiledRules.unescapeLiteral("/apps/\\d"));
+        assertNull("trailing backslash", CompiledRules.unescapeLiteral("/apps\\"));
+    }
+
+    @Test
+    public void testIsCombinable() {
+        assertTrue("plain regex", CompiledRules.isCombinable("/content/[a-z]+/en(/.*)?"));
+        assertTrue("escaped backslash", CompiledRules.isCombinable("a\\\\1"));
+        assertFalse("numbered back reference", CompiledRules.isCombinable("(.)\\1"));
+        assertFalse("named back reference", CompiledRules.isCombinable("(?<a>.)\\k<a>"));
+        assertFalse("quote", CompiledRules.isCombinable("\\Q.*"));
+    }
+
+    @Test
+    public void testUsesPatternMatch() {
+        assertTrue("rule", CompiledRules.usesPatternMatch(Rules.DEFAULT_ALLOW));
+        assertTrue("subclass", CompiledRules.usesPatternMatch(new Rule(RuleType.ALLOW, Pattern.compile(".*")) {
+        }));
+        assertFalse("overridden", CompiledRules.usesPatternMatch(new Rule(RuleType.ALLOW, Pattern.compile(".*")) {
+            @Override
+            public boolean matches(final String value) {
+                return false;
+            }
+        }));
+    }
+}
@@ -0,0 +1,125 @@
+/*
+ * Copyright 2020 Mark Adamcin
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.adamcin.oakpal.api;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.EnumSet;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertTrue;
+
+public class EventMaskTest {
+
+    @Test
+    public void testAll() {
+        assertEquals("expect all events", EnumSet.allOf(EventMask.Event.class), EventMask.ALL.getEvents());
+        assertTrue("expect node required", EventMask.ALL.isImportedNodeRequired());
+        for (EventMask.Event event : EventMask.Event.values()) {
+            assertTrue("expect includes " + event, EventMask.ALL.includes(event));
+        }
+    }
+
+    @Test
+    public void testOf() {
+        final EventMask mask = EventMask.of(EventMask.Event.BEFORE_EXTRACT, EventMask.Event.IMPORTED_PATH);
+        assertTrue("expect includes", mask.includes(EventMask.Event.BEFORE_EXTRACT));
+        assertTrue("expect includes", mask.includes(EventMask.Event.IMPORTED_PATH));
+        assertFalse("expect not includes", mask.includes(EventMask.Event.DELETED_PATH));
+        assertTrue("expect node required", mask.isImportedNodeRequired());
+        assertFalse("expect node not required without imported path",
+                EventMask.of(EventMask.Event.AFTER_EXTRACT).isImportedNodeRequired());
+        assertTrue("expect empty", EventMask.of().getEvents().isEmpty());
+    }
+
+    @Test(expected = UnsupportedOperationException.class)
+    public void testGetEventsUnmodifiable() {
+        EventMask.of(EventMask.Event.AFTER_EXTRACT).getEvents().add(EventMask.Event.BEFORE_EXTRACT);
+    }
+
+    @Test
+    public void testWithoutImportedNode() {
+        final EventMask mask = EventMask.of(EventMask.Event.IMPORTED_PATH);
+        final EventMask withoutNode = mask.withoutImportedNode();
+        assertEquals("expect same events", mask.getEvents(), withoutNode.getEvents());
+        assertFalse("expect node not required", withoutNode.isImportedNodeRequired());
+        assertTrue("expect original unchanged", mask.isImportedNodeRequired());
+    }
+
+    @Test
+    public void testWithImportedPathBatches() {
+        assertFalse("expect not batched by default", EventMask.ALL.isImportedPathsBatched());
+        final EventMask mask = EventMask.of(EventMask.Event.IMPORTED_PATH).withImportedPathBatches();
+        assertTrue("expect batched", mask.isImportedPathsBatched());
+        assertTrue("expect node still required", mask.isImportedNodeRequired());
+        assertTrue("expect batched retained", mask.withoutImportedNode().withIncludedRoots("/apps")
+                .withExcludedRoots("/apps/system").isImportedPathsBatched());
+        assertFalse("expect not batched without imported path",
+                EventMask.of(EventMask.Event.DELETED_PATH).withImportedPathBatches().isImportedPathsBatched());
+        assertNotEquals("expect not equal without batches", mask, EventMask.of(EventMask.Event.IMPORTED_PATH));
+        assertTrue("expect toString contains batched", mask.toString().contains("importedPathsBatched=true"));
+    }
+
+    @Test
+    public void testPathScope() {
+        assertTrue("expect no roots", EventMask.ALL.getIncludedRoots().isEmpty());
+        assertTrue("expect all paths in scope", EventMask.ALL.isPathInScope("/apps/foo"));
+        final EventMask mask = EventMask.of(EventMask.Event.IMPORTED_PATH).withoutImportedNode()
+                .withIncludedRoots("/apps/", "/conf").withExcludedRoots("/apps/system");
+        assertEquals("expect normalized included roots", Arrays.asList("/apps", "/conf"), mask.getIncludedRoots());
+        assertEquals("expect excluded roots", Collections.singletonList("/apps/system"), mask.getExcludedRoots());
+        assertFalse("expect node not required", mask.isImportedNodeRequired());
+        assertTrue("expect events retained", mask.includes(EventMask.Event.IMPORTED_PATH));
+        assertTrue("expect root in scope", mask.isPathInScope("/apps"));
+        assertTrue("expect descendant in scope", mask.isPathInScope("/apps/foo/bar"));
+        assertTrue("expect other root in scope", mask.isPathInScope("/conf/foo"));
+        assertFalse("expect sibling prefix not in scope", mask.isPathInScope("/apps2"));
+        assertFalse("expect parent not in scope", mask.isPathInScope("/"));
+        assertFalse("expect excluded root not in scope", mask.isPathInScope("/apps/system"));
+        assertFalse("expect excluded descendant not in scope", mask.isPathInScope("/apps/system/foo"));
+        assertTrue("expect excluded sibling prefix in scope", mask.isPathInScope("/apps/systems"));
+        assertTrue("expect slash root covers everything",
+                EventMask.of().withIncludedRoots("/").isPathInScope("/content"));
+        assertFalse("expect exclusion without inclusion",
+                EventMask.of().withExcludedRoots("/var").isPathInScope("/var/foo"));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testWithIncludedRootsRelative() {
+        EventMask.of().withIncludedRoots("apps");
+    }
+
+    @Test
+    public void testEqualsAndHashCode() {
+        final EventMask mask = EventMask.of(EventMask.Event.IMPORTED_PATH, EventMask.Event.DELETED_PATH);
+        final EventMask same = EventMask.of(EventMask.Event.DELETED_PATH, EventMask.Event.IMPORTED_PATH);
+        assertEquals("expect equal", mask, same);
+        assertEquals("expect equal to self", mask, mask);
+        assertEquals("expect equal hashCode", mask.hashCode(), same.hashCode());
+        assertNotEquals("expect not equal without node", mask, mask.withoutImportedNode());
+        assertNotEquals("expect not equal to different events", mask, EventMask.of(EventMask.Event.IMPORTED_PATH));
+        assertNotEquals("expect not equal with roots", mask, mask.withIncludedRoots("/apps"));
+        assertEquals("expect equal with same roots", mask.withExcludedRoots("/var"), same.withExcludedRoots("/var"));
+        assertNotEquals("expect not equal to null", mask, null);
+        assertNotEquals("expect not equal to other type", mask, "");
+        assertTrue("expect toString contains events", mask.toString().contains("IMPORTED_PATH"));
+    }
+}
@@ -16,11 +16,22 @@
 
 package net.adamcin.oakpal.api;
 
+import org.apache.jackrabbit.vault.packaging.PackageId;
 import org.junit.Assert;
 import org.junit.Test;
 
+import javax.jcr.Node;
+import javax.jcr.Session;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
+import java.util.List;
+
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
 
 public class ProgressCheckTest {
 
@@ -34,6 +45,7 @@ public class ProgressCheckTest {
         };
 
         Assert.assertNotNull("expect nonnull checkName", mock.getCheckName());
+        Assert.assertSame("expect all events by default", EventMask.ALL, mock.getEventMask());
         mock.startedScan();
         mock.identifyPackage(null, null);
         mock.identifySubpackage(null, null);
@@ -45,4 +57,60 @@ public class ProgressCheckTest {
         mock.afterExtract(null, null);
         mock.finishedScan();
     }
+
+    @Test
+    public void testImportedPaths() throws Exception {
+        final Session session = mock(Session.class);
+        final Node fooNode = mock(Node.class);
+        final Node barNode = mock(Node.class);
+        when(session.getNode("/foo")).thenReturn(fooNode);
+        final List<ImportedPath> importedPaths = Arrays.asList(
+                new ImportedPath("/foo", PathAction.ADDED, session, null),
+                new ImportedPath("/bar", PathAction.MODIFIED, session, barNode));
+        final List<Object> received = new ArrayList<>();
+        final ProgressCheck check = new ProgressCheck() {
+            @Override
+            public Collection<Violation> getReportedViolations() {
+                return Collections.emptyList();
+            }
+
+            @Override
+            public void importedPath(final PackageId packageId, final String path, final Node node,
+                                     final PathAction action) {
+                received.addAll(Arrays.asList(path, node, action));
+            }
+        };
+        check.importedPaths(null, importedPaths);
+        Assert.assertEquals("expect nodes resolved in order",
+                Arrays.asList("/foo", fooNode, PathAction.ADDED, "/bar", barNode, PathAction.MODIFIED), received);
+        Assert.assertSame("expect node cached", fooNode, importedPaths.get(0).getNode());
+        verify(session, never()).getNode("/bar");
+        Assert.assertEquals("expect path", "/bar", importedPaths.get(1).getPath());
+        Assert.assertSame("expect action", PathAction.MODIFIED, importedPaths.get(1).getAction());
+        Assert.assertTrue("expect toString contains path", importedPaths.get(1).toString().contains("/bar"));
+
+        received.clear();
+        final ProgressCheck withoutNode = new ProgressCheck() {
+            @Override
+            public Collection<Violation> getReportedViolations() {
+                return Collections.emptyList();
+            }
+
+            @Override
+            public EventMask getEventMask() {
+                return EventMask.of(EventMask.Event.IMPORTED_PATH).withoutImportedNode().withImportedPathBatches();
+            }
+
+            @Override
+            public void importedPath(final PackageId packageId, final String path, final Node node,
+                                     final PathAction action) {
+                received.add(node);
+            }
+        };
+        final Session unusedSession = mock(Session.class);
+        withoutNode.importedPaths(null,
+                Collections.singletonList(new ImportedPath("/foo", PathAction.ADDED, unusedSession, null)));
+        Assert.assertEquals("expect null node", Collections.singletonList(null), received);
+        verify(unusedSession, never()).getNode("/foo");
+    }
 }
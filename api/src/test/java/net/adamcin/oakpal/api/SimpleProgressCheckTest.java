@@ -21,6 +21,9 @@ import org.junit.Test;
 
 import java.net.URL;
 import java.net.URLClassLoader;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
 import java.util.Locale;
 import java.util.ResourceBundle;
 
@@ -62,6 +65,23 @@ public class SimpleProgressCheckTest {
         assertTrue("contains violation", check.getReportedViolations().contains(violation));
     }
 
+    @Test
+    public void testSetViolationListener() {
+        final SimpleProgressCheck check = new SimpleProgressCheck();
+        final List<Violation> listened = new ArrayList<>();
+        final SimpleViolation first = new SimpleViolation(Severity.MINOR, "first");
+        final SimpleViolation second = new SimpleViolation(Severity.MAJOR, "second");
+        assertTrue("expect listener support", check.setViolationListener(listened::add));
+        check.reportViolation(first);
+        assertEquals("expect listened violation", Collections.singletonList(first), listened);
+        assertTrue("expect listened violation is not retained", check.getReportedViolations().isEmpty());
+        assertTrue("expect listener removed", check.setViolationListener(null));
+        check.reportViolation(second);
+        assertEquals("expect no more listened violations", Collections.singletonList(first), listened);
+        assertEquals("expect retained violation", Collections.singletonList(second),
+                new ArrayList<>(check.getReportedViolations()));
+    }
+
     @Test
     public void testReportViolation_args() {
         SimpleProgressCheck check = new SimpleProgressCheck();
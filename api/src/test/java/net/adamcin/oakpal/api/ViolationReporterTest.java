@@ -30,6 +30,8 @@ public class ViolationReporterTest {
 
         mock.setResourceBundle(null);
         Assert.assertNotNull("expect nonnull getResourceBundleBaseName", mock.getResourceBundleBaseName());
+        Assert.assertFalse("expect no listener support by default",
+                mock.setViolationListener(violation -> Assert.fail("unexpected violation")));
     }
 
     static class MockViolationReporter implements ViolationReporter {
@@ -0,0 +1,75 @@
+/*
+ * Copyright 2020 Mark Adamcin
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.adamcin.oakpal.benchmarks;
+
+import net.adamcin.oakpal.core.BaseCheckpoint;
+import net.adamcin.oakpal.core.InitStage;
+import net.adamcin.oakpal.core.OakMachine;
+import org.apache.jackrabbit.oak.spi.state.NodeState;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.net.URL;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the registration of CND nodetypes by an {@link InitStage}, through {@link OakMachine#prepareBase()}. The
+ * {@code none} stage measures repository initialization alone, so the cost of the CND installer is the difference
+ * between the two stages.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Fork(1)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+public class CNDURLInstallerBenchmark {
+    static final URL CND_URL = CNDURLInstallerBenchmark.class.getResource("benchmark-nodetypes.cnd");
+
+    @Param({"none", "unordered", "ordered"})
+    public String stage;
+
+    private OakMachine.Builder machineBuilder;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        final InitStage.Builder stageBuilder = new InitStage.Builder();
+        if ("unordered".equals(stage)) {
+            stageBuilder.withUnorderedCndUrl(CND_URL);
+        } else if ("ordered".equals(stage)) {
+            stageBuilder.withOrderedCndUrl(CND_URL);
+        }
+        machineBuilder = new OakMachine.Builder().withInitStage(stageBuilder.build());
+    }
+
+    @Benchmark
+    public NodeState prepareBase() throws Exception {
+        try (BaseCheckpoint base = machineBuilder.build().prepareBase()) {
+            return base.getRoot();
+        }
+    }
+}
@@ -0,0 +1,122 @@
+/*
+ * Copyright 2020 Mark Adamcin
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.adamcin.oakpal.benchmarks;
+
+import net.adamcin.oakpal.core.Util;
+import org.apache.jackrabbit.api.JackrabbitRepository;
+import org.apache.jackrabbit.oak.Oak;
+import org.apache.jackrabbit.oak.jcr.Jcr;
+import org.apache.jackrabbit.oak.plugins.memory.MemoryNodeStore;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import javax.jcr.Node;
+import javax.jcr.NodeIterator;
+import javax.jcr.Property;
+import javax.jcr.PropertyIterator;
+import javax.jcr.Repository;
+import javax.jcr.RepositoryException;
+import javax.jcr.Session;
+import javax.jcr.SimpleCredentials;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the overhead of the read-only jcrfacade session wrapper that is passed to progress checks, by traversing
+ * the same tree and reading every property with and without the wrapper.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Fork(1)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+public class JcrFacadeBenchmark {
+
+    @Param({"1000"})
+    public int nodeCount;
+
+    @Param({"10"})
+    public int fanOut;
+
+    private Repository repository;
+    private Session session;
+    private Session facade;
+
+    @Setup(Level.Trial)
+    public void setup() throws Exception {
+        repository = new Jcr(new Oak(new MemoryNodeStore())).createRepository();
+        session = repository.login(new SimpleCredentials("admin", "admin".toCharArray()));
+        final Node root = session.getRootNode().addNode("tmp", "nt:unstructured")
+                .addNode("oakpal-benchmark", "nt:unstructured");
+        addChildren(root, 0);
+        session.save();
+        facade = Util.wrapSessionReadOnly(session);
+    }
+
+    private void addChildren(final Node parent, final int parentIndex) throws RepositoryException {
+        for (int i = 1; i <= fanOut; i++) {
+            final int index = parentIndex * fanOut + i;
+            if (index > nodeCount) {
+                return;
+            }
+            final Node child = parent.addNode("node" + index, "nt:unstructured");
+            child.setProperty("title", "Node " + index);
+            child.setProperty("index", (long) index);
+            addChildren(child, index);
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        session.logout();
+        if (repository instanceof JackrabbitRepository) {
+            ((JackrabbitRepository) repository).shutdown();
+        }
+    }
+
+    @Benchmark
+    public void traverseSession(final Blackhole blackhole) throws Exception {
+        traverse(session.getNode("/tmp/oakpal-benchmark"), blackhole);
+    }
+
+    @Benchmark
+    public void traverseFacade(final Blackhole blackhole) throws Exception {
+        traverse(facade.getNode("/tmp/oakpal-benchmark"), blackhole);
+    }
+
+    private static void traverse(final Node node, final Blackhole blackhole) throws RepositoryException {
+        for (PropertyIterator properties = node.getProperties(); properties.hasNext(); ) {
+            final Property property = properties.nextProperty();
+            blackhole.consume(property.isMultiple() ? property.getValues() : property.getValue());
+        }
+        for (NodeIterator children = node.getNodes(); children.hasNext(); ) {
+            traverse(children.nextNode(), blackhole);
+        }
+    }
+}
@@ -0,0 +1,87 @@
+/*
+ * Copyright 2020 Mark Adamcin
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.adamcin.oakpal.benchmarks;
+
+import net.adamcin.oakpal.api.Result;
+import net.adamcin.oakpal.core.JsonCnd;
+import org.apache.jackrabbit.spi.QNodeTypeDefinition;
+import org.apache.jackrabbit.spi.commons.namespace.NamespaceMapping;
+import org.apache.jackrabbit.vault.fs.spi.NodeTypeSet;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import javax.json.JsonObject;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+/**
+ * Measures reading node types from CND, and converting between qualified node type definitions and JSON CND, as
+ * performed for the {@code jcrNodetypes} of every plan and checklist.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Fork(1)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+public class JsonCndBenchmark {
+    static final URL CND_URL = JsonCndBenchmark.class.getResource("benchmark-nodetypes.cnd");
+
+    private NamespaceMapping mapping;
+    private List<QNodeTypeDefinition> nodeTypes;
+    private JsonObject json;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        final NodeTypeSet nodeTypeSet = readCnd();
+        mapping = nodeTypeSet.getNamespaceMapping();
+        nodeTypes = new ArrayList<>(nodeTypeSet.getNodeTypes().values());
+        json = JsonCnd.toJson(nodeTypes, mapping);
+    }
+
+    @Benchmark
+    public NodeTypeSet readCnd() {
+        final List<NodeTypeSet> sets = JsonCnd.readNodeTypes(JsonCnd.BUILTIN_MAPPINGS,
+                Collections.singletonList(CND_URL)).stream()
+                .flatMap(Result::stream)
+                .collect(Collectors.toList());
+        return JsonCnd.aggregateNodeTypes(JsonCnd.BUILTIN_MAPPINGS, sets);
+    }
+
+    @Benchmark
+    public JsonObject toJson() {
+        return JsonCnd.toJson(nodeTypes, mapping);
+    }
+
+    @Benchmark
+    public List<QNodeTypeDefinition> fromJson() {
+        return JsonCnd.getQTypesFromJson(json, mapping);
+    }
+}
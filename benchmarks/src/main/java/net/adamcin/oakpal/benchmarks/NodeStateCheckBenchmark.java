@@ -0,0 +1,233 @@
+/*
+ * Copyright 2020 Mark Adamcin
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.adamcin.oakpal.benchmarks;
+
+import net.adamcin.oakpal.api.EventMask;
+import net.adamcin.oakpal.api.ImportedPath;
+import net.adamcin.oakpal.api.PathAction;
+import net.adamcin.oakpal.api.ProgressCheck;
+import net.adamcin.oakpal.api.Violation;
+import net.adamcin.oakpal.core.CheckReport;
+import net.adamcin.oakpal.core.NodeStateCheck;
+import net.adamcin.oakpal.core.OakMachine;
+import net.adamcin.oakpal.core.checks.ExpectPaths;
+import net.adamcin.oakpal.core.checks.JcrProperties;
+import net.adamcin.oakpal.testing.SyntheticPackage;
+import org.apache.commons.io.FileUtils;
+import org.apache.jackrabbit.vault.fs.config.MetaInf;
+import org.apache.jackrabbit.vault.packaging.PackageId;
+import org.apache.jackrabbit.vault.packaging.PackageProperties;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import javax.jcr.Node;
+import javax.jcr.RepositoryException;
+import javax.jcr.Session;
+import java.io.File;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.ResourceBundle;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import java.util.jar.Manifest;
+
+import static net.adamcin.oakpal.api.JavaxJson.arr;
+import static net.adamcin.oakpal.api.JavaxJson.key;
+import static net.adamcin.oakpal.api.JavaxJson.obj;
+
+/**
+ * Measures the throughput difference of the {@link NodeStateCheck} read path, by scanning the same generated package
+ * with the {@link JcrProperties} and {@link ExpectPaths} checks, either as they are, reading node states, or wrapped
+ * in a plain {@link ProgressCheck} which hides {@link NodeStateCheck}, so that they read the same content through
+ * the JCR callbacks.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Fork(1)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+public class NodeStateCheckBenchmark {
+
+    @Param({"1000", "10000"})
+    public int nodeCount;
+
+    @Param({"10"})
+    public int fanOut;
+
+    @Param({"4"})
+    public int propertiesPerNode;
+
+    @Param({"jcr", "nodeState"})
+    public String readPath;
+
+    private File tempDir;
+    private List<File> packageFiles;
+    private OakMachine.Builder machineBuilder;
+
+    @Setup(Level.Trial)
+    public void setup() throws Exception {
+        tempDir = Files.createTempDirectory("oakpal-benchmark").toFile();
+        final SyntheticPackage syntheticPackage = new SyntheticPackage.Builder()
+                .withName("node_state_" + nodeCount)
+                .withNodeCount(nodeCount)
+                .withFanOut(fanOut)
+                .withPropertiesPerNode(propertiesPerNode)
+                .build();
+        packageFiles = Collections.singletonList(
+                syntheticPackage.writeToFile(new File(tempDir, syntheticPackage.getFileName())));
+
+        final ProgressCheck jcrProperties = new JcrProperties().newInstance(obj()
+                .key(JcrProperties.keys().scopePaths(), arr()
+                        .and(key("pattern", syntheticPackage.getRootPath() + "/.*").key("type", "allow")))
+                .key(JcrProperties.keys().properties(), arr()
+                        .and(key("name", "prop0").key("denyIfAbsent", true))
+                        .and(key("name", "prop1").key("denyIfMultivalued", true))
+                        .and(key("name", "sling:resourceType").key("denyIfPresent", true)))
+                .get());
+        final ProgressCheck expectPaths = new ExpectPaths().newInstance(obj()
+                .key(ExpectPaths.keys().expectedPaths(), arr(syntheticPackage.getRootPath()))
+                .key(ExpectPaths.keys().notExpectedPaths(), arr(syntheticPackage.getRootPath() + "/missing"))
+                .get());
+        final List<ProgressCheck> checks = "jcr".equals(readPath)
+                ? Arrays.asList(new JcrCallbacksCheck(jcrProperties), new JcrCallbacksCheck(expectPaths))
+                : Arrays.asList(jcrProperties, expectPaths);
+        machineBuilder = new OakMachine.Builder().withProgressChecks(checks);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws Exception {
+        FileUtils.deleteDirectory(tempDir);
+    }
+
+    @Benchmark
+    public List<CheckReport> scanPackages() throws Exception {
+        return machineBuilder.build().scanPackages(packageFiles);
+    }
+
+    /**
+     * Forwards the {@link ProgressCheck} events to a check without implementing {@link NodeStateCheck}, so that the
+     * {@link OakMachine} delivers JCR nodes and sessions to the wrapped check instead of node states.
+     */
+    static final class JcrCallbacksCheck implements ProgressCheck {
+        private final ProgressCheck wrapped;
+
+        JcrCallbacksCheck(final ProgressCheck wrapped) {
+            this.wrapped = wrapped;
+        }
+
+        @Override
+        public String getCheckName() {
+            return wrapped.getCheckName();
+        }
+
+        @Override
+        public EventMask getEventMask() {
+            return wrapped.getEventMask();
+        }
+
+        @Override
+        public String getResourceBundleBaseName() {
+            return wrapped.getResourceBundleBaseName();
+        }
+
+        @Override
+        public void setResourceBundle(final ResourceBundle resourceBundle) {
+            wrapped.setResourceBundle(resourceBundle);
+        }
+
+        @Override
+        public boolean setViolationListener(final Consumer<Violation> listener) {
+            return wrapped.setViolationListener(listener);
+        }
+
+        @Override
+        public Collection<Violation> getReportedViolations() {
+            return wrapped.getReportedViolations();
+        }
+
+        @Override
+        public void startedScan() {
+            wrapped.startedScan();
+        }
+
+        @Override
+        public void identifyPackage(final PackageId packageId, final File file) {
+            wrapped.identifyPackage(packageId, file);
+        }
+
+        @Override
+        public void identifySubpackage(final PackageId packageId, final PackageId parentId) {
+            wrapped.identifySubpackage(packageId, parentId);
+        }
+
+        @Override
+        public void readManifest(final PackageId packageId, final Manifest manifest) {
+            wrapped.readManifest(packageId, manifest);
+        }
+
+        @Override
+        public void beforeExtract(final PackageId packageId, final Session inspectSession,
+                                  final PackageProperties packageProperties, final MetaInf metaInf,
+                                  final List<PackageId> subpackages) throws RepositoryException {
+            wrapped.beforeExtract(packageId, inspectSession, packageProperties, metaInf, subpackages);
+        }
+
+        @Override
+        public void importedPath(final PackageId packageId, final String path, final Node node,
+                                 final PathAction action) throws RepositoryException {
+            wrapped.importedPath(packageId, path, node, action);
+        }
+
+        @Override
+        public void importedPaths(final PackageId packageId, final List<ImportedPath> importedPaths)
+                throws RepositoryException {
+            wrapped.importedPaths(packageId, importedPaths);
+        }
+
+        @Override
+        public void deletedPath(final PackageId packageId, final String path, final Session inspectSession)
+                throws RepositoryException {
+            wrapped.deletedPath(packageId, path, inspectSession);
+        }
+
+        @Override
+        public void afterExtract(final PackageId packageId, final Session inspectSession)
+                throws RepositoryException {
+            wrapped.afterExtract(packageId, inspectSession);
+        }
+
+        @Override
+        public void finishedScan() {
+            wrapped.finishedScan();
+        }
+    }
+}
@@ -0,0 +1,99 @@
+/*
+ * Copyright 2020 Mark Adamcin
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.adamcin.oakpal.benchmarks;
+
+import net.adamcin.oakpal.api.Severity;
+import net.adamcin.oakpal.api.SimpleViolation;
+import net.adamcin.oakpal.api.Violation;
+import net.adamcin.oakpal.core.CheckReport;
+import net.adamcin.oakpal.core.ReportMapper;
+import net.adamcin.oakpal.core.SimpleReport;
+import org.apache.jackrabbit.vault.packaging.PackageId;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures writing check reports to JSON and reading them back, as performed for the scan result cache, the CLI JSON
+ * output, and the Maven verify goal.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Fork(1)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+public class ReportMapperBenchmark {
+
+    @Param({"10"})
+    public int reportCount;
+
+    @Param({"10", "1000"})
+    public int violationsPerReport;
+
+    private List<CheckReport> reports;
+    private String json;
+
+    @Setup(Level.Trial)
+    public void setup() throws Exception {
+        final Severity[] severities = Severity.values();
+        reports = new ArrayList<>(reportCount);
+        for (int r = 0; r < reportCount; r++) {
+            final List<Violation> violations = new ArrayList<>(violationsPerReport);
+            for (int v = 0; v < violationsPerReport; v++) {
+                violations.add(new SimpleViolation(severities[v % severities.length],
+                        "violation " + v + " at /content/acme/page" + v + "/jcr:content",
+                        PackageId.fromString("acme:package-" + (v % 7) + ":1.0." + r)));
+            }
+            reports.add(new SimpleReport("check" + r, violations));
+        }
+        json = write();
+    }
+
+    @Benchmark
+    public String write() throws Exception {
+        final StringWriter writer = new StringWriter();
+        ReportMapper.writeReports(reports, () -> writer);
+        return writer.toString();
+    }
+
+    @Benchmark
+    public List<CheckReport> read() throws Exception {
+        return ReportMapper.readReports(() -> new StringReader(json));
+    }
+
+    @Benchmark
+    public List<CheckReport> roundTrip() throws Exception {
+        final String written = write();
+        return ReportMapper.readReports(() -> new StringReader(written));
+    }
+}
@@ -0,0 +1,102 @@
+/*
+ * Copyright 2020 Mark Adamcin
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.adamcin.oakpal.benchmarks;
+
+import net.adamcin.oakpal.api.CompiledRules;
+import net.adamcin.oakpal.api.Rule;
+import net.adamcin.oakpal.api.RuleType;
+import net.adamcin.oakpal.api.Rules;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Pattern;
+
+/**
+ * Compares {@link Rules#lastMatch(List, String)} with {@link CompiledRules#lastMatch(String)} for path rule lists like
+ * those configured for the built-in checks, against a fixed sample of typical content paths.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Fork(1)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+public class RulesBenchmark {
+
+    private static final List<String> ROOTS = Arrays.asList(
+            "/apps/acme", "/apps/acme-commons", "/conf/acme", "/content/acme", "/content/dam/acme",
+            "/content/experience-fragments/acme", "/etc/map", "/home/users/system/acme", "/oak:index", "/var/acme");
+
+    private static final List<String> PATHS = Arrays.asList(
+            "/apps/acme/components/page/basepage/basepage.html",
+            "/apps/acme/config/org.apache.sling.commons.log.LogManager.factory.config-acme.config",
+            "/apps/acme-commons/clientlibs/base/js/app.js",
+            "/conf/acme/settings/wcm/templates/content-page/structure/jcr:content",
+            "/content/acme/us/en/home/jcr:content/root/responsivegrid/text",
+            "/content/dam/acme/images/hero/banner.jpg/jcr:content/renditions/original",
+            "/etc/map/http/acme.com",
+            "/home/users/system/acme/acme-service-user",
+            "/libs/granite/ui/components/coral/foundation/form/textfield",
+            "/var/acme/imports/2020/03/feed.xml");
+
+    @Param({"4", "16", "64"})
+    public int ruleCount;
+
+    private List<Rule> rules;
+    private CompiledRules compiledRules;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        rules = new ArrayList<>(ruleCount);
+        for (int i = 0; i < ruleCount; i++) {
+            final String root = ROOTS.get(i % ROOTS.size());
+            final RuleType type = i % 3 == 2 ? RuleType.EXCLUDE : RuleType.INCLUDE;
+            final String suffix = i < ROOTS.size() ? "(/.*)?" : "/[^/]*" + (i / ROOTS.size()) + "[^/]*(/.*)?";
+            rules.add(new Rule(type, Pattern.compile(root + suffix)));
+        }
+        compiledRules = CompiledRules.compile(rules);
+    }
+
+    @Benchmark
+    public void lastMatch(final Blackhole blackhole) {
+        for (String path : PATHS) {
+            blackhole.consume(Rules.lastMatch(rules, path));
+        }
+    }
+
+    @Benchmark
+    public void compiledLastMatch(final Blackhole blackhole) {
+        for (String path : PATHS) {
+            blackhole.consume(compiledRules.lastMatch(path));
+        }
+    }
+}
@@ -0,0 +1,106 @@
+/*
+ * Copyright 2020 Mark Adamcin
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.adamcin.oakpal.benchmarks;
+
+import net.adamcin.oakpal.api.Result;
+import net.adamcin.oakpal.core.CheckReport;
+import net.adamcin.oakpal.core.DefaultErrorListener;
+import net.adamcin.oakpal.core.OakMachine;
+import net.adamcin.oakpal.core.OakpalPlan;
+import net.adamcin.oakpal.testing.SyntheticPackage;
+import org.apache.commons.io.FileUtils;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures {@link OakMachine#scanPackages(List)} for a single generated package of increasing size, with and without
+ * the checks of the basic plan.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Fork(1)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+public class ScanPackagesBenchmark {
+
+    @Param({"100", "1000", "10000"})
+    public int nodeCount;
+
+    @Param({"10"})
+    public int fanOut;
+
+    @Param({"4"})
+    public int propertiesPerNode;
+
+    @Param({"none", "basic"})
+    public String plan;
+
+    private File tempDir;
+    private List<File> packageFiles;
+    private OakMachine.Builder machineBuilder;
+
+    @Setup(Level.Trial)
+    public void setup() throws Exception {
+        tempDir = Files.createTempDirectory("oakpal-benchmark").toFile();
+        final SyntheticPackage syntheticPackage = new SyntheticPackage.Builder()
+                .withName("scan_" + nodeCount)
+                .withNodeCount(nodeCount)
+                .withFanOut(fanOut)
+                .withPropertiesPerNode(propertiesPerNode)
+                .build();
+        packageFiles = Collections.singletonList(
+                syntheticPackage.writeToFile(new File(tempDir, syntheticPackage.getFileName())));
+        if ("basic".equals(plan)) {
+            final Result<OakpalPlan> basicPlan = OakpalPlan.fromJson(OakpalPlan.BASIC_PLAN_URL);
+            if (basicPlan.getError().isPresent()) {
+                throw basicPlan.getError().get();
+            }
+            machineBuilder = basicPlan.getOrDefault(null)
+                    .toOakMachineBuilder(new DefaultErrorListener(), getClass().getClassLoader());
+        } else {
+            machineBuilder = new OakMachine.Builder();
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws Exception {
+        FileUtils.deleteDirectory(tempDir);
+    }
+
+    @Benchmark
+    public List<CheckReport> scanPackages() throws Exception {
+        return machineBuilder.build().scanPackages(packageFiles);
+    }
+}
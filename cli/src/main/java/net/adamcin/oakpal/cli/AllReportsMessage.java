@@ -18,11 +18,14 @@ package net.adamcin.oakpal.cli;
 
 import net.adamcin.oakpal.core.CheckReport;
 import net.adamcin.oakpal.core.ReportMapper;
+import net.adamcin.oakpal.core.ScanMetrics;
 import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
 
 import javax.json.JsonObject;
 import java.util.List;
 import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 import static net.adamcin.oakpal.api.Fun.compose1;
 
@@ -30,19 +33,54 @@ class AllReportsMessage implements StructuredMessage {
 
     private final List<CheckReport> reports;
 
+    private final ScanMetrics scanMetrics;
+
     AllReportsMessage(final @NotNull List<CheckReport> reports) {
+        this(reports, null);
+    }
+
+    AllReportsMessage(final @NotNull List<CheckReport> reports, final @Nullable ScanMetrics scanMetrics) {
         this.reports = reports;
+        this.scanMetrics = scanMetrics;
     }
 
     @Override
     public String toString() {
-        return reports.stream()
-                .map(compose1(ReportMessage::new, ReportMessage::toString))
+        final Stream<String> metricsLines = scanMetrics != null && !scanMetrics.isEmpty()
+                ? Stream.of(metricsToString(scanMetrics))
+                : Stream.empty();
+        return Stream.concat(reports.stream().map(compose1(ReportMessage::new, ReportMessage::toString)), metricsLines)
                 .collect(Collectors.joining(System.lineSeparator()));
     }
 
+    static String timerToString(final @NotNull ScanMetrics.Timer timer) {
+        return String.format("count=%d total=%.3fms max=%.3fms p50=%.3fms p99=%.3fms", timer.getCount(),
+                timer.getTotalNanos() / 1.0E6D, timer.getMaxNanos() / 1.0E6D,
+                timer.getPercentileNanos(50.0D) / 1.0E6D, timer.getPercentileNanos(99.0D) / 1.0E6D);
+    }
+
+    static String metricsToString(final @NotNull ScanMetrics scanMetrics) {
+        final StringBuilder sb = new StringBuilder("metrics:");
+        for (ScanMetrics.CheckMetrics check : scanMetrics.getChecks()) {
+            for (ScanMetrics.Callback callback : ScanMetrics.Callback.values()) {
+                final ScanMetrics.Timer timer = check.getTimer(callback);
+                if (timer.getCount() > 0) {
+                    sb.append(System.lineSeparator()).append(String.format(" +- check %s %s %s",
+                            check.getCheckName(), callback.getMethodName(), timerToString(timer)));
+                }
+            }
+        }
+        for (ScanMetrics.PackageMetrics pkg : scanMetrics.getPackages()) {
+            for (ScanMetrics.ImporterPhase phase : ScanMetrics.ImporterPhase.values()) {
+                sb.append(System.lineSeparator()).append(String.format(" +- package %s %s %s",
+                        pkg.getPackageId(), phase.getPhaseName(), timerToString(pkg.getTimer(phase))));
+            }
+        }
+        return sb.toString();
+    }
+
     @Override
     public JsonObject toJson() {
-        return ReportMapper.reportsToJsonObject(reports);
+        return ReportMapper.reportsToJsonObject(reports, scanMetrics);
     }
 }
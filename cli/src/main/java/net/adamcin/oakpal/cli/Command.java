@@ -4,6 +4,7 @@ import static net.adamcin.oakpal.api.Fun.compose1;
 import static net.adamcin.oakpal.api.Fun.result0;
 import static net.adamcin.oakpal.api.Fun.result1;
 import static net.adamcin.oakpal.api.Fun.uncheck0;
+import static net.adamcin.oakpal.api.Fun.uncheckVoid1;
 
 import java.io.BufferedReader;
 import java.io.File;
@@ -20,17 +21,25 @@ import java.util.function.Function;
 import java.util.function.Supplier;
 
 import net.adamcin.oakpal.api.Severity;
+import net.adamcin.oakpal.core.BaseCheckpoint;
+import net.adamcin.oakpal.core.BaseCheckpointCache;
 import net.adamcin.oakpal.core.CheckReport;
 import net.adamcin.oakpal.core.DefaultErrorListener;
 import net.adamcin.oakpal.core.FileBlobMemoryNodeStore;
 import net.adamcin.oakpal.api.Nothing;
+import net.adamcin.oakpal.core.NodeStoreType;
 import net.adamcin.oakpal.core.OakMachine;
 import net.adamcin.oakpal.core.OakpalPlan;
+import net.adamcin.oakpal.core.ScanMetrics;
+import net.adamcin.oakpal.core.ScanResultCache;
+import net.adamcin.oakpal.core.ViolationSink;
 import net.adamcin.oakpal.api.Result;
 import net.adamcin.oakpal.api.Violation;
 import org.apache.jackrabbit.oak.plugins.memory.MemoryNodeStore;
+import org.apache.jackrabbit.oak.spi.state.NodeState;
 import org.apache.jackrabbit.oak.spi.state.NodeStore;
 import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -40,6 +49,8 @@ final class Command {
     private static final String LONG_NO_OPT_PREFIX = "--no-";
     private static final String VERSION_PROPERTIES_NAME = "version.properties";
     private static final String COMMAND_HELP_TXT = "help.txt";
+    static final String BASES_DIR_NAME = "bases";
+    static final String RESULTS_DIR_NAME = "results";
     static final Integer EXIT_GENERAL_ERROR = 1;
     static final Integer EXIT_ABORTED_SCAN = 9;
     static final Integer EXIT_SEVERE_VIOLATION = 10;
@@ -74,39 +85,145 @@ final class Command {
         }
     }
 
+    Function<NodeState, NodeStore> getNodeStoreForkFunction(final @NotNull Options opts) {
+        if (opts.isStoreBlobs()) {
+            return base -> new FileBlobMemoryNodeStore(
+                    opts.getCacheDir().toPath().resolve("blobs").toFile().getAbsolutePath(), base);
+        } else {
+            return MemoryNodeStore::new;
+        }
+    }
+
     IO<Integer> doScan(final @NotNull Console console, final @NotNull Options opts) {
-        final ClassLoader cl = opts.getScanClassLoader();
         final URL planUrl = opts.getPlanUrl();
 
         /* ------------ */
         /* perform scan */
         /* ------------ */
         final Result<List<CheckReport>> scanResult = OakpalPlan.fromJson(planUrl)
-                .flatMap(result1(plan ->
-                        opts.applyOverrides(plan).toOakMachineBuilder(new DefaultErrorListener(), cl)
-                                .withNodeStoreSupplier(getNodeStoreSupplier(opts))))
-                .map(OakMachine.Builder::build).flatMap(oak -> runOakScan(opts, oak));
+                .map(opts::applyOverrides)
+                .flatMap(plan -> isResultCacheDisabled(opts)
+                        ? runPlanScan(opts, plan)
+                        : runResultCachedScan(opts, plan));
 
         if (scanResult.isFailure()) {
             return console.printLineErr(scanResult.teeLogError().getError().get().getMessage())
                     .add(IO.unit(EXIT_ABORTED_SCAN));
         } else {
             final List<CheckReport> reports = scanResult.getOrDefault(Collections.emptyList());
+            final ViolationLinePrinter violationLinePrinter = opts.getViolationLinePrinter();
+            if (violationLinePrinter != null) {
+                return IO.unit(getExitCode(opts, violationLinePrinter.getHighestSeverity()).orElse(0));
+            }
             final Optional<Integer> highestSeverity = getHighestReportSeverity(opts, reports);
-            return printReports(reports, opts.getPrinter()).add(IO.unit(highestSeverity.orElse(0)));
+            return printReports(reports, opts.getScanMetrics(), opts.getPrinter())
+                    .add(IO.unit(highestSeverity.orElse(0)));
         }
     }
 
+    /**
+     * The result cache is skipped when metrics are recorded, because cached reports come without any metrics.
+     *
+     * @param opts the options
+     * @return true if the scan should not use the result cache
+     */
+    boolean isResultCacheDisabled(final @NotNull Options opts) {
+        return opts.isNoResultCache() || opts.getScanMetrics() != null;
+    }
+
+    Result<List<CheckReport>> runPlanScan(final @NotNull Options opts, final @NotNull OakpalPlan plan) {
+        return buildOakMachine(opts, plan).flatMap(oak -> runOakMachineScan(opts, plan, oak));
+    }
+
+    Result<OakMachine> buildOakMachine(final @NotNull Options opts, final @NotNull OakpalPlan plan) {
+        return result1((OakpalPlan effectivePlan) -> {
+            final OakMachine.Builder builder =
+                    effectivePlan.toOakMachineBuilder(new DefaultErrorListener(), opts.getScanClassLoader())
+                            .withScanMetrics(opts.getScanMetrics())
+                            .withCheckBudget(opts.getCheckBudget())
+                            .withViolationSink(opts.getViolationLinePrinter());
+            if (effectivePlan.getNodeStoreType() != NodeStoreType.SEGMENT) {
+                builder.withNodeStoreSupplier(getNodeStoreSupplier(opts))
+                        .withNodeStoreForkFunction(getNodeStoreForkFunction(opts));
+            }
+            return builder;
+        }).apply(plan).map(OakMachine.Builder::build);
+    }
+
+    Result<List<CheckReport>> runOakMachineScan(final @NotNull Options opts, final @NotNull OakpalPlan plan,
+                                                final @NotNull OakMachine oak) {
+        return opts.isBaseCache()
+                ? runCachedOakScan(opts, plan, oak)
+                : runOakScan(opts, oak);
+    }
+
+    Result<List<CheckReport>> runResultCachedScan(final @NotNull Options opts, final @NotNull OakpalPlan plan) {
+        final ScanResultCache cache = new ScanResultCache(
+                opts.getCacheDir().toPath().resolve(RESULTS_DIR_NAME).toFile());
+        final Result<String> keyResult = result0(() ->
+                ScanResultCache.computeKey(plan, opts.getScanClassLoader(), opts.getScanFiles(),
+                        "checkBudget=" + opts.getCheckBudget())).get();
+        if (keyResult.isFailure()) {
+            keyResult.teeLogError();
+            return runPlanScan(opts, plan);
+        }
+        final String key = keyResult.getOrDefault("");
+        final Optional<List<CheckReport>> cached = result0(() -> cache.load(key)).get()
+                .teeLogError().toOptional();
+        final ViolationSink sink = opts.getViolationLinePrinter();
+        if (cached.isPresent()) {
+            LOGGER.debug("[runResultCachedScan] returning cached reports for key {}", key);
+            if (sink != null) {
+                cached.get().forEach(report -> report.getViolations().forEach(uncheckVoid1(violation ->
+                        sink.reportedViolation(String.valueOf(report.getCheckName()), violation))));
+            }
+            return Result.success(cached.get());
+        }
+        final Result<OakMachine> oakResult = buildOakMachine(opts, plan);
+        final Result<List<CheckReport>> scanResult = oakResult.flatMap(oak -> runOakMachineScan(opts, plan, oak));
+        if (oakResult.map(OakMachine::hasQuarantinedChecks).getOrDefault(false)) {
+            // the reports of a scan which quarantined any checks depend on timing, so they must not be reused.
+            LOGGER.debug("[runResultCachedScan] not caching reports for key {} with quarantined checks", key);
+            return scanResult;
+        }
+        if (sink != null) {
+            // streamed violations are not retained in the reports, so they are incomplete.
+            LOGGER.debug("[runResultCachedScan] not caching streamed reports for key {}", key);
+            return scanResult;
+        }
+        scanResult.forEach(reports -> result0(() -> {
+            cache.store(key, reports);
+            return Nothing.instance;
+        }).get().teeLogError());
+        return scanResult;
+    }
+
     Result<List<CheckReport>> runOakScan(final @NotNull Options opts, final @NotNull OakMachine oak) {
         return result0(() -> oak.scanPackages(opts.getScanFiles())).get();
     }
 
+    Result<List<CheckReport>> runCachedOakScan(final @NotNull Options opts, final @NotNull OakpalPlan plan,
+                                               final @NotNull OakMachine oak) {
+        return result0(() -> {
+            try (BaseCheckpointCache cache = new BaseCheckpointCache(
+                    opts.getCacheDir().toPath().resolve(BASES_DIR_NAME).toFile())) {
+                final String key = BaseCheckpointCache.computeKey(plan, opts.getScanClassLoader());
+                final BaseCheckpoint base = cache.getOrPrepare(key, oak);
+                return oak.scanPackages(base, opts.getScanFiles());
+            }
+        }).get();
+    }
+
     Optional<Integer> getHighestReportSeverity(final @NotNull Options opts,
                                                final @NotNull List<CheckReport> reports) {
-        return reports.stream()
+        return getExitCode(opts, reports.stream()
                 .flatMap(compose1(CheckReport::getViolations, Collection::stream))
                 .map(Violation::getSeverity)
-                .reduce(Severity::maxSeverity)
+                .reduce(Severity::maxSeverity));
+    }
+
+    Optional<Integer> getExitCode(final @NotNull Options opts, final @NotNull Optional<Severity> highestSeverity) {
+        return highestSeverity
                 .filter(opts.getFailOnSeverity().meetsMinimumSeverity())
                 .map(severity -> {
                     switch (severity) {
@@ -121,9 +238,23 @@ final class Command {
                 });
     }
 
+    static void setTimeBudget(final @NotNull Options.Builder builder, final @NotNull String opt, final long millis) {
+        if ("--callback-time-budget".equals(opt)) {
+            builder.setCallbackTimeBudget(millis);
+        } else {
+            builder.setCheckTimeBudget(millis);
+        }
+    }
+
+    IO<Nothing> printReports(final @NotNull List<CheckReport> reports,
+                             final @NotNull Function<StructuredMessage, IO<Nothing>> linePrinter) {
+        return printReports(reports, null, linePrinter);
+    }
+
     IO<Nothing> printReports(final @NotNull List<CheckReport> reports,
+                             final @Nullable ScanMetrics scanMetrics,
                              final @NotNull Function<StructuredMessage, IO<Nothing>> linePrinter) {
-        return linePrinter.apply(new AllReportsMessage(reports));
+        return linePrinter.apply(new AllReportsMessage(reports, scanMetrics));
     }
 
     IO<Nothing> printHelp(final @NotNull Function<Object, IO<Nothing>> linePrinter) {
@@ -176,6 +307,34 @@ final class Command {
                 case "--store-blobs":
                     builder.setStoreBlobs(!isNoOpt);
                     break;
+                case "--base-cache":
+                    builder.setBaseCache(!isNoOpt);
+                    break;
+                case "--result-cache":
+                    builder.setNoResultCache(isNoOpt);
+                    break;
+                case "--segment-store":
+                    builder.setSegmentStore(!isNoOpt);
+                    break;
+                case "--metrics":
+                    builder.setMetrics(!isNoOpt);
+                    break;
+                case "--ndjson":
+                    builder.setNdjson(!isNoOpt);
+                    break;
+                case "--callback-time-budget":
+                case "--check-time-budget":
+                    if (isNoOpt) {
+                        setTimeBudget(builder, opt, 0L);
+                        break;
+                    } else {
+                        final Result<Long> millisResult = result1((String arg) -> Long.parseLong(arg)).apply(args[++i]);
+                        if (millisResult.isFailure()) {
+                            return Result.failure(millisResult.getError().get());
+                        }
+                        millisResult.forEach(millis -> setTimeBudget(builder, opt, millis));
+                        break;
+                    }
                 case "-f":
                 case "--file":
                     builder.setOpearFile(isNoOpt ? null : console.getCwd().toPath().resolve(args[++i]).toFile());
@@ -238,6 +397,19 @@ final class Command {
                         severityResult.forEach(builder::setFailOnSeverity);
                         break;
                     }
+                case "--fail-fast":
+                    if (isNoOpt) {
+                        builder.setFailFastSeverity(null);
+                        break;
+                    } else {
+                        final Result<Severity> severityResult = result1(Severity::byName)
+                                .apply(args[++i]);
+                        if (severityResult.isFailure()) {
+                            return Result.failure(severityResult.getError().get());
+                        }
+                        severityResult.forEach(builder::setFailFastSeverity);
+                        break;
+                    }
                 default:
                     final File scanFile = console.getCwd().toPath().resolve(wholeOpt).toFile();
                     if (!scanFile.isFile()) {
@@ -3,8 +3,11 @@ package net.adamcin.oakpal.cli;
 import net.adamcin.oakpal.api.Nothing;
 import net.adamcin.oakpal.api.Result;
 import net.adamcin.oakpal.api.Severity;
+import net.adamcin.oakpal.core.CheckBudget;
 import net.adamcin.oakpal.core.InstallHookPolicy;
+import net.adamcin.oakpal.core.NodeStoreType;
 import net.adamcin.oakpal.core.OakpalPlan;
+import net.adamcin.oakpal.core.ScanMetrics;
 import net.adamcin.oakpal.core.opear.AdhocOpear;
 import net.adamcin.oakpal.core.opear.Opear;
 import net.adamcin.oakpal.core.opear.OpearFile;
@@ -34,6 +37,7 @@ final class Options {
     private final boolean justHelp;
     private final boolean justVersion;
     private final boolean storeBlobs;
+    private final boolean baseCache;
     private final URL planUrl;
     private final ClassLoader scanClassLoader;
     private final File cacheDir;
@@ -44,25 +48,36 @@ final class Options {
     private final List<File> preInstallFiles;
     private final List<File> extendedClassPathFiles;
     private final boolean noHooks;
+    private final boolean noResultCache;
+    private final boolean segmentStore;
     private final List<File> scanFiles;
     private final Function<StructuredMessage, IO<Nothing>> printer;
     private final Severity failOnSeverity;
+    private final Severity failFastSeverity;
+    private final ScanMetrics scanMetrics;
+    private final CheckBudget checkBudget;
+    private final ViolationLinePrinter violationLinePrinter;
 
     Options() {
-        this(true, true, false,
+        this(true, true, false, false,
                 OakpalPlan.BASIC_PLAN_URL, Options.class.getClassLoader(),
                 new File(System.getProperty("java.io.tmpdir")),
                 null, null, null, null,
                 Collections.emptyList(),
-                Collections.emptyList(), false,
+                Collections.emptyList(), false, false, false,
                 Collections.emptyList(),
                 EMPTY_PRINTER,
-                Severity.MAJOR);
+                Severity.MAJOR,
+                null,
+                null,
+                null,
+                null);
     }
 
     Options(final boolean justHelp,
             final boolean justVersion,
             final boolean storeBlobs,
+            final boolean baseCache,
             final @NotNull URL planUrl,
             final @NotNull ClassLoader scanClassLoader,
             final @NotNull File cacheDir,
@@ -73,12 +88,19 @@ final class Options {
             final @NotNull List<File> preInstallFiles,
             final @NotNull List<File> extendedClassPathFiles,
             final boolean noHooks,
+            final boolean noResultCache,
+            final boolean segmentStore,
             final @NotNull List<File> scanFiles,
             final @NotNull Function<StructuredMessage, IO<Nothing>> printer,
-            final @NotNull Severity failOnSeverity) {
+            final @NotNull Severity failOnSeverity,
+            final @Nullable ScanMetrics scanMetrics,
+            final @Nullable CheckBudget checkBudget,
+            final @Nullable Severity failFastSeverity,
+            final @Nullable ViolationLinePrinter violationLinePrinter) {
         this.justHelp = justHelp;
         this.justVersion = justVersion;
         this.storeBlobs = storeBlobs;
+        this.baseCache = baseCache;
         this.planUrl = planUrl;
         this.scanClassLoader = scanClassLoader;
         this.cacheDir = cacheDir;
@@ -89,9 +111,15 @@ final class Options {
         this.preInstallFiles = preInstallFiles;
         this.extendedClassPathFiles = extendedClassPathFiles;
         this.noHooks = noHooks;
+        this.noResultCache = noResultCache;
+        this.segmentStore = segmentStore;
         this.scanFiles = scanFiles;
         this.printer = printer;
         this.failOnSeverity = failOnSeverity;
+        this.scanMetrics = scanMetrics;
+        this.checkBudget = checkBudget;
+        this.failFastSeverity = failFastSeverity;
+        this.violationLinePrinter = violationLinePrinter;
     }
 
     public boolean isJustHelp() {
@@ -106,10 +134,22 @@ final class Options {
         return storeBlobs;
     }
 
+    public boolean isBaseCache() {
+        return baseCache;
+    }
+
     public boolean isNoHooks() {
         return noHooks;
     }
 
+    public boolean isNoResultCache() {
+        return noResultCache;
+    }
+
+    public boolean isSegmentStore() {
+        return segmentStore;
+    }
+
     public URL getPlanUrl() {
         return planUrl;
     }
@@ -158,8 +198,33 @@ final class Options {
         return failOnSeverity;
     }
 
+    public @Nullable ScanMetrics getScanMetrics() {
+        return scanMetrics;
+    }
+
+    public @Nullable CheckBudget getCheckBudget() {
+        return checkBudget;
+    }
+
+    public @Nullable Severity getFailFastSeverity() {
+        return failFastSeverity;
+    }
+
+    public boolean isNdjson() {
+        return violationLinePrinter != null;
+    }
+
+    /**
+     * Get the printer of streamed violations, if {@code --ndjson} was requested.
+     *
+     * @return the violation line printer, or null
+     */
+    @Nullable ViolationLinePrinter getViolationLinePrinter() {
+        return violationLinePrinter;
+    }
+
     boolean hasOverrides() {
-        return noHooks || !getPreInstallFiles().isEmpty();
+        return noHooks || segmentStore || failFastSeverity != null || !getPreInstallFiles().isEmpty();
     }
 
     public OakpalPlan applyOverrides(final @NotNull OakpalPlan basePlan) {
@@ -176,6 +241,12 @@ final class Options {
                 overridePlan.withInstallHookPolicy(InstallHookPolicy.SKIP);
                 overridePlan.withEnablePreInstallHooks(false);
             }
+            if (isSegmentStore()) {
+                overridePlan.withNodeStoreType(NodeStoreType.SEGMENT);
+            }
+            if (getFailFastSeverity() != null) {
+                overridePlan.withFailFastSeverity(getFailFastSeverity());
+            }
             return overridePlan.build();
         } else {
             return basePlan;
@@ -186,9 +257,16 @@ final class Options {
         private boolean justHelp;
         private boolean justVersion;
         private boolean storeBlobs;
+        private boolean baseCache;
         private boolean outputJson;
         private boolean noPlan;
         private boolean noHooks;
+        private boolean noResultCache;
+        private boolean segmentStore;
+        private boolean metrics;
+        private boolean ndjson;
+        private long callbackTimeBudget;
+        private long checkTimeBudget;
         private String planName;
         private File planFile;
         private File planFileBaseDir;
@@ -199,6 +277,7 @@ final class Options {
         private File opearFile;
         private List<File> scanFiles = new ArrayList<>();
         private Severity failOnSeverity;
+        private Severity failFastSeverity;
 
         public Builder setJustHelp(final boolean justHelp) {
             this.justHelp = justHelp;
@@ -215,6 +294,11 @@ final class Options {
             return this;
         }
 
+        public Builder setBaseCache(final boolean baseCache) {
+            this.baseCache = baseCache;
+            return this;
+        }
+
         public Builder setOutputJson(final boolean outputJson) {
             this.outputJson = outputJson;
             return this;
@@ -230,6 +314,36 @@ final class Options {
             return this;
         }
 
+        public Builder setNoResultCache(final boolean noResultCache) {
+            this.noResultCache = noResultCache;
+            return this;
+        }
+
+        public Builder setSegmentStore(final boolean segmentStore) {
+            this.segmentStore = segmentStore;
+            return this;
+        }
+
+        public Builder setMetrics(final boolean metrics) {
+            this.metrics = metrics;
+            return this;
+        }
+
+        public Builder setNdjson(final boolean ndjson) {
+            this.ndjson = ndjson;
+            return this;
+        }
+
+        public Builder setCallbackTimeBudget(final long callbackTimeBudget) {
+            this.callbackTimeBudget = callbackTimeBudget;
+            return this;
+        }
+
+        public Builder setCheckTimeBudget(final long checkTimeBudget) {
+            this.checkTimeBudget = checkTimeBudget;
+            return this;
+        }
+
         public Builder setPlanName(final @Nullable String planName) {
             this.planName = planName;
             return this;
@@ -290,6 +404,11 @@ final class Options {
             return this;
         }
 
+        public Builder setFailFastSeverity(final @Nullable Severity failFastSeverity) {
+            this.failFastSeverity = failFastSeverity;
+            return this;
+        }
+
         Result<Opear> buildOpear(final @NotNull Console console, final @NotNull File opearCache) {
             final Result<Opear> baseOpear;
             if (planFile != null) {
@@ -351,11 +470,16 @@ final class Options {
                     .orElse(Result.success(noPlan ? OakpalPlan.EMPTY_PLAN_URL : opear.getDefaultPlan()))
                     .flatMap(planUrl -> getExtendedClassLoader(opear, getClass().getClassLoader())
                             .flatMap(classLoader -> messageWriter(console, outputJson, outFile).map(writer ->
-                                    new Options(justHelp, justVersion, storeBlobs, planUrl,
+                                    new Options(justHelp, justVersion, storeBlobs, baseCache, planUrl,
                                             classLoader, realCacheDir, opearFile, planName, planFile,
                                             planFileBaseDir, preInstallFiles, extendedClassPathFiles,
-                                            noHooks, scanFiles, writer, Optional.ofNullable(failOnSeverity)
-                                            .orElse(DEFAULT_OPTIONS.failOnSeverity))))));
+                                            noHooks, noResultCache, segmentStore, scanFiles, writer,
+                                            Optional.ofNullable(failOnSeverity)
+                                            .orElse(DEFAULT_OPTIONS.failOnSeverity),
+                                            metrics ? new ScanMetrics() : null,
+                                            CheckBudget.ofMillis(callbackTimeBudget, checkTimeBudget),
+                                            failFastSeverity,
+                                            ndjson ? new ViolationLinePrinter(writer) : null)))));
         }
     }
 
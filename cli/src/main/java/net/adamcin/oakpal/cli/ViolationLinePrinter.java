@@ -0,0 +1,58 @@
+/*
+ * Copyright 2020 Mark Adamcin
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.adamcin.oakpal.cli;
+
+import net.adamcin.oakpal.api.Nothing;
+import net.adamcin.oakpal.api.Severity;
+import net.adamcin.oakpal.api.Violation;
+import net.adamcin.oakpal.core.ViolationSink;
+import org.jetbrains.annotations.NotNull;
+
+import java.util.Optional;
+import java.util.function.Function;
+
+/**
+ * Prints each streamed violation as a {@link ViolationMessage}, and keeps only the highest severity of the printed
+ * violations, because streamed violations are not retained in the reports of the scan.
+ */
+final class ViolationLinePrinter implements ViolationSink {
+
+    private final Function<StructuredMessage, IO<Nothing>> printer;
+
+    private Severity highestSeverity;
+
+    ViolationLinePrinter(final @NotNull Function<StructuredMessage, IO<Nothing>> printer) {
+        this.printer = printer;
+    }
+
+    @Override
+    public void reportedViolation(final @NotNull String checkName, final @NotNull Violation violation) {
+        highestSeverity = highestSeverity == null
+                ? violation.getSeverity()
+                : highestSeverity.maxSeverity(violation.getSeverity());
+        printer.apply(new ViolationMessage(checkName, violation)).get();
+    }
+
+    /**
+     * Get the highest severity of the violations printed so far.
+     *
+     * @return the highest severity, or empty if no violations have been printed
+     */
+    Optional<Severity> getHighestSeverity() {
+        return Optional.ofNullable(highestSeverity);
+    }
+}
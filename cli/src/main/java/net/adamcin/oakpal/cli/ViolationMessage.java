@@ -0,0 +1,59 @@
+/*
+ * Copyright 2020 Mark Adamcin
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.adamcin.oakpal.cli;
+
+import net.adamcin.oakpal.api.Violation;
+import net.adamcin.oakpal.core.ReportMapper;
+import org.jetbrains.annotations.NotNull;
+
+import javax.json.JsonObject;
+import java.io.StringWriter;
+
+import static net.adamcin.oakpal.api.Fun.uncheck0;
+import static net.adamcin.oakpal.api.JavaxJson.obj;
+
+/**
+ * A single violation streamed during the scan, which is printed as a line of NDJSON in either output format.
+ */
+class ViolationMessage implements StructuredMessage {
+
+    private final String checkName;
+
+    private final Violation violation;
+
+    ViolationMessage(final @NotNull String checkName, final @NotNull Violation violation) {
+        this.checkName = checkName;
+        this.violation = violation;
+    }
+
+    @Override
+    public String toString() {
+        return uncheck0(() -> {
+            final StringWriter sw = new StringWriter();
+            ReportMapper.writeViolationLine(sw, checkName, violation);
+            return sw.toString().trim();
+        }).get();
+    }
+
+    @Override
+    public JsonObject toJson() {
+        return obj()
+                .key(ReportMapper.keys().checkName(), checkName)
+                .key(ReportMapper.keys().violation(), violation.toJson())
+                .get();
+    }
+}
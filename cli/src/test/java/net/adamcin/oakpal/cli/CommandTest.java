@@ -7,10 +7,14 @@ import net.adamcin.oakpal.api.Severity;
 import net.adamcin.oakpal.api.SimpleViolation;
 import net.adamcin.oakpal.core.CheckReport;
 import net.adamcin.oakpal.core.FileBlobMemoryNodeStore;
+import net.adamcin.oakpal.core.NodeStoreType;
+import net.adamcin.oakpal.core.OakpalPlan;
 import net.adamcin.oakpal.core.ReportMapper;
+import net.adamcin.oakpal.core.ScanMetrics;
 import net.adamcin.oakpal.core.SimpleReport;
 import net.adamcin.oakpal.testing.TestPackageUtil;
 import org.apache.commons.io.FileUtils;
+import org.apache.jackrabbit.oak.plugins.memory.EmptyNodeState;
 import org.apache.jackrabbit.oak.plugins.memory.MemoryNodeStore;
 import org.apache.jackrabbit.vault.packaging.PackageId;
 import org.jetbrains.annotations.NotNull;
@@ -89,6 +93,214 @@ public class CommandTest {
                                 .getOrDefault(null)).get() instanceof MemoryNodeStore);
     }
 
+    @Test
+    public void testGetNodeStoreForkFunction() {
+        final Command command = new Command();
+        final Console console = getMockConsole();
+        assertTrue("is FileBlobMemoryNodeStore",
+                command.getNodeStoreForkFunction(
+                        new Options.Builder()
+                                .setStoreBlobs(true)
+                                .build(console)
+                                .getOrDefault(null)).apply(EmptyNodeState.EMPTY_NODE)
+                        instanceof FileBlobMemoryNodeStore);
+        assertTrue("is MemoryNodeStore",
+                command.getNodeStoreForkFunction(
+                        new Options.Builder()
+                                .build(console)
+                                .getOrDefault(null)).apply(EmptyNodeState.EMPTY_NODE)
+                        instanceof MemoryNodeStore);
+    }
+
+    @Test
+    public void testDoScanWithBaseCache() throws Exception {
+        final File testOutDir = new File(testOutputBaseDir, "testDoScanWithBaseCache");
+        FileUtils.deleteDirectory(testOutDir);
+        final File cacheDir = new File(testOutDir, "oakpal-cache");
+        final File basesDir = new File(cacheDir, Command.BASES_DIR_NAME);
+        final File preInstallPackage = TestPackageUtil.prepareTestPackage("tmp_foo_bar.zip");
+        final File scanPackage = TestPackageUtil.prepareTestPackage("subsubtest.zip");
+
+        final Command command = new Command();
+        final Console console = getMockConsole();
+        doAnswer(call -> IO.empty).when(console).printLine(any());
+        final Options options = new Options.Builder()
+                .setNoPlan(true)
+                .setBaseCache(true)
+                .setNoResultCache(true)
+                .setCacheDir(cacheDir)
+                .addPreInstallFile(preInstallPackage)
+                .addScanFile(scanPackage)
+                .build(console)
+                .getOrDefault(null);
+        assertNotNull("expect options", options);
+
+        assertEquals("expect success on cold cache", (Integer) 0, command.doScan(console, options).get());
+        final File[] keyDirs = basesDir.listFiles();
+        assertNotNull("expect bases dir", keyDirs);
+        assertEquals("expect one cached base", 1, keyDirs.length);
+        final long lastModified = keyDirs[0].lastModified();
+
+        assertEquals("expect success on warm cache", (Integer) 0, command.doScan(console, options).get());
+        final File[] warmKeyDirs = basesDir.listFiles();
+        assertNotNull("expect bases dir", warmKeyDirs);
+        assertEquals("expect same cached base", Arrays.asList(keyDirs), Arrays.asList(warmKeyDirs));
+        assertEquals("expect cached base is not rewritten", lastModified, warmKeyDirs[0].lastModified());
+    }
+
+    @Test
+    public void testDoScanWithResultCache() throws Exception {
+        final File testOutDir = new File(testOutputBaseDir, "testDoScanWithResultCache");
+        FileUtils.deleteDirectory(testOutDir);
+        final File cacheDir = new File(testOutDir, "oakpal-cache");
+        final File resultsDir = new File(cacheDir, Command.RESULTS_DIR_NAME);
+        final File scanPackage = TestPackageUtil.prepareTestPackage("subsubtest.zip");
+
+        final Command command = new Command();
+        final Console console = getMockConsole();
+        doAnswer(call -> IO.empty).when(console).printLine(any());
+        final Options.Builder builder = new Options.Builder()
+                .setCacheDir(cacheDir)
+                .addScanFile(scanPackage);
+        final Options options = builder.build(console).getOrDefault(null);
+        assertNotNull("expect options", options);
+
+        final List<CheckReport> coldReports = command.runResultCachedScan(options,
+                options.applyOverrides(OakpalPlan.fromJson(options.getPlanUrl()).getOrDefault(null)))
+                .getOrDefault(null);
+        assertNotNull("expect reports", coldReports);
+        final File[] resultFiles = resultsDir.listFiles();
+        assertNotNull("expect results dir", resultFiles);
+        assertEquals("expect one cached result", 1, resultFiles.length);
+        final List<CheckReport> storedReports = ReportMapper.readReportsFromFile(resultFiles[0]);
+        assertEquals("expect same number of reports", coldReports.size(), storedReports.size());
+
+        // overwrite the cached result to prove that the warm scan reads it instead of scanning.
+        final List<CheckReport> fakeReports = Collections.singletonList(new SimpleReport("cached check",
+                Collections.singletonList(new SimpleViolation(Severity.SEVERE, "cached violation"))));
+        ReportMapper.writeReportsToFile(fakeReports, resultFiles[0]);
+        assertEquals("expect severe exit code from cached reports", Command.EXIT_SEVERE_VIOLATION,
+                command.doScan(console, options).get());
+        assertEquals("expect scanned exit code without result cache",
+                command.getHighestReportSeverity(options, coldReports).orElse(0),
+                command.doScan(console, builder.setNoResultCache(true).build(console).getOrDefault(null)).get());
+    }
+
+    @Test
+    public void testDoScanWithSegmentStore() throws Exception {
+        final File scanPackage = TestPackageUtil.prepareTestPackage("subsubtest.zip");
+        final Command command = new Command();
+        final Console console = getMockConsole();
+        doAnswer(call -> IO.empty).when(console).printLine(any());
+        final Options options = new Options.Builder()
+                .setSegmentStore(true)
+                .setNoResultCache(true)
+                .addScanFile(scanPackage)
+                .build(console)
+                .getOrDefault(null);
+        assertNotNull("expect options", options);
+        final OakpalPlan plan = options.applyOverrides(OakpalPlan.fromJson(options.getPlanUrl()).getOrDefault(null));
+        assertSame("expect segment node store type", NodeStoreType.SEGMENT, plan.getNodeStoreType());
+        final List<CheckReport> reports = command.runPlanScan(options, plan).getOrDefault(null);
+        assertNotNull("expect reports", reports);
+        assertEquals("expect same exit code as memory store scan",
+                command.doScan(console, new Options.Builder().setNoResultCache(true).addScanFile(scanPackage)
+                        .build(console).getOrDefault(null)).get(),
+                command.doScan(console, options).get());
+    }
+
+    @Test
+    public void testDoScanWithNdjson() throws Exception {
+        final File testOutDir = new File(testOutputBaseDir, "testDoScanWithNdjson");
+        FileUtils.deleteDirectory(testOutDir);
+        final File cacheDir = new File(testOutDir, "oakpal-cache");
+        final File resultsDir = new File(cacheDir, Command.RESULTS_DIR_NAME);
+        final File scanPackage = TestPackageUtil.prepareTestPackage("subsubtest.zip");
+
+        final Command command = new Command();
+        final Console console = getMockConsole();
+        final List<Object> printed = new ArrayList<>();
+        doAnswer(call -> {
+            printed.add(call.getArgument(0));
+            return IO.empty;
+        }).when(console).printLine(any());
+        final Options.Builder builder = new Options.Builder()
+                .setNdjson(true)
+                .setCacheDir(cacheDir)
+                .addScanFile(scanPackage);
+        final Options options = builder.build(console).getOrDefault(null);
+        assertNotNull("expect options", options);
+        assertNull("expect no line printer without ndjson",
+                new Options.Builder().build(console).getOrDefault(null).getViolationLinePrinter());
+        final int expectedExitCode = command.doScan(console, new Options.Builder().setNoResultCache(true)
+                .addScanFile(scanPackage).build(console).getOrDefault(null)).get();
+        printed.clear();
+
+        assertEquals("expect same exit code from streamed violations", expectedExitCode,
+                (int) command.doScan(console, options).get());
+        assertTrue("expect only streamed violations",
+                printed.stream().allMatch(message -> message instanceof ViolationMessage));
+        final File[] streamedResultFiles = resultsDir.listFiles();
+        assertTrue("expect no cached result for streamed reports",
+                streamedResultFiles == null || streamedResultFiles.length == 0);
+
+        command.doScan(console, builder.setNdjson(false).build(console).getOrDefault(null)).get();
+        final File[] resultFiles = resultsDir.listFiles();
+        assertNotNull("expect results dir", resultFiles);
+        assertEquals("expect one cached result", 1, resultFiles.length);
+
+        final List<CheckReport> fakeReports = Collections.singletonList(new SimpleReport("cached check",
+                Collections.singletonList(new SimpleViolation(Severity.SEVERE, "cached violation"))));
+        ReportMapper.writeReportsToFile(fakeReports, resultFiles[0]);
+        printed.clear();
+        assertEquals("expect severe exit code from cached reports", Command.EXIT_SEVERE_VIOLATION,
+                command.doScan(console, builder.setNdjson(true).build(console).getOrDefault(null)).get());
+        assertEquals("expect cached violations as ndjson lines", 1, printed.size());
+        final List<CheckReport> readReports = ReportMapper.readReportsFromNdjson(() ->
+                new StringReader(printed.get(0).toString()));
+        assertEquals("expect ndjson round trip", fakeReports, readReports);
+    }
+
+    @Test
+    public void testDoScanWithMetrics() throws Exception {
+        final File scanPackage = TestPackageUtil.prepareTestPackage("subsubtest.zip");
+        final Command command = new Command();
+        final Console console = getMockConsole();
+        final Options options = new Options.Builder()
+                .setMetrics(true)
+                .setNoResultCache(true)
+                .addScanFile(scanPackage)
+                .build(console)
+                .getOrDefault(null);
+        assertNotNull("expect options", options);
+        final OakpalPlan plan = OakpalPlan.fromJson(options.getPlanUrl()).getOrDefault(null);
+        final List<CheckReport> reports = command.runPlanScan(options, plan).getOrDefault(null);
+        assertNotNull("expect reports", reports);
+        final ScanMetrics metrics = options.getScanMetrics();
+        assertNotNull("expect metrics", metrics);
+        assertFalse("expect check metrics", metrics.getChecks().isEmpty());
+        assertEquals("expect package metrics for package and subpackages", 4, metrics.getPackages().size());
+
+        final String jsonOutput = captureStructured(true, (cmd, printer) ->
+                cmd.printReports(reports, metrics, printer));
+        assertTrue("expect metrics in json output", jsonOutput.contains("\"" + ReportMapper.keys().metrics() + "\""));
+        final String textOutput = captureStructured(false, (cmd, printer) ->
+                cmd.printReports(reports, metrics, printer));
+        assertTrue("expect metrics in text output", textOutput.contains("metrics:"));
+    }
+
+    @Test
+    public void testIsResultCacheDisabled() {
+        final Command command = new Command();
+        final Console console = getMockConsole();
+        assertFalse("expect result cache by default", command.isResultCacheDisabled(
+                new Options.Builder().build(console).getOrDefault(null)));
+        assertTrue("expect no result cache", command.isResultCacheDisabled(
+                new Options.Builder().setNoResultCache(true).build(console).getOrDefault(null)));
+        assertTrue("expect no result cache with metrics", command.isResultCacheDisabled(
+                new Options.Builder().setMetrics(true).build(console).getOrDefault(null)));
+    }
+
     @Test
     public void testWriteReports() {
         final List<CheckReport> reports = new ArrayList<>();
@@ -264,6 +476,58 @@ public class CommandTest {
         validator.expectSuccess(args("--no-store-blobs", "-b"),
                 options -> assertTrue("is store blobs", options.isStoreBlobs()));
 
+        validator.expectSuccess(args(),
+                options -> assertFalse("is not base cache", options.isBaseCache()));
+        validator.expectSuccess(args("--base-cache"),
+                options -> assertTrue("is base cache", options.isBaseCache()));
+        validator.expectSuccess(args("--base-cache", "--no-base-cache"),
+                options -> assertFalse("is not base cache", options.isBaseCache()));
+        validator.expectSuccess(args(),
+                options -> assertFalse("expect result cache by default", options.isNoResultCache()));
+        validator.expectSuccess(args("--no-result-cache"),
+                options -> assertTrue("expect isNoResultCache", options.isNoResultCache()));
+        validator.expectSuccess(args("--no-result-cache", "--result-cache"),
+                options -> assertFalse("expect result cache", options.isNoResultCache()));
+        validator.expectSuccess(args(),
+                options -> assertFalse("expect no segment store by default", options.isSegmentStore()));
+        validator.expectSuccess(args("--segment-store"),
+                options -> assertTrue("expect isSegmentStore", options.isSegmentStore()));
+        validator.expectSuccess(args("--segment-store", "--no-segment-store"),
+                options -> assertFalse("expect no segment store", options.isSegmentStore()));
+
+        validator.expectSuccess(args(),
+                options -> assertNull("expect no metrics by default", options.getScanMetrics()));
+        validator.expectSuccess(args("--metrics"),
+                options -> assertNotNull("expect metrics", options.getScanMetrics()));
+        validator.expectSuccess(args("--metrics", "--no-metrics"),
+                options -> assertNull("expect no metrics", options.getScanMetrics()));
+        validator.expectSuccess(args(),
+                options -> assertFalse("expect no ndjson by default", options.isNdjson()));
+        validator.expectSuccess(args("--ndjson"),
+                options -> assertTrue("expect ndjson", options.isNdjson()));
+        validator.expectSuccess(args("--ndjson", "--no-ndjson"),
+                options -> assertFalse("expect no ndjson", options.isNdjson()));
+
+        validator.expectSuccess(args(),
+                options -> assertNull("expect no check budget by default", options.getCheckBudget()));
+        validator.expectSuccess(args("--callback-time-budget", "100"),
+                options -> assertEquals("expect callback budget",
+                        100L, options.getCheckBudget().getCallbackMillis()));
+        validator.expectSuccess(args("--check-time-budget", "60000"),
+                options -> assertEquals("expect total budget",
+                        60000L, options.getCheckBudget().getTotalMillis()));
+        validator.expectSuccess(args("--check-time-budget", "60000", "--no-check-time-budget"),
+                options -> assertNull("expect no check budget", options.getCheckBudget()));
+        validator.expectFailure(args("--callback-time-budget", "fast"));
+
+        validator.expectSuccess(args(),
+                options -> assertNull("expect no fail-fast by default", options.getFailFastSeverity()));
+        validator.expectSuccess(args("--fail-fast", "severe"),
+                options -> assertEquals("expect SEVERE", Severity.SEVERE, options.getFailFastSeverity()));
+        validator.expectSuccess(args("--fail-fast", "severe", "--no-fail-fast"),
+                options -> assertNull("expect no fail-fast", options.getFailFastSeverity()));
+        validator.expectFailure(args("--fail-fast", "extreme"));
+
         validator.expectFailure(args("-s", "extreme"));
         validator.expectSuccess(args(),
                 options -> assertEquals("expect major by default",
@@ -226,4 +226,26 @@ public class OptionsTest {
         });
 
     }
+
+    @Test
+    public void testFailFastSeverity() {
+        final Console console = getMockConsole();
+        when(console.getCwd()).thenReturn(tempDir);
+        final Options.Builder builder = new Options.Builder()
+                .setOpearFile(new File("src/test/resources/opears/hooksPlan"));
+        final OakpalPlan originalPlan = new OakpalPlan.Builder(null, null)
+                .withFailFastSeverity(Severity.SEVERE)
+                .build();
+        builder.build(console).forEach(options -> {
+            assertFalse("false hasOverrides", options.hasOverrides());
+            assertSame("same plan with no overrides", originalPlan, options.applyOverrides(originalPlan));
+        });
+        final Result<Options> failFastOptionsResult = builder.setFailFastSeverity(Severity.MINOR).build(console);
+        assertFalse("options build is successful", failFastOptionsResult.getError().isPresent());
+        failFastOptionsResult.forEach(options -> {
+            assertTrue("true hasOverrides", options.hasOverrides());
+            assertSame("fail-fast severity overridden", Severity.MINOR,
+                    options.applyOverrides(originalPlan).getFailFastSeverity());
+        });
+    }
 }
@@ -0,0 +1,255 @@
+/*
+ * Copyright 2020 Mark Adamcin
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.adamcin.oakpal.core;
+
+import net.adamcin.oakpal.api.ProgressCheck;
+import net.adamcin.oakpal.api.Violation;
+import org.apache.jackrabbit.oak.spi.state.NodeState;
+import org.apache.jackrabbit.vault.packaging.PackageId;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import javax.jcr.NamespaceException;
+import javax.jcr.NamespaceRegistry;
+import javax.jcr.RepositoryException;
+import javax.jcr.Session;
+import java.io.Closeable;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Consumer;
+
+/**
+ * An immutable checkpoint of the repository state produced by {@link OakMachine#prepareBase()}, after the oakpal
+ * nodetypes, the {@link InitStage}s, and the pre-install packages have been applied. Scans started from a checkpoint
+ * using {@link OakMachine#scanPackages(BaseCheckpoint, java.util.List)} operate on a copy-on-write fork of the
+ * captured root {@link NodeState}, so the checkpoint can be reused for any number of scans.
+ * <p>
+ * Errors reported to the {@link ErrorListener} while preparing the checkpoint are recorded and replayed at the start
+ * of every scan, so that the resulting reports are identical to those of a cold scan.
+ * <p>
+ * A checkpoint returned by {@link OakMachine#prepareBase()} owns the node store that holds its state, if that node
+ * store is {@link Closeable}, such as a {@link TempSegmentNodeStore}. Close the checkpoint when it is no longer needed
+ * to release the node store. It must not be used to start new scans after it is closed.
+ */
+public final class BaseCheckpoint implements Closeable {
+    private final String key;
+    private final NodeState root;
+    private final Map<String, String> sessionNamespaces;
+    private final List<Consumer<ErrorListener>> errorEvents;
+    private final AtomicReference<Closeable> ownedStore;
+
+    BaseCheckpoint(final @NotNull NodeState root,
+                   final @NotNull Map<String, String> sessionNamespaces,
+                   final @NotNull List<Consumer<ErrorListener>> errorEvents) {
+        this(null, root, sessionNamespaces, errorEvents, null);
+    }
+
+    BaseCheckpoint(final @Nullable String key,
+                   final @NotNull NodeState root,
+                   final @NotNull Map<String, String> sessionNamespaces,
+                   final @NotNull List<Consumer<ErrorListener>> errorEvents,
+                   final @Nullable Closeable ownedStore) {
+        this.key = key != null ? key : UUID.randomUUID().toString();
+        this.root = root;
+        this.sessionNamespaces = Collections.unmodifiableMap(new LinkedHashMap<>(sessionNamespaces));
+        this.errorEvents = Collections.unmodifiableList(new ArrayList<>(errorEvents));
+        this.ownedStore = new AtomicReference<>(ownedStore);
+    }
+
+    /**
+     * Get the key which identifies the captured state in {@link PrefixCheckpoints} keys. A checkpoint loaded by
+     * {@link BaseCheckpointCache} is identified by its cache key, and a checkpoint prepared from the configuration of
+     * an {@link OakMachine} by a hash of that configuration. Any other checkpoint is identified by a random key, so
+     * that prefix checkpoints are only shared by scans which start from the same instance.
+     *
+     * @return the key of the captured state
+     */
+    @NotNull String getKey() {
+        return key;
+    }
+
+    /**
+     * Get the captured root node state.
+     *
+     * @return the root node state
+     */
+    public @NotNull NodeState getRoot() {
+        return root;
+    }
+
+    /**
+     * Close the node store that holds the checkpoint state, if the checkpoint owns it. Subsequent calls do nothing.
+     *
+     * @since 2.1.0
+     */
+    @Override
+    public void close() {
+        final Closeable store = ownedStore.getAndSet(null);
+        if (store != null) {
+            OakMachine.closeNodeStore(store);
+        }
+    }
+
+    /**
+     * Get the session-scoped namespace prefix remappings (prefix to uri) that were applied to the admin session
+     * by the init stages, which are not persisted in the repository state.
+     *
+     * @return the session-scoped namespace prefix remappings
+     */
+    @NotNull Map<String, String> getSessionNamespaces() {
+        return sessionNamespaces;
+    }
+
+    /**
+     * Check whether any error events were recorded during preparation of the checkpoint. Recorded error events hold
+     * references to live exceptions and other objects, so a checkpoint with error events can not be persisted.
+     *
+     * @return true if error events were recorded
+     */
+    boolean hasErrorEvents() {
+        return !errorEvents.isEmpty();
+    }
+
+    /**
+     * Re-apply the session-scoped namespace prefix remappings to a new admin session.
+     *
+     * @param admin the new admin session
+     * @throws RepositoryException for failure to remap a prefix
+     */
+    void restoreSession(final @NotNull Session admin) throws RepositoryException {
+        for (Map.Entry<String, String> entry : sessionNamespaces.entrySet()) {
+            admin.setNamespacePrefix(entry.getKey(), entry.getValue());
+        }
+    }
+
+    /**
+     * Replay the recorded error events to the provided error listener.
+     *
+     * @param errorListener the scan error listener
+     */
+    void replayErrors(final @NotNull ErrorListener errorListener) {
+        errorEvents.forEach(event -> event.accept(errorListener));
+    }
+
+    /**
+     * Collect the namespace prefixes mapped by the session which differ from the persistent namespace registry.
+     *
+     * @param admin the admin session
+     * @return a map of session-scoped namespace prefix remappings
+     * @throws RepositoryException for repository errors
+     */
+    static Map<String, String> captureSessionNamespaces(final @NotNull Session admin) throws RepositoryException {
+        final NamespaceRegistry registry = admin.getWorkspace().getNamespaceRegistry();
+        final Map<String, String> remapped = new LinkedHashMap<>();
+        for (String prefix : admin.getNamespacePrefixes()) {
+            final String uri = admin.getNamespaceURI(prefix);
+            String registered;
+            try {
+                registered = registry.getURI(prefix);
+            } catch (final NamespaceException e) {
+                registered = null;
+            }
+            if (!uri.equals(registered)) {
+                remapped.put(prefix, uri);
+            }
+        }
+        return remapped;
+    }
+
+    /**
+     * Records error events during preparation of a checkpoint so that they can be replayed to the real
+     * {@link ErrorListener} for each scan.
+     */
+    static final class ErrorRecorder implements ErrorListener {
+        private final List<Consumer<ErrorListener>> events = new ArrayList<>();
+
+        List<Consumer<ErrorListener>> getEvents() {
+            return events;
+        }
+
+        @Override
+        public Collection<Violation> getReportedViolations() {
+            return Collections.emptyList();
+        }
+
+        @Override
+        public void onNodeTypeRegistrationError(final Throwable e, final URL resource) {
+            events.add(listener -> listener.onNodeTypeRegistrationError(e, resource));
+        }
+
+        @Override
+        public void onJcrNamespaceRegistrationError(final Throwable e, final String prefix, final String uri) {
+            events.add(listener -> listener.onJcrNamespaceRegistrationError(e, prefix, uri));
+        }
+
+        @Override
+        public void onJcrPrivilegeRegistrationError(final Throwable e, final String jcrPrivilege) {
+            events.add(listener -> listener.onJcrPrivilegeRegistrationError(e, jcrPrivilege));
+        }
+
+        @Override
+        public void onForcedRootCreationError(final Throwable e, final ForcedRoot forcedRoot) {
+            events.add(listener -> listener.onForcedRootCreationError(e, forcedRoot));
+        }
+
+        @Override
+        public void onListenerException(final Exception e, final ProgressCheck listener, final PackageId packageId) {
+            events.add(errorListener -> errorListener.onListenerException(e, listener, packageId));
+        }
+
+        @Override
+        public void onListenerPathException(final Exception e, final ProgressCheck handler,
+                                            final PackageId packageId, final String path) {
+            events.add(listener -> listener.onListenerPathException(e, handler, packageId, path));
+        }
+
+        @Override
+        public void onCheckBudgetExceeded(final ProgressCheck check, final PackageId packageId,
+                                          final ScanMetrics.Callback callback, final CheckBudget.Limit limit,
+                                          final long elapsedMillis, final long budgetMillis) {
+            events.add(listener -> listener.onCheckBudgetExceeded(check, packageId, callback, limit,
+                    elapsedMillis, budgetMillis));
+        }
+
+        @Override
+        public void onImporterException(final Exception e, final PackageId packageId, final String path) {
+            events.add(listener -> listener.onImporterException(e, packageId, path));
+        }
+
+        @Override
+        public void onSubpackageException(final Exception e, final PackageId packageId) {
+            events.add(listener -> listener.onSubpackageException(e, packageId));
+        }
+
+        @Override
+        public void onInstallHookError(final Throwable e, final PackageId packageId) {
+            events.add(listener -> listener.onInstallHookError(e, packageId));
+        }
+
+        @Override
+        public void onProhibitedInstallHookRegistration(final PackageId packageId) {
+            events.add(listener -> listener.onProhibitedInstallHookRegistration(packageId));
+        }
+    }
+}
@@ -0,0 +1,373 @@
+/*
+ * Copyright 2020 Mark Adamcin
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.adamcin.oakpal.core;
+
+import net.adamcin.oakpal.api.JavaxJson;
+import org.apache.jackrabbit.oak.OakVersion;
+import org.apache.jackrabbit.oak.segment.SegmentNodeStoreBuilders;
+import org.apache.jackrabbit.oak.segment.file.FileStore;
+import org.apache.jackrabbit.oak.segment.file.FileStoreBuilder;
+import org.apache.jackrabbit.oak.segment.file.InvalidFileStoreVersionException;
+import org.apache.jackrabbit.oak.segment.file.ReadOnlyFileStore;
+import org.apache.jackrabbit.oak.spi.state.NodeStore;
+import org.apache.jackrabbit.vault.packaging.PackageId;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.json.Json;
+import javax.json.JsonObject;
+import javax.json.JsonReader;
+import javax.json.JsonString;
+import javax.json.JsonWriter;
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.Reader;
+import java.io.Writer;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Properties;
+import java.util.stream.Stream;
+
+/**
+ * A persistent cache of {@link BaseCheckpoint}s, stored as Oak segment tar stores in subdirectories of a cache
+ * directory, named by a key computed from the inputs to {@link OakMachine#prepareBase()}. A checkpoint prepared by
+ * one JVM can be mounted read-only by later JVMs for the same key, so that the nodetype registration, init stages,
+ * and pre-install packages are only applied once.
+ * <p>
+ * The segment stores backing the loaded checkpoints remain open until this cache is closed, so it must not be closed
+ * until all scans started from the checkpoints have completed.
+ */
+public final class BaseCheckpointCache implements Closeable {
+    private static final Logger LOGGER = LoggerFactory.getLogger(BaseCheckpointCache.class);
+
+    /**
+     * Increment to invalidate previously cached checkpoints when the cache layout or key inputs change.
+     */
+    static final String KEY_FORMAT_VERSION = "1";
+    static final String SEGMENTSTORE_DIR = "segmentstore";
+    static final String SESSION_JSON = "session.json";
+    static final String KEY_SESSION_NAMESPACES = "sessionNamespaces";
+    static final String VERSION_PROPERTIES_NAME = "version.properties";
+    static final String VAULT_POM_PROPERTIES =
+            "META-INF/maven/org.apache.jackrabbit.vault/org.apache.jackrabbit.vault/pom.properties";
+    static final String UNKNOWN_VERSION = "unknown";
+
+    private final File cacheDir;
+    private final List<Closeable> openStores = new ArrayList<>();
+    private final List<File> tempDirs = new ArrayList<>();
+
+    public BaseCheckpointCache(final @NotNull File cacheDir) {
+        this.cacheDir = cacheDir;
+    }
+
+    public File getCacheDir() {
+        return cacheDir;
+    }
+
+    /**
+     * Load the checkpoint for the provided key if it exists in the cache, or prepare it using the provided machine
+     * and store it in the cache for later runs. Checkpoints that record errors raised during preparation are not
+     * stored, because the recorded errors can not be persisted for replay.
+     *
+     * @param key     the cache key, usually computed by {@link #computeKey(OakpalPlan, ClassLoader)}
+     * @param machine the oak machine to prepare the checkpoint with on a cache miss
+     * @return the cached or newly prepared checkpoint
+     * @throws AbortedScanException for errors preparing the checkpoint
+     * @throws IOException          for errors reading or writing the segment store
+     */
+    public @NotNull BaseCheckpoint getOrPrepare(final @NotNull String key, final @NotNull OakMachine machine)
+            throws AbortedScanException, IOException {
+        final BaseCheckpoint cached = load(key);
+        if (cached != null) {
+            LOGGER.debug("[getOrPrepare] loaded cached base checkpoint for key {}", key);
+            return cached;
+        }
+
+        Files.createDirectories(cacheDir.toPath());
+        final Path tempDir = Files.createTempDirectory(cacheDir.toPath(), key + ".tmp");
+        final FileStore fileStore = openWritable(new File(tempDir.toFile(), SEGMENTSTORE_DIR));
+        final BaseCheckpoint prepared;
+        try {
+            final NodeStore nodeStore = SegmentNodeStoreBuilders.builder(fileStore).build();
+            prepared = machine.prepareBase(nodeStore);
+        } catch (final AbortedScanException | RuntimeException e) {
+            fileStore.close();
+            deleteRecursively(tempDir.toFile());
+            throw e;
+        }
+
+        if (prepared.hasErrorEvents()) {
+            LOGGER.info("[getOrPrepare] base checkpoint for key {} recorded errors and will not be cached", key);
+            synchronized (openStores) {
+                openStores.add(fileStore);
+                tempDirs.add(tempDir.toFile());
+            }
+            return prepared;
+        }
+
+        final Path keyDir = cacheDir.toPath().resolve(key);
+        try {
+            try {
+                fileStore.flush();
+            } finally {
+                fileStore.close();
+            }
+            writeSessionJson(new File(tempDir.toFile(), SESSION_JSON), prepared.getSessionNamespaces());
+            Files.move(tempDir, keyDir, StandardCopyOption.ATOMIC_MOVE);
+        } catch (final IOException | RuntimeException e) {
+            deleteRecursively(tempDir.toFile());
+            // another process may have won the race to store this key, in which case we load its checkpoint.
+            if (!keyDir.toFile().isDirectory()) {
+                throw e;
+            }
+        }
+
+        final BaseCheckpoint stored = load(key);
+        if (stored == null) {
+            throw new IOException("failed to load base checkpoint after storing it for key " + key);
+        }
+        return stored;
+    }
+
+    /**
+     * Mount the cached checkpoint for the provided key read-only, if it exists.
+     *
+     * @param key the cache key
+     * @return the cached checkpoint, or null if none exists for the key
+     * @throws IOException for errors reading the segment store
+     */
+    public @Nullable BaseCheckpoint load(final @NotNull String key) throws IOException {
+        final File keyDir = new File(cacheDir, key);
+        final File sessionJson = new File(keyDir, SESSION_JSON);
+        final File segmentStoreDir = new File(keyDir, SEGMENTSTORE_DIR);
+        if (!sessionJson.isFile() || !segmentStoreDir.isDirectory()) {
+            return null;
+        }
+
+        final Map<String, String> sessionNamespaces = readSessionJson(sessionJson);
+        final ReadOnlyFileStore fileStore;
+        try {
+            fileStore = FileStoreBuilder.fileStoreBuilder(segmentStoreDir).buildReadOnly();
+        } catch (final InvalidFileStoreVersionException e) {
+            throw new IOException("invalid segment store version for key " + key, e);
+        }
+        synchronized (openStores) {
+            openStores.add(fileStore);
+        }
+        final NodeStore nodeStore = SegmentNodeStoreBuilders.builder(fileStore).build();
+        return new BaseCheckpoint(key, nodeStore.getRoot(), sessionNamespaces, Collections.emptyList(), null);
+    }
+
+    /**
+     * Closes the segment stores backing all checkpoints returned by this cache, and deletes the stores of any
+     * checkpoints which were prepared but not cached.
+     */
+    @Override
+    public void close() {
+        synchronized (openStores) {
+            openStores.forEach(store -> {
+                try {
+                    store.close();
+                } catch (final IOException | RuntimeException e) {
+                    LOGGER.warn("[close] failed to close segment store", e);
+                }
+            });
+            openStores.clear();
+            tempDirs.forEach(BaseCheckpointCache::deleteRecursively);
+            tempDirs.clear();
+        }
+    }
+
+    /**
+     * Compute a cache key for the base checkpoint prepared by an {@link OakMachine} built from the provided plan. The
+     * key is a SHA-256 hash of the Oak, FileVault, and OakPAL versions, the plan json (excluding checks and the
+     * options which only affect the scan, such as the node store type, direct install, and fail-fast), the json and
+     * the CND contents of the selected checklists, and the contents of each pre-install package.
+     *
+     * @param plan        the effective plan, with any overrides already applied
+     * @param classLoader the classloader used to discover checklists
+     * @return a hex-encoded cache key
+     * @throws Exception for errors discovering checklists or reading urls
+     */
+    public static String computeKey(final @NotNull OakpalPlan plan,
+                                    final @NotNull ClassLoader classLoader) throws Exception {
+        final MessageDigest digest = newDigest();
+        updateDigest(digest, KEY_FORMAT_VERSION);
+        updateDigest(digest, OakVersion.getVersion());
+        updateDigest(digest, getVaultVersion());
+        updateDigest(digest, getOakpalVersion());
+
+        final OakpalPlan initPlan = new OakpalPlan.Builder(null, null)
+                .startingWithPlan(plan)
+                .withChecks(Collections.emptyList())
+                .withPreInstallUrls(Collections.emptyList())
+                .withNodeStoreType(null)
+                .withDirectInstall(false)
+                .withFailFastSeverity(null)
+                .build();
+        updateDigest(digest, initPlan.toJson().toString());
+
+        final ChecklistPlanner checklistPlanner = new ChecklistPlanner(plan.getChecklists());
+        checklistPlanner.discoverChecklists(classLoader);
+        for (Checklist checklist : (Iterable<Checklist>) checklistPlanner.getSelectedChecklists()::iterator) {
+            updateDigest(digest, checklist.toJson().toString());
+            for (URL cndUrl : checklist.getCndUrls()) {
+                updateDigest(digest, cndUrl);
+            }
+        }
+
+        for (URL preInstallUrl : plan.getPreInstallUrls()) {
+            updateDigest(digest, preInstallUrl);
+        }
+
+        return toHex(digest.digest());
+    }
+
+    /**
+     * Get the version of the OakPAL core library, which determines how checkpoints are prepared and scans are run.
+     *
+     * @return the oakpal-core version, or "unknown"
+     */
+    static String getOakpalVersion() {
+        return readVersion(BaseCheckpointCache.class, VERSION_PROPERTIES_NAME, "version");
+    }
+
+    /**
+     * Get the version of the FileVault library, which determines how packages are installed.
+     *
+     * @return the vault-core version, or "unknown"
+     */
+    static String getVaultVersion() {
+        final String version = readVersion(PackageId.class, "/" + VAULT_POM_PROPERTIES, "version");
+        if (UNKNOWN_VERSION.equals(version)) {
+            return Optional.ofNullable(PackageId.class.getPackage())
+                    .map(Package::getImplementationVersion)
+                    .orElse(UNKNOWN_VERSION);
+        }
+        return version;
+    }
+
+    static String readVersion(final @NotNull Class<?> owner, final @NotNull String resourceName,
+                              final @NotNull String propertyName) {
+        try (InputStream input = owner.getResourceAsStream(resourceName)) {
+            if (input != null) {
+                final Properties properties = new Properties();
+                properties.load(input);
+                return properties.getProperty(propertyName, UNKNOWN_VERSION);
+            }
+        } catch (final IOException e) {
+            LOGGER.debug("[readVersion] failed to read {} for {}", resourceName, owner.getName(), e);
+        }
+        return UNKNOWN_VERSION;
+    }
+
+    static MessageDigest newDigest() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (final NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    static void updateDigest(final @NotNull MessageDigest digest, final @Nullable String value) {
+        final byte[] bytes = String.valueOf(value).getBytes(StandardCharsets.UTF_8);
+        digest.update(Integer.toString(bytes.length).getBytes(StandardCharsets.UTF_8));
+        digest.update((byte) ':');
+        digest.update(bytes);
+    }
+
+    static void updateDigest(final @NotNull MessageDigest digest, final @NotNull URL url) throws IOException {
+        final MessageDigest contentDigest = newDigest();
+        try (InputStream input = url.openStream()) {
+            final byte[] buffer = new byte[8192];
+            int read;
+            while ((read = input.read(buffer)) != -1) {
+                contentDigest.update(buffer, 0, read);
+            }
+        }
+        updateDigest(digest, toHex(contentDigest.digest()));
+    }
+
+    static String toHex(final byte[] bytes) {
+        final StringBuilder sb = new StringBuilder(bytes.length * 2);
+        for (byte b : bytes) {
+            sb.append(String.format("%02x", b));
+        }
+        return sb.toString();
+    }
+
+    static FileStore openWritable(final @NotNull File segmentStoreDir) throws IOException {
+        try {
+            return FileStoreBuilder.fileStoreBuilder(segmentStoreDir).build();
+        } catch (final InvalidFileStoreVersionException e) {
+            throw new IOException(e);
+        }
+    }
+
+    static void writeSessionJson(final @NotNull File sessionJson,
+                                 final @NotNull Map<String, String> sessionNamespaces) throws IOException {
+        final JsonObject json = JavaxJson.obj()
+                .key(KEY_SESSION_NAMESPACES).val(JavaxJson.wrap(sessionNamespaces))
+                .get();
+        try (Writer writer = Files.newBufferedWriter(sessionJson.toPath(), StandardCharsets.UTF_8);
+             JsonWriter jsonWriter = Json.createWriter(writer)) {
+            jsonWriter.writeObject(json);
+        }
+    }
+
+    static Map<String, String> readSessionJson(final @NotNull File sessionJson) throws IOException {
+        final Map<String, String> sessionNamespaces = new LinkedHashMap<>();
+        try (Reader reader = Files.newBufferedReader(sessionJson.toPath(), StandardCharsets.UTF_8);
+             JsonReader jsonReader = Json.createReader(reader)) {
+            final JsonObject json = jsonReader.readObject();
+            if (json.containsKey(KEY_SESSION_NAMESPACES)) {
+                json.getJsonObject(KEY_SESSION_NAMESPACES).forEach((prefix, uri) ->
+                        sessionNamespaces.put(prefix, ((JsonString) uri).getString()));
+            }
+        } catch (final RuntimeException e) {
+            throw new IOException("failed to read " + sessionJson.getAbsolutePath(), e);
+        }
+        return sessionNamespaces;
+    }
+
+    static void deleteRecursively(final @NotNull File dir) {
+        if (!dir.exists()) {
+            return;
+        }
+        try (Stream<Path> paths = Files.walk(dir.toPath())) {
+            paths.sorted(Comparator.reverseOrder()).map(Path::toFile).forEach(File::delete);
+        } catch (final IOException e) {
+            LOGGER.warn("[deleteRecursively] failed to delete {}", dir.getAbsolutePath(), e);
+        }
+    }
+}
@@ -67,8 +67,11 @@ final class CNDURLInstaller {
      * @param session Session
      */
     public void register(Session session) throws RepositoryException {
-        register(session, unorderedCnds);
-        registerByUrl(session, postInstallCnds);
+        try (FlightRecording.Span span =
+                     FlightRecording.cndRegistration(unorderedCnds.size() + postInstallCnds.size())) {
+            register(session, unorderedCnds);
+            registerByUrl(session, postInstallCnds);
+        }
     }
 
     /**
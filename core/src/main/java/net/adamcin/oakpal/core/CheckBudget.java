@@ -0,0 +1,207 @@
+/*
+ * Copyright 2020 Mark Adamcin
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.adamcin.oakpal.core;
+
+import net.adamcin.oakpal.api.ProgressCheck;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Limits the time that each {@link ProgressCheck} may spend in its callbacks during a scan performed by an
+ * {@link OakMachine} built with {@link OakMachine.Builder#withCheckBudget(CheckBudget)}. A check which exceeds either
+ * limit is quarantined: it receives no further callbacks for the rest of the scan, and the machine reports it to
+ * {@link ErrorListener#onCheckBudgetExceeded(ProgressCheck, org.apache.jackrabbit.vault.packaging.PackageId,
+ * ScanMetrics.Callback, Limit, long, long)}. Violations reported by the check before it was quarantined are still
+ * included in its report.
+ * <p>
+ * Callbacks are invoked synchronously, so elapsed time is measured when a callback returns. A callback which never
+ * returns can not be interrupted. Events replayed from {@link PrefixCheckpoints} are not charged to the budget.
+ *
+ * @since 2.1.0
+ */
+public final class CheckBudget {
+
+    /**
+     * The limits of a check budget.
+     */
+    public enum Limit {
+        /**
+         * The maximum elapsed time of a single callback.
+         */
+        CALLBACK,
+
+        /**
+         * The maximum elapsed time of all callbacks of a check during a scan.
+         */
+        TOTAL
+    }
+
+    private final long callbackMillis;
+    private final long totalMillis;
+
+    /**
+     * Constructor.
+     *
+     * @param callbackMillis the maximum elapsed time of a single callback, or 0 for no limit
+     * @param totalMillis    the maximum elapsed time of all callbacks of a check during a scan, or 0 for no limit
+     */
+    public CheckBudget(final long callbackMillis, final long totalMillis) {
+        this.callbackMillis = Math.max(0L, callbackMillis);
+        this.totalMillis = Math.max(0L, totalMillis);
+    }
+
+    /**
+     * Get the maximum elapsed time of a single callback.
+     *
+     * @return the callback limit in milliseconds, or 0 for no limit
+     */
+    public long getCallbackMillis() {
+        return callbackMillis;
+    }
+
+    /**
+     * Get the maximum elapsed time of all callbacks of a check during a scan.
+     *
+     * @return the total limit in milliseconds, or 0 for no limit
+     */
+    public long getTotalMillis() {
+        return totalMillis;
+    }
+
+    /**
+     * Get the value of the specified limit.
+     *
+     * @param limit the limit
+     * @return the limit in milliseconds, or 0 for no limit
+     */
+    public long getMillis(final @NotNull Limit limit) {
+        return limit == Limit.CALLBACK ? callbackMillis : totalMillis;
+    }
+
+    /**
+     * Returns true if neither limit is set.
+     *
+     * @return true if neither limit is set
+     */
+    public boolean isUnlimited() {
+        return callbackMillis == 0L && totalMillis == 0L;
+    }
+
+    /**
+     * Create a budget, or return null if neither limit is set.
+     *
+     * @param callbackMillis the maximum elapsed time of a single callback, or 0 for no limit
+     * @param totalMillis    the maximum elapsed time of all callbacks of a check during a scan, or 0 for no limit
+     * @return a new budget or null
+     */
+    public static @Nullable CheckBudget ofMillis(final long callbackMillis, final long totalMillis) {
+        final CheckBudget budget = new CheckBudget(callbackMillis, totalMillis);
+        return budget.isUnlimited() ? null : budget;
+    }
+
+    @Override
+    public String toString() {
+        return "CheckBudget{callbackMillis=" + callbackMillis + ", totalMillis=" + totalMillis + "}";
+    }
+
+    /**
+     * Tracks the elapsed time of each check against the budget during a scan, and the set of quarantined checks.
+     * Checks are identified by reference. Instances are not thread-safe.
+     */
+    static final class Tracker {
+        private final CheckBudget budget;
+        private final long callbackNanos;
+        private final long totalNanos;
+        private final Map<ProgressCheck, long[]> elapsedByCheck = new IdentityHashMap<>();
+        private final Set<ProgressCheck> quarantined = Collections.newSetFromMap(new IdentityHashMap<>());
+
+        Tracker(final @NotNull CheckBudget budget) {
+            this.budget = budget;
+            this.callbackNanos = TimeUnit.MILLISECONDS.toNanos(budget.getCallbackMillis());
+            this.totalNanos = TimeUnit.MILLISECONDS.toNanos(budget.getTotalMillis());
+        }
+
+        @NotNull CheckBudget getBudget() {
+            return budget;
+        }
+
+        /**
+         * Forget the elapsed time and quarantine status of every check, at the start of a scan.
+         */
+        void reset() {
+            elapsedByCheck.clear();
+            quarantined.clear();
+        }
+
+        boolean isQuarantined(final @NotNull ProgressCheck check) {
+            return quarantined.contains(check);
+        }
+
+        /**
+         * Whether any check has been quarantined since the last reset.
+         *
+         * @return true if any check has been quarantined
+         */
+        boolean hasQuarantined() {
+            return !quarantined.isEmpty();
+        }
+
+        /**
+         * Get the elapsed time of all callbacks of the check since the last reset.
+         *
+         * @param check the check
+         * @return the elapsed time in nanoseconds
+         */
+        long getElapsedNanos(final @NotNull ProgressCheck check) {
+            final long[] elapsed = elapsedByCheck.get(check);
+            return elapsed != null ? elapsed[0] : 0L;
+        }
+
+        /**
+         * Charge the elapsed time of a callback to the check, and quarantine the check if it has exceeded a limit.
+         *
+         * @param check the check
+         * @param nanos the elapsed time of the callback in nanoseconds
+         * @return the exceeded limit, or null if the check is within budget or was already quarantined
+         */
+        @Nullable Limit charge(final @NotNull ProgressCheck check, final long nanos) {
+            final long[] elapsed = elapsedByCheck.computeIfAbsent(check, key -> new long[1]);
+            elapsed[0] += nanos;
+            if (quarantined.contains(check)) {
+                return null;
+            }
+            final Limit exceeded;
+            if (callbackNanos > 0L && nanos > callbackNanos) {
+                exceeded = Limit.CALLBACK;
+            } else if (totalNanos > 0L && elapsed[0] > totalNanos) {
+                exceeded = Limit.TOTAL;
+            } else {
+                exceeded = null;
+            }
+            if (exceeded != null) {
+                quarantined.add(check);
+            }
+            return exceeded;
+        }
+    }
+}
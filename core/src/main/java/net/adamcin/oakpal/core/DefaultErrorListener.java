@@ -24,6 +24,7 @@ import net.adamcin.oakpal.api.Violation;
 import net.adamcin.oakpal.api.ViolationReporter;
 import org.apache.jackrabbit.vault.packaging.PackageId;
 import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -34,6 +35,7 @@ import java.util.Collection;
 import java.util.MissingResourceException;
 import java.util.Optional;
 import java.util.ResourceBundle;
+import java.util.function.Consumer;
 
 /**
  * Default implementation which reports all exceptions as violations.
@@ -89,6 +91,11 @@ public class DefaultErrorListener implements ErrorListener {
         }
     }
 
+    @Override
+    public boolean setViolationListener(final @Nullable Consumer<Violation> listener) {
+        return collector.setViolationListener(listener);
+    }
+
     @Override
     public Collection<Violation> getReportedViolations() {
         return collector.getReportedViolations();
@@ -151,6 +158,21 @@ public class DefaultErrorListener implements ErrorListener {
         reportViolation(new SimpleViolation(Severity.MAJOR, message, packageId));
     }
 
+    @Override
+    public void onCheckBudgetExceeded(final ProgressCheck check, final PackageId packageId,
+                                      final ScanMetrics.Callback callback, final CheckBudget.Limit limit,
+                                      final long elapsedMillis, final long budgetMillis) {
+        final String template = limit == CheckBudget.Limit.CALLBACK
+                ? "Check quarantined ({0}): {1} took {2} ms, exceeding the callback time budget of {3} ms"
+                : "Check quarantined ({0}): callbacks took {2} ms in total after {1}, exceeding the total time budget of {3} ms";
+        final String message = MessageFormat.format(getString(template),
+                Optional.ofNullable(check).map(ProgressCheck::getCheckName).orElse(null),
+                Optional.ofNullable(callback).map(ScanMetrics.Callback::getMethodName).orElse(null),
+                String.valueOf(elapsedMillis), String.valueOf(budgetMillis));
+        LOGGER.warn("[onCheckBudgetExceeded] {}", message);
+        reportViolation(new SimpleViolation(Severity.MAJOR, message, packageId));
+    }
+
     @Override
     public void onSubpackageException(final Exception e, final PackageId packageId) {
         final String message = MessageFormat.format(getString("Package error: {0} \"{1}\""),
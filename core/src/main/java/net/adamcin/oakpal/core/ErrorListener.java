@@ -90,6 +90,25 @@ public interface ErrorListener extends ScanListener, ViolationReporter {
 
     }
 
+    /**
+     * Called when a {@link ProgressCheck} exceeds a limit of the {@link CheckBudget} of the scan. The check receives no
+     * further callbacks for the rest of the scan.
+     *
+     * @param check         the quarantined check
+     * @param packageId     the current package id, or null if the budget was exceeded outside of a package
+     * @param callback      the callback which exceeded the budget
+     * @param limit         the exceeded limit
+     * @param elapsedMillis the elapsed time of the callback for {@link CheckBudget.Limit#CALLBACK}, or the total
+     *                      elapsed time of the check for {@link CheckBudget.Limit#TOTAL}
+     * @param budgetMillis  the value of the exceeded limit
+     * @since 2.1.0
+     */
+    default void onCheckBudgetExceeded(final ProgressCheck check, final PackageId packageId,
+                                       final ScanMetrics.Callback callback, final CheckBudget.Limit limit,
+                                       final long elapsedMillis, final long budgetMillis) {
+
+    }
+
     /**
      * Called when the package FileVault importer encounters an error such as an XML syntax exception.
      *
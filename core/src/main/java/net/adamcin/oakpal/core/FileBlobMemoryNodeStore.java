@@ -20,6 +20,7 @@ import org.apache.jackrabbit.oak.api.Blob;
 import org.apache.jackrabbit.oak.plugins.blob.BlobStoreBlob;
 import org.apache.jackrabbit.oak.plugins.memory.MemoryNodeStore;
 import org.apache.jackrabbit.oak.spi.blob.FileBlobStore;
+import org.apache.jackrabbit.oak.spi.state.NodeState;
 import org.apache.jackrabbit.oak.spi.state.NodeStore;
 import org.apache.jackrabbit.oak.spi.state.ProxyNodeStore;
 import org.jetbrains.annotations.NotNull;
@@ -43,6 +44,17 @@ public class FileBlobMemoryNodeStore extends ProxyNodeStore {
         this.blobStore = new FileBlobStore(blobStorePath);
     }
 
+    /**
+     * Construct a copy-on-write fork of the provided base state, such as the root of a {@link BaseCheckpoint}.
+     *
+     * @param blobStorePath the blob store path
+     * @param base          the base root node state
+     */
+    public FileBlobMemoryNodeStore(final @NotNull String blobStorePath, final @NotNull NodeState base) {
+        this.nodeStore = new MemoryNodeStore(base);
+        this.blobStore = new FileBlobStore(blobStorePath);
+    }
+
     @Override
     protected NodeStore getNodeStore() {
         return nodeStore;
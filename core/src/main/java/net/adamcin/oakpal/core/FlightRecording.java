@@ -0,0 +1,103 @@
+/*
+ * Copyright 2020 Mark Adamcin
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.adamcin.oakpal.core;
+
+import net.adamcin.oakpal.api.ProgressCheck;
+import org.apache.jackrabbit.vault.packaging.PackageId;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Emits JDK Flight Recorder events for the phases of a scan, so that a recording started with
+ * {@code -XX:StartFlightRecording} shows where scan time and allocation go. The events are defined by
+ * {@link JfrScanEvents}, which is only loaded when the {@code jdk.jfr} API is present, so that scans still run on
+ * JVMs without it. When no recording is enabled for an event type, the methods of this class return {@link #NOOP}
+ * without allocating an event.
+ */
+final class FlightRecording {
+    private static final Logger LOGGER = LoggerFactory.getLogger(FlightRecording.class);
+
+    private FlightRecording() {
+        /* no instantiation */
+    }
+
+    /**
+     * A started event, which is committed when closed.
+     */
+    interface Span extends AutoCloseable {
+        @Override
+        void close();
+    }
+
+    static final Span NOOP = () -> {
+        /* nothing to commit */
+    };
+
+    private static final JfrScanEvents EVENTS = loadEvents();
+
+    private static @Nullable JfrScanEvents loadEvents() {
+        try {
+            Class.forName("jdk.jfr.Event", false, FlightRecording.class.getClassLoader());
+            return new JfrScanEvents();
+        } catch (final ClassNotFoundException | LinkageError e) {
+            LOGGER.debug("[loadEvents] flight recorder events are not available: {}", e.getMessage());
+            return null;
+        }
+    }
+
+    static boolean isAvailable() {
+        return EVENTS != null;
+    }
+
+    static @NotNull Span repositoryInit() {
+        return EVENTS != null ? EVENTS.repositoryInit() : NOOP;
+    }
+
+    static @NotNull Span initStage(final int stageIndex) {
+        return EVENTS != null ? EVENTS.initStage(stageIndex) : NOOP;
+    }
+
+    static @NotNull Span cndRegistration(final int cndCount) {
+        return EVENTS != null ? EVENTS.cndRegistration(cndCount) : NOOP;
+    }
+
+    static @NotNull Span packageUpload(final @NotNull String source, final boolean preInstall) {
+        return EVENTS != null ? EVENTS.packageUpload(source, preInstall) : NOOP;
+    }
+
+    static @NotNull Span packageExtract(final @NotNull PackageId packageId, final boolean preInstall) {
+        return EVENTS != null ? EVENTS.packageExtract(packageId, preInstall) : NOOP;
+    }
+
+    static @NotNull Span packageSave(final @NotNull PackageId packageId, final boolean preInstall) {
+        return EVENTS != null ? EVENTS.packageSave(packageId, preInstall) : NOOP;
+    }
+
+    static @NotNull Span subpackage(final @NotNull PackageId packageId, final @NotNull PackageId parentId,
+                                    final boolean preInstall) {
+        return EVENTS != null ? EVENTS.subpackage(packageId, parentId, preInstall) : NOOP;
+    }
+
+    static @NotNull Span checkCallback(final @NotNull ProgressCheck check,
+                                       final @NotNull ScanMetrics.Callback callback,
+                                       final @Nullable PackageId packageId,
+                                       final @Nullable String path) {
+        return EVENTS != null ? EVENTS.checkCallback(check, callback, packageId, path) : NOOP;
+    }
+}
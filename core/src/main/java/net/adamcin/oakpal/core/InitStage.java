@@ -32,7 +32,9 @@ import javax.jcr.Node;
 import javax.jcr.RepositoryException;
 import javax.jcr.Session;
 import javax.jcr.nodetype.NodeTypeDefinition;
+import java.io.IOException;
 import java.net.URL;
+import java.security.MessageDigest;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
@@ -303,6 +305,36 @@ public final class InitStage {
         }
     }
 
+    /**
+     * Update the digest with the contents of this stage, for the {@link PrefixCheckpoints} key of a scan which starts
+     * without a {@link BaseCheckpoint}. Node type and privilege definitions are identified by name and hash code,
+     * which is sufficient for keys that are only compared within the same JVM.
+     *
+     * @param digest the digest to update
+     * @throws IOException for errors reading CND urls
+     */
+    void updateDigest(final @NotNull MessageDigest digest) throws IOException {
+        BaseCheckpointCache.updateDigest(digest, Integer.toString(unorderedCndUrls.size()));
+        for (URL cndUrl : unorderedCndUrls) {
+            BaseCheckpointCache.updateDigest(digest, cndUrl);
+        }
+        BaseCheckpointCache.updateDigest(digest, Integer.toString(orderedCndUrls.size()));
+        for (URL cndUrl : orderedCndUrls) {
+            BaseCheckpointCache.updateDigest(digest, cndUrl);
+        }
+        BaseCheckpointCache.updateDigest(digest, Integer.toString(qNodeTypes.size()));
+        for (QNodeTypeDefinition qNodeType : qNodeTypes) {
+            BaseCheckpointCache.updateDigest(digest, qNodeType.getName() + "#" + qNodeType.hashCode());
+        }
+        BaseCheckpointCache.updateDigest(digest, namespaces.toString());
+        BaseCheckpointCache.updateDigest(digest, privilegeNames.toString());
+        BaseCheckpointCache.updateDigest(digest, Integer.toString(privileges.size()));
+        for (PrivilegeDefinition privilege : privileges) {
+            BaseCheckpointCache.updateDigest(digest, privilege.getName() + "#" + privilege.hashCode());
+        }
+        BaseCheckpointCache.updateDigest(digest, forcedRoots.values().toString());
+    }
+
     void initSession(final Session admin, final ErrorListener errorListener) throws RepositoryException {
         final CNDURLInstaller cndInstaller = new CNDURLInstaller(errorListener,
                 this.unorderedCndUrls, this.orderedCndUrls);
@@ -0,0 +1,273 @@
+/*
+ * Copyright 2020 Mark Adamcin
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.adamcin.oakpal.core;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.Threshold;
+import net.adamcin.oakpal.api.ProgressCheck;
+import org.apache.jackrabbit.vault.packaging.PackageId;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * Flight recorder event types of a scan. Only {@link FlightRecording} may refer to this class, after verifying that
+ * the {@code jdk.jfr} API is present. Each factory method checks whether its event type is enabled before allocating
+ * an event. Event names are prefixed with {@code net.adamcin.oakpal.}, and the check callback threshold can be
+ * changed in a recording settings file, for example
+ * {@code <event name="net.adamcin.oakpal.CheckCallback"><setting name="threshold">1 ms</setting></event>}.
+ */
+final class JfrScanEvents {
+    static final String CATEGORY = "OakPAL";
+
+    private final RepositoryInitEvent repositoryInitType = new RepositoryInitEvent();
+    private final InitStageEvent initStageType = new InitStageEvent();
+    private final CndRegistrationEvent cndRegistrationType = new CndRegistrationEvent();
+    private final PackageUploadEvent packageUploadType = new PackageUploadEvent();
+    private final PackageExtractEvent packageExtractType = new PackageExtractEvent();
+    private final PackageSaveEvent packageSaveType = new PackageSaveEvent();
+    private final SubpackageEvent subpackageType = new SubpackageEvent();
+    private final CheckCallbackEvent checkCallbackType = new CheckCallbackEvent();
+
+    FlightRecording.Span repositoryInit() {
+        if (!repositoryInitType.isEnabled()) {
+            return FlightRecording.NOOP;
+        }
+        final RepositoryInitEvent event = new RepositoryInitEvent();
+        event.begin();
+        return event;
+    }
+
+    FlightRecording.Span initStage(final int stageIndex) {
+        if (!initStageType.isEnabled()) {
+            return FlightRecording.NOOP;
+        }
+        final InitStageEvent event = new InitStageEvent();
+        event.stageIndex = stageIndex;
+        event.begin();
+        return event;
+    }
+
+    FlightRecording.Span cndRegistration(final int cndCount) {
+        if (!cndRegistrationType.isEnabled()) {
+            return FlightRecording.NOOP;
+        }
+        final CndRegistrationEvent event = new CndRegistrationEvent();
+        event.cndCount = cndCount;
+        event.begin();
+        return event;
+    }
+
+    FlightRecording.Span packageUpload(final @NotNull String source, final boolean preInstall) {
+        if (!packageUploadType.isEnabled()) {
+            return FlightRecording.NOOP;
+        }
+        final PackageUploadEvent event = new PackageUploadEvent();
+        event.source = source;
+        event.preInstall = preInstall;
+        event.begin();
+        return event;
+    }
+
+    FlightRecording.Span packageExtract(final @NotNull PackageId packageId, final boolean preInstall) {
+        if (!packageExtractType.isEnabled()) {
+            return FlightRecording.NOOP;
+        }
+        final PackageExtractEvent event = new PackageExtractEvent();
+        event.packageId = packageId.toString();
+        event.preInstall = preInstall;
+        event.begin();
+        return event;
+    }
+
+    FlightRecording.Span packageSave(final @NotNull PackageId packageId, final boolean preInstall) {
+        if (!packageSaveType.isEnabled()) {
+            return FlightRecording.NOOP;
+        }
+        final PackageSaveEvent event = new PackageSaveEvent();
+        event.packageId = packageId.toString();
+        event.preInstall = preInstall;
+        event.begin();
+        return event;
+    }
+
+    FlightRecording.Span subpackage(final @NotNull PackageId packageId, final @NotNull PackageId parentId,
+                                    final boolean preInstall) {
+        if (!subpackageType.isEnabled()) {
+            return FlightRecording.NOOP;
+        }
+        final SubpackageEvent event = new SubpackageEvent();
+        event.packageId = packageId.toString();
+        event.parentId = parentId.toString();
+        event.preInstall = preInstall;
+        event.begin();
+        return event;
+    }
+
+    FlightRecording.Span checkCallback(final @NotNull ProgressCheck check,
+                                       final @NotNull ScanMetrics.Callback callback,
+                                       final @Nullable PackageId packageId,
+                                       final @Nullable String path) {
+        if (!checkCallbackType.isEnabled()) {
+            return FlightRecording.NOOP;
+        }
+        final CheckCallbackEvent event = new CheckCallbackEvent();
+        event.checkName = check.getCheckName();
+        event.callback = callback.getMethodName();
+        event.packageId = packageId != null ? packageId.toString() : null;
+        event.path = path;
+        event.begin();
+        return event;
+    }
+
+    @Name("net.adamcin.oakpal.RepositoryInit")
+    @Label("Repository Init")
+    @Category(CATEGORY)
+    @Description("Creation of the Oak repository for a scan")
+    static final class RepositoryInitEvent extends Event implements FlightRecording.Span {
+        @Override
+        public void close() {
+            commit();
+        }
+    }
+
+    @Name("net.adamcin.oakpal.InitStage")
+    @Label("Init Stage")
+    @Category(CATEGORY)
+    @Description("Initialization of the admin session by an init stage of the plan")
+    static final class InitStageEvent extends Event implements FlightRecording.Span {
+        @Label("Stage Index")
+        int stageIndex;
+
+        @Override
+        public void close() {
+            commit();
+        }
+    }
+
+    @Name("net.adamcin.oakpal.CndRegistration")
+    @Label("CND Registration")
+    @Category(CATEGORY)
+    @Description("Registration of node types from CND resources")
+    static final class CndRegistrationEvent extends Event implements FlightRecording.Span {
+        @Label("CND Count")
+        int cndCount;
+
+        @Override
+        public void close() {
+            commit();
+        }
+    }
+
+    @Name("net.adamcin.oakpal.PackageUpload")
+    @Label("Package Upload")
+    @Category(CATEGORY)
+    @Description("Upload of a package binary to the package registry")
+    static final class PackageUploadEvent extends Event implements FlightRecording.Span {
+        @Label("Source")
+        String source;
+
+        @Label("Pre-Install")
+        boolean preInstall;
+
+        @Override
+        public void close() {
+            commit();
+        }
+    }
+
+    @Name("net.adamcin.oakpal.PackageExtract")
+    @Label("Package Extract")
+    @Category(CATEGORY)
+    @Description("Extraction of package content, including importedPath and deletedPath callbacks")
+    static final class PackageExtractEvent extends Event implements FlightRecording.Span {
+        @Label("Package ID")
+        String packageId;
+
+        @Label("Pre-Install")
+        boolean preInstall;
+
+        @Override
+        public void close() {
+            commit();
+        }
+    }
+
+    @Name("net.adamcin.oakpal.PackageSave")
+    @Label("Package Save")
+    @Category(CATEGORY)
+    @Description("Save of the admin session after package extraction")
+    static final class PackageSaveEvent extends Event implements FlightRecording.Span {
+        @Label("Package ID")
+        String packageId;
+
+        @Label("Pre-Install")
+        boolean preInstall;
+
+        @Override
+        public void close() {
+            commit();
+        }
+    }
+
+    @Name("net.adamcin.oakpal.Subpackage")
+    @Label("Subpackage")
+    @Category(CATEGORY)
+    @Description("Processing of a subpackage, including the processing of its own subpackages")
+    static final class SubpackageEvent extends Event implements FlightRecording.Span {
+        @Label("Package ID")
+        String packageId;
+
+        @Label("Parent ID")
+        String parentId;
+
+        @Label("Pre-Install")
+        boolean preInstall;
+
+        @Override
+        public void close() {
+            commit();
+        }
+    }
+
+    @Name("net.adamcin.oakpal.CheckCallback")
+    @Label("Check Callback")
+    @Category(CATEGORY)
+    @Description("A progress check callback that took longer than the threshold")
+    @Threshold("10 ms")
+    static final class CheckCallbackEvent extends Event implements FlightRecording.Span {
+        @Label("Check Name")
+        String checkName;
+
+        @Label("Callback")
+        String callback;
+
+        @Label("Package ID")
+        String packageId;
+
+        @Label("Path")
+        String path;
+
+        @Override
+        public void close() {
+            commit();
+        }
+    }
+}
@@ -0,0 +1,77 @@
+/*
+ * Copyright 2020 Mark Adamcin
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.adamcin.oakpal.core;
+
+import net.adamcin.oakpal.api.PathAction;
+import net.adamcin.oakpal.api.ProgressCheck;
+import org.apache.jackrabbit.oak.spi.state.NodeState;
+import org.apache.jackrabbit.vault.packaging.PackageId;
+import org.osgi.annotation.versioning.ConsumerType;
+
+import javax.jcr.RepositoryException;
+
+/**
+ * A {@link ProgressCheck} which reads the repository through Oak {@link NodeState}s instead of JCR items. Reading a
+ * node state skips the name mapping, item creation, and session facades involved in reading the same content through
+ * a JCR {@link javax.jcr.Session}, which makes a difference for checks that only read the properties and child names
+ * of each imported node.
+ * <p>
+ * The {@link OakMachine} delivers
+ * {@link #importedPathState(PackageId, String, NodeState, PathAction, NodeState)} instead of
+ * {@link ProgressCheck#importedPath(PackageId, String, javax.jcr.Node, PathAction)} and
+ * {@link ProgressCheck#importedPaths(PackageId, java.util.List)}, and
+ * {@link #afterExtractState(PackageId, NodeState)} instead of
+ * {@link ProgressCheck#afterExtract(PackageId, javax.jcr.Session)}. All other events, and the
+ * {@link net.adamcin.oakpal.api.EventMask} of the check, apply as usual. Node states are taken from the revision saved
+ * after each package has been extracted, so imported path states are delivered in import order once the extraction is
+ * complete, after any deleted path events for the same package. Names in node states are Oak names, which match the
+ * JCR names of the default namespace mappings.
+ * <p>
+ * The default implementations of both methods do nothing.
+ *
+ * @since 2.1.0
+ */
+@ConsumerType
+public interface NodeStateCheck extends ProgressCheck {
+
+    /**
+     * Called for each in-scope path imported by a package, after the package has been extracted and saved. Paths which
+     * no longer exist in the saved revision are skipped.
+     *
+     * @param packageId the current package
+     * @param path      the imported path
+     * @param nodeState the node state of the imported path in the saved revision
+     * @param action    the reported path action type
+     * @param root      the root node state of the saved revision, e.g. for node type lookups
+     * @throws RepositoryException for repository exceptions
+     */
+    default void importedPathState(final PackageId packageId, final String path, final NodeState nodeState,
+                                   final PathAction action, final NodeState root) throws RepositoryException {
+
+    }
+
+    /**
+     * Called after each package has been extracted and saved, with the root node state of the saved revision.
+     *
+     * @param packageId the current package
+     * @param root      the root node state of the saved revision
+     * @throws RepositoryException for repository exceptions
+     */
+    default void afterExtractState(final PackageId packageId, final NodeState root) throws RepositoryException {
+
+    }
+}
@@ -0,0 +1,81 @@
+/*
+ * Copyright 2020 Mark Adamcin
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.adamcin.oakpal.core;
+
+import org.apache.jackrabbit.oak.api.PropertyState;
+import org.apache.jackrabbit.oak.spi.state.NodeState;
+import org.apache.jackrabbit.vault.packaging.PackageId;
+import org.jetbrains.annotations.Nullable;
+import org.osgi.annotation.versioning.ConsumerType;
+
+import javax.jcr.RepositoryException;
+
+/**
+ * A {@link NodeStateCheck} which receives the changes made by each package as a diff of node states, instead of the
+ * imported path events reported by the FileVault importer. The {@link OakMachine} captures the root node state before
+ * each package is installed, and after it has been saved, and compares the two with
+ * {@link NodeState#compareAgainstBaseState(NodeState, org.apache.jackrabbit.oak.spi.state.NodeStateDiff)}, which skips
+ * unchanged subtrees without reading them. Each added, changed, and deleted node and property is then delivered with
+ * its state both before and after the package, in depth-first order, with the property changes of each node delivered
+ * before its child nodes. This includes changes made outside the package filter, such as the package node itself.
+ * <p>
+ * The diff events replace {@link #importedPathState(PackageId, String, NodeState, net.adamcin.oakpal.api.PathAction,
+ * NodeState)}, and they are delivered if the {@link net.adamcin.oakpal.api.EventMask} of the check includes
+ * {@link net.adamcin.oakpal.api.EventMask.Event#IMPORTED_PATH}, limited to the included and excluded roots of the
+ * mask. Subtrees outside the scope of every diff check are not compared at all. Hidden items, whose names start with a
+ * colon, are skipped.
+ * <p>
+ * The default implementations of both methods do nothing.
+ *
+ * @since 2.1.0
+ */
+@ConsumerType
+public interface NodeStateDiffCheck extends NodeStateCheck {
+
+    /**
+     * Called for each node other than the root node that is added, deleted, or changed by a package. A node is changed
+     * if any of its properties or descendants has changed, and it is delivered just before the first of those changes.
+     * The state of an added node before the package, and of a deleted node after the package, does not
+     * {@link NodeState#exists()}.
+     *
+     * @param packageId the current package
+     * @param path      the node path
+     * @param before    the node state before the package
+     * @param after     the node state after the package
+     * @throws RepositoryException for repository exceptions
+     */
+    default void nodeChanged(final PackageId packageId, final String path, final NodeState before,
+                             final NodeState after) throws RepositoryException {
+
+    }
+
+    /**
+     * Called for each property added, deleted, or changed by a package. The property state before the package is null
+     * for an added property, and the property state after the package is null for a deleted property.
+     *
+     * @param packageId  the current package
+     * @param parentPath the path of the node of the property
+     * @param before     the property state before the package, or null
+     * @param after      the property state after the package, or null
+     * @throws RepositoryException for repository exceptions
+     */
+    default void propertyChanged(final PackageId packageId, final String parentPath,
+                                 final @Nullable PropertyState before, final @Nullable PropertyState after)
+            throws RepositoryException {
+
+    }
+}
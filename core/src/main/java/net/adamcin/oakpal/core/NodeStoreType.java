@@ -0,0 +1,48 @@
+/*
+ * Copyright 2020 Mark Adamcin
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.adamcin.oakpal.core;
+
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * Enumeration of built-in node store types for scans.
+ */
+public enum NodeStoreType {
+    /**
+     * Keep the entire repository state on the heap in a {@code MemoryNodeStore}. This is the fastest option for
+     * typical package sizes.
+     */
+    MEMORY,
+
+    /**
+     * Store the repository state in a {@link TempSegmentNodeStore}, which is an Oak segment tar store in a temporary
+     * directory with memory-mapped file access, which is deleted at the end of the scan. Use this type for packages
+     * which are too large to scan within the available heap.
+     */
+    SEGMENT;
+
+    public static final NodeStoreType DEFAULT = MEMORY;
+
+    public static @Nullable NodeStoreType forName(final @Nullable String name) {
+        for (NodeStoreType value : values()) {
+            if (value.name().equalsIgnoreCase(name)) {
+                return value;
+            }
+        }
+        return null;
+    }
+}
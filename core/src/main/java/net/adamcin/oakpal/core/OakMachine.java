@@ -16,18 +16,31 @@
 
 package net.adamcin.oakpal.core;
 
+import net.adamcin.oakpal.api.EventMask;
 import net.adamcin.oakpal.api.Fun;
+import net.adamcin.oakpal.api.ImportedPath;
 import net.adamcin.oakpal.api.PathAction;
 import net.adamcin.oakpal.api.ProgressCheck;
+import net.adamcin.oakpal.api.Severity;
+import net.adamcin.oakpal.api.Violation;
+import net.adamcin.oakpal.api.ViolationReporter;
+import net.adamcin.oakpal.core.jcrfacade.NodeFacade;
+import net.adamcin.oakpal.core.jcrfacade.SessionFacade;
 import org.apache.jackrabbit.JcrConstants;
 import org.apache.jackrabbit.api.JackrabbitRepository;
 import org.apache.jackrabbit.commons.cnd.DefinitionBuilderFactory;
 import org.apache.jackrabbit.commons.cnd.TemplateBuilderFactory;
 import org.apache.jackrabbit.oak.Oak;
+import org.apache.jackrabbit.oak.api.CommitFailedException;
 import org.apache.jackrabbit.oak.api.Type;
+import org.apache.jackrabbit.oak.api.PropertyState;
+import org.apache.jackrabbit.oak.commons.PathUtils;
 import org.apache.jackrabbit.oak.jcr.Jcr;
+import org.apache.jackrabbit.oak.plugins.memory.EmptyNodeState;
 import org.apache.jackrabbit.oak.plugins.memory.MemoryNodeStore;
 import org.apache.jackrabbit.oak.security.SecurityProviderImpl;
+import org.apache.jackrabbit.oak.spi.commit.CommitInfo;
+import org.apache.jackrabbit.oak.spi.commit.EmptyHook;
 import org.apache.jackrabbit.oak.spi.lifecycle.RepositoryInitializer;
 import org.apache.jackrabbit.oak.spi.nodetype.NodeTypeConstants;
 import org.apache.jackrabbit.oak.spi.security.ConfigurationParameters;
@@ -37,11 +50,16 @@ import org.apache.jackrabbit.oak.spi.security.privilege.PrivilegeConstants;
 import org.apache.jackrabbit.oak.spi.security.user.UserConfiguration;
 import org.apache.jackrabbit.oak.spi.security.user.UserConstants;
 import org.apache.jackrabbit.oak.spi.security.user.action.AccessControlAction;
+import org.apache.jackrabbit.oak.spi.state.ApplyDiff;
 import org.apache.jackrabbit.oak.spi.state.NodeBuilder;
+import org.apache.jackrabbit.oak.spi.state.NodeState;
+import org.apache.jackrabbit.oak.spi.state.NodeStateDiff;
+import org.apache.jackrabbit.oak.spi.state.NodeStateUtils;
 import org.apache.jackrabbit.oak.spi.state.NodeStore;
 import org.apache.jackrabbit.oak.spi.xml.ImportBehavior;
 import org.apache.jackrabbit.oak.spi.xml.ProtectedItemImporter;
 import org.apache.jackrabbit.vault.fs.api.ProgressTrackerListener;
+import org.apache.jackrabbit.vault.fs.io.Archive;
 import org.apache.jackrabbit.vault.packaging.DependencyHandling;
 import org.apache.jackrabbit.vault.packaging.InstallHookProcessorFactory;
 import org.apache.jackrabbit.vault.packaging.JcrPackage;
@@ -50,9 +68,14 @@ import org.apache.jackrabbit.vault.packaging.PackageException;
 import org.apache.jackrabbit.vault.packaging.PackageId;
 import org.apache.jackrabbit.vault.packaging.Packaging;
 import org.apache.jackrabbit.vault.packaging.VaultPackage;
+import org.apache.jackrabbit.vault.util.Constants;
 import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
 import javax.jcr.Node;
+import javax.jcr.PathNotFoundException;
 import javax.jcr.Property;
 import javax.jcr.PropertyType;
 import javax.jcr.Repository;
@@ -61,21 +84,34 @@ import javax.jcr.Session;
 import javax.jcr.SimpleCredentials;
 import javax.jcr.nodetype.NodeTypeTemplate;
 import javax.jcr.version.OnParentVersionAction;
+import java.io.Closeable;
 import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
 import java.net.URL;
+import java.security.CodeSource;
+import java.security.MessageDigest;
+import java.util.AbstractMap;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
+import java.util.EnumMap;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Objects;
 import java.util.Optional;
 import java.util.Properties;
+import java.util.concurrent.TimeUnit;
 import java.util.function.BiPredicate;
+import java.util.function.Function;
+import java.util.function.Predicate;
 import java.util.function.Supplier;
+import java.util.jar.JarFile;
 import java.util.jar.JarInputStream;
 import java.util.jar.Manifest;
 import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 import static net.adamcin.oakpal.api.Fun.uncheck1;
 import static net.adamcin.oakpal.api.Fun.uncheckVoid1;
@@ -89,10 +125,34 @@ public final class OakMachine {
     public static final String LN_UNDECLARED = "Undeclared";
     public static final String NT_UNDECLARED = "{" + NS_URI_OAKPAL + "}" + LN_UNDECLARED;
 
+    private static final Logger LOGGER = LoggerFactory.getLogger(OakMachine.class);
+
+    /**
+     * The package of the built-in checks, which are the only checks that receive the trusted session. The built-in
+     * checks never write to the repository, so they are passed the admin session and its nodes directly, instead of the
+     * read-only facades returned by {@link Util#wrapSessionReadOnly(Session)}, which allocate a wrapper for every item
+     * and iterator that a check touches. The trusted session is not read-only.
+     */
+    static final String BUILT_IN_CHECKS_PACKAGE = "net.adamcin.oakpal.core.checks";
+
+    /**
+     * Memoizes {@link #isBuiltInCheck(Class)}, which is evaluated for every dispatched event.
+     */
+    private static final ClassValue<Boolean> TRUSTED_CHECK_CLASSES = new ClassValue<Boolean>() {
+        @Override
+        protected Boolean computeValue(final Class<?> type) {
+            return isBuiltInCheck(type);
+        }
+    };
+
     private final Packaging packagingService;
 
     private final List<ProgressCheck> progressChecks;
 
+    private final Map<EventMask.Event, List<ProgressCheck>> eventSubscribers;
+
+    private final List<ProgressCheck> diffSubscribers;
+
     private final ErrorListener errorListener;
 
     private final List<URL> preInstallUrls;
@@ -111,8 +171,24 @@ public final class OakMachine {
 
     private final Supplier<NodeStore> nodeStoreSupplier;
 
+    private final Function<NodeState, NodeStore> nodeStoreForkFunction;
+
     private final SubpackageSilencer subpackageSilencer;
 
+    private final PrefixCheckpoints prefixCheckpoints;
+
+    private final boolean directInstall;
+
+    private final ScanMetrics scanMetrics;
+
+    private final CheckBudget.Tracker checkBudgetTracker;
+
+    private final Severity failFastSeverity;
+
+    private final ViolationStreamer violationStreamer;
+
+    private final ScanRevision scanRevision;
+
     private OakMachine(final Packaging packagingService,
                        final List<ProgressCheck> progressChecks,
                        final ErrorListener errorListener,
@@ -124,9 +200,21 @@ public final class OakMachine {
                        final boolean enablePreInstallHooks,
                        final InstallHookPolicy scanInstallHookPolicy,
                        final Supplier<NodeStore> nodeStoreSupplier,
-                       final SubpackageSilencer subpackageSilencer) {
+                       final Function<NodeState, NodeStore> nodeStoreForkFunction,
+                       final SubpackageSilencer subpackageSilencer,
+                       final PrefixCheckpoints prefixCheckpoints,
+                       final boolean directInstall,
+                       final ScanMetrics scanMetrics,
+                       final CheckBudget.Tracker checkBudgetTracker,
+                       final Severity failFastSeverity,
+                       final ViolationStreamer violationStreamer,
+                       final ScanRevision scanRevision) {
         this.packagingService = packagingService != null ? packagingService : newOakpalPackagingService();
         this.progressChecks = progressChecks;
+        this.eventSubscribers = mapEventSubscribers(progressChecks);
+        this.diffSubscribers = eventSubscribers.get(EventMask.Event.IMPORTED_PATH).stream()
+                .filter(OakMachine::isNodeStateDiffCheck)
+                .collect(Collectors.toList());
         this.errorListener = errorListener;
         this.preInstallUrls = preInstallUrls;
         this.initStages = initStages;
@@ -136,7 +224,15 @@ public final class OakMachine {
         this.enablePreInstallHooks = enablePreInstallHooks;
         this.scanInstallHookPolicy = scanInstallHookPolicy;
         this.nodeStoreSupplier = nodeStoreSupplier != null ? nodeStoreSupplier : MemoryNodeStore::new;
+        this.nodeStoreForkFunction = nodeStoreForkFunction != null ? nodeStoreForkFunction : MemoryNodeStore::new;
         this.subpackageSilencer = subpackageSilencer != null ? subpackageSilencer : (packageId, parentId) -> false;
+        this.prefixCheckpoints = prefixCheckpoints;
+        this.directInstall = directInstall;
+        this.scanMetrics = scanMetrics;
+        this.checkBudgetTracker = checkBudgetTracker;
+        this.failFastSeverity = failFastSeverity;
+        this.violationStreamer = violationStreamer;
+        this.scanRevision = scanRevision;
     }
 
     /**
@@ -165,8 +261,22 @@ public final class OakMachine {
 
         private Supplier<NodeStore> nodeStoreSupplier;
 
+        private Function<NodeState, NodeStore> nodeStoreForkFunction;
+
         private SubpackageSilencer subpackageSilencer;
 
+        private PrefixCheckpoints prefixCheckpoints;
+
+        private boolean directInstall;
+
+        private ScanMetrics scanMetrics;
+
+        private CheckBudget checkBudget;
+
+        private Severity failFastSeverity;
+
+        private ViolationSink violationSink;
+
         /**
          * Provide a {@link Packaging} service for use in retrieving a {@link JcrPackageManager} for an admin session.
          * <p>
@@ -386,6 +496,12 @@ public final class OakMachine {
          * Note: OakMachine will call {@link Supplier#get} for every execution of {@link #scanPackage(File...)}.
          * Beyond the call to this supplier function, it is the client's responsibility to manage the external
          * NodeStore's state between scans when using the same {@link OakMachine} instance.
+         * <p>
+         * A NodeStore which implements {@link Closeable}, such as a {@link TempSegmentNodeStore}, is closed at the end
+         * of the scan, unless the NodeStore holds the state of a {@link BaseCheckpoint} returned by
+         * {@link #prepareBase()}, in which case it is closed by {@link BaseCheckpoint#close()}. If the machine uses
+         * {@link PrefixCheckpoints}, the NodeStore is instead closed when the last checkpoint captured from it is
+         * discarded.
          *
          * @param nodeStoreSupplier the NodeStore
          * @return my builder self
@@ -395,6 +511,22 @@ public final class OakMachine {
             return this;
         }
 
+        /**
+         * Specify a function that will produce a writable {@link NodeStore} from the root {@link NodeState} of a
+         * {@link BaseCheckpoint} for each scan started by {@link #scanPackages(BaseCheckpoint, List)}. By default,
+         * {@link MemoryNodeStore#MemoryNodeStore(NodeState)} will be used (e.g. {@code MemoryNodeStore::new}), which
+         * shares the unmodified subtrees of the checkpoint state with every fork. A fork which implements
+         * {@link Closeable} is closed at the end of the scan, or if the machine uses {@link PrefixCheckpoints}, when
+         * the last checkpoint captured from it is discarded.
+         *
+         * @param nodeStoreForkFunction the NodeStore fork function
+         * @return my builder self
+         */
+        public Builder withNodeStoreForkFunction(final Function<NodeState, NodeStore> nodeStoreForkFunction) {
+            this.nodeStoreForkFunction = nodeStoreForkFunction;
+            return this;
+        }
+
         /**
          * Provide a predicate taking the subpackage PackageId as the first argument and the parent  PackageId as the
          * second argument, returning true if events for the subpackage and any of ITS subpackages should be silenced
@@ -410,6 +542,97 @@ public final class OakMachine {
             return this;
         }
 
+        /**
+         * Provide a store of {@link PrefixCheckpoints} to resume scans from the longest previously scanned prefix of
+         * the list of package files, instead of reinstalling every package. The store must only be shared with
+         * machines built with an equivalent configuration.
+         *
+         * @param prefixCheckpoints the prefix checkpoint store, or null to install every package
+         * @return my builder self
+         * @see PrefixCheckpoints
+         */
+        public Builder withPrefixCheckpoints(final @Nullable PrefixCheckpoints prefixCheckpoints) {
+            this.prefixCheckpoints = prefixCheckpoints;
+            return this;
+        }
+
+        /**
+         * Set to true to install scanned package files directly from the local file, instead of first uploading a copy
+         * of each package binary to /etc/packages. The manifest is read from the zip central directory rather than by
+         * streaming the package. Packages which contain subpackages are still uploaded, because subpackage extraction
+         * requires a package node in the repository.
+         * <p>
+         * Check events are not identical in both modes: a directly installed package is never registered in the
+         * repository, so its package node at {@code /etc/packages/<group>/<name>.zip} and the definition node
+         * beneath it do not exist. Checks which read the package node or its definition through the session, or
+         * which expect its paths among the changes made by the package, must not be used with direct install.
+         *
+         * @param directInstall true to install scanned package files directly from the local file
+         * @return my builder self
+         * @since 2.1.0
+         */
+        public Builder withDirectInstall(final boolean directInstall) {
+            this.directInstall = directInstall;
+            return this;
+        }
+
+        /**
+         * Provide a {@link ScanMetrics} to record the invocation counts and elapsed times of each progress check
+         * callback, and of the extract and save phases of each scanned package.
+         *
+         * @param scanMetrics the metrics collector, or null to disable timing
+         * @return my builder self
+         * @since 2.1.0
+         */
+        public Builder withScanMetrics(final @Nullable ScanMetrics scanMetrics) {
+            this.scanMetrics = scanMetrics;
+            return this;
+        }
+
+        /**
+         * Provide a {@link CheckBudget} to limit the time that each progress check may spend in its callbacks during
+         * a scan. A check which exceeds the budget receives no further callbacks for the rest of the scan, and is
+         * reported to {@link ErrorListener#onCheckBudgetExceeded(ProgressCheck, PackageId, ScanMetrics.Callback,
+         * CheckBudget.Limit, long, long)}.
+         *
+         * @param checkBudget the check budget, or null to disable the limits
+         * @return my builder self
+         * @since 2.1.0
+         */
+        public Builder withCheckBudget(final @Nullable CheckBudget checkBudget) {
+            this.checkBudget = checkBudget;
+            return this;
+        }
+
+        /**
+         * Stop the scan early once the error listener or any progress check has reported a violation at or above the
+         * specified severity. The remaining packages and subpackages are skipped, but the scan still finishes
+         * normally, and the partial reports are returned.
+         *
+         * @param failFastSeverity the minimum severity which stops the scan, or null to scan every package
+         * @return my builder self
+         * @since 2.1.0
+         */
+        public Builder withFailFastSeverity(final @Nullable Severity failFastSeverity) {
+            this.failFastSeverity = failFastSeverity;
+            return this;
+        }
+
+        /**
+         * Provide a {@link ViolationSink} to receive each violation as soon as it is reported, instead of in the
+         * reports returned at the end of the scan. Violations sent to the sink are not retained by reporters which
+         * accept a {@link ViolationReporter#setViolationListener(java.util.function.Consumer)}, so they are missing
+         * from the returned reports.
+         *
+         * @param violationSink the violation sink, or null to only return violations in the reports
+         * @return my builder self
+         * @since 2.1.0
+         */
+        public Builder withViolationSink(final @Nullable ViolationSink violationSink) {
+            this.violationSink = violationSink;
+            return this;
+        }
+
         /**
          * Construct a {@link OakMachine} from the {@link Builder} state.
          *
@@ -427,10 +650,60 @@ public final class OakMachine {
                     enablePreInstallHooks,
                     scanInstallHookPolicy,
                     nodeStoreSupplier,
-                    subpackageSilencer);
+                    nodeStoreForkFunction,
+                    subpackageSilencer,
+                    prefixCheckpoints,
+                    directInstall,
+                    scanMetrics,
+                    checkBudget != null && !checkBudget.isUnlimited() ? new CheckBudget.Tracker(checkBudget) : null,
+                    failFastSeverity,
+                    violationSink != null ? new ViolationStreamer(violationSink) : null,
+                    new ScanRevision());
         }
     }
 
+    /**
+     * Create a copy of this machine which reports to a different {@link ErrorListener}.
+     *
+     * @param errorListener the other error listener
+     * @return a copy of this machine
+     */
+    private OakMachine withErrorListener(final @NotNull ErrorListener errorListener) {
+        return withListeners(progressChecks, errorListener);
+    }
+
+    /**
+     * Create a copy of this machine which dispatches to different {@link ProgressCheck}s and reports to a different
+     * {@link ErrorListener}.
+     *
+     * @param progressChecks the other progress checks
+     * @param errorListener  the other error listener
+     * @return a copy of this machine
+     */
+    private OakMachine withListeners(final @NotNull List<ProgressCheck> progressChecks,
+                                     final @NotNull ErrorListener errorListener) {
+        return new OakMachine(packagingService,
+                progressChecks,
+                errorListener,
+                preInstallUrls,
+                initStages,
+                jcrCustomizer,
+                installHookProcessorFactory,
+                installHookClassLoader,
+                enablePreInstallHooks,
+                scanInstallHookPolicy,
+                nodeStoreSupplier,
+                nodeStoreForkFunction,
+                subpackageSilencer,
+                prefixCheckpoints,
+                directInstall,
+                scanMetrics,
+                checkBudgetTracker,
+                failFastSeverity,
+                violationStreamer,
+                scanRevision);
+    }
+
     public List<ProgressCheck> getProgressChecks() {
         return progressChecks;
     }
@@ -439,6 +712,187 @@ public final class OakMachine {
         return errorListener;
     }
 
+    /**
+     * Get the metrics collector provided by {@link Builder#withScanMetrics(ScanMetrics)}, if any.
+     *
+     * @return the scan metrics, or null
+     * @since 2.1.0
+     */
+    public @Nullable ScanMetrics getScanMetrics() {
+        return scanMetrics;
+    }
+
+    /**
+     * Get the check budget provided by {@link Builder#withCheckBudget(CheckBudget)}, if any.
+     *
+     * @return the check budget, or null
+     * @since 2.1.0
+     */
+    public @Nullable CheckBudget getCheckBudget() {
+        return checkBudgetTracker != null ? checkBudgetTracker.getBudget() : null;
+    }
+
+    /**
+     * Whether any check was quarantined for exceeding the check budget during the last scan. The reports of such a
+     * scan depend on timing, so they should not be cached or compared with the reports of other scans.
+     *
+     * @return true if any check was quarantined during the last scan
+     * @since 2.1.0
+     */
+    public boolean hasQuarantinedChecks() {
+        return checkBudgetTracker != null && checkBudgetTracker.hasQuarantined();
+    }
+
+    /**
+     * Get the fail-fast severity provided by {@link Builder#withFailFastSeverity(Severity)}, if any.
+     *
+     * @return the minimum severity which stops the scan, or null
+     * @since 2.1.0
+     */
+    public @Nullable Severity getFailFastSeverity() {
+        return failFastSeverity;
+    }
+
+    /**
+     * Returns true if a fail-fast severity has been provided, and the error listener or any progress check has
+     * reported a violation at or above it.
+     *
+     * @return true if the remaining packages should be skipped
+     */
+    boolean isFailFastTriggered() {
+        if (failFastSeverity == null) {
+            return false;
+        }
+        final Predicate<Severity> meetsSeverity = failFastSeverity.meetsMinimumSeverity();
+        if (violationStreamer != null && violationStreamer.hasSent(meetsSeverity)) {
+            return true;
+        }
+        return violationReporters()
+                .anyMatch(reporter -> reporter.getReportedViolations().stream()
+                        .map(Violation::getSeverity)
+                        .anyMatch(meetsSeverity));
+    }
+
+    /**
+     * Get the violation sink provided by {@link Builder#withViolationSink(ViolationSink)}, if any.
+     *
+     * @return the violation sink, or null
+     * @since 2.1.0
+     */
+    public @Nullable ViolationSink getViolationSink() {
+        return violationStreamer != null ? violationStreamer.sink : null;
+    }
+
+    /**
+     * Stream the error listener followed by the progress checks, which is also the order of the reports returned by
+     * a scan.
+     *
+     * @return the violation reporters
+     */
+    private Stream<ViolationReporter> violationReporters() {
+        return Stream.concat(Stream.of(getErrorListener()), progressChecks.stream());
+    }
+
+    /**
+     * Holds the node store of the running scan, so that {@link NodeStateCheck}s can be given the root state of the
+     * revision saved after each package. Copies created by {@link #withListeners(List, ErrorListener)} share the
+     * same holder.
+     */
+    static final class ScanRevision {
+        private NodeStore nodeStore;
+
+        /**
+         * Set the node store at the start of a scan, or clear it at the end.
+         *
+         * @param nodeStore the node store of the scan repository, or null
+         */
+        void reset(final @Nullable NodeStore nodeStore) {
+            this.nodeStore = nodeStore;
+        }
+
+        /**
+         * Get the root node state of the latest saved revision.
+         *
+         * @return the current root node state
+         * @throws IllegalStateException if no scan is running
+         */
+        @NotNull NodeState getRoot() {
+            if (nodeStore == null) {
+                throw new IllegalStateException("no scan is running");
+            }
+            return nodeStore.getRoot();
+        }
+    }
+
+    /**
+     * Sends each violation to the {@link ViolationSink} as soon as it is reported, through the violation listener of
+     * each reporter. Violations of reporters which do not accept a listener are sent once, at the end of the scan.
+     * Because listened violations are not retained by their reporters, the highest severity sent is kept for
+     * {@link #isFailFastTriggered()}.
+     */
+    static final class ViolationStreamer {
+        private final ViolationSink sink;
+        private final List<ViolationReporter> listened = new ArrayList<>();
+        private final List<Map.Entry<ViolationReporter, String>> unlistened = new ArrayList<>();
+        private Severity highestSeverity;
+
+        ViolationStreamer(final @NotNull ViolationSink sink) {
+            this.sink = sink;
+        }
+
+        /**
+         * Set a listener on each reporter at the start of a scan, which sends its violations with its check name.
+         *
+         * @param reporters  the violation reporters
+         * @param checkNames the check name of each reporter
+         */
+        void start(final @NotNull List<? extends ViolationReporter> reporters, final @NotNull List<String> checkNames) {
+            highestSeverity = null;
+            for (int i = 0; i < reporters.size(); i++) {
+                final ViolationReporter reporter = reporters.get(i);
+                final String checkName = checkNames.get(i);
+                if (reporter.setViolationListener(violation -> send(checkName, violation))) {
+                    listened.add(reporter);
+                } else {
+                    unlistened.add(new AbstractMap.SimpleImmutableEntry<>(reporter, checkName));
+                }
+            }
+        }
+
+        /**
+         * Send the violations of reporters which did not accept a listener, and remove the listeners, at the end of a
+         * scan.
+         */
+        void finish() {
+            unlistened.forEach(entry -> entry.getKey().getReportedViolations()
+                    .forEach(violation -> send(entry.getValue(), violation)));
+            unlistened.clear();
+            listened.forEach(reporter -> reporter.setViolationListener(null));
+            listened.clear();
+        }
+
+        /**
+         * Returns true if any violation sent during the current scan meets the severity predicate.
+         *
+         * @param meetsSeverity the severity predicate
+         * @return true if the highest severity sent meets the predicate
+         */
+        boolean hasSent(final @NotNull Predicate<Severity> meetsSeverity) {
+            return highestSeverity != null && meetsSeverity.test(highestSeverity);
+        }
+
+        void send(final @NotNull String checkName, final @NotNull Violation violation) {
+            highestSeverity = highestSeverity == null
+                    ? violation.getSeverity()
+                    : highestSeverity.maxSeverity(violation.getSeverity());
+            try {
+                sink.reportedViolation(checkName, violation);
+            } catch (final IOException | RuntimeException e) {
+                LOGGER.warn("[ViolationStreamer#send] failed to send violation to sink", e);
+            }
+        }
+    }
+
     /**
      * Return the urls filtered and mapped back to files.
      *
@@ -509,28 +963,90 @@ public final class OakMachine {
             throws AbortedScanException, RepositoryException, E {
         Session admin = null;
         Repository scanRepo = null;
+        NodeStore scanStore = null;
         try {
-            scanRepo = initRepository();
+            scanStore = nodeStoreSupplier.get();
+            scanRepo = initRepository(scanStore, true);
             admin = loginAdmin(scanRepo);
-            addOakpalTypes(admin);
+            initAdminSession(admin);
 
-            final JcrPackageManager manager = packagingService.getPackageManager(admin);
-
-            for (InitStage initStage : this.initStages) {
-                initStage.initSession(admin, getErrorListener());
+            inspectBody.tryAccept(admin);
+        } finally {
+            if (admin != null) {
+                admin.logout();
             }
 
-            for (final URL url : preInstallUrls) {
-                processPackageUrl(admin, manager, true, url);
-            }
+            shutdownRepository(scanRepo);
 
-            inspectBody.tryAccept(admin);
+            closeNodeStore(scanStore);
+        }
+    }
+
+    /**
+     * Prepare a {@link BaseCheckpoint} by performing the oakpal nodetype registration, each registered
+     * {@link InitStage}, and the installation of each of the {@link #preInstallUrls} once, capturing the resulting
+     * root {@link NodeState} of the {@link NodeStore} provided by the node store supplier. Use
+     * {@link #scanPackages(BaseCheckpoint, List)} to start subsequent scans from a fork of the checkpoint state.
+     * <p>
+     * Errors raised during preparation are not reported to the {@link ErrorListener} immediately, but are instead
+     * replayed at the start of each scan that uses the checkpoint.
+     * <p>
+     * If the supplied node store implements {@link Closeable}, the returned checkpoint owns it, and
+     * {@link BaseCheckpoint#close()} must be called to release it when the checkpoint is no longer needed.
+     *
+     * @return a reusable checkpoint of the prepared repository state
+     * @throws AbortedScanException for preinstall errors and repository errors
+     */
+    public BaseCheckpoint prepareBase() throws AbortedScanException {
+        final NodeStore nodeStore = Optional.ofNullable(nodeStoreSupplier.get()).orElseGet(MemoryNodeStore::new);
+        try {
+            return prepareBase(computeBaseKey(), nodeStore,
+                    nodeStore instanceof Closeable ? (Closeable) nodeStore : null);
+        } catch (final AbortedScanException | RuntimeException e) {
+            closeNodeStore(nodeStore);
+            throw e;
+        }
+    }
+
+    /**
+     * Prepare a {@link BaseCheckpoint} as described by {@link #prepareBase()}, but using the provided
+     * {@link NodeStore} instead of one provided by the node store supplier. This is useful for preparing a
+     * checkpoint in a persistent node store, such as a segment tar store managed by {@link BaseCheckpointCache}. The
+     * caller remains responsible for closing the provided node store.
+     *
+     * @param nodeStore the node store to prepare
+     * @return a reusable checkpoint of the prepared repository state
+     * @throws AbortedScanException for preinstall errors and repository errors
+     */
+    public BaseCheckpoint prepareBase(final @NotNull NodeStore nodeStore) throws AbortedScanException {
+        return prepareBase(null, nodeStore, null);
+    }
+
+    private BaseCheckpoint prepareBase(final @Nullable String key,
+                                       final @NotNull NodeStore nodeStore,
+                                       final @Nullable Closeable ownedStore)
+            throws AbortedScanException {
+        final BaseCheckpoint.ErrorRecorder recorder = new BaseCheckpoint.ErrorRecorder();
+        final OakMachine preparer = withErrorListener(recorder);
+
+        Session admin = null;
+        Repository baseRepo = null;
+        try {
+            baseRepo = preparer.initRepository(nodeStore, true);
+            admin = preparer.loginAdmin(baseRepo);
+            preparer.initAdminSession(admin);
+            admin.save();
+
+            final Map<String, String> sessionNamespaces = BaseCheckpoint.captureSessionNamespaces(admin);
+            return new BaseCheckpoint(key, nodeStore.getRoot(), sessionNamespaces, recorder.getEvents(), ownedStore);
+        } catch (RepositoryException e) {
+            throw new AbortedScanException(e);
         } finally {
             if (admin != null) {
                 admin.logout();
             }
 
-            shutdownRepository(scanRepo);
+            shutdownRepository(baseRepo);
         }
     }
 
@@ -550,7 +1066,7 @@ public final class OakMachine {
      * Execute a scan by installing each of the provided package files in sequence. The scan proceeds in the following
      * order:
      * <ol>
-     * <li>{@link #initRepository()} creates an fresh Oak repository.</li>
+     * <li>{@link #initRepository(NodeStore, boolean)} creates an fresh Oak repository.</li>
      * <li>{@link #loginAdmin(Repository)} opens an admin user JCR session.</li>
      * <li>{@link InitStage#initSession(Session, ErrorListener)} is called for each registered {@link InitStage}</li>
      * <li>{@link #processPackageFile(Session, JcrPackageManager, boolean, File)} is performed for each of the
@@ -568,39 +1084,108 @@ public final class OakMachine {
      * @throws AbortedScanException for any errors that terminate the scan.
      */
     public List<CheckReport> scanPackages(final List<File> files) throws AbortedScanException {
+        return scanPackages(null, files);
+    }
+
+    /**
+     * Execute a scan by installing each of the provided package files in sequence, starting from a fork of the
+     * repository state captured by {@link #prepareBase()}, which takes the place of the nodetype registration,
+     * {@link InitStage}, and pre-install steps described by {@link #scanPackages(List)}. Errors recorded during
+     * preparation of the checkpoint are replayed to the {@link ErrorListener} immediately after
+     * {@link ErrorListener#startedScan()}.
+     * <p>
+     * If the machine was built with {@link Builder#withPrefixCheckpoints(PrefixCheckpoints)}, the scan resumes from
+     * the checkpoint of the longest previously installed prefix of {@code files}, if one exists, and stores a new
+     * checkpoint after each remaining package.
+     *
+     * @param base  a checkpoint returned by {@link #prepareBase()}, or null to perform a cold scan
+     * @param files a list of FileVault content package files to be installed in sequence.
+     * @return a list of any CheckReports reported during the scan.
+     * @throws AbortedScanException for any errors that terminate the scan.
+     */
+    public List<CheckReport> scanPackages(final @Nullable BaseCheckpoint base, final List<File> files)
+            throws AbortedScanException {
         getErrorListener().startedScan();
+        if (checkBudgetTracker != null) {
+            checkBudgetTracker.reset();
+        }
+        if (violationStreamer != null) {
+            final List<String> checkNames = new ArrayList<>();
+            checkNames.add(getErrorListener().getClass().getSimpleName());
+            progressChecks.stream()
+                    .map(check -> Optional.ofNullable(check.getCheckName()).orElse(check.getClass().getSimpleName()))
+                    .forEachOrdered(checkNames::add);
+            violationStreamer.start(violationReporters().collect(Collectors.toList()), checkNames);
+        }
 
         Session admin = null;
         Repository scanRepo = null;
+        NodeStore scanStore = null;
+        final List<Closeable> checkpointStores = new ArrayList<>();
         try {
-            scanRepo = initRepository();
-
-            admin = loginAdmin(scanRepo);
-
-            addOakpalTypes(admin);
-
-            final JcrPackageManager manager = packagingService.getPackageManager(admin);
+            if (prefixCheckpoints != null) {
+                final List<File> scanFiles = files != null ? files : Collections.emptyList();
+                final List<String> keys = computePrefixKeys(computeInitialPrefixKey(base), scanFiles);
+                final PrefixCheckpoints.Checkpoint resumed = prefixCheckpoints.acquireLongest(keys);
+                if (resumed != null) {
+                    checkpointStores.addAll(resumed.getStores());
+                }
 
-            for (final InitStage initStage : this.initStages) {
-                initStage.initSession(admin, getErrorListener());
-            }
+                final NodeStore nodeStore;
+                if (resumed != null) {
+                    nodeStore = nodeStoreForkFunction.apply(resumed.getChain().get(0).getState().getRoot());
+                    scanRepo = initRepository(nodeStore, false);
+                } else if (base != null) {
+                    nodeStore = nodeStoreForkFunction.apply(base.getRoot());
+                    scanRepo = initRepository(nodeStore, false);
+                } else {
+                    nodeStore = Optional.ofNullable(nodeStoreSupplier.get()).orElseGet(MemoryNodeStore::new);
+                    scanRepo = initRepository(nodeStore, true);
+                }
+                if (nodeStore instanceof Closeable) {
+                    final List<Closeable> scanStores = Collections.singletonList((Closeable) nodeStore);
+                    prefixCheckpoints.retain(scanStores);
+                    checkpointStores.addAll(scanStores);
+                }
+                scanRevision.reset(nodeStore);
+                admin = loginAdmin(scanRepo);
+                scanWithCheckpoints(nodeStore, admin, base, resumed, keys, scanFiles);
+            } else {
+                if (base != null) {
+                    scanStore = nodeStoreForkFunction.apply(base.getRoot());
+                    scanRevision.reset(scanStore);
+                    scanRepo = initRepository(scanStore, false);
+                    admin = loginAdmin(scanRepo);
+                    base.restoreSession(admin);
+                    base.replayErrors(getErrorListener());
+                } else {
+                    scanStore = Optional.ofNullable(nodeStoreSupplier.get()).orElseGet(MemoryNodeStore::new);
+                    scanRevision.reset(scanStore);
+                    scanRepo = initRepository(scanStore, true);
+                    admin = loginAdmin(scanRepo);
+                    initAdminSession(admin);
+                }
 
-            for (final URL url : preInstallUrls) {
-                processPackageUrl(admin, manager, true, url);
-            }
+                final JcrPackageManager manager = packagingService.getPackageManager(admin);
 
-            progressChecks.forEach(ProgressCheck::startedScan);
+                dispatchStartedScan();
 
-            if (files != null) {
-                for (final File file : files) {
-                    processPackageFile(admin, manager, false, file);
+                if (files != null) {
+                    for (final File file : files) {
+                        if (isFailFastTriggered()) {
+                            LOGGER.info("[scanPackages] fail-fast: skipping {} after a violation at or above {}",
+                                    file, failFastSeverity);
+                            break;
+                        }
+                        processPackageFile(admin, manager, false, file);
+                    }
                 }
             }
 
         } catch (RepositoryException e) {
             throw new AbortedScanException(e);
         } finally {
-            progressChecks.forEach(ProgressCheck::finishedScan);
+            dispatchFinishedScan();
 
             if (admin != null) {
                 admin.logout();
@@ -608,7 +1193,19 @@ public final class OakMachine {
 
             shutdownRepository(scanRepo);
 
+            closeNodeStore(scanStore);
+
+            if (prefixCheckpoints != null) {
+                prefixCheckpoints.release(checkpointStores);
+            }
+
+            scanRevision.reset(null);
+
             getErrorListener().finishedScan();
+
+            if (violationStreamer != null) {
+                violationStreamer.finish();
+            }
         }
 
         List<CheckReport> reports = new ArrayList<>();
@@ -623,21 +1220,296 @@ public final class OakMachine {
         return Collections.unmodifiableList(reports);
     }
 
-    private void addOakpalTypes(final Session admin) throws RepositoryException {
-        this.installVltNodetypes(admin);
-        admin.getWorkspace().getNamespaceRegistry().registerNamespace(NS_PREFIX_OAKPAL, NS_URI_OAKPAL);
-        admin.setNamespacePrefix(NS_PREFIX_OAKPAL, NS_URI_OAKPAL);
-        TemplateBuilderFactory builderFactory = new TemplateBuilderFactory(admin);
-        builderFactory.setNamespace(NS_PREFIX_OAKPAL, NS_URI_OAKPAL);
+    /**
+     * Close the node store of a scan if it implements {@link Closeable}, such as a {@link TempSegmentNodeStore}.
+     *
+     * @param nodeStore the node store of the scan, or null
+     */
+    static void closeNodeStore(final @Nullable NodeStore nodeStore) {
+        if (nodeStore instanceof Closeable) {
+            closeNodeStore((Closeable) nodeStore);
+        }
+    }
 
-        DefinitionBuilderFactory.AbstractNodeTypeDefinitionBuilder<NodeTypeTemplate> builder =
-                builderFactory.newNodeTypeDefinitionBuilder();
+    /**
+     * Close a closeable node store, logging any errors.
+     *
+     * @param nodeStore the closeable node store
+     */
+    static void closeNodeStore(final @NotNull Closeable nodeStore) {
+        try {
+            nodeStore.close();
+        } catch (final IOException | RuntimeException e) {
+            LOGGER.warn("[closeNodeStore] failed to close node store", e);
+        }
+    }
 
-        builder.setName(NT_UNDECLARED);
-        builder.addSupertype(NodeTypeConstants.NT_FOLDER);
+    /**
+     * Compute a key for the repository state prepared by the oakpal nodetype registration, the {@link InitStage}s,
+     * and the pre-install packages of this machine. Functional configuration, such as the {@link JcrCustomizer} and
+     * the {@link InstallHookProcessorFactory}, is identified by its class.
+     *
+     * @return a hex-encoded key
+     * @throws AbortedScanException for errors reading a pre-install package or a CND url
+     */
+    String computeBaseKey() throws AbortedScanException {
+        final MessageDigest digest = BaseCheckpointCache.newDigest();
+        BaseCheckpointCache.updateDigest(digest, Integer.toString(initStages.size()));
+        for (InitStage initStage : initStages) {
+            try {
+                initStage.updateDigest(digest);
+            } catch (final IOException e) {
+                throw new AbortedScanException(e);
+            }
+        }
+        BaseCheckpointCache.updateDigest(digest, Integer.toString(preInstallUrls.size()));
+        for (URL preInstallUrl : preInstallUrls) {
+            try {
+                BaseCheckpointCache.updateDigest(digest, preInstallUrl);
+            } catch (final IOException e) {
+                throw new AbortedScanException(e, preInstallUrl);
+            }
+        }
+        BaseCheckpointCache.updateDigest(digest, Boolean.toString(enablePreInstallHooks));
+        BaseCheckpointCache.updateDigest(digest, className(jcrCustomizer));
+        BaseCheckpointCache.updateDigest(digest, className(installHookProcessorFactory));
+        return BaseCheckpointCache.toHex(digest.digest());
+    }
 
-        DefinitionBuilderFactory.AbstractPropertyDefinitionBuilder<NodeTypeTemplate> multiDef =
-                builder.newPropertyDefinitionBuilder();
+    /**
+     * Compute the {@link PrefixCheckpoints} key of the empty prefix from the key of the base checkpoint, or from
+     * {@link #computeBaseKey()} for a cold scan, along with the configuration which affects the installation of scan
+     * packages or the delivery of events, such as the fail-fast severity and the check budget, and the class, name,
+     * and effective {@link EventMask} of each check, so that a scan never resumes from a checkpoint stored by a
+     * machine with a different base or configuration, or replays events that were filtered for a different check.
+     *
+     * @param base the base checkpoint, or null
+     * @return a hex-encoded key
+     * @throws AbortedScanException for errors reading a pre-install package or a CND url
+     */
+    String computeInitialPrefixKey(final @Nullable BaseCheckpoint base) throws AbortedScanException {
+        final MessageDigest digest = BaseCheckpointCache.newDigest();
+        BaseCheckpointCache.updateDigest(digest, base != null ? base.getKey() : computeBaseKey());
+        BaseCheckpointCache.updateDigest(digest, String.valueOf(scanInstallHookPolicy));
+        BaseCheckpointCache.updateDigest(digest, Boolean.toString(directInstall));
+        BaseCheckpointCache.updateDigest(digest, className(installHookProcessorFactory));
+        BaseCheckpointCache.updateDigest(digest, className(subpackageSilencer));
+        BaseCheckpointCache.updateDigest(digest, String.valueOf(failFastSeverity));
+        final CheckBudget checkBudget = getCheckBudget();
+        BaseCheckpointCache.updateDigest(digest, checkBudget != null
+                ? checkBudget.getCallbackMillis() + "/" + checkBudget.getTotalMillis()
+                : null);
+        BaseCheckpointCache.updateDigest(digest, Integer.toString(progressChecks.size()));
+        for (ProgressCheck check : progressChecks) {
+            BaseCheckpointCache.updateDigest(digest, className(check));
+            BaseCheckpointCache.updateDigest(digest, check.getCheckName());
+            BaseCheckpointCache.updateDigest(digest, eventMaskOf(check).toString());
+        }
+        return BaseCheckpointCache.toHex(digest.digest());
+    }
+
+    private static String className(final @Nullable Object value) {
+        return value != null ? value.getClass().getName() : null;
+    }
+
+    /**
+     * Compute the {@link PrefixCheckpoints} key of each prefix of the list of package files, starting with the key of
+     * the empty prefix.
+     *
+     * @param initialKey the key of the empty prefix, computed by {@link #computeInitialPrefixKey(BaseCheckpoint)}
+     * @param files      the package files to install in sequence
+     * @return a list of keys, one longer than the list of files
+     * @throws AbortedScanException for errors reading a package file
+     */
+    static List<String> computePrefixKeys(final @NotNull String initialKey, final @NotNull List<File> files)
+            throws AbortedScanException {
+        final List<String> keys = new ArrayList<>(files.size() + 1);
+        keys.add(initialKey);
+        for (final File file : files) {
+            try {
+                keys.add(PrefixCheckpoints.nextKey(keys.get(keys.size() - 1), file));
+            } catch (final IOException e) {
+                throw new AbortedScanException(e, file);
+            }
+        }
+        return keys;
+    }
+
+    /**
+     * Perform a scan using the {@link PrefixCheckpoints} store. When resuming from a stored checkpoint, the recorded
+     * events of each package in the matching prefix are replayed while the node store is advanced through the
+     * checkpoint states captured after each of them. The remaining packages are installed while recording their
+     * events, and a new checkpoint is stored after each one.
+     *
+     * @param nodeStore the node store of the scan repository, forked from the initial checkpoint when resuming
+     * @param admin     the admin session
+     * @param base      the base checkpoint, or null
+     * @param resumed   the checkpoint of the longest matching prefix, or null to start from scratch
+     * @param keys      the prefix keys computed by {@link #computePrefixKeys(String, List)}
+     * @param files     the package files to install in sequence
+     * @throws AbortedScanException for preinstall errors, package errors, and replay errors
+     * @throws RepositoryException  for repository errors
+     */
+    private void scanWithCheckpoints(final @NotNull NodeStore nodeStore,
+                                     final @NotNull Session admin,
+                                     final @Nullable BaseCheckpoint base,
+                                     final @Nullable PrefixCheckpoints.Checkpoint resumed,
+                                     final @NotNull List<String> keys,
+                                     final @NotNull List<File> files)
+            throws AbortedScanException, RepositoryException {
+        final PrefixCheckpoints.EventRecorder recorder = new PrefixCheckpoints.EventRecorder();
+        final OakMachine recording = withListeners(recorder.wrapChecks(progressChecks),
+                recorder.wrapErrorListener(getErrorListener()));
+
+        PrefixCheckpoints.Checkpoint previous;
+        if (resumed != null) {
+            final List<PrefixCheckpoints.Checkpoint> chain = resumed.getChain();
+            resumed.getState().restoreSession(admin);
+            final PrefixCheckpoints.Replay replay = new PrefixCheckpoints.Replay(progressChecks, getErrorListener(),
+                    Util.wrapSessionReadOnly(admin), admin, scanRevision::getRoot);
+            try {
+                replay.replayPackage(chain.get(0), () -> {
+                });
+                dispatchStartedScan();
+                for (final PrefixCheckpoints.Checkpoint checkpoint : chain.subList(1, chain.size())) {
+                    if (isFailFastTriggered()) {
+                        LOGGER.info("[scanWithCheckpoints] fail-fast: skipping replay after a violation at or above {}",
+                                failFastSeverity);
+                        return;
+                    }
+                    replay.replayPackage(checkpoint, () ->
+                            advanceNodeStore(nodeStore, admin, checkpoint.getState().getRoot()));
+                }
+            } catch (final Exception e) {
+                throw new AbortedScanException(e);
+            }
+            previous = resumed;
+        } else {
+            if (base != null) {
+                base.restoreSession(admin);
+                base.replayErrors(recording.getErrorListener());
+            } else {
+                recording.initAdminSession(admin);
+            }
+            admin.save();
+            previous = storeCheckpoint(keys.get(0), null, nodeStore, admin, recorder.drain());
+            dispatchStartedScan();
+        }
+
+        final JcrPackageManager manager = packagingService.getPackageManager(admin);
+        boolean storeCheckpoints = true;
+        for (int i = previous.getChain().size() - 1; i < files.size(); i++) {
+            if (isFailFastTriggered()) {
+                LOGGER.info("[scanWithCheckpoints] fail-fast: skipping {} after a violation at or above {}",
+                        files.get(i), failFastSeverity);
+                break;
+            }
+            recording.processPackageFile(admin, manager, false, files.get(i));
+            final List<PrefixCheckpoints.RecordedEvent> events = recorder.drain();
+            // fail-fast may have skipped the remaining subpackages, so the state is not that of the complete prefix
+            if (storeCheckpoints && isFailFastTriggered()) {
+                LOGGER.info("[scanWithCheckpoints] not storing checkpoints from {}, because fail-fast was triggered",
+                        files.get(i));
+                storeCheckpoints = false;
+            }
+            // events are no longer recorded for a quarantined check, so no later prefix can be replayed faithfully
+            if (storeCheckpoints && hasQuarantinedChecks()) {
+                LOGGER.info("[scanWithCheckpoints] not storing checkpoints from {}, because a check was quarantined",
+                        files.get(i));
+                storeCheckpoints = false;
+            }
+            if (storeCheckpoints) {
+                previous = storeCheckpoint(keys.get(i + 1), previous, nodeStore, admin, events);
+            }
+        }
+    }
+
+    private PrefixCheckpoints.Checkpoint storeCheckpoint(final @NotNull String key,
+                                                         final @Nullable PrefixCheckpoints.Checkpoint previous,
+                                                         final @NotNull NodeStore nodeStore,
+                                                         final @NotNull Session admin,
+                                                         final @NotNull List<PrefixCheckpoints.RecordedEvent> events)
+            throws RepositoryException {
+        final PrefixCheckpoints.Checkpoint checkpoint = new PrefixCheckpoints.Checkpoint(key, previous,
+                new BaseCheckpoint(nodeStore.getRoot(), BaseCheckpoint.captureSessionNamespaces(admin),
+                        Collections.emptyList()), events, nodeStore);
+        prefixCheckpoints.put(checkpoint);
+        return checkpoint;
+    }
+
+    /**
+     * Apply the differences between the current root state of the node store and the target state, and refresh the
+     * admin session to observe the new state.
+     *
+     * @param nodeStore the node store
+     * @param admin     the admin session
+     * @param target    the target root state
+     * @throws CommitFailedException for errors merging the changes
+     * @throws RepositoryException   for errors refreshing the session
+     */
+    static void advanceNodeStore(final @NotNull NodeStore nodeStore,
+                                 final @NotNull Session admin,
+                                 final @NotNull NodeState target)
+            throws CommitFailedException, RepositoryException {
+        mergeRoot(nodeStore, target);
+        admin.refresh(false);
+    }
+
+    /**
+     * Merge the differences between the current root state of the node store and the target state, without commit
+     * hooks, so that the root state of the node store becomes equal to the target state.
+     *
+     * @param nodeStore the node store
+     * @param target    the target root state
+     * @throws CommitFailedException for errors merging the changes
+     */
+    static void mergeRoot(final @NotNull NodeStore nodeStore, final @NotNull NodeState target)
+            throws CommitFailedException {
+        final NodeState current = nodeStore.getRoot();
+        final NodeBuilder builder = current.builder();
+        target.compareAgainstBaseState(current, new ApplyDiff(builder));
+        nodeStore.merge(builder, EmptyHook.INSTANCE, CommitInfo.EMPTY);
+    }
+
+    /**
+     * Perform the common initialization of a new admin session prior to any scan, including the registration of
+     * oakpal nodetypes, each {@link InitStage}, and the installation of each pre-install package.
+     *
+     * @param admin the admin session
+     * @throws AbortedScanException for preinstall errors
+     * @throws RepositoryException  for repository errors
+     */
+    private void initAdminSession(final Session admin) throws AbortedScanException, RepositoryException {
+        addOakpalTypes(admin);
+
+        final JcrPackageManager manager = packagingService.getPackageManager(admin);
+
+        for (int i = 0; i < this.initStages.size(); i++) {
+            try (FlightRecording.Span span = FlightRecording.initStage(i)) {
+                this.initStages.get(i).initSession(admin, getErrorListener());
+            }
+        }
+
+        for (final URL url : preInstallUrls) {
+            processPackageUrl(admin, manager, true, url);
+        }
+    }
+
+    private void addOakpalTypes(final Session admin) throws RepositoryException {
+        this.installVltNodetypes(admin);
+        admin.getWorkspace().getNamespaceRegistry().registerNamespace(NS_PREFIX_OAKPAL, NS_URI_OAKPAL);
+        admin.setNamespacePrefix(NS_PREFIX_OAKPAL, NS_URI_OAKPAL);
+        TemplateBuilderFactory builderFactory = new TemplateBuilderFactory(admin);
+        builderFactory.setNamespace(NS_PREFIX_OAKPAL, NS_URI_OAKPAL);
+
+        DefinitionBuilderFactory.AbstractNodeTypeDefinitionBuilder<NodeTypeTemplate> builder =
+                builderFactory.newNodeTypeDefinitionBuilder();
+
+        builder.setName(NT_UNDECLARED);
+        builder.addSupertype(NodeTypeConstants.NT_FOLDER);
+
+        DefinitionBuilderFactory.AbstractPropertyDefinitionBuilder<NodeTypeTemplate> multiDef =
+                builder.newPropertyDefinitionBuilder();
 
         multiDef.setRequiredType(PropertyType.UNDEFINED);
         multiDef.setMultiple(true);
@@ -669,25 +1541,119 @@ public final class OakMachine {
             throws IOException, PackageException, RepositoryException {
 
         final PackageId packageId = jcrPackage.getPackage().getId();
+        final NodeState beforeRoot = !preInstall && !diffSubscribers.isEmpty() ? scanRevision.getRoot() : null;
 
-        if (!preInstall) {
+        if (!preInstall && !subscribersOf(EventMask.Event.READ_MANIFEST).isEmpty()) {
             Optional.ofNullable(jcrPackage.getData()).map(uncheck1(Property::getBinary)).ifPresent(
                     uncheckVoid1(binary -> {
                         try (InputStream input = binary.getStream();
                              JarInputStream jarInput = new JarInputStream(input)) {
-                            final Manifest manifest = jarInput.getManifest();
-                            if (manifest != null) {
-                                progressChecks.forEach(handler ->
-                                        handler.readManifest(packageId, new Manifest(manifest)));
-                            }
+                            dispatchReadManifest(packageId, jarInput.getManifest());
                         }
                     }));
         }
 
         final Session inspectSession = Util.wrapSessionReadOnly(admin);
-        final ProgressTrackerListener tracker =
-                new ImporterListenerAdapter(packageId, progressChecks, inspectSession, preInstall);
+        final ImporterListenerAdapter tracker =
+                new ImporterListenerAdapter(packageId, progressChecks, inspectSession, admin, preInstall);
+        final InternalImportOptions options = newImportOptions(packageId, tracker, preInstall);
+
+        List<PackageId> subpacks = Arrays.asList(jcrPackage.extractSubpackages(options));
+
+        final VaultPackage vaultPackage = jcrPackage.getPackage();
+        if (!vaultPackage.isValid()) {
+            throw new PackageException("Package is not valid: " + packageId);
+        }
+
+        if (!preInstall) {
+            dispatchBeforeExtract(packageId, inspectSession, admin, vaultPackage, subpacks);
+        }
+
+        try (FlightRecording.Span span = FlightRecording.packageExtract(packageId, preInstall)) {
+            final long extractStart = startTimer();
+            jcrPackage.extract(options);
+            tracker.flushImportedPaths();
+            stopImporterTimer(packageId, ScanMetrics.ImporterPhase.EXTRACT, preInstall, extractStart);
+        }
+        try (FlightRecording.Span span = FlightRecording.packageSave(packageId, preInstall)) {
+            final long saveStart = startTimer();
+            admin.save();
+            stopImporterTimer(packageId, ScanMetrics.ImporterPhase.SAVE, preInstall, saveStart);
+        }
+
+        jcrPackage.close();
+
+        if (!preInstall) {
+            tracker.dispatchImportedPathStates();
+            dispatchChanges(packageId, beforeRoot);
+            dispatchAfterExtract(packageId, inspectSession, admin);
+        }
+
+        for (PackageId subpackId : subpacks) {
+            if (!preInstall && isFailFastTriggered()) {
+                LOGGER.info("[processPackage] fail-fast: skipping subpackage {} after a violation at or above {}",
+                        subpackId, failFastSeverity);
+                break;
+            }
+            processSubpackage(admin, manager, subpackId, packageId,
+                    preInstall || subpackageSilencer.test(subpackId, packageId));
+        }
+    }
+
+    /**
+     * Extract a package opened directly from a local file, without a package node in the repository. The caller must
+     * first verify that the package contains no subpackages, using {@link #hasSubpackageEntries(Archive)}.
+     *
+     * @param admin        the admin session
+     * @param vaultPackage the package opened from a local file
+     * @param preInstall   true if the package is a preinstall package
+     * @throws IOException         for errors reading the package
+     * @throws PackageException    for invalid packages or extraction errors
+     * @throws RepositoryException for repository errors
+     */
+    private void processVaultPackage(final Session admin, final VaultPackage vaultPackage, final boolean preInstall)
+            throws IOException, PackageException, RepositoryException {
+        final PackageId packageId = vaultPackage.getId();
+        final NodeState beforeRoot = !preInstall && !diffSubscribers.isEmpty() ? scanRevision.getRoot() : null;
+
+        if (!preInstall && !subscribersOf(EventMask.Event.READ_MANIFEST).isEmpty()) {
+            dispatchReadManifest(packageId, readManifest(vaultPackage.getArchive()));
+        }
+
+        final Session inspectSession = Util.wrapSessionReadOnly(admin);
+        final ImporterListenerAdapter tracker =
+                new ImporterListenerAdapter(packageId, progressChecks, inspectSession, admin, preInstall);
+        final InternalImportOptions options = newImportOptions(packageId, tracker, preInstall);
+
+        if (!vaultPackage.isValid()) {
+            throw new PackageException("Package is not valid: " + packageId);
+        }
+
+        if (!preInstall) {
+            dispatchBeforeExtract(packageId, inspectSession, admin, vaultPackage, Collections.emptyList());
+        }
 
+        try (FlightRecording.Span span = FlightRecording.packageExtract(packageId, preInstall)) {
+            final long extractStart = startTimer();
+            vaultPackage.extract(admin, options);
+            tracker.flushImportedPaths();
+            stopImporterTimer(packageId, ScanMetrics.ImporterPhase.EXTRACT, preInstall, extractStart);
+        }
+        try (FlightRecording.Span span = FlightRecording.packageSave(packageId, preInstall)) {
+            final long saveStart = startTimer();
+            admin.save();
+            stopImporterTimer(packageId, ScanMetrics.ImporterPhase.SAVE, preInstall, saveStart);
+        }
+
+        if (!preInstall) {
+            tracker.dispatchImportedPathStates();
+            dispatchChanges(packageId, beforeRoot);
+            dispatchAfterExtract(packageId, inspectSession, admin);
+        }
+    }
+
+    private InternalImportOptions newImportOptions(final PackageId packageId, final ProgressTrackerListener tracker,
+                                                   final boolean preInstall) {
         InternalImportOptions options = new InternalImportOptions(packageId, Packaging.class.getClassLoader());
         options.setNonRecursive(true);
         options.setDependencyHandling(DependencyHandling.IGNORE);
@@ -705,61 +1671,334 @@ public final class OakMachine {
         } else {
             options.setInstallHookPolicy(scanInstallHookPolicy);
         }
+        return options;
+    }
 
-        List<PackageId> subpacks = Arrays.asList(jcrPackage.extractSubpackages(options));
+    private void dispatchReadManifest(final PackageId packageId, final @Nullable Manifest manifest) {
+        if (manifest != null) {
+            subscribersOf(EventMask.Event.READ_MANIFEST).forEach(handler ->
+                    invokeCheck(handler, ScanMetrics.Callback.READ_MANIFEST, packageId, null,
+                            () -> handler.readManifest(packageId, new Manifest(manifest))));
+        }
+    }
 
-        final VaultPackage vaultPackage = jcrPackage.getPackage();
-        if (!vaultPackage.isValid()) {
-            throw new PackageException("Package is not valid: " + packageId);
+    private void dispatchBeforeExtract(final PackageId packageId, final Session inspectSession,
+                                       final Session trustedSession, final VaultPackage vaultPackage,
+                                       final List<PackageId> subpacks) {
+        subscribersOf(EventMask.Event.BEFORE_EXTRACT).forEach(handler ->
+                guardCheck(handler, ScanMetrics.Callback.BEFORE_EXTRACT, packageId, null, () ->
+                        handler.beforeExtract(packageId, sessionFor(handler, inspectSession, trustedSession),
+                                vaultPackage.getProperties(), vaultPackage.getMetaInf(), subpacks)));
+    }
+
+    /**
+     * Compare the root state saved after the package with the root state captured before it, and deliver the changes
+     * to each {@link NodeStateDiffCheck}.
+     *
+     * @param packageId  the installed package
+     * @param beforeRoot the root state captured before the package, or null if there are no diff checks
+     */
+    private void dispatchChanges(final PackageId packageId, final @Nullable NodeState beforeRoot) {
+        if (beforeRoot != null) {
+            scanRevision.getRoot().compareAgainstBaseState(beforeRoot,
+                    new ChangeDiff(packageId, PathUtils.ROOT_PATH, diffSubscribers));
         }
+    }
 
-        if (!preInstall) {
-            progressChecks.forEach(handler -> {
-                try {
-                    handler.beforeExtract(packageId, inspectSession,
-                            vaultPackage.getProperties(), vaultPackage.getMetaInf(), subpacks);
-                } catch (final Exception e) {
-                    getErrorListener().onListenerException(e, handler, packageId);
-                }
-            });
+    private void dispatchAfterExtract(final PackageId packageId, final Session inspectSession,
+                                      final Session trustedSession) {
+        subscribersOf(EventMask.Event.AFTER_EXTRACT).forEach(handler -> {
+            if (isNodeStateCheck(handler)) {
+                guardCheck(handler, ScanMetrics.Callback.AFTER_EXTRACT_STATE, packageId, null, () ->
+                        ((NodeStateCheck) handler).afterExtractState(packageId, scanRevision.getRoot()));
+            } else {
+                guardCheck(handler, ScanMetrics.Callback.AFTER_EXTRACT, packageId, null, () ->
+                        handler.afterExtract(packageId, sessionFor(handler, inspectSession, trustedSession)));
+            }
+        });
+    }
+
+    private void dispatchStartedScan() {
+        progressChecks.forEach(handler ->
+                invokeCheck(handler, ScanMetrics.Callback.STARTED_SCAN, null, null, handler::startedScan));
+    }
+
+    private void dispatchFinishedScan() {
+        progressChecks.forEach(handler ->
+                invokeCheck(handler, ScanMetrics.Callback.FINISHED_SCAN, null, null, handler::finishedScan));
+    }
+
+    /**
+     * Read the system timer if a {@link ScanMetrics} or a {@link CheckBudget} has been provided.
+     *
+     * @return the current value of {@link System#nanoTime()}, or 0 if timing is disabled
+     */
+    private long startTimer() {
+        return scanMetrics != null || checkBudgetTracker != null ? System.nanoTime() : 0L;
+    }
+
+    /**
+     * Attribute the callbacks of a recording check to the check that it wraps.
+     *
+     * @param handler the dispatched handler
+     * @return the check wrapped by a recording check, or the handler itself
+     */
+    private static ProgressCheck unwrapRecording(final @NotNull ProgressCheck handler) {
+        return handler instanceof PrefixCheckpoints.RecordingCheck
+                ? ((PrefixCheckpoints.RecordingCheck) handler).getDelegate()
+                : handler;
+    }
+
+    /**
+     * Returns true if the check, or the check wrapped by a recording check or an alias facade, is a built-in check, as
+     * determined by {@link #isBuiltInCheck(Class)}. Any other check receives the read-only facades.
+     *
+     * @param handler the dispatched handler
+     * @return true if the handler may receive the trusted session
+     */
+    static boolean isTrustedCheck(final @NotNull ProgressCheck handler) {
+        final ProgressCheck check = unwrapFacades(handler);
+        return TRUSTED_CHECK_CLASSES.get(check.getClass());
+    }
+
+    /**
+     * Returns true if the check class is declared in the {@code net.adamcin.oakpal.core.checks} package, was loaded by
+     * the same class loader as this class, and was loaded from the same code source as this class.
+     *
+     * @param checkClass the check class
+     * @return true if the class is one of the built-in checks
+     */
+    static boolean isBuiltInCheck(final @NotNull Class<?> checkClass) {
+        if (checkClass.getClassLoader() != OakMachine.class.getClassLoader()
+                || !BUILT_IN_CHECKS_PACKAGE.equals(checkClass.getPackage().getName())) {
+            return false;
         }
+        final CodeSource checkSource = checkClass.getProtectionDomain().getCodeSource();
+        final CodeSource ownSource = OakMachine.class.getProtectionDomain().getCodeSource();
+        return checkSource != null && ownSource != null
+                && Objects.equals(checkSource.getLocation(), ownSource.getLocation());
+    }
 
-        jcrPackage.extract(options);
-        admin.save();
+    /**
+     * Returns true if the check, or the check wrapped by a recording check or an alias facade, is a
+     * {@link NodeStateCheck}. The wrappers implement {@link NodeStateCheck} themselves in order to forward its
+     * methods, so they must be unwrapped to tell whether the wrapped check expects node states.
+     *
+     * @param handler the dispatched handler
+     * @return true if the handler receives node states instead of JCR items
+     */
+    static boolean isNodeStateCheck(final @NotNull ProgressCheck handler) {
+        return unwrapFacades(handler) instanceof NodeStateCheck;
+    }
 
-        jcrPackage.close();
+    /**
+     * Returns true if the check, or the check wrapped by a recording check or an alias facade, is a
+     * {@link NodeStateDiffCheck}.
+     *
+     * @param handler the dispatched handler
+     * @return true if the handler receives node state diff events instead of imported path events
+     */
+    static boolean isNodeStateDiffCheck(final @NotNull ProgressCheck handler) {
+        return unwrapFacades(handler) instanceof NodeStateDiffCheck;
+    }
 
-        if (!preInstall) {
-            progressChecks.forEach(handler -> {
-                try {
-                    handler.afterExtract(packageId, inspectSession);
-                } catch (final Exception e) {
+    /**
+     * Unwrap a recording check and an alias facade, which implement the optional check interfaces themselves in
+     * order to forward their methods.
+     *
+     * @param handler the dispatched handler
+     * @return the innermost check
+     */
+    private static ProgressCheck unwrapFacades(final @NotNull ProgressCheck handler) {
+        final ProgressCheck check = unwrapRecording(handler);
+        return check instanceof ProgressCheckAliasFacade ? ((ProgressCheckAliasFacade) check).getWrapped() : check;
+    }
+
+    /**
+     * Returns true if the path or any of its descendants is in the scope of the mask.
+     *
+     * @param mask the event mask
+     * @param path a node path other than the root path
+     * @return true if the subtree at the path must be compared
+     */
+    static boolean isSubtreeInScope(final @NotNull EventMask mask, final @NotNull String path) {
+        return mask.isPathInScope(path) || mask.getIncludedRoots().stream()
+                .anyMatch(root -> root.length() > path.length() && root.startsWith(path)
+                        && root.charAt(path.length()) == '/');
+    }
+
+    /**
+     * Select the session to pass to the handler.
+     *
+     * @param handler        the dispatched handler
+     * @param inspectSession the read-only session facade
+     * @param trustedSession the unwrapped session
+     * @return the trusted session for a trusted check, or the read-only session facade
+     */
+    static Session sessionFor(final @NotNull ProgressCheck handler, final Session inspectSession,
+                              final Session trustedSession) {
+        return isTrustedCheck(handler) ? trustedSession : inspectSession;
+    }
+
+    /**
+     * Returns true if the check has exceeded its {@link CheckBudget} during the current scan.
+     *
+     * @param handler the dispatched handler
+     * @return true if the handler must be skipped
+     */
+    private boolean isQuarantined(final @NotNull ProgressCheck handler) {
+        return checkBudgetTracker != null && checkBudgetTracker.isQuarantined(unwrapRecording(handler));
+    }
+
+    /**
+     * The body of a single check callback.
+     */
+    @FunctionalInterface
+    interface CheckCallback {
+        void invoke() throws Exception;
+    }
+
+    /**
+     * Invoke a check callback unless the check is quarantined, recording a flight recorder event for it and charging
+     * its elapsed time to the {@link ScanMetrics} and the {@link CheckBudget}, even when the callback throws.
+     *
+     * @param handler   the dispatched handler
+     * @param callback  the callback type
+     * @param packageId the current package id, if any
+     * @param path      the current path, if any
+     * @param body      the callback
+     */
+    private void invokeCheck(final @NotNull ProgressCheck handler,
+                             final @NotNull ScanMetrics.Callback callback,
+                             final @Nullable PackageId packageId,
+                             final @Nullable String path,
+                             final @NotNull Runnable body) {
+        if (isQuarantined(handler)) {
+            return;
+        }
+        final long start = startTimer();
+        try (FlightRecording.Span span = FlightRecording.checkCallback(handler, callback, packageId, path)) {
+            body.run();
+        } finally {
+            stopTimer(handler, callback, packageId, start);
+        }
+    }
+
+    /**
+     * Invoke a check callback like {@link #invokeCheck(ProgressCheck, ScanMetrics.Callback, PackageId, String,
+     * Runnable)}, reporting any exception it throws to the error listener.
+     *
+     * @param handler   the dispatched handler
+     * @param callback  the callback type
+     * @param packageId the current package id
+     * @param path      the current path, or null for a package-level callback
+     * @param body      the callback
+     */
+    private void guardCheck(final @NotNull ProgressCheck handler,
+                            final @NotNull ScanMetrics.Callback callback,
+                            final @NotNull PackageId packageId,
+                            final @Nullable String path,
+                            final @NotNull CheckCallback body) {
+        invokeCheck(handler, callback, packageId, path, () -> {
+            try {
+                body.invoke();
+            } catch (final Exception e) {
+                if (path != null) {
+                    getErrorListener().onListenerPathException(e, handler, packageId, path);
+                } else {
                     getErrorListener().onListenerException(e, handler, packageId);
                 }
-            });
+            }
+        });
+    }
+
+    private void stopTimer(final @NotNull ProgressCheck handler,
+                           final @NotNull ScanMetrics.Callback callback,
+                           final @Nullable PackageId packageId,
+                           final long start) {
+        if (scanMetrics == null && checkBudgetTracker == null) {
+            return;
+        }
+        final long elapsed = System.nanoTime() - start;
+        final ProgressCheck check = unwrapRecording(handler);
+        if (scanMetrics != null) {
+            scanMetrics.recordCallback(check, callback, elapsed);
         }
+        if (checkBudgetTracker != null) {
+            final CheckBudget.Limit exceeded = checkBudgetTracker.charge(check, elapsed);
+            if (exceeded != null) {
+                final long elapsedNanos = exceeded == CheckBudget.Limit.CALLBACK
+                        ? elapsed
+                        : checkBudgetTracker.getElapsedNanos(check);
+                getErrorListener().onCheckBudgetExceeded(check, packageId, callback, exceeded,
+                        TimeUnit.NANOSECONDS.toMillis(elapsedNanos),
+                        checkBudgetTracker.getBudget().getMillis(exceeded));
+            }
+        }
+    }
 
-        for (PackageId subpackId : subpacks) {
-            processSubpackage(admin, manager, subpackId, packageId,
-                    preInstall || subpackageSilencer.test(subpackId, packageId));
+    private void stopImporterTimer(final @NotNull PackageId packageId,
+                                   final @NotNull ScanMetrics.ImporterPhase phase,
+                                   final boolean preInstall,
+                                   final long start) {
+        if (scanMetrics != null && !preInstall) {
+            scanMetrics.recordImporter(packageId, phase, System.nanoTime() - start);
         }
     }
 
+    /**
+     * Read the jar manifest of a package archive. For a zip archive opened from a local file, the manifest entry is
+     * located using the zip central directory, without streaming the rest of the package.
+     *
+     * @param archive the package archive
+     * @return the manifest, or null if the archive has none
+     * @throws IOException for errors reading the manifest entry
+     */
+    static @Nullable Manifest readManifest(final @NotNull Archive archive) throws IOException {
+        final Archive.Entry entry = archive.getEntry(JarFile.MANIFEST_NAME);
+        if (entry == null || entry.isDirectory()) {
+            return null;
+        }
+        try (InputStream input = archive.openInputStream(entry)) {
+            return input != null ? new Manifest(input) : null;
+        }
+    }
+
+    /**
+     * Returns true if the package archive contains any zip entries under the jcr_root/etc/packages folder, which
+     * would be registered as subpackages on extraction.
+     *
+     * @param archive the package archive
+     * @return true if the archive contains subpackage entries
+     * @throws IOException for errors reading the archive
+     */
+    static boolean hasSubpackageEntries(final @NotNull Archive archive) throws IOException {
+        final Archive.Entry packagesRoot = archive.getEntry(Constants.ROOT_DIR + "/etc/packages");
+        return packagesRoot != null && hasZipEntries(packagesRoot);
+    }
+
+    private static boolean hasZipEntries(final @NotNull Archive.Entry entry) {
+        for (Archive.Entry child : entry.getChildren()) {
+            if (child.isDirectory() ? hasZipEntries(child) : child.getName().endsWith(".zip")) {
+                return true;
+            }
+        }
+        return false;
+    }
+
     final void processSubpackage(Session admin, JcrPackageManager manager, PackageId packageId, PackageId parentId, final boolean preInstall)
             throws RepositoryException {
         try (JcrPackage jcrPackage = manager.open(packageId)) {
 
             if (!preInstall) {
-                progressChecks.forEach(handler -> {
-                    try {
-                        handler.identifySubpackage(packageId, parentId);
-                    } catch (final Exception e) {
-                        getErrorListener().onListenerException(e, handler, packageId);
-                    }
-                });
+                subscribersOf(EventMask.Event.IDENTIFY_SUBPACKAGE).forEach(handler ->
+                        guardCheck(handler, ScanMetrics.Callback.IDENTIFY_SUBPACKAGE, packageId, null,
+                                () -> handler.identifySubpackage(packageId, parentId)));
             }
 
-            processPackage(admin, manager, jcrPackage, preInstall);
+            try (FlightRecording.Span span = FlightRecording.subpackage(packageId, parentId, preInstall)) {
+                processPackage(admin, manager, jcrPackage, preInstall);
+            }
 
         } catch (IOException | PackageException | RepositoryException e) {
             getErrorListener().onSubpackageException(e, packageId);
@@ -776,13 +2015,9 @@ public final class OakMachine {
         final File packageFile = vaultPackage.getFile();
 
         if (!preInstall) {
-            progressChecks.forEach(handler -> {
-                try {
-                    handler.identifyPackage(packageId, packageFile);
-                } catch (Exception e) {
-                    getErrorListener().onListenerException(e, handler, packageId);
-                }
-            });
+            subscribersOf(EventMask.Event.IDENTIFY_PACKAGE).forEach(handler ->
+                    guardCheck(handler, ScanMetrics.Callback.IDENTIFY_PACKAGE, packageId, null,
+                            () -> handler.identifyPackage(packageId, packageFile)));
         }
 
         processPackage(admin, manager, jcrPackage, preInstall);
@@ -800,7 +2035,8 @@ public final class OakMachine {
         }
 
         try (InputStream input = url.openStream();
-             JcrPackage jcrPackage = manager.upload(input, true, true)) {
+             JcrPackage jcrPackage = uploadPackage(url.toString(), preInstall,
+                     () -> manager.upload(input, true, true))) {
             processUploadedPackage(admin, manager, preInstall, jcrPackage);
         } catch (IOException | PackageException | RepositoryException | Fun.FunRuntimeException e) {
             throw new AbortedScanException(e, url);
@@ -818,13 +2054,59 @@ public final class OakMachine {
             throw new AbortedScanException(e);
         }
 
-        try (JcrPackage jcrPackage = manager.upload(file, false, true, null, true)) {
+        if (directInstall) {
+            try (VaultPackage vaultPackage = packagingService.getPackageManager().open(file, true)) {
+                if (!hasSubpackageEntries(vaultPackage.getArchive())) {
+                    processDirectPackage(admin, preInstall, file, vaultPackage);
+                    return;
+                }
+                LOGGER.debug("[processPackageFile] uploading package with subpackages: {}", file);
+            } catch (IOException | PackageException | RepositoryException | Fun.FunRuntimeException e) {
+                throw new AbortedScanException(e, file);
+            }
+        }
+
+        try (JcrPackage jcrPackage = uploadPackage(file.getPath(), preInstall,
+                () -> manager.upload(file, false, true, null, true))) {
             processUploadedPackage(admin, manager, preInstall, jcrPackage);
         } catch (IOException | PackageException | RepositoryException | Fun.FunRuntimeException e) {
             throw new AbortedScanException(e, file);
         }
     }
 
+    @FunctionalInterface
+    private interface PackageUploader {
+        JcrPackage upload() throws IOException, RepositoryException;
+    }
+
+    private static JcrPackage uploadPackage(final @NotNull String source,
+                                            final boolean preInstall,
+                                            final @NotNull PackageUploader uploader)
+            throws IOException, RepositoryException {
+        try (FlightRecording.Span span = FlightRecording.packageUpload(source, preInstall)) {
+            return uploader.upload();
+        }
+    }
+
+    private void processDirectPackage(final Session admin,
+                                      final boolean preInstall,
+                                      final File file,
+                                      final VaultPackage vaultPackage)
+            throws IOException, PackageException, RepositoryException {
+        final PackageId packageId = vaultPackage.getId();
+        if (packageId == null) {
+            throw new PackageException("Package has no valid id: " + file);
+        }
+
+        if (!preInstall) {
+            subscribersOf(EventMask.Event.IDENTIFY_PACKAGE).forEach(handler ->
+                    guardCheck(handler, ScanMetrics.Callback.IDENTIFY_PACKAGE, packageId, null,
+                            () -> handler.identifyPackage(packageId, file)));
+        }
+
+        processVaultPackage(admin, vaultPackage, preInstall);
+    }
+
     @FunctionalInterface
     public interface JcrCustomizer {
         void customize(Jcr jcr);
@@ -837,8 +2119,18 @@ public final class OakMachine {
         return child;
     }
 
-    private Repository initRepository() throws RepositoryException {
-        final NodeStore nodeStore = nodeStoreSupplier.get();
+    /**
+     * Create a repository for the provided node store.
+     *
+     * @param nodeStore   the node store, or null to let oak create a default store
+     * @param createHomes true to create the home folders for a fresh repository. This must be false for a fork of a
+     *                    {@link BaseCheckpoint}, which already contains the home folders, possibly modified by
+     *                    pre-install packages.
+     * @return the new repository
+     * @throws RepositoryException for repository errors
+     */
+    private Repository initRepository(final @Nullable NodeStore nodeStore, final boolean createHomes)
+            throws RepositoryException {
         final Jcr jcr = nodeStore == null ? new Jcr() : new Jcr(nodeStore);
 
         Properties userProps = new Properties();
@@ -869,13 +2161,17 @@ public final class OakMachine {
             NodeBuilder system = authzPath(users, "system");
         };
 
-        jcr.with(homeCreator);
+        if (createHomes) {
+            jcr.with(homeCreator);
+        }
 
         if (jcrCustomizer != null) {
             jcrCustomizer.customize(jcr);
         }
 
-        return jcr.withAtomicCounter().createRepository();
+        try (FlightRecording.Span span = FlightRecording.repositoryInit()) {
+            return jcr.withAtomicCounter().createRepository();
+        }
     }
 
     private void shutdownRepository(Repository repository) {
@@ -903,22 +2199,77 @@ public final class OakMachine {
                 .register(admin);
     }
 
+    /**
+     * The number of imported paths buffered for checks which receive imported paths in batches, before the batches are
+     * delivered. This matches the default auto-save threshold of the filevault importer.
+     */
+    static final int IMPORTED_PATHS_BATCH_SIZE = 1024;
+
     final class ImporterListenerAdapter implements ProgressTrackerListener {
         private final PackageId packageId;
 
-        private final List<ProgressCheck> handlers;
+        private final PathScopeTrie importedPathHandlers;
+
+        private final PathScopeTrie deletedPathHandlers;
+
+        private final Map<ProgressCheck, List<ImportedPath>> importedPathBatches = new LinkedHashMap<>();
+
+        private final Map<ProgressCheck, List<ImportedPath>> importedPathStates = new LinkedHashMap<>();
+
+        private int bufferedPathCount;
 
         private final Session session;
 
+        private final Session trustedSession;
+
         private final boolean preInstall;
 
         ImporterListenerAdapter(PackageId packageId, List<ProgressCheck> handlers, Session session, boolean preInstall) {
+            this(packageId, handlers, session, session, preInstall);
+        }
+
+        ImporterListenerAdapter(PackageId packageId, List<ProgressCheck> handlers, Session session,
+                                Session trustedSession, boolean preInstall) {
             this.packageId = packageId;
-            this.handlers = handlers;
+            this.importedPathHandlers = new PathScopeTrie(handlers.stream()
+                    .filter(handler -> eventMaskOf(handler).includes(EventMask.Event.IMPORTED_PATH))
+                    .filter(handler -> !isNodeStateDiffCheck(handler))
+                    .collect(Collectors.toList()));
+            this.deletedPathHandlers = new PathScopeTrie(handlers.stream()
+                    .filter(handler -> eventMaskOf(handler).includes(EventMask.Event.DELETED_PATH))
+                    .collect(Collectors.toList()));
+            handlers.stream()
+                    .filter(handler -> eventMaskOf(handler).includes(EventMask.Event.IMPORTED_PATH))
+                    .filter(OakMachine::isNodeStateCheck)
+                    .forEachOrdered(handler -> importedPathStates.put(handler, new ArrayList<>()));
+            handlers.stream()
+                    .filter(handler -> !importedPathStates.containsKey(handler))
+                    .filter(handler -> eventMaskOf(handler).isImportedPathsBatched())
+                    .forEachOrdered(handler -> importedPathBatches.put(handler, new ArrayList<>()));
             this.session = session;
+            this.trustedSession = trustedSession;
             this.preInstall = preInstall;
         }
 
+        /**
+         * Wrap a node retrieved from the trusted session with the read-only facade of the inspect session, to avoid
+         * a second lookup of the same path.
+         *
+         * @param trustedNode the node retrieved from the trusted session
+         * @param path        the node path
+         * @return the node for untrusted checks
+         * @throws RepositoryException if the node must be retrieved from the inspect session and the lookup fails
+         */
+        private Node wrapNode(final @NotNull Node trustedNode, final @NotNull String path) throws RepositoryException {
+            if (session == trustedSession) {
+                return trustedNode;
+            } else if (session instanceof SessionFacade) {
+                return NodeFacade.wrap(trustedNode, (SessionFacade<?>) session);
+            } else {
+                return session.getNode(path);
+            }
+        }
+
         @Override
         public void onMessage(Mode mode, String action, String path) {
             if (preInstall) {
@@ -927,23 +2278,84 @@ public final class OakMachine {
             // NOP("-"), MOD("U"), REP("R"), ERR("E"), ADD("A"), DEL("D"), MIS("!")
             if (path != null && path.startsWith("/")) {
                 if ("D".equals(action)) { // deleted
-                    handlers.forEach(handler -> {
-                        try {
-                            handler.deletedPath(packageId, path, session);
-                        } catch (final Exception e) {
-                            OakMachine.this.getErrorListener().onListenerPathException(e, handler, packageId, path);
-                        }
-                    });
+                    // deliver the pending batches first, so that each check receives path events in order
+                    flushImportedPaths();
+                    deletedPathHandlers.checksInScope(path).forEach(handler ->
+                            guardCheck(handler, ScanMetrics.Callback.DELETED_PATH, packageId, path, () ->
+                                    handler.deletedPath(packageId, path,
+                                            sessionFor(handler, session, trustedSession))));
                 } else if ("ARU-".contains(action)) { // added, replaced, updated
+                    final List<ProgressCheck> handlersInScope = importedPathHandlers.checksInScope(path);
+                    if (handlersInScope.isEmpty()) {
+                        return;
+                    }
+                    final PathAction pathAction = PathAction.fromShortCode(action);
+                    boolean importedNodeRequired = false;
+                    boolean trustedNodeRequired = false;
+                    boolean jcrHandlerInScope = false;
+                    ImportedPath statePath = null;
+                    for (ProgressCheck handler : handlersInScope) {
+                        final List<ImportedPath> states = importedPathStates.get(handler);
+                        if (states != null) {
+                            // node states are read after the package is saved, skipping paths which do not exist
+                            if (statePath == null) {
+                                statePath = new ImportedPath(path, pathAction, trustedSession, null);
+                            }
+                            states.add(statePath);
+                            continue;
+                        }
+                        jcrHandlerInScope = true;
+                        if (!importedPathBatches.containsKey(handler)
+                                && eventMaskOf(handler).isImportedNodeRequired()) {
+                            if (isTrustedCheck(handler)) {
+                                trustedNodeRequired = true;
+                            } else {
+                                importedNodeRequired = true;
+                            }
+                        }
+                    }
+                    if (!jcrHandlerInScope) {
+                        return;
+                    }
                     try {
-                        Node node = session.getNode(path);
-                        handlers.forEach(handler -> {
-                            try {
-                                handler.importedPath(packageId, path, node, PathAction.fromShortCode(action));
-                            } catch (final Exception e) {
-                                OakMachine.this.getErrorListener().onListenerPathException(e, handler, packageId, path);
+                        // skip materializing the node when no handler requires it, but still only deliver node paths
+                        final Node trustedNode = importedNodeRequired || trustedNodeRequired
+                                ? trustedSession.getNode(path) : null;
+                        final Node node = importedNodeRequired ? wrapNode(trustedNode, path) : null;
+                        if (trustedNode == null && !trustedSession.nodeExists(path)) {
+                            throw new PathNotFoundException(path);
+                        }
+                        ImportedPath importedPath = null;
+                        ImportedPath trustedImportedPath = null;
+                        for (ProgressCheck handler : handlersInScope) {
+                            if (importedPathStates.containsKey(handler)) {
+                                continue;
                             }
-                        });
+                            final boolean trusted = isTrustedCheck(handler);
+                            final List<ImportedPath> batch = importedPathBatches.get(handler);
+                            if (batch != null) {
+                                if (trusted) {
+                                    if (trustedImportedPath == null) {
+                                        trustedImportedPath = new ImportedPath(path, pathAction, trustedSession,
+                                                trustedNode);
+                                    }
+                                    batch.add(trustedImportedPath);
+                                } else {
+                                    if (importedPath == null) {
+                                        importedPath = new ImportedPath(path, pathAction, session, node);
+                                    }
+                                    batch.add(importedPath);
+                                }
+                                continue;
+                            }
+                            final Node handlerNode = trusted ? trustedNode : node;
+                            guardCheck(handler, ScanMetrics.Callback.IMPORTED_PATH, packageId, path,
+                                    () -> handler.importedPath(packageId, path, handlerNode, pathAction));
+                        }
+                        if ((importedPath != null || trustedImportedPath != null)
+                                && ++bufferedPathCount >= IMPORTED_PATHS_BATCH_SIZE) {
+                            flushImportedPaths();
+                        }
                     } catch (RepositoryException e) {
                         OakMachine.this.getErrorListener().onImporterException(e, packageId, path);
                     }
@@ -953,12 +2365,209 @@ public final class OakMachine {
             }
         }
 
+        /**
+         * Deliver the buffered imported paths to each check which receives imported paths in batches. This is called
+         * when the batch size is reached, before each deleted path event, and at the end of package extraction.
+         */
+        void flushImportedPaths() {
+            if (bufferedPathCount == 0) {
+                return;
+            }
+            bufferedPathCount = 0;
+            importedPathBatches.forEach((handler, batch) -> {
+                if (batch.isEmpty()) {
+                    return;
+                }
+                final List<ImportedPath> importedPaths = Collections.unmodifiableList(new ArrayList<>(batch));
+                batch.clear();
+                guardCheck(handler, ScanMetrics.Callback.IMPORTED_PATHS, packageId, null,
+                        () -> handler.importedPaths(packageId, importedPaths));
+            });
+        }
+
+        /**
+         * Deliver the node state of each imported path to each {@link NodeStateCheck}, reading from the root state of
+         * the revision saved after the package was extracted. This is called once per package, after the save.
+         */
+        void dispatchImportedPathStates() {
+            if (importedPathStates.values().stream().allMatch(List::isEmpty)) {
+                return;
+            }
+            final NodeState root = scanRevision.getRoot();
+            importedPathStates.forEach((handler, states) -> {
+                final List<ImportedPath> importedPaths = new ArrayList<>(states);
+                states.clear();
+                for (ImportedPath importedPath : importedPaths) {
+                    if (isQuarantined(handler)) {
+                        return;
+                    }
+                    final String path = importedPath.getPath();
+                    final NodeState nodeState = NodeStateUtils.getNode(root, path);
+                    if (!nodeState.exists()) {
+                        continue;
+                    }
+                    guardCheck(handler, ScanMetrics.Callback.IMPORTED_PATH_STATE, packageId, path, () ->
+                            ((NodeStateCheck) handler).importedPathState(packageId, path, nodeState,
+                                    importedPath.getAction(), root));
+                }
+            });
+        }
+
         @Override
         public void onError(Mode mode, String path, Exception e) {
             OakMachine.this.getErrorListener().onImporterException(e, packageId, path);
         }
     }
 
+    /**
+     * Delivers the changes found by comparing the node states of one subtree before and after a package to each
+     * {@link NodeStateDiffCheck} with the subtree in scope. Added and deleted subtrees are walked by comparing against
+     * an empty state, so that each of their nodes and properties is delivered as well. A node state comparison may
+     * report a child node as changed when its states are equal but not the same instance, so the change event of an
+     * existing node is held back until a change is found within it.
+     */
+    final class ChangeDiff implements NodeStateDiff {
+        private final PackageId packageId;
+        private final String path;
+        private final List<ProgressCheck> handlers;
+        private final ChangeDiff parent;
+        private NodeState pendingBefore;
+        private NodeState pendingAfter;
+
+        ChangeDiff(final @NotNull PackageId packageId, final @NotNull String path,
+                   final @NotNull List<ProgressCheck> handlers) {
+            this(packageId, path, handlers, null, null, null);
+        }
+
+        private ChangeDiff(final @NotNull PackageId packageId, final @NotNull String path,
+                           final @NotNull List<ProgressCheck> handlers, final @Nullable ChangeDiff parent,
+                           final @Nullable NodeState before, final @Nullable NodeState after) {
+            this.packageId = packageId;
+            this.path = path;
+            this.handlers = handlers;
+            this.parent = parent;
+            this.pendingBefore = before;
+            this.pendingAfter = after;
+        }
+
+        /**
+         * Deliver the held back change events of this node and its ancestors, from the top down.
+         */
+        private void flushPending() {
+            if (parent != null) {
+                parent.flushPending();
+            }
+            if (pendingAfter != null) {
+                final NodeState before = pendingBefore;
+                final NodeState after = pendingAfter;
+                pendingBefore = null;
+                pendingAfter = null;
+                dispatchNodeChanged(before, after);
+            }
+        }
+
+        @Override
+        public boolean propertyAdded(final PropertyState after) {
+            dispatchPropertyChanged(null, after);
+            return true;
+        }
+
+        @Override
+        public boolean propertyChanged(final PropertyState before, final PropertyState after) {
+            dispatchPropertyChanged(before, after);
+            return true;
+        }
+
+        @Override
+        public boolean propertyDeleted(final PropertyState before) {
+            dispatchPropertyChanged(before, null);
+            return true;
+        }
+
+        @Override
+        public boolean childNodeAdded(final String name, final NodeState after) {
+            return childNodeChanged(name, EmptyNodeState.MISSING_NODE, after);
+        }
+
+        @Override
+        public boolean childNodeDeleted(final String name, final NodeState before) {
+            return childNodeChanged(name, before, EmptyNodeState.MISSING_NODE);
+        }
+
+        @Override
+        public boolean childNodeChanged(final String name, final NodeState before, final NodeState after) {
+            if (NodeStateUtils.isHidden(name)) {
+                return true;
+            }
+            final String childPath = PathUtils.concat(path, name);
+            final List<ProgressCheck> childHandlers = handlers.stream()
+                    .filter(handler -> isSubtreeInScope(eventMaskOf(handler), childPath))
+                    .collect(Collectors.toList());
+            if (childHandlers.isEmpty()) {
+                return true;
+            }
+            final ChangeDiff childDiff = new ChangeDiff(packageId, childPath, childHandlers, this, before, after);
+            if (!before.exists()) {
+                childDiff.flushPending();
+                EmptyNodeState.compareAgainstEmptyState(after, childDiff);
+            } else if (!after.exists()) {
+                childDiff.flushPending();
+                EmptyNodeState.EMPTY_NODE.compareAgainstBaseState(before, childDiff);
+            } else {
+                after.compareAgainstBaseState(before, childDiff);
+            }
+            return true;
+        }
+
+        private void dispatchNodeChanged(final @NotNull NodeState before, final @NotNull NodeState after) {
+            for (ProgressCheck handler : handlers) {
+                if (eventMaskOf(handler).isPathInScope(path)) {
+                    guardCheck(handler, ScanMetrics.Callback.NODE_CHANGED, packageId, path,
+                            () -> ((NodeStateDiffCheck) handler).nodeChanged(packageId, path, before, after));
+                }
+            }
+        }
+
+        private void dispatchPropertyChanged(final @Nullable PropertyState before,
+                                             final @Nullable PropertyState after) {
+            final String name = before != null ? before.getName() : after.getName();
+            if (NodeStateUtils.isHidden(name)) {
+                return;
+            }
+            flushPending();
+            for (ProgressCheck handler : handlers) {
+                if (eventMaskOf(handler).isPathInScope(path)) {
+                    guardCheck(handler, ScanMetrics.Callback.PROPERTY_CHANGED, packageId, path,
+                            () -> ((NodeStateDiffCheck) handler).propertyChanged(packageId, path, before, after));
+                }
+            }
+        }
+    }
+
+    /**
+     * Get the event mask of the check, treating a null mask as {@link EventMask#ALL}.
+     *
+     * @param check the progress check
+     * @return a non-null event mask
+     */
+    static @NotNull EventMask eventMaskOf(final @NotNull ProgressCheck check) {
+        return Optional.ofNullable(check.getEventMask()).orElse(EventMask.ALL);
+    }
+
+    static Map<EventMask.Event, List<ProgressCheck>> mapEventSubscribers(final @NotNull List<ProgressCheck> checks) {
+        final Map<EventMask.Event, List<ProgressCheck>> subscribers = new EnumMap<>(EventMask.Event.class);
+        for (EventMask.Event event : EventMask.Event.values()) {
+            subscribers.put(event, checks.stream()
+                    .filter(check -> eventMaskOf(check).includes(event))
+                    .collect(Collectors.toList()));
+        }
+        return subscribers;
+    }
+
+    List<ProgressCheck> subscribersOf(final @NotNull EventMask.Event event) {
+        return eventSubscribers.get(event);
+    }
+
     public static Packaging newOakpalPackagingService() {
         return new DefaultPackagingService();
     }
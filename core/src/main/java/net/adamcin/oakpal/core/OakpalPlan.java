@@ -5,6 +5,7 @@ import net.adamcin.oakpal.api.JavaxJson;
 import net.adamcin.oakpal.api.JsonObjectConvertible;
 import net.adamcin.oakpal.api.ProgressCheck;
 import net.adamcin.oakpal.api.Result;
+import net.adamcin.oakpal.api.Severity;
 import net.adamcin.oakpal.api.ViolationReporter;
 import org.apache.jackrabbit.spi.PrivilegeDefinition;
 import org.apache.jackrabbit.spi.QNodeTypeDefinition;
@@ -33,6 +34,7 @@ import java.util.stream.Collectors;
 import static net.adamcin.oakpal.api.Fun.compose1;
 import static net.adamcin.oakpal.api.Fun.inferTest1;
 import static net.adamcin.oakpal.api.Fun.result1;
+import static net.adamcin.oakpal.api.Fun.uncheck0;
 import static net.adamcin.oakpal.api.Fun.uncheck1;
 import static net.adamcin.oakpal.api.JavaxJson.hasNonNull;
 
@@ -63,6 +65,12 @@ public final class OakpalPlan implements JsonObjectConvertible {
         String enablePreInstallHooks();
 
         String installHookPolicy();
+
+        String nodeStoreType();
+
+        String directInstall();
+
+        String failFastSeverity();
     }
 
     private static final JsonKeys KEYS = new JsonKeys() {
@@ -110,6 +118,21 @@ public final class OakpalPlan implements JsonObjectConvertible {
         public String installHookPolicy() {
             return "installHookPolicy";
         }
+
+        @Override
+        public String nodeStoreType() {
+            return "nodeStoreType";
+        }
+
+        @Override
+        public String directInstall() {
+            return "directInstall";
+        }
+
+        @Override
+        public String failFastSeverity() {
+            return "failFastSeverity";
+        }
     };
 
     @NotNull
@@ -149,6 +172,9 @@ public final class OakpalPlan implements JsonObjectConvertible {
     private final List<CheckSpec> checks;
     private final boolean enablePreInstallHooks;
     private final InstallHookPolicy installHookPolicy;
+    private final NodeStoreType nodeStoreType;
+    private final boolean directInstall;
+    private final Severity failFastSeverity;
 
     private OakpalPlan(final @Nullable URL base,
                        final @Nullable JsonObject originalJson,
@@ -161,7 +187,10 @@ public final class OakpalPlan implements JsonObjectConvertible {
                        final @NotNull List<ForcedRoot> forcedRoots,
                        final @NotNull List<CheckSpec> checks,
                        final boolean enablePreInstallHooks,
-                       final @Nullable InstallHookPolicy installHookPolicy) {
+                       final @Nullable InstallHookPolicy installHookPolicy,
+                       final @Nullable NodeStoreType nodeStoreType,
+                       final boolean directInstall,
+                       final @Nullable Severity failFastSeverity) {
         this.base = base;
         this.originalJson = originalJson;
         this.name = name;
@@ -174,6 +203,9 @@ public final class OakpalPlan implements JsonObjectConvertible {
         this.checks = checks;
         this.enablePreInstallHooks = enablePreInstallHooks;
         this.installHookPolicy = installHookPolicy;
+        this.nodeStoreType = nodeStoreType;
+        this.directInstall = directInstall;
+        this.failFastSeverity = failFastSeverity;
     }
 
     public URL getBase() {
@@ -224,6 +256,26 @@ public final class OakpalPlan implements JsonObjectConvertible {
         return installHookPolicy;
     }
 
+    public NodeStoreType getNodeStoreType() {
+        return nodeStoreType;
+    }
+
+    /**
+     * Whether scanned package files are installed directly from the local file instead of being uploaded first. See
+     * {@link OakMachine.Builder#withDirectInstall(boolean)}, including the limitation that directly installed
+     * packages are not registered under /etc/packages.
+     *
+     * @return true to install scanned package files directly
+     * @since 2.1.0
+     */
+    public boolean isDirectInstall() {
+        return directInstall;
+    }
+
+    public Severity getFailFastSeverity() {
+        return failFastSeverity;
+    }
+
     static URI relativizeToBaseParent(final @NotNull URI baseUri, final @NotNull URI uri) throws URISyntaxException {
         if (baseUri.isOpaque() || uri.isOpaque()) {
             return uri;
@@ -271,6 +323,9 @@ public final class OakpalPlan implements JsonObjectConvertible {
                 .key(keys().jcrNamespaces()).opt(jcrNamespaces)
                 .key(keys().enablePreInstallHooks()).opt(enablePreInstallHooks, false)
                 .key(keys().installHookPolicy()).opt(installHookPolicy)
+                .key(keys().nodeStoreType()).opt(nodeStoreType)
+                .key(keys().directInstall()).opt(directInstall, false)
+                .key(keys().failFastSeverity()).opt(failFastSeverity)
                 .get();
     }
 
@@ -313,7 +368,7 @@ public final class OakpalPlan implements JsonObjectConvertible {
             initResourceBundle(progressCheck, locale, classLoader);
         }
 
-        return new OakMachine.Builder()
+        final OakMachine.Builder builder = new OakMachine.Builder()
                 .withErrorListener(errorListener)
                 .withProgressChecks(allChecks)
                 .withInitStages(checklistPlanner.getInitStages())
@@ -321,7 +376,15 @@ public final class OakpalPlan implements JsonObjectConvertible {
                 .withPreInstallUrls(preInstallUrls)
                 .withInstallHookPolicy(installHookPolicy)
                 .withInstallHookClassLoader(classLoader)
-                .withEnablePreInstallHooks(enablePreInstallHooks);
+                .withEnablePreInstallHooks(enablePreInstallHooks)
+                .withDirectInstall(directInstall)
+                .withFailFastSeverity(failFastSeverity);
+
+        if (nodeStoreType == NodeStoreType.SEGMENT) {
+            builder.withNodeStoreSupplier(uncheck0(() -> new TempSegmentNodeStore()))
+                    .withNodeStoreForkFunction(uncheck1(base -> new TempSegmentNodeStore(null, base)));
+        }
+        return builder;
     }
 
     void initResourceBundle(final ViolationReporter reporter, final Locale locale, final ClassLoader classLoader) {
@@ -370,6 +433,16 @@ public final class OakpalPlan implements JsonObjectConvertible {
             builder.withInstallHookPolicy(InstallHookPolicy.forName(
                     json.getString(keys().installHookPolicy())));
         }
+        if (hasNonNull(json, keys().nodeStoreType())) {
+            builder.withNodeStoreType(NodeStoreType.forName(
+                    json.getString(keys().nodeStoreType())));
+        }
+        if (hasNonNull(json, keys().directInstall())) {
+            builder.withDirectInstall(json.getBoolean(keys().directInstall()));
+        }
+        if (hasNonNull(json, keys().failFastSeverity())) {
+            builder.withFailFastSeverity(Severity.byName(json.getString(keys().failFastSeverity())));
+        }
         return builder.build(json);
     }
 
@@ -405,6 +478,9 @@ public final class OakpalPlan implements JsonObjectConvertible {
         private List<CheckSpec> checks = Collections.emptyList();
         private boolean enablePreInstallHooks;
         private InstallHookPolicy scanInstallHookPolicy;
+        private NodeStoreType nodeStoreType;
+        private boolean directInstall;
+        private Severity failFastSeverity;
 
         public Builder(final @Nullable URL base, final @Nullable String name) {
             this.base = base;
@@ -424,6 +500,9 @@ public final class OakpalPlan implements JsonObjectConvertible {
                     .withJcrPrivileges(plan.getJcrPrivileges())
                     .withEnablePreInstallHooks(plan.isEnablePreInstallHooks())
                     .withInstallHookPolicy(plan.getInstallHookPolicy())
+                    .withNodeStoreType(plan.getNodeStoreType())
+                    .withDirectInstall(plan.isDirectInstall())
+                    .withFailFastSeverity(plan.getFailFastSeverity())
                     .withPreInstallUrls(plan.getPreInstallUrls());
         }
 
@@ -472,9 +551,25 @@ public final class OakpalPlan implements JsonObjectConvertible {
             return this;
         }
 
+        public Builder withNodeStoreType(final NodeStoreType nodeStoreType) {
+            this.nodeStoreType = nodeStoreType;
+            return this;
+        }
+
+        public Builder withDirectInstall(final boolean directInstall) {
+            this.directInstall = directInstall;
+            return this;
+        }
+
+        public Builder withFailFastSeverity(final Severity failFastSeverity) {
+            this.failFastSeverity = failFastSeverity;
+            return this;
+        }
+
         private OakpalPlan build(final @Nullable JsonObject originalJson) {
             return new OakpalPlan(base, originalJson, name, checklists, preInstallUrls, jcrNamespaces,
-                    jcrNodetypes, jcrPrivileges, forcedRoots, checks, enablePreInstallHooks, scanInstallHookPolicy);
+                    jcrNodetypes, jcrPrivileges, forcedRoots, checks, enablePreInstallHooks, scanInstallHookPolicy,
+                    nodeStoreType, directInstall, failFastSeverity);
         }
 
         public OakpalPlan build() {
@@ -0,0 +1,139 @@
+/*
+ * Copyright 2020 Mark Adamcin
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.adamcin.oakpal.core;
+
+import net.adamcin.oakpal.api.EventMask;
+import net.adamcin.oakpal.api.ProgressCheck;
+import org.jetbrains.annotations.NotNull;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Indexes the included and excluded roots of each check's {@link EventMask} by path segment, so that the checks in
+ * scope for a path event can be found by walking only the ancestors of the path, regardless of the number of checks.
+ * Checks are returned in the same order they were provided.
+ */
+final class PathScopeTrie {
+
+    private static final class TrieNode {
+        private final Map<String, TrieNode> children = new HashMap<>();
+        private final BitSet included = new BitSet();
+        private final BitSet excluded = new BitSet();
+
+        TrieNode getOrCreateChild(final @NotNull String segment) {
+            return children.computeIfAbsent(segment, key -> new TrieNode());
+        }
+
+        TrieNode getChild(final @NotNull String segment) {
+            return children.get(segment);
+        }
+    }
+
+    private final List<ProgressCheck> checks;
+    private final TrieNode root = new TrieNode();
+    private final boolean scoped;
+
+    PathScopeTrie(final @NotNull List<ProgressCheck> checks) {
+        this.checks = Collections.unmodifiableList(new ArrayList<>(checks));
+        boolean anyScoped = false;
+        for (int i = 0; i < this.checks.size(); i++) {
+            final EventMask mask = OakMachine.eventMaskOf(this.checks.get(i));
+            if (mask.getIncludedRoots().isEmpty()) {
+                root.included.set(i);
+            } else {
+                anyScoped = true;
+                for (String includedRoot : mask.getIncludedRoots()) {
+                    nodeFor(includedRoot).included.set(i);
+                }
+            }
+            for (String excludedRoot : mask.getExcludedRoots()) {
+                anyScoped = true;
+                nodeFor(excludedRoot).excluded.set(i);
+            }
+        }
+        this.scoped = anyScoped;
+    }
+
+    private TrieNode nodeFor(final @NotNull String rootPath) {
+        TrieNode node = root;
+        int start = 1;
+        while (start < rootPath.length()) {
+            int end = rootPath.indexOf('/', start);
+            if (end < 0) {
+                end = rootPath.length();
+            }
+            if (end > start) {
+                node = node.getOrCreateChild(rootPath.substring(start, end));
+            }
+            start = end + 1;
+        }
+        return node;
+    }
+
+    /**
+     * Get the checks whose scope covers the provided path.
+     *
+     * @param path the absolute path of the imported or deleted item
+     * @return the list of checks in scope, in their original order
+     */
+    List<ProgressCheck> checksInScope(final @NotNull String path) {
+        if (!scoped) {
+            return checks;
+        }
+        final BitSet included = (BitSet) root.included.clone();
+        final BitSet excluded = (BitSet) root.excluded.clone();
+        TrieNode node = root;
+        int start = 1;
+        while (node != null && start < path.length()) {
+            int end = path.indexOf('/', start);
+            if (end < 0) {
+                end = path.length();
+            }
+            if (end > start) {
+                node = node.getChild(path.substring(start, end));
+                if (node != null) {
+                    included.or(node.included);
+                    excluded.or(node.excluded);
+                }
+            }
+            start = end + 1;
+        }
+        included.andNot(excluded);
+        if (included.cardinality() == checks.size()) {
+            return checks;
+        }
+        final List<ProgressCheck> inScope = new ArrayList<>(included.cardinality());
+        for (int i = included.nextSetBit(0); i >= 0; i = included.nextSetBit(i + 1)) {
+            inScope.add(checks.get(i));
+        }
+        return inScope;
+    }
+
+    /**
+     * Get all indexed checks.
+     *
+     * @return all indexed checks
+     */
+    List<ProgressCheck> getChecks() {
+        return checks;
+    }
+}
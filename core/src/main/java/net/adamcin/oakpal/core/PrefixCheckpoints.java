@@ -0,0 +1,748 @@
+/*
+ * Copyright 2020 Mark Adamcin
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.adamcin.oakpal.core;
+
+import net.adamcin.oakpal.api.EventMask;
+import net.adamcin.oakpal.api.ImportedPath;
+import net.adamcin.oakpal.api.PathAction;
+import net.adamcin.oakpal.api.ProgressCheck;
+import net.adamcin.oakpal.api.Violation;
+import org.apache.jackrabbit.oak.api.PropertyState;
+import org.apache.jackrabbit.oak.spi.state.NodeState;
+import org.apache.jackrabbit.oak.spi.state.NodeStateUtils;
+import org.apache.jackrabbit.oak.spi.state.NodeStore;
+import org.apache.jackrabbit.vault.fs.config.MetaInf;
+import org.apache.jackrabbit.vault.packaging.PackageId;
+import org.apache.jackrabbit.vault.packaging.PackageProperties;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import javax.jcr.Node;
+import javax.jcr.RepositoryException;
+import javax.jcr.Session;
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.net.URL;
+import java.security.MessageDigest;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.ResourceBundle;
+import java.util.Set;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+import java.util.jar.Manifest;
+
+/**
+ * An in-memory store of repository checkpoints for ordered sequences of package files, used by an
+ * {@link OakMachine} built with {@link OakMachine.Builder#withPrefixCheckpoints(PrefixCheckpoints)}. After each
+ * package of a scan is installed, the machine stores the resulting root node state along with the
+ * {@link ProgressCheck} and {@link ErrorListener} events dispatched for that package, keyed by a hash of the contents
+ * of the ordered list of package files installed so far. A later scan of a list of package files that shares a prefix
+ * with an earlier scan resumes from the checkpoint of the longest matching prefix, and replays the stored events for
+ * the skipped packages to its own checks, so that stateful checks produce the same reports as a full scan, without
+ * reinstalling the packages.
+ * <p>
+ * During replay, the session and node arguments of check events are provided by a session on the checkpoint state
+ * captured after the package that produced them, rather than on the live state during its extraction. Only
+ * {@link ProgressCheck#beforeExtract(PackageId, Session, PackageProperties, MetaInf, List)} for the top-level
+ * package receives the state captured before the package. A check that requires a node for an imported path which
+ * no longer exists in the captured state is reported as a check path exception. A {@link NodeStateCheck} receives
+ * node states read from the same captured state, skipping imported paths which no longer exist in it. A
+ * {@link NodeStateDiffCheck} receives the same node and property states that were compared during the original scan.
+ * <p>
+ * The key of the empty prefix is a hash of the base checkpoint, or of the init stages and pre-install packages of a
+ * cold scan, the fail-fast severity, the check budget, the configuration which affects package installation, and the
+ * class, name, and effective {@link EventMask} of each check, because the events recorded for a check are filtered by
+ * its mask. A store can therefore be shared by machines on different threads, and a scan only resumes from
+ * checkpoints stored by a machine with the same base, configuration, and checks. The configuration of a check is not
+ * part of the key, because the stored events are replayed to the checks of the resuming machine, which evaluate them
+ * with their own configuration.
+ * <p>
+ * The number of stored checkpoints is bounded by {@link #getMaxSize()}, and the least recently used checkpoint is
+ * discarded when the limit is reached. A checkpoint state captured from a node store which implements
+ * {@link Closeable}, such as a {@link TempSegmentNodeStore}, is only readable while that store is open. Such a store
+ * is therefore kept open by the checkpoints and the running scans which depend on it, and closed once they have all
+ * been discarded or finished, except that {@link #clear()} closes every store, so it must not be called while a scan
+ * using this store is running.
+ */
+public final class PrefixCheckpoints {
+    /**
+     * The default maximum number of stored checkpoints.
+     */
+    public static final int DEFAULT_MAX_SIZE = 64;
+
+    private final int maxSize;
+    private final Map<String, Checkpoint> checkpoints;
+    private final Map<Closeable, int[]> storeRefs = new IdentityHashMap<>();
+
+    /**
+     * Create a store which keeps up to {@link #DEFAULT_MAX_SIZE} checkpoints.
+     */
+    public PrefixCheckpoints() {
+        this(DEFAULT_MAX_SIZE);
+    }
+
+    /**
+     * Create a store which keeps up to the provided number of checkpoints. When the limit is reached, the least
+     * recently used checkpoint is discarded to make room for the next one.
+     *
+     * @param maxSize the maximum number of stored checkpoints, including the initial checkpoint
+     */
+    public PrefixCheckpoints(final int maxSize) {
+        if (maxSize < 1) {
+            throw new IllegalArgumentException("maxSize must be positive: " + maxSize);
+        }
+        this.maxSize = maxSize;
+        this.checkpoints = new LinkedHashMap<String, Checkpoint>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(final Map.Entry<String, Checkpoint> eldest) {
+                if (size() > PrefixCheckpoints.this.maxSize) {
+                    release(eldest.getValue().getStores());
+                    return true;
+                }
+                return false;
+            }
+        };
+    }
+
+    /**
+     * Get the maximum number of stored checkpoints.
+     *
+     * @return the maximum number of stored checkpoints
+     */
+    public int getMaxSize() {
+        return maxSize;
+    }
+
+    /**
+     * Get the number of stored checkpoints, including the initial checkpoint.
+     *
+     * @return the number of stored checkpoints
+     */
+    public int size() {
+        synchronized (storeRefs) {
+            return checkpoints.size();
+        }
+    }
+
+    /**
+     * Discard all stored checkpoints, and close the node stores they depend on.
+     */
+    public void clear() {
+        synchronized (storeRefs) {
+            checkpoints.clear();
+            storeRefs.keySet().forEach(store -> OakMachine.closeNodeStore(store));
+            storeRefs.clear();
+        }
+    }
+
+    @Nullable Checkpoint get(final @NotNull String key) {
+        synchronized (storeRefs) {
+            return checkpoints.get(key);
+        }
+    }
+
+    /**
+     * Find the checkpoint of the longest stored prefix, and keep the node stores it depends on open until they are
+     * passed to {@link #release(Collection)}.
+     *
+     * @param keys the prefix keys, starting with the shortest
+     * @return the checkpoint of the longest stored prefix, or null
+     */
+    @Nullable Checkpoint acquireLongest(final @NotNull List<String> keys) {
+        synchronized (storeRefs) {
+            for (int i = keys.size() - 1; i >= 0; i--) {
+                final Checkpoint checkpoint = checkpoints.get(keys.get(i));
+                if (checkpoint != null) {
+                    retain(checkpoint.getStores());
+                    return checkpoint;
+                }
+            }
+            return null;
+        }
+    }
+
+    void put(final @NotNull Checkpoint checkpoint) {
+        synchronized (storeRefs) {
+            if (!checkpoints.containsKey(checkpoint.getKey())) {
+                retain(checkpoint.getStores());
+                checkpoints.put(checkpoint.getKey(), checkpoint);
+            }
+        }
+    }
+
+    /**
+     * Keep the provided closeable node stores open until they are released as many times as they are retained.
+     *
+     * @param stores the closeable node stores
+     */
+    void retain(final @NotNull Collection<Closeable> stores) {
+        synchronized (storeRefs) {
+            stores.forEach(store -> storeRefs.computeIfAbsent(store, key -> new int[1])[0]++);
+        }
+    }
+
+    /**
+     * Release the provided closeable node stores, and close those which are no longer retained.
+     *
+     * @param stores the closeable node stores
+     */
+    void release(final @NotNull Collection<Closeable> stores) {
+        synchronized (storeRefs) {
+            for (Closeable store : stores) {
+                final int[] refs = storeRefs.get(store);
+                if (refs == null || --refs[0] <= 0) {
+                    storeRefs.remove(store);
+                    OakMachine.closeNodeStore(store);
+                }
+            }
+        }
+    }
+
+    /**
+     * Compute the key for the prefix formed by appending a package file to a shorter prefix.
+     *
+     * @param prefixKey the key of the shorter prefix
+     * @param file      the next package file
+     * @return the key of the longer prefix
+     * @throws IOException for errors reading the file
+     */
+    static String nextKey(final @NotNull String prefixKey, final @NotNull File file) throws IOException {
+        final MessageDigest digest = BaseCheckpointCache.newDigest();
+        BaseCheckpointCache.updateDigest(digest, prefixKey);
+        BaseCheckpointCache.updateDigest(digest, file.toURI().toURL());
+        return BaseCheckpointCache.toHex(digest.digest());
+    }
+
+    /**
+     * The root node state captured after installing a prefix of package files, along with the events dispatched for
+     * the last package in the prefix, and a reference to the checkpoint of the prefix without it.
+     */
+    static final class Checkpoint {
+        private final String key;
+        private final Checkpoint previous;
+        private final BaseCheckpoint state;
+        private final List<RecordedEvent> events;
+        private final Closeable store;
+
+        Checkpoint(final @NotNull String key,
+                   final @Nullable Checkpoint previous,
+                   final @NotNull BaseCheckpoint state,
+                   final @NotNull List<RecordedEvent> events) {
+            this(key, previous, state, events, null);
+        }
+
+        Checkpoint(final @NotNull String key,
+                   final @Nullable Checkpoint previous,
+                   final @NotNull BaseCheckpoint state,
+                   final @NotNull List<RecordedEvent> events,
+                   final @Nullable NodeStore nodeStore) {
+            this.key = key;
+            this.previous = previous;
+            this.state = state;
+            this.events = Collections.unmodifiableList(new ArrayList<>(events));
+            this.store = nodeStore instanceof Closeable ? (Closeable) nodeStore : null;
+        }
+
+        /**
+         * Get the closeable node stores which must remain open to read the states of this checkpoint and its
+         * predecessors.
+         *
+         * @return the distinct closeable node stores of the chain
+         */
+        @NotNull Collection<Closeable> getStores() {
+            final Set<Closeable> stores = Collections.newSetFromMap(new IdentityHashMap<>());
+            for (Checkpoint checkpoint = this; checkpoint != null; checkpoint = checkpoint.getPrevious()) {
+                if (checkpoint.store != null) {
+                    stores.add(checkpoint.store);
+                }
+            }
+            return stores;
+        }
+
+        @NotNull String getKey() {
+            return key;
+        }
+
+        @Nullable Checkpoint getPrevious() {
+            return previous;
+        }
+
+        @NotNull BaseCheckpoint getState() {
+            return state;
+        }
+
+        @NotNull List<RecordedEvent> getEvents() {
+            return events;
+        }
+
+        /**
+         * Get this checkpoint and its predecessors, starting with the initial checkpoint.
+         *
+         * @return the chain of checkpoints ending with this one
+         */
+        @NotNull List<Checkpoint> getChain() {
+            final List<Checkpoint> chain = new ArrayList<>();
+            for (Checkpoint checkpoint = this; checkpoint != null; checkpoint = checkpoint.getPrevious()) {
+                chain.add(0, checkpoint);
+            }
+            return chain;
+        }
+    }
+
+    /**
+     * A recorded check or error event.
+     */
+    @FunctionalInterface
+    interface RecordedEvent {
+        void replay(@NotNull Replay replay);
+    }
+
+    /**
+     * The target of replayed events, which dispatches check events to the check at the recorded index, and reports
+     * check exceptions to the error listener the same way as {@link OakMachine}. A trusted built-in check receives the
+     * trusted session instead of the read-only inspect session, also the same way as {@link OakMachine}.
+     */
+    static final class Replay {
+        /**
+         * Moves the repository state forward to the checkpoint captured after the package being replayed.
+         */
+        @FunctionalInterface
+        interface Advancer {
+            void advance() throws Exception;
+        }
+
+        @FunctionalInterface
+        interface CheckEvent {
+            void accept(@NotNull ProgressCheck check) throws Exception;
+        }
+
+        private final List<ProgressCheck> checks;
+        private final ErrorListener errorListener;
+        private final Session inspectSession;
+        private final Session trustedSession;
+        private final Supplier<NodeState> rootSupplier;
+        private Advancer advancer;
+        private PackageId extractingPackageId;
+
+        Replay(final @NotNull List<ProgressCheck> checks,
+               final @NotNull ErrorListener errorListener,
+               final @NotNull Session inspectSession,
+               final @NotNull Session trustedSession,
+               final @NotNull Supplier<NodeState> rootSupplier) {
+            this.checks = checks;
+            this.errorListener = errorListener;
+            this.inspectSession = inspectSession;
+            this.trustedSession = trustedSession;
+            this.rootSupplier = rootSupplier;
+        }
+
+        /**
+         * Replay the events of one checkpoint, advancing the state before the first event that was dispatched during
+         * or after extraction of the top-level package, or at the end if no such event was recorded.
+         *
+         * @param checkpoint the checkpoint to replay
+         * @param advancer   the function to advance the repository state to the checkpoint
+         * @throws Exception for errors advancing the repository state
+         */
+        void replayPackage(final @NotNull Checkpoint checkpoint, final @NotNull Advancer advancer) throws Exception {
+            this.advancer = advancer;
+            this.extractingPackageId = null;
+            for (RecordedEvent event : checkpoint.getEvents()) {
+                event.replay(this);
+            }
+            advanceOnce();
+        }
+
+        private void advanceOnce() {
+            if (advancer != null) {
+                final Advancer toCall = advancer;
+                advancer = null;
+                try {
+                    toCall.advance();
+                } catch (final Exception e) {
+                    throw new IllegalStateException("failed to advance to checkpoint state", e);
+                }
+            }
+        }
+
+        ErrorListener getErrorListener() {
+            return errorListener;
+        }
+
+        Session getInspectSession(final int checkIndex) {
+            return OakMachine.sessionFor(checks.get(checkIndex), inspectSession, trustedSession);
+        }
+
+        /**
+         * Get the root node state of the repository, which is the checkpoint state once the repository state has been
+         * advanced for the package being replayed.
+         *
+         * @return the current root node state
+         */
+        NodeState getRoot() {
+            return rootSupplier.get();
+        }
+
+        void dispatch(final int checkIndex, final @NotNull EventMask.Event event, final @NotNull PackageId packageId,
+                      final @NotNull CheckEvent checkEvent) {
+            if (event == EventMask.Event.BEFORE_EXTRACT && advancer != null
+                    && (extractingPackageId == null || extractingPackageId.equals(packageId))) {
+                extractingPackageId = packageId;
+            } else if (event != EventMask.Event.IDENTIFY_PACKAGE && event != EventMask.Event.READ_MANIFEST) {
+                advanceOnce();
+            }
+            final ProgressCheck check = checks.get(checkIndex);
+            try {
+                checkEvent.accept(check);
+            } catch (final Exception e) {
+                errorListener.onListenerException(e, check, packageId);
+            }
+        }
+
+        void dispatchPath(final int checkIndex, final @NotNull EventMask.Event event,
+                          final @NotNull PackageId packageId, final @NotNull String path,
+                          final @NotNull CheckEvent checkEvent) {
+            advanceOnce();
+            final ProgressCheck check = checks.get(checkIndex);
+            try {
+                checkEvent.accept(check);
+            } catch (final Exception e) {
+                errorListener.onListenerPathException(e, check, packageId, path);
+            }
+        }
+    }
+
+    /**
+     * Records check and error events in dispatch order while packages are installed.
+     */
+    static final class EventRecorder {
+        private final List<RecordedEvent> events = new ArrayList<>();
+
+        /**
+         * Return the events recorded since the last call, and start a new list.
+         *
+         * @return the recorded events
+         */
+        List<RecordedEvent> drain() {
+            final List<RecordedEvent> drained = new ArrayList<>(events);
+            events.clear();
+            return drained;
+        }
+
+        void record(final @NotNull RecordedEvent event) {
+            events.add(event);
+        }
+
+        /**
+         * Wrap each check in a recording check, which records events along with the index of the check.
+         *
+         * @param checks the checks to wrap
+         * @return the recording checks
+         */
+        List<ProgressCheck> wrapChecks(final @NotNull List<ProgressCheck> checks) {
+            final List<ProgressCheck> wrapped = new ArrayList<>(checks.size());
+            for (int i = 0; i < checks.size(); i++) {
+                wrapped.add(new RecordingCheck(this, i, checks.get(i)));
+            }
+            return wrapped;
+        }
+
+        ErrorListener wrapErrorListener(final @NotNull ErrorListener errorListener) {
+            return new RecordingErrorListener(this, errorListener);
+        }
+    }
+
+    /**
+     * Forwards events to a check after recording them for replay. The event mask is forwarded as well, so that the
+     * recording check receives exactly the same events as the check itself.
+     */
+    static final class RecordingCheck implements NodeStateDiffCheck {
+        private final EventRecorder recorder;
+        private final int index;
+        private final ProgressCheck delegate;
+
+        RecordingCheck(final @NotNull EventRecorder recorder, final int index, final @NotNull ProgressCheck delegate) {
+            this.recorder = recorder;
+            this.index = index;
+            this.delegate = delegate;
+        }
+
+        ProgressCheck getDelegate() {
+            return delegate;
+        }
+
+        @Override
+        public String getCheckName() {
+            return delegate.getCheckName();
+        }
+
+        @Override
+        public EventMask getEventMask() {
+            return delegate.getEventMask();
+        }
+
+        @Override
+        public boolean setViolationListener(final @Nullable Consumer<Violation> listener) {
+            return delegate.setViolationListener(listener);
+        }
+
+        @Override
+        public Collection<Violation> getReportedViolations() {
+            return delegate.getReportedViolations();
+        }
+
+        @Override
+        public void identifyPackage(final PackageId packageId, final File file) {
+            recorder.record(replay -> replay.dispatch(index, EventMask.Event.IDENTIFY_PACKAGE, packageId,
+                    check -> check.identifyPackage(packageId, file)));
+            delegate.identifyPackage(packageId, file);
+        }
+
+        @Override
+        public void identifySubpackage(final PackageId packageId, final PackageId parentId) {
+            recorder.record(replay -> replay.dispatch(index, EventMask.Event.IDENTIFY_SUBPACKAGE, packageId,
+                    check -> check.identifySubpackage(packageId, parentId)));
+            delegate.identifySubpackage(packageId, parentId);
+        }
+
+        @Override
+        public void readManifest(final PackageId packageId, final Manifest manifest) {
+            final Manifest recorded = new Manifest(manifest);
+            recorder.record(replay -> replay.dispatch(index, EventMask.Event.READ_MANIFEST, packageId,
+                    check -> check.readManifest(packageId, new Manifest(recorded))));
+            delegate.readManifest(packageId, manifest);
+        }
+
+        @Override
+        public void beforeExtract(final PackageId packageId, final Session inspectSession,
+                                  final PackageProperties packageProperties, final MetaInf metaInf,
+                                  final List<PackageId> subpackages) throws RepositoryException {
+            recorder.record(replay -> replay.dispatch(index, EventMask.Event.BEFORE_EXTRACT, packageId,
+                    check -> check.beforeExtract(packageId, replay.getInspectSession(index), packageProperties,
+                            metaInf, subpackages)));
+            delegate.beforeExtract(packageId, inspectSession, packageProperties, metaInf, subpackages);
+        }
+
+        @Override
+        public void importedPath(final PackageId packageId, final String path, final Node node,
+                                 final PathAction action) throws RepositoryException {
+            final boolean nodeRequired = node != null;
+            recorder.record(replay -> replay.dispatchPath(index, EventMask.Event.IMPORTED_PATH, packageId, path,
+                    check -> check.importedPath(packageId, path,
+                            nodeRequired ? replay.getInspectSession(index).getNode(path) : null, action)));
+            delegate.importedPath(packageId, path, node, action);
+        }
+
+        @Override
+        public void importedPaths(final PackageId packageId, final List<ImportedPath> importedPaths)
+                throws RepositoryException {
+            final List<String> paths = new ArrayList<>(importedPaths.size());
+            final List<PathAction> actions = new ArrayList<>(importedPaths.size());
+            for (ImportedPath importedPath : importedPaths) {
+                paths.add(importedPath.getPath());
+                actions.add(importedPath.getAction());
+            }
+            recorder.record(replay -> replay.dispatch(index, EventMask.Event.IMPORTED_PATH, packageId,
+                    check -> {
+                        final List<ImportedPath> replayed = new ArrayList<>(paths.size());
+                        for (int i = 0; i < paths.size(); i++) {
+                            replayed.add(new ImportedPath(paths.get(i), actions.get(i),
+                                    replay.getInspectSession(index), null));
+                        }
+                        check.importedPaths(packageId, replayed);
+                    }));
+            delegate.importedPaths(packageId, importedPaths);
+        }
+
+        @Override
+        public void deletedPath(final PackageId packageId, final String path, final Session inspectSession)
+                throws RepositoryException {
+            recorder.record(replay -> replay.dispatchPath(index, EventMask.Event.DELETED_PATH, packageId, path,
+                    check -> check.deletedPath(packageId, path, replay.getInspectSession(index))));
+            delegate.deletedPath(packageId, path, inspectSession);
+        }
+
+        @Override
+        public void afterExtract(final PackageId packageId, final Session inspectSession)
+                throws RepositoryException {
+            recorder.record(replay -> replay.dispatch(index, EventMask.Event.AFTER_EXTRACT, packageId,
+                    check -> check.afterExtract(packageId, replay.getInspectSession(index))));
+            delegate.afterExtract(packageId, inspectSession);
+        }
+
+        @Override
+        public void importedPathState(final PackageId packageId, final String path, final NodeState nodeState,
+                                      final PathAction action, final NodeState root)
+                throws RepositoryException {
+            recorder.record(replay -> replay.dispatchPath(index, EventMask.Event.IMPORTED_PATH, packageId, path,
+                    check -> {
+                        final NodeState replayRoot = replay.getRoot();
+                        final NodeState replayed = NodeStateUtils.getNode(replayRoot, path);
+                        if (replayed.exists()) {
+                            ((NodeStateCheck) check).importedPathState(packageId, path, replayed, action,
+                                    replayRoot);
+                        }
+                    }));
+            ((NodeStateCheck) delegate).importedPathState(packageId, path, nodeState, action, root);
+        }
+
+        @Override
+        public void afterExtractState(final PackageId packageId, final NodeState root) throws RepositoryException {
+            recorder.record(replay -> replay.dispatch(index, EventMask.Event.AFTER_EXTRACT, packageId,
+                    check -> ((NodeStateCheck) check).afterExtractState(packageId, replay.getRoot())));
+            ((NodeStateCheck) delegate).afterExtractState(packageId, root);
+        }
+
+        @Override
+        public void nodeChanged(final PackageId packageId, final String path, final NodeState before,
+                                final NodeState after) throws RepositoryException {
+            recorder.record(replay -> replay.dispatchPath(index, EventMask.Event.IMPORTED_PATH, packageId, path,
+                    check -> ((NodeStateDiffCheck) check).nodeChanged(packageId, path, before, after)));
+            ((NodeStateDiffCheck) delegate).nodeChanged(packageId, path, before, after);
+        }
+
+        @Override
+        public void propertyChanged(final PackageId packageId, final String parentPath,
+                                    final @Nullable PropertyState before, final @Nullable PropertyState after)
+                throws RepositoryException {
+            recorder.record(replay -> replay.dispatchPath(index, EventMask.Event.IMPORTED_PATH, packageId, parentPath,
+                    check -> ((NodeStateDiffCheck) check).propertyChanged(packageId, parentPath, before, after)));
+            ((NodeStateDiffCheck) delegate).propertyChanged(packageId, parentPath, before, after);
+        }
+    }
+
+    /**
+     * Forwards events to an error listener after recording them for replay. Check exceptions are forwarded with the
+     * original check, but are not recorded, because they are reported again when the check event is replayed.
+     */
+    static final class RecordingErrorListener implements ErrorListener {
+        private final EventRecorder recorder;
+        private final ErrorListener delegate;
+
+        RecordingErrorListener(final @NotNull EventRecorder recorder, final @NotNull ErrorListener delegate) {
+            this.recorder = recorder;
+            this.delegate = delegate;
+        }
+
+        private static ProgressCheck unwrap(final ProgressCheck check) {
+            return check instanceof RecordingCheck ? ((RecordingCheck) check).getDelegate() : check;
+        }
+
+        @Override
+        public @Nullable String getResourceBundleBaseName() {
+            return delegate.getResourceBundleBaseName();
+        }
+
+        @Override
+        public void setResourceBundle(final ResourceBundle resourceBundle) {
+            delegate.setResourceBundle(resourceBundle);
+        }
+
+        @Override
+        public boolean setViolationListener(final @Nullable Consumer<Violation> listener) {
+            return delegate.setViolationListener(listener);
+        }
+
+        @Override
+        public Collection<Violation> getReportedViolations() {
+            return delegate.getReportedViolations();
+        }
+
+        @Override
+        public void startedScan() {
+            delegate.startedScan();
+        }
+
+        @Override
+        public void finishedScan() {
+            delegate.finishedScan();
+        }
+
+        @Override
+        public void onNodeTypeRegistrationError(final Throwable e, final URL resource) {
+            recorder.record(replay -> replay.getErrorListener().onNodeTypeRegistrationError(e, resource));
+            delegate.onNodeTypeRegistrationError(e, resource);
+        }
+
+        @Override
+        public void onJcrNamespaceRegistrationError(final Throwable e, final String prefix, final String uri) {
+            recorder.record(replay -> replay.getErrorListener().onJcrNamespaceRegistrationError(e, prefix, uri));
+            delegate.onJcrNamespaceRegistrationError(e, prefix, uri);
+        }
+
+        @Override
+        public void onJcrPrivilegeRegistrationError(final Throwable e, final String jcrPrivilege) {
+            recorder.record(replay -> replay.getErrorListener().onJcrPrivilegeRegistrationError(e, jcrPrivilege));
+            delegate.onJcrPrivilegeRegistrationError(e, jcrPrivilege);
+        }
+
+        @Override
+        public void onForcedRootCreationError(final Throwable e, final ForcedRoot forcedRoot) {
+            recorder.record(replay -> replay.getErrorListener().onForcedRootCreationError(e, forcedRoot));
+            delegate.onForcedRootCreationError(e, forcedRoot);
+        }
+
+        @Override
+        public void onListenerException(final Exception e, final ProgressCheck listener, final PackageId packageId) {
+            delegate.onListenerException(e, unwrap(listener), packageId);
+        }
+
+        @Override
+        public void onListenerPathException(final Exception e, final ProgressCheck handler,
+                                            final PackageId packageId, final String path) {
+            delegate.onListenerPathException(e, unwrap(handler), packageId, path);
+        }
+
+        @Override
+        public void onCheckBudgetExceeded(final ProgressCheck check, final PackageId packageId,
+                                          final ScanMetrics.Callback callback, final CheckBudget.Limit limit,
+                                          final long elapsedMillis, final long budgetMillis) {
+            delegate.onCheckBudgetExceeded(unwrap(check), packageId, callback, limit, elapsedMillis, budgetMillis);
+        }
+
+        @Override
+        public void onImporterException(final Exception e, final PackageId packageId, final String path) {
+            recorder.record(replay -> replay.getErrorListener().onImporterException(e, packageId, path));
+            delegate.onImporterException(e, packageId, path);
+        }
+
+        @Override
+        public void onSubpackageException(final Exception e, final PackageId packageId) {
+            recorder.record(replay -> replay.getErrorListener().onSubpackageException(e, packageId));
+            delegate.onSubpackageException(e, packageId);
+        }
+
+        @Override
+        public void onInstallHookError(final Throwable e, final PackageId packageId) {
+            recorder.record(replay -> replay.getErrorListener().onInstallHookError(e, packageId));
+            delegate.onInstallHookError(e, packageId);
+        }
+
+        @Override
+        public void onProhibitedInstallHookRegistration(final PackageId packageId) {
+            recorder.record(replay -> replay.getErrorListener().onProhibitedInstallHookRegistration(packageId));
+            delegate.onProhibitedInstallHookRegistration(packageId);
+        }
+    }
+}
@@ -16,10 +16,14 @@
 
 package net.adamcin.oakpal.core;
 
+import net.adamcin.oakpal.api.EventMask;
+import net.adamcin.oakpal.api.ImportedPath;
 import net.adamcin.oakpal.api.PathAction;
 import net.adamcin.oakpal.api.ProgressCheck;
 import net.adamcin.oakpal.api.ProgressCheckFactory;
 import net.adamcin.oakpal.api.Violation;
+import org.apache.jackrabbit.oak.api.PropertyState;
+import org.apache.jackrabbit.oak.spi.state.NodeState;
 import org.apache.jackrabbit.vault.fs.config.MetaInf;
 import org.apache.jackrabbit.vault.packaging.PackageId;
 import org.apache.jackrabbit.vault.packaging.PackageProperties;
@@ -33,6 +37,7 @@ import java.io.File;
 import java.util.Collection;
 import java.util.List;
 import java.util.ResourceBundle;
+import java.util.function.Consumer;
 import java.util.jar.Manifest;
 
 /**
@@ -40,7 +45,7 @@ import java.util.jar.Manifest;
  * 1) ensure that a configured checkName is actually respected
  * 2) guard {@link ProgressCheckFactory}s from being externally re-configured during a scan
  */
-class ProgressCheckAliasFacade implements ProgressCheck {
+class ProgressCheckAliasFacade implements NodeStateDiffCheck {
 
     private final ProgressCheck wrapped;
     private final String alias;
@@ -51,6 +56,10 @@ class ProgressCheckAliasFacade implements ProgressCheck {
         this.alias = alias;
     }
 
+    ProgressCheck getWrapped() {
+        return wrapped;
+    }
+
     @Override
     public String getCheckName() {
         if (alias != null) {
@@ -70,11 +79,21 @@ class ProgressCheckAliasFacade implements ProgressCheck {
         wrapped.setResourceBundle(resourceBundle);
     }
 
+    @Override
+    public EventMask getEventMask() {
+        return wrapped.getEventMask();
+    }
+
     @Override
     public void startedScan() {
         wrapped.startedScan();
     }
 
+    @Override
+    public boolean setViolationListener(final @Nullable Consumer<Violation> listener) {
+        return wrapped.setViolationListener(listener);
+    }
+
     @Override
     public Collection<Violation> getReportedViolations() {
         return wrapped.getReportedViolations();
@@ -108,6 +127,12 @@ class ProgressCheckAliasFacade implements ProgressCheck {
         wrapped.importedPath(packageId, path, node, action);
     }
 
+    @Override
+    public void importedPaths(final PackageId packageId, final List<ImportedPath> importedPaths)
+            throws RepositoryException {
+        wrapped.importedPaths(packageId, importedPaths);
+    }
+
     @Override
     public void deletedPath(final PackageId packageId, final String path, final Session inspectSession)
             throws RepositoryException {
@@ -119,6 +144,38 @@ class ProgressCheckAliasFacade implements ProgressCheck {
         wrapped.afterExtract(packageId, inspectSession);
     }
 
+    @Override
+    public void importedPathState(final PackageId packageId, final String path, final NodeState nodeState,
+                                  final PathAction action, final NodeState root) throws RepositoryException {
+        if (wrapped instanceof NodeStateCheck) {
+            ((NodeStateCheck) wrapped).importedPathState(packageId, path, nodeState, action, root);
+        }
+    }
+
+    @Override
+    public void afterExtractState(final PackageId packageId, final NodeState root) throws RepositoryException {
+        if (wrapped instanceof NodeStateCheck) {
+            ((NodeStateCheck) wrapped).afterExtractState(packageId, root);
+        }
+    }
+
+    @Override
+    public void nodeChanged(final PackageId packageId, final String path, final NodeState before,
+                            final NodeState after) throws RepositoryException {
+        if (wrapped instanceof NodeStateDiffCheck) {
+            ((NodeStateDiffCheck) wrapped).nodeChanged(packageId, path, before, after);
+        }
+    }
+
+    @Override
+    public void propertyChanged(final PackageId packageId, final String parentPath,
+                                final @Nullable PropertyState before, final @Nullable PropertyState after)
+            throws RepositoryException {
+        if (wrapped instanceof NodeStateDiffCheck) {
+            ((NodeStateDiffCheck) wrapped).propertyChanged(packageId, parentPath, before, after);
+        }
+    }
+
     @Override
     public void finishedScan() {
         wrapped.finishedScan();
@@ -16,9 +16,11 @@
 
 package net.adamcin.oakpal.core;
 
+import net.adamcin.oakpal.api.JavaxJson;
 import net.adamcin.oakpal.api.SimpleViolation;
 import net.adamcin.oakpal.api.Violation;
 import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
 import org.osgi.annotation.versioning.ProviderType;
 
 import javax.json.Json;
@@ -29,21 +31,29 @@ import javax.json.JsonWriter;
 import javax.json.JsonWriterFactory;
 import javax.json.stream.JsonCollectors;
 import javax.json.stream.JsonGenerator;
+import javax.json.stream.JsonGeneratorFactory;
+import java.io.BufferedReader;
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.FileOutputStream;
+import java.io.FilterWriter;
 import java.io.IOException;
 import java.io.InputStreamReader;
 import java.io.OutputStreamWriter;
 import java.io.Reader;
+import java.io.StringReader;
 import java.io.Writer;
 import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 
 import static net.adamcin.oakpal.api.JavaxJson.key;
 import static net.adamcin.oakpal.api.JavaxJson.mapArrayOfObjects;
+import static net.adamcin.oakpal.api.JavaxJson.obj;
 import static net.adamcin.oakpal.api.JavaxJson.optArray;
 
 /**
@@ -57,6 +67,22 @@ public final class ReportMapper {
         String checkName();
 
         String violations();
+
+        /**
+         * The key of the optional {@link ScanMetrics} section.
+         *
+         * @return the metrics key
+         * @since 2.1.0
+         */
+        String metrics();
+
+        /**
+         * The key of the violation object of each NDJSON line.
+         *
+         * @return the violation key
+         * @since 2.1.0
+         */
+        String violation();
     }
 
     private static final JsonKeys KEYS = new JsonKeys() {
@@ -74,12 +100,24 @@ public final class ReportMapper {
         public String violations() {
             return "violations";
         }
+
+        @Override
+        public String metrics() {
+            return "metrics";
+        }
+
+        @Override
+        public String violation() {
+            return "violation";
+        }
     };
 
     public static JsonKeys keys() {
         return KEYS;
     }
 
+    private static final JsonGeneratorFactory GENERATOR_FACTORY = Json.createGeneratorFactory(Collections.emptyMap());
+
     private ReportMapper() {
         /* No instantiation */
     }
@@ -137,16 +175,47 @@ public final class ReportMapper {
 
     public static void writeReports(final @NotNull Collection<CheckReport> reports,
                                     final @NotNull WriterSupplier writerSupplier) throws IOException {
+        writeReports(reports, null, writerSupplier);
+    }
+
+    /**
+     * Opens a writer, writes the reports and the optional scan metrics as a json object, and closes the writer.
+     *
+     * @param reports        the reports to serialize
+     * @param scanMetrics    the scan metrics to serialize, or null to omit the metrics section
+     * @param writerSupplier a function supplying a {@link Writer}
+     * @throws IOException for failing to write
+     * @since 2.1.0
+     */
+    public static void writeReports(final @NotNull Collection<CheckReport> reports,
+                                    final @Nullable ScanMetrics scanMetrics,
+                                    final @NotNull WriterSupplier writerSupplier) throws IOException {
         JsonWriterFactory writerFactory = Json
                 .createWriterFactory(Collections.singletonMap(JsonGenerator.PRETTY_PRINTING, true));
         try (Writer writer = writerSupplier.open(); JsonWriter jsonWriter = writerFactory.createWriter(writer)) {
-            jsonWriter.writeObject(reportsToJsonObject(reports));
+            jsonWriter.writeObject(reportsToJsonObject(reports, scanMetrics));
         }
     }
 
     public static void writeReportsToFile(final Collection<CheckReport> reports,
                                           final @NotNull File outputFile) throws IOException {
-        writeReports(reports, () -> new OutputStreamWriter(new FileOutputStream(outputFile), StandardCharsets.UTF_8));
+        writeReportsToFile(reports, null, outputFile);
+    }
+
+    /**
+     * Write the reports and the optional scan metrics to a json file.
+     *
+     * @param reports     the reports to serialize
+     * @param scanMetrics the scan metrics to serialize, or null to omit the metrics section
+     * @param outputFile  the json file to write
+     * @throws IOException for failing to write
+     * @since 2.1.0
+     */
+    public static void writeReportsToFile(final Collection<CheckReport> reports,
+                                          final @Nullable ScanMetrics scanMetrics,
+                                          final @NotNull File outputFile) throws IOException {
+        writeReports(reports, scanMetrics,
+                () -> new OutputStreamWriter(new FileOutputStream(outputFile), StandardCharsets.UTF_8));
     }
 
     static CheckReport reportFromJson(final JsonObject jsonReport) {
@@ -179,4 +248,141 @@ public final class ReportMapper {
     public static JsonObject reportsToJsonObject(final @NotNull Collection<CheckReport> reports) {
         return key(keys().reports(), reportsToJson(reports)).get();
     }
+
+    /**
+     * Transforms a collection of CheckReports to a JsonArray assigned to a key {@link JsonKeys#reports()} in
+     * an outer object, along with the scan metrics assigned to a key {@link JsonKeys#metrics()}, unless the metrics
+     * are null or empty.
+     *
+     * @param reports     the reports to serialize
+     * @param scanMetrics the scan metrics to serialize, or null
+     * @return a JsonObject with a JsonArray of CheckReport json objects and an optional metrics object
+     * @since 2.1.0
+     */
+    public static JsonObject reportsToJsonObject(final @NotNull Collection<CheckReport> reports,
+                                                 final @Nullable ScanMetrics scanMetrics) {
+        final JavaxJson.Obj json = obj().key(keys().reports(), reportsToJson(reports));
+        if (scanMetrics != null && !scanMetrics.isEmpty()) {
+            json.key(keys().metrics(), scanMetrics.toJson());
+        }
+        return json.get();
+    }
+
+    /**
+     * Write a single violation as a line of NDJSON, which is a json object with the check name assigned to
+     * {@link JsonKeys#checkName()} and the violation assigned to {@link JsonKeys#violation()}, followed by a newline.
+     * The writer is flushed, but not closed.
+     *
+     * @param writer    the writer
+     * @param checkName the name of the reporting check
+     * @param violation the violation
+     * @throws IOException for failing to write
+     * @since 2.1.0
+     */
+    public static void writeViolationLine(final @NotNull Writer writer,
+                                          final @NotNull String checkName,
+                                          final @NotNull Violation violation) throws IOException {
+        try (JsonGenerator generator = GENERATOR_FACTORY.createGenerator(new FilterWriter(writer) {
+            @Override
+            public void close() {
+                /* leave the underlying writer open for the next line */
+            }
+        })) {
+            generator.writeStartObject()
+                    .write(keys().checkName(), checkName)
+                    .write(keys().violation(), violation.toJson())
+                    .writeEnd();
+        }
+        writer.write("\n");
+        writer.flush();
+    }
+
+    /**
+     * Create a {@link ViolationSink} which writes each violation as a line of NDJSON using
+     * {@link #writeViolationLine(Writer, String, Violation)}. The caller remains responsible for closing the writer.
+     *
+     * @param writer the writer
+     * @return a violation sink
+     * @since 2.1.0
+     */
+    public static ViolationSink ndjsonSink(final @NotNull Writer writer) {
+        return (checkName, violation) -> writeViolationLine(writer, checkName, violation);
+    }
+
+    /**
+     * Opens a reader, reads one line of NDJSON at a time, as written by
+     * {@link #writeViolationLine(Writer, String, Violation)}, passes the violation of each line to the sink, and closes
+     * the reader, so that no more than one violation is held in memory at a time. Blank lines are ignored.
+     *
+     * @param readerSupplier a function supplying a {@link Reader}
+     * @param sink           the sink to receive each violation with its check name
+     * @throws IOException for failing to read, or for the sink failing to receive a violation
+     * @since 2.1.0
+     */
+    public static void readViolationsFromNdjson(final @NotNull ReaderSupplier readerSupplier,
+                                                final @NotNull ViolationSink sink) throws IOException {
+        try (BufferedReader reader = new BufferedReader(readerSupplier.open())) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                if (line.trim().isEmpty()) {
+                    continue;
+                }
+                try (JsonReader jsonReader = Json.createReader(new StringReader(line))) {
+                    final JsonObject json = jsonReader.readObject();
+                    sink.reportedViolation(json.getString(keys().checkName(), ""),
+                            violationFromJson(json.getJsonObject(keys().violation())));
+                }
+            }
+        }
+    }
+
+    /**
+     * Read violations from an NDJSON file one line at a time, and pass each violation to the sink.
+     *
+     * @param ndjsonFile an NDJSON file
+     * @param sink       the sink to receive each violation with its check name
+     * @throws IOException for failing to read, or for the sink failing to receive a violation
+     * @see #readViolationsFromNdjson(ReaderSupplier, ViolationSink)
+     * @since 2.1.0
+     */
+    public static void readViolationsFromNdjsonFile(final @NotNull File ndjsonFile,
+                                                    final @NotNull ViolationSink sink) throws IOException {
+        readViolationsFromNdjson(() ->
+                new InputStreamReader(new FileInputStream(ndjsonFile), StandardCharsets.UTF_8), sink);
+    }
+
+    /**
+     * Opens a reader, reads one line of NDJSON at a time, as written by
+     * {@link #writeViolationLine(Writer, String, Violation)}, closes the reader, and returns a list of reports, one
+     * for each distinct check name in order of its first violation. Blank lines are ignored. Checks which reported no
+     * violations are not represented in NDJSON, so they are missing from the returned list. Use
+     * {@link #readViolationsFromNdjson(ReaderSupplier, ViolationSink)} to avoid holding every violation in memory.
+     *
+     * @param readerSupplier a function supplying a {@link Reader}
+     * @return a list of check reports
+     * @throws IOException for failing to read
+     * @since 2.1.0
+     */
+    public static List<CheckReport> readReportsFromNdjson(final @NotNull ReaderSupplier readerSupplier)
+            throws IOException {
+        final Map<String, List<Violation>> violationsByCheck = new LinkedHashMap<>();
+        readViolationsFromNdjson(readerSupplier, (checkName, violation) ->
+                violationsByCheck.computeIfAbsent(checkName, key -> new ArrayList<>()).add(violation));
+        final List<CheckReport> reports = new ArrayList<>(violationsByCheck.size());
+        violationsByCheck.forEach((checkName, violations) -> reports.add(new SimpleReport(checkName, violations)));
+        return Collections.unmodifiableList(reports);
+    }
+
+    /**
+     * Read reports from an NDJSON file and return a list of check reports.
+     *
+     * @param ndjsonFile an NDJSON file
+     * @return a list of check reports
+     * @throws IOException if fails to read a file
+     * @since 2.1.0
+     */
+    public static List<CheckReport> readReportsFromNdjsonFile(final @NotNull File ndjsonFile) throws IOException {
+        return readReportsFromNdjson(() ->
+                new InputStreamReader(new FileInputStream(ndjsonFile), StandardCharsets.UTF_8));
+    }
 }
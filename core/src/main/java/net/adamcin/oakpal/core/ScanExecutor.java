@@ -0,0 +1,170 @@
+/*
+ * Copyright 2020 Mark Adamcin
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.adamcin.oakpal.core;
+
+import net.adamcin.oakpal.api.Result;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+/**
+ * Runs independent scans concurrently. {@link net.adamcin.oakpal.api.ProgressCheck}s and {@link ErrorListener}s
+ * are stateful, so each scan is performed by a separate {@link OakMachine} produced by a {@link MachineFactory},
+ * which must construct new check and error listener instances every time it is called.
+ * {@link OakpalPlan#toOakMachineBuilder(ErrorListener, ClassLoader)} satisfies this requirement by loading new checks
+ * from the plan's {@link CheckSpec}s for every call.
+ * Likewise, each scan gets its own {@link org.apache.jackrabbit.oak.spi.state.NodeStore}, either from the machine's
+ * node store supplier, or as a fork of a shared {@link BaseCheckpoint}.
+ */
+public final class ScanExecutor {
+
+    /**
+     * Constructs a new {@link OakMachine} for each scan.
+     */
+    @FunctionalInterface
+    public interface MachineFactory {
+        /**
+         * Construct a new machine with its own progress check and error listener instances.
+         *
+         * @return a new oak machine
+         * @throws Exception for errors loading checks
+         */
+        @NotNull OakMachine newMachine() throws Exception;
+    }
+
+    private final MachineFactory machineFactory;
+    private final int parallelism;
+
+    /**
+     * Constructor.
+     *
+     * @param machineFactory the factory for a new oak machine for each scan
+     * @param parallelism    the maximum number of scans to run at the same time
+     */
+    public ScanExecutor(final @NotNull MachineFactory machineFactory, final int parallelism) {
+        if (parallelism < 1) {
+            throw new IllegalArgumentException("parallelism must be at least 1");
+        }
+        this.machineFactory = machineFactory;
+        this.parallelism = parallelism;
+    }
+
+    /**
+     * Create a scan executor that loads a new set of progress checks from the plan for each scan.
+     *
+     * @param plan                  the plan
+     * @param errorListenerSupplier supplies a new error listener for each scan
+     * @param classLoader           the classloader for checklist discovery and check loading
+     * @param parallelism           the maximum number of scans to run at the same time
+     * @return a new scan executor
+     */
+    public static ScanExecutor fromPlan(final @NotNull OakpalPlan plan,
+                                        final @NotNull Supplier<? extends ErrorListener> errorListenerSupplier,
+                                        final @NotNull ClassLoader classLoader,
+                                        final int parallelism) {
+        return new ScanExecutor(() -> plan.toOakMachineBuilder(errorListenerSupplier.get(), classLoader).build(),
+                parallelism);
+    }
+
+    public int getParallelism() {
+        return parallelism;
+    }
+
+    /**
+     * Perform each of the provided scans, with at most {@link #getParallelism()} scans running at the same time.
+     *
+     * @param scans a list of package file lists, each installed in sequence by a separate scan
+     * @return a list of report results, one per scan in the same order as {@code scans}
+     * @see OakMachine#scanPackages(List)
+     */
+    public List<Result<List<CheckReport>>> scanAll(final @NotNull List<List<File>> scans) {
+        return scanAll(null, scans);
+    }
+
+    /**
+     * Perform each of the provided scans starting from a fork of the provided base checkpoint, with at most
+     * {@link #getParallelism()} scans running at the same time. The checkpoint must be prepared by a machine with an
+     * equivalent configuration to those produced by the {@link MachineFactory}.
+     *
+     * @param base  the shared base checkpoint, or null to perform cold scans
+     * @param scans a list of package file lists, each installed in sequence by a separate scan
+     * @return a list of report results, one per scan in the same order as {@code scans}
+     * @see OakMachine#scanPackages(BaseCheckpoint, List)
+     */
+    public List<Result<List<CheckReport>>> scanAll(final @Nullable BaseCheckpoint base,
+                                                   final @NotNull List<List<File>> scans) {
+        if (scans.isEmpty()) {
+            return Collections.emptyList();
+        }
+        final ExecutorService executor = Executors.newFixedThreadPool(Math.min(parallelism, scans.size()),
+                new ScanThreadFactory());
+        try {
+            final List<Future<Result<List<CheckReport>>>> futures = new ArrayList<>(scans.size());
+            for (List<File> files : scans) {
+                futures.add(executor.submit(() -> scanOne(base, files)));
+            }
+            final List<Result<List<CheckReport>>> results = new ArrayList<>(scans.size());
+            for (Future<Result<List<CheckReport>>> future : futures) {
+                results.add(awaitResult(future));
+            }
+            return results;
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    Result<List<CheckReport>> scanOne(final @Nullable BaseCheckpoint base, final @NotNull List<File> files) {
+        try {
+            return Result.success(machineFactory.newMachine().scanPackages(base, files));
+        } catch (final Exception e) {
+            return Result.failure(e);
+        }
+    }
+
+    static Result<List<CheckReport>> awaitResult(final @NotNull Future<Result<List<CheckReport>>> future) {
+        try {
+            return future.get();
+        } catch (final InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return Result.failure(e);
+        } catch (final ExecutionException e) {
+            return Result.failure(e);
+        }
+    }
+
+    static final class ScanThreadFactory implements ThreadFactory {
+        private final AtomicInteger threadCount = new AtomicInteger(0);
+
+        @Override
+        public Thread newThread(final @NotNull Runnable runnable) {
+            final Thread thread = new Thread(runnable, "oakpal-scan-" + threadCount.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        }
+    }
+}
@@ -0,0 +1,444 @@
+/*
+ * Copyright 2020 Mark Adamcin
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.adamcin.oakpal.core;
+
+import net.adamcin.oakpal.api.JavaxJson;
+import net.adamcin.oakpal.api.JsonObjectConvertible;
+import net.adamcin.oakpal.api.ProgressCheck;
+import org.apache.jackrabbit.vault.packaging.PackageId;
+import org.jetbrains.annotations.NotNull;
+import org.osgi.annotation.versioning.ProviderType;
+
+import javax.json.JsonObject;
+import javax.json.stream.JsonCollectors;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import static net.adamcin.oakpal.api.JavaxJson.obj;
+
+/**
+ * Collects invocation counts and elapsed times of {@link ProgressCheck} callbacks, and of the package importer, during
+ * scans performed by an {@link OakMachine} built with {@link OakMachine.Builder#withScanMetrics(ScanMetrics)}. Metrics
+ * accumulate across every scan performed by such a machine. Events replayed from {@link PrefixCheckpoints} are not
+ * timed.
+ * <p>
+ * Instances are not thread-safe, and must not be shared by machines which perform scans concurrently.
+ *
+ * @since 2.1.0
+ */
+public final class ScanMetrics implements JsonObjectConvertible {
+
+    /**
+     * Json keys for ScanMetrics. Use {@link ScanMetrics#keys()} to access singleton.
+     */
+    @ProviderType
+    public interface JsonKeys {
+        String checks();
+
+        String packages();
+
+        String checkName();
+
+        String packageId();
+
+        String callbacks();
+
+        String importer();
+
+        String count();
+
+        String totalMillis();
+
+        String maxMillis();
+
+        String p50Millis();
+
+        String p90Millis();
+
+        String p99Millis();
+    }
+
+    private static final JsonKeys KEYS = new JsonKeys() {
+        @Override
+        public String checks() {
+            return "checks";
+        }
+
+        @Override
+        public String packages() {
+            return "packages";
+        }
+
+        @Override
+        public String checkName() {
+            return "checkName";
+        }
+
+        @Override
+        public String packageId() {
+            return "packageId";
+        }
+
+        @Override
+        public String callbacks() {
+            return "callbacks";
+        }
+
+        @Override
+        public String importer() {
+            return "importer";
+        }
+
+        @Override
+        public String count() {
+            return "count";
+        }
+
+        @Override
+        public String totalMillis() {
+            return "totalMillis";
+        }
+
+        @Override
+        public String maxMillis() {
+            return "maxMillis";
+        }
+
+        @Override
+        public String p50Millis() {
+            return "p50Millis";
+        }
+
+        @Override
+        public String p90Millis() {
+            return "p90Millis";
+        }
+
+        @Override
+        public String p99Millis() {
+            return "p99Millis";
+        }
+    };
+
+    @NotNull
+    public static JsonKeys keys() {
+        return KEYS;
+    }
+
+    /**
+     * The timed {@link ProgressCheck} callbacks.
+     */
+    public enum Callback {
+        STARTED_SCAN("startedScan"),
+        IDENTIFY_PACKAGE("identifyPackage"),
+        IDENTIFY_SUBPACKAGE("identifySubpackage"),
+        READ_MANIFEST("readManifest"),
+        BEFORE_EXTRACT("beforeExtract"),
+        IMPORTED_PATH("importedPath"),
+        IMPORTED_PATHS("importedPaths"),
+        IMPORTED_PATH_STATE("importedPathState"),
+        DELETED_PATH("deletedPath"),
+        AFTER_EXTRACT("afterExtract"),
+        AFTER_EXTRACT_STATE("afterExtractState"),
+        NODE_CHANGED("nodeChanged"),
+        PROPERTY_CHANGED("propertyChanged"),
+        FINISHED_SCAN("finishedScan");
+
+        private final String methodName;
+
+        Callback(final @NotNull String methodName) {
+            this.methodName = methodName;
+        }
+
+        /**
+         * The name of the callback method, which is also used as the json key.
+         *
+         * @return the callback method name
+         */
+        public String getMethodName() {
+            return methodName;
+        }
+    }
+
+    /**
+     * The timed phases of the package importer. The extract phase includes the time spent in the importedPath and
+     * deletedPath callbacks, which are invoked synchronously by the importer.
+     */
+    public enum ImporterPhase {
+        EXTRACT("extract"),
+        SAVE("save");
+
+        private final String phaseName;
+
+        ImporterPhase(final @NotNull String phaseName) {
+            this.phaseName = phaseName;
+        }
+
+        /**
+         * The name of the phase, which is also used as the json key.
+         *
+         * @return the phase name
+         */
+        public String getPhaseName() {
+            return phaseName;
+        }
+    }
+
+    /**
+     * Accumulates the count, total, and maximum of a series of elapsed times, along with a log-linear histogram for
+     * estimating percentiles. Each power of two is divided into {@link #SUB_BUCKETS} buckets, so that a percentile is
+     * reported as the upper bound of its bucket, which overestimates the true value by less than 13%.
+     */
+    public static final class Timer {
+        static final int SUB_BUCKET_BITS = 3;
+        static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+        static final int BUCKETS = (Long.SIZE - SUB_BUCKET_BITS) * SUB_BUCKETS;
+
+        private final long[] histogram = new long[BUCKETS];
+        private long count;
+        private long totalNanos;
+        private long maxNanos;
+
+        static int bucketIndex(final long nanos) {
+            if (nanos < SUB_BUCKETS) {
+                return (int) Math.max(0L, nanos);
+            }
+            final int shift = (Long.SIZE - 1 - Long.numberOfLeadingZeros(nanos)) - SUB_BUCKET_BITS;
+            return ((shift + 1) << SUB_BUCKET_BITS) + (int) ((nanos >>> shift) & (SUB_BUCKETS - 1));
+        }
+
+        static long bucketUpperBound(final int index) {
+            if (index < SUB_BUCKETS) {
+                return index;
+            }
+            final int shift = (index >> SUB_BUCKET_BITS) - 1;
+            final long subBucket = index & (SUB_BUCKETS - 1);
+            return ((SUB_BUCKETS + subBucket + 1) << shift) - 1;
+        }
+
+        void record(final long nanos) {
+            count++;
+            totalNanos += nanos;
+            if (nanos > maxNanos) {
+                maxNanos = nanos;
+            }
+            histogram[bucketIndex(nanos)]++;
+        }
+
+        public long getCount() {
+            return count;
+        }
+
+        public long getTotalNanos() {
+            return totalNanos;
+        }
+
+        public long getMaxNanos() {
+            return maxNanos;
+        }
+
+        /**
+         * Estimate the elapsed time at the provided percentile.
+         *
+         * @param percentile a percentile between 0 and 100
+         * @return the estimated elapsed time in nanoseconds, never greater than {@link #getMaxNanos()}
+         */
+        public long getPercentileNanos(final double percentile) {
+            if (count == 0) {
+                return 0L;
+            }
+            final long rank = Math.max(1L, (long) Math.ceil(count * Math.min(100.0D, percentile) / 100.0D));
+            long seen = 0L;
+            for (int i = 0; i < BUCKETS; i++) {
+                seen += histogram[i];
+                if (seen >= rank) {
+                    return Math.min(bucketUpperBound(i), maxNanos);
+                }
+            }
+            return maxNanos;
+        }
+
+        static double toMillis(final long nanos) {
+            return Math.round(nanos / 1000.0D) / 1000.0D;
+        }
+
+        JsonObject toJson() {
+            return obj()
+                    .key(keys().count(), count)
+                    .key(keys().totalMillis(), toMillis(totalNanos))
+                    .key(keys().maxMillis(), toMillis(maxNanos))
+                    .key(keys().p50Millis(), toMillis(getPercentileNanos(50.0D)))
+                    .key(keys().p90Millis(), toMillis(getPercentileNanos(90.0D)))
+                    .key(keys().p99Millis(), toMillis(getPercentileNanos(99.0D)))
+                    .get();
+        }
+    }
+
+    /**
+     * The callback timers of a single {@link ProgressCheck}.
+     */
+    public static final class CheckMetrics {
+        private final String checkName;
+        private final Timer[] timers = new Timer[Callback.values().length];
+
+        CheckMetrics(final String checkName) {
+            this.checkName = checkName;
+            for (int i = 0; i < timers.length; i++) {
+                timers[i] = new Timer();
+            }
+        }
+
+        public String getCheckName() {
+            return checkName;
+        }
+
+        public @NotNull Timer getTimer(final @NotNull Callback callback) {
+            return timers[callback.ordinal()];
+        }
+
+        JsonObject toJson() {
+            final JavaxJson.Obj callbacks = obj();
+            for (Callback callback : Callback.values()) {
+                final Timer timer = getTimer(callback);
+                if (timer.getCount() > 0) {
+                    callbacks.key(callback.getMethodName(), timer.toJson());
+                }
+            }
+            return obj()
+                    .key(keys().checkName()).opt(checkName)
+                    .key(keys().callbacks(), callbacks)
+                    .get();
+        }
+    }
+
+    /**
+     * The importer phase timers of a single package.
+     */
+    public static final class PackageMetrics {
+        private final PackageId packageId;
+        private final Timer[] timers = new Timer[ImporterPhase.values().length];
+
+        PackageMetrics(final @NotNull PackageId packageId) {
+            this.packageId = packageId;
+            for (int i = 0; i < timers.length; i++) {
+                timers[i] = new Timer();
+            }
+        }
+
+        public PackageId getPackageId() {
+            return packageId;
+        }
+
+        public @NotNull Timer getTimer(final @NotNull ImporterPhase phase) {
+            return timers[phase.ordinal()];
+        }
+
+        JsonObject toJson() {
+            final JavaxJson.Obj importer = obj();
+            for (ImporterPhase phase : ImporterPhase.values()) {
+                importer.key(phase.getPhaseName(), getTimer(phase).toJson());
+            }
+            return obj()
+                    .key(keys().packageId(), packageId.toString())
+                    .key(keys().importer(), importer)
+                    .get();
+        }
+    }
+
+    private final Map<ProgressCheck, CheckMetrics> checkMetrics = new IdentityHashMap<>();
+    private final List<CheckMetrics> checkMetricsList = new ArrayList<>();
+    private final Map<PackageId, PackageMetrics> packageMetrics = new LinkedHashMap<>();
+
+    private CheckMetrics metricsFor(final @NotNull ProgressCheck check) {
+        CheckMetrics metrics = checkMetrics.get(check);
+        if (metrics == null) {
+            metrics = new CheckMetrics(check.getCheckName());
+            checkMetrics.put(check, metrics);
+            checkMetricsList.add(metrics);
+        }
+        return metrics;
+    }
+
+    /**
+     * Record the elapsed time of a single callback invocation.
+     *
+     * @param check    the progress check
+     * @param callback the callback
+     * @param nanos    the elapsed time in nanoseconds
+     */
+    public void recordCallback(final @NotNull ProgressCheck check,
+                               final @NotNull Callback callback,
+                               final long nanos) {
+        metricsFor(check).getTimer(callback).record(nanos);
+    }
+
+    /**
+     * Record the elapsed time of a package importer phase.
+     *
+     * @param packageId the package id
+     * @param phase     the importer phase
+     * @param nanos     the elapsed time in nanoseconds
+     */
+    public void recordImporter(final @NotNull PackageId packageId,
+                               final @NotNull ImporterPhase phase,
+                               final long nanos) {
+        packageMetrics.computeIfAbsent(packageId, PackageMetrics::new).getTimer(phase).record(nanos);
+    }
+
+    /**
+     * Get the metrics of each check, in order of first invocation.
+     *
+     * @return the check metrics
+     */
+    public List<CheckMetrics> getChecks() {
+        return Collections.unmodifiableList(checkMetricsList);
+    }
+
+    /**
+     * Get the metrics of each package, in order of installation.
+     *
+     * @return the package metrics
+     */
+    public List<PackageMetrics> getPackages() {
+        return Collections.unmodifiableList(new ArrayList<>(packageMetrics.values()));
+    }
+
+    /**
+     * Returns true if nothing has been recorded, such as when scan results were retrieved from a cache.
+     *
+     * @return true if nothing has been recorded
+     */
+    public boolean isEmpty() {
+        return checkMetricsList.isEmpty() && packageMetrics.isEmpty();
+    }
+
+    @Override
+    public JsonObject toJson() {
+        return obj()
+                .key(keys().checks(), checkMetricsList.stream()
+                        .map(CheckMetrics::toJson)
+                        .collect(JsonCollectors.toJsonArray()))
+                .key(keys().packages(), packageMetrics.values().stream()
+                        .map(PackageMetrics::toJson)
+                        .collect(JsonCollectors.toJsonArray()))
+                .get();
+    }
+}
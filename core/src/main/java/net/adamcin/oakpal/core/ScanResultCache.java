@@ -0,0 +1,271 @@
+/*
+ * Copyright 2020 Mark Adamcin
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.adamcin.oakpal.core;
+
+import net.adamcin.oakpal.api.Fun;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.URISyntaxException;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * A persistent cache of scan results, stored as {@link ReportMapper} json files in a cache directory, named by a key
+ * computed from every input to the scan: the plan, the checklist and check classpath, the pre-install packages, and
+ * the scanned package files. When none of these inputs have changed, a scan is expected to produce the same reports,
+ * so they can be returned without repeating the scan.
+ * <p>
+ * Reports are read back as {@link SimpleReport}s, so the original {@link CheckReport} implementation types are not
+ * preserved.
+ */
+public final class ScanResultCache {
+    private static final Logger LOGGER = LoggerFactory.getLogger(ScanResultCache.class);
+
+    /**
+     * Increment to invalidate previously cached results when the cache layout or key inputs change.
+     */
+    static final String KEY_FORMAT_VERSION = "2";
+    static final String REPORTS_JSON_SUFFIX = ".json";
+
+    private final File cacheDir;
+
+    public ScanResultCache(final @NotNull File cacheDir) {
+        this.cacheDir = cacheDir;
+    }
+
+    public File getCacheDir() {
+        return cacheDir;
+    }
+
+    /**
+     * Return the cached reports for the provided key if they exist, or perform the scan and store the reports for
+     * later runs. Reports are not stored if the scan throws an exception.
+     *
+     * @param key  the cache key, usually computed by {@link #computeKey(OakpalPlan, ClassLoader, List, String...)}
+     * @param scan the scan to perform on a cache miss
+     * @return the cached or newly scanned reports
+     * @throws Exception for errors performing the scan or for errors writing the cache file
+     */
+    public @NotNull List<CheckReport> getOrScan(final @NotNull String key,
+                                                final @NotNull Fun.ThrowingSupplier<List<CheckReport>> scan)
+            throws Exception {
+        final List<CheckReport> cached = load(key);
+        if (cached != null) {
+            LOGGER.debug("[getOrScan] loaded cached scan result for key {}", key);
+            return cached;
+        }
+        final List<CheckReport> reports = scan.tryGet();
+        store(key, reports);
+        return reports;
+    }
+
+    /**
+     * Read the cached reports for the provided key, if they exist.
+     *
+     * @param key the cache key
+     * @return the cached reports, or null if none exist for the key
+     * @throws IOException for errors reading the cache file
+     */
+    public @Nullable List<CheckReport> load(final @NotNull String key) throws IOException {
+        final File reportsJson = new File(cacheDir, key + REPORTS_JSON_SUFFIX);
+        if (!reportsJson.isFile()) {
+            return null;
+        }
+        return ReportMapper.readReportsFromFile(reportsJson);
+    }
+
+    /**
+     * Write the reports to the cache for the provided key, replacing any reports already stored for the key.
+     *
+     * @param key     the cache key
+     * @param reports the reports to store
+     * @throws IOException for errors writing the cache file
+     */
+    public void store(final @NotNull String key, final @NotNull List<CheckReport> reports) throws IOException {
+        Files.createDirectories(cacheDir.toPath());
+        final Path tempFile = Files.createTempFile(cacheDir.toPath(), key, ".tmp");
+        try {
+            ReportMapper.writeReportsToFile(reports, tempFile.toFile());
+            Files.move(tempFile, cacheDir.toPath().resolve(key + REPORTS_JSON_SUFFIX),
+                    StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            Files.deleteIfExists(tempFile);
+        }
+    }
+
+    /**
+     * Compute a cache key for the reports produced by scanning the provided files with an {@link OakMachine} built
+     * from the provided plan. The key is a SHA-256 hash of the Java, FileVault, and OakPAL versions, the
+     * {@link BaseCheckpointCache} key for the plan, the complete plan json (including checks), the json of each
+     * effective check spec along with the contents of its implementation (the script resource, or the jar or classpath
+     * directory containing the check class), the contents of every jar and directory on the classpath of the check
+     * classloader, the contents of each scan file, in order, and any additional scan options which affect the reports
+     * but are not represented in the plan, such as a subpackage silencer.
+     *
+     * @param plan        the effective plan, with any overrides already applied
+     * @param classLoader the classloader used to discover checklists and load checks
+     * @param scanFiles   the package files to scan
+     * @param scanOptions additional scan options which are not represented in the plan
+     * @return a hex-encoded cache key
+     * @throws Exception for errors discovering checklists or reading files
+     */
+    public static String computeKey(final @NotNull OakpalPlan plan,
+                                    final @NotNull ClassLoader classLoader,
+                                    final @NotNull List<File> scanFiles,
+                                    final @NotNull String... scanOptions) throws Exception {
+        final MessageDigest digest = BaseCheckpointCache.newDigest();
+        BaseCheckpointCache.updateDigest(digest, KEY_FORMAT_VERSION);
+        BaseCheckpointCache.updateDigest(digest, System.getProperty("java.version"));
+        BaseCheckpointCache.updateDigest(digest, BaseCheckpointCache.getVaultVersion());
+        BaseCheckpointCache.updateDigest(digest, BaseCheckpointCache.getOakpalVersion());
+        BaseCheckpointCache.updateDigest(digest, BaseCheckpointCache.computeKey(plan, classLoader));
+        BaseCheckpointCache.updateDigest(digest, plan.toJson().toString());
+
+        final ChecklistPlanner checklistPlanner = new ChecklistPlanner(plan.getChecklists());
+        checklistPlanner.discoverChecklists(classLoader);
+        for (CheckSpec checkSpec : checklistPlanner.getEffectiveCheckSpecs(plan.getChecks())) {
+            BaseCheckpointCache.updateDigest(digest, checkSpec.toJson().toString());
+            if (checkSpec.getInlineScript() == null && checkSpec.getImpl() != null) {
+                final URL implUrl = findImplUrl(checkSpec.getImpl(), classLoader);
+                if (implUrl != null) {
+                    updateDigestWithContent(digest, implUrl);
+                }
+            }
+        }
+
+        for (URL classPathUrl : getClassPathUrls(classLoader)) {
+            BaseCheckpointCache.updateDigest(digest, classPathUrl.toExternalForm());
+            updateDigestWithContent(digest, classPathUrl);
+        }
+
+        for (File scanFile : scanFiles) {
+            BaseCheckpointCache.updateDigest(digest, scanFile.toURI().toURL());
+        }
+
+        for (String scanOption : scanOptions) {
+            BaseCheckpointCache.updateDigest(digest, scanOption);
+        }
+
+        return BaseCheckpointCache.toHex(digest.digest());
+    }
+
+    /**
+     * Find the url of the content that implements a check, following the same resolution order as
+     * {@link Locator#loadProgressCheck(String, javax.json.JsonObject, ClassLoader)}. For a check class packaged in a
+     * jar, the url of the whole jar is returned, and for a check class loaded from a classpath directory, such as the
+     * {@code target/classes} directory of a reactor module, the url of that directory is returned, so that changes to
+     * any of the classes alongside the check class, such as its inner classes and helpers, are detected.
+     *
+     * @param impl        the check spec impl
+     * @param classLoader the classloader used to load checks
+     * @return the url of the implementing content, or null if not found
+     * @throws IOException for malformed jar urls
+     */
+    static @Nullable URL findImplUrl(final @NotNull String impl,
+                                     final @NotNull ClassLoader classLoader) throws IOException {
+        if (!impl.contains("/") && !impl.contains("\\")) {
+            final URL classUrl = classLoader.getResource(impl.replace('.', '/') + ".class");
+            if (classUrl != null) {
+                if ("jar".equals(classUrl.getProtocol())) {
+                    final String jarUrl = classUrl.getPath();
+                    final int separator = jarUrl.indexOf("!/");
+                    return new URL(separator >= 0 ? jarUrl.substring(0, separator) : jarUrl);
+                }
+                final String classPath = classUrl.toExternalForm();
+                final String resourceName = impl.replace('.', '/') + ".class";
+                if ("file".equals(classUrl.getProtocol()) && classPath.endsWith(resourceName)) {
+                    return new URL(classPath.substring(0, classPath.length() - resourceName.length()));
+                }
+                return classUrl;
+            }
+        }
+        return classLoader.getResource(impl);
+    }
+
+    /**
+     * Get the urls of the jars and directories on the classpath of the check classloader and of its ancestors, up to
+     * the classloader of the OakPAL runtime, whose version is already represented in the key. Only
+     * {@link URLClassLoader}s expose their classpath, so the classpath of any other classloader is not included.
+     *
+     * @param classLoader the classloader used to load checks
+     * @return the classpath urls, starting with those of the most distant ancestor
+     */
+    static List<URL> getClassPathUrls(final @NotNull ClassLoader classLoader) {
+        final List<URL> urls = new ArrayList<>();
+        final ClassLoader runtimeClassLoader = ScanResultCache.class.getClassLoader();
+        for (ClassLoader loader = classLoader; loader != null && loader != runtimeClassLoader;
+             loader = loader.getParent()) {
+            if (loader instanceof URLClassLoader) {
+                urls.addAll(0, Arrays.asList(((URLClassLoader) loader).getURLs()));
+            }
+        }
+        return urls;
+    }
+
+    /**
+     * Update the digest with the contents of a url. The contents of a {@code file:} url which refers to a directory
+     * are the relative path and contents of every file in the directory tree, in path order. A url of a file which
+     * does not exist contributes a fixed marker, so that creating the file changes the key.
+     *
+     * @param digest the digest to update
+     * @param url    the url to read
+     * @throws IOException for errors reading the url
+     */
+    static void updateDigestWithContent(final @NotNull MessageDigest digest, final @NotNull URL url)
+            throws IOException {
+        if (!"file".equals(url.getProtocol())) {
+            BaseCheckpointCache.updateDigest(digest, url);
+            return;
+        }
+        final File file;
+        try {
+            file = new File(url.toURI());
+        } catch (final URISyntaxException e) {
+            throw new IOException(e);
+        }
+        if (file.isDirectory()) {
+            final Path root = file.toPath();
+            final List<Path> files;
+            try (Stream<Path> paths = Files.walk(root)) {
+                files = paths.filter(Files::isRegularFile).sorted().collect(Collectors.toList());
+            }
+            BaseCheckpointCache.updateDigest(digest, Integer.toString(files.size()));
+            for (Path path : files) {
+                BaseCheckpointCache.updateDigest(digest, root.relativize(path).toString().replace('\\', '/'));
+                BaseCheckpointCache.updateDigest(digest, path.toUri().toURL());
+            }
+        } else if (file.isFile()) {
+            BaseCheckpointCache.updateDigest(digest, url);
+        } else {
+            BaseCheckpointCache.updateDigest(digest, (String) null);
+        }
+    }
+}
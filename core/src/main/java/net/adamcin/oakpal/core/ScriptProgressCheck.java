@@ -16,6 +16,8 @@
 
 package net.adamcin.oakpal.core;
 
+import net.adamcin.oakpal.api.EventMask;
+import net.adamcin.oakpal.api.ImportedPath;
 import net.adamcin.oakpal.api.JavaxJson;
 import net.adamcin.oakpal.api.PathAction;
 import net.adamcin.oakpal.api.ProgressCheck;
@@ -36,6 +38,8 @@ import javax.jcr.RepositoryException;
 import javax.jcr.Session;
 import javax.json.JsonObject;
 import javax.script.Bindings;
+import javax.script.Compilable;
+import javax.script.CompiledScript;
 import javax.script.Invocable;
 import javax.script.ScriptContext;
 import javax.script.ScriptEngine;
@@ -43,17 +47,22 @@ import javax.script.ScriptEngineManager;
 import javax.script.ScriptException;
 import javax.script.SimpleBindings;
 import javax.script.SimpleScriptContext;
+import java.io.ByteArrayOutputStream;
 import java.io.File;
+import java.io.IOException;
 import java.io.InputStream;
-import java.io.InputStreamReader;
 import java.net.URL;
 import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.ResourceBundle;
 import java.util.Set;
+import java.util.function.Consumer;
 import java.util.jar.Manifest;
 
 import static net.adamcin.oakpal.core.Util.isEmpty;
@@ -76,6 +85,10 @@ import static net.adamcin.oakpal.core.Util.isEmpty;
  * <dd>{@link ProgressCheck#beforeExtract(PackageId, Session, PackageProperties, MetaInf, List)}</dd>
  * <dt>importedPath(packageId, path, node, action)</dt>
  * <dd>{@link ProgressCheck#importedPath(PackageId, String, Node, PathAction)}</dd>
+ * <dt>importedPaths(packageId, importedPaths)</dt>
+ * <dd>{@link ProgressCheck#importedPaths(PackageId, List)}, with an array of {@link ImportedPath}. When the script
+ * defines this function, the check opts in to {@link EventMask#withImportedPathBatches()}, and the importedPath
+ * function is not called.</dd>
  * <dt>deletedPath(packageId, path, inspectSession)</dt>
  * <dd>{@link ProgressCheck#deletedPath(PackageId, String, Session)}</dd>
  * <dt>afterExtract(packageId, inspectSession)</dt>
@@ -85,9 +98,25 @@ import static net.adamcin.oakpal.core.Util.isEmpty;
  * </dl>
  * <p>
  * To report package violations, a {@link ScriptHelper} is bound to the global variable "oakpal".
+ * <p>
+ * When the script engine implements {@link Compilable}, the script is compiled once per context class loader, and each
+ * JavaScript check instance evaluates the compiled script in its own {@link ScriptContext}, and calls its functions on
+ * the global object of that context, so that instances neither share global variables nor wait on each other. Check
+ * instances of other script languages get their own script engine.
+ * <p>
+ * Scripts run on GraalJS when its JSR223 engine ({@value #GRAAL_JS_ENGINE_NAME}) is selected by name, or is the only
+ * engine registered for the script extension, such as on JDK 15 and later, where Nashorn is no longer included. Each
+ * check instance gets its own polyglot context, with host access and Nashorn compatibility enabled, so that the
+ * "oakpal" and "config" bindings behave the same as with Nashorn.
  */
 public final class ScriptProgressCheck implements ProgressCheck {
     public static final String DEFAULT_SCRIPT_ENGINE_EXTENSION = "js";
+    /**
+     * The engine name of the JSR223 engine of GraalJS.
+     *
+     * @since 2.1.0
+     */
+    public static final String GRAAL_JS_ENGINE_NAME = "graal.js";
     public static final String BINDING_SCRIPT_HELPER = "oakpal";
     public static final String BINDING_CHECK_CONFIG = "config";
     public static final String FILENAME_INLINE_SCRIPT = "_inlineScript_";
@@ -97,6 +126,7 @@ public final class ScriptProgressCheck implements ProgressCheck {
     public static final String INVOKE_ON_READ_MANIFEST = "readManifest";
     public static final String INVOKE_ON_BEFORE_EXTRACT = "beforeExtract";
     public static final String INVOKE_ON_IMPORTED_PATH = "importedPath";
+    public static final String INVOKE_ON_IMPORTED_PATHS = "importedPaths";
     public static final String INVOKE_ON_DELETED_PATH = "deletedPath";
     public static final String INVOKE_ON_AFTER_EXTRACT = "afterExtract";
     public static final String INVOKE_ON_FINISHED_SCAN = "finishedScan";
@@ -106,6 +136,7 @@ public final class ScriptProgressCheck implements ProgressCheck {
     private final ScriptHelper helper;
     private final URL scriptUrl;
     private final Set<String> handlerMissCache = new HashSet<>();
+    private EventMask eventMask;
 
     ScriptProgressCheck(final @NotNull Invocable script,
                         final @NotNull ScriptHelper helper,
@@ -163,6 +194,33 @@ public final class ScriptProgressCheck implements ProgressCheck {
         }
     }
 
+    /**
+     * The signature of the optional importedPaths script function, which is used to detect whether the script defines
+     * it. Script engines return no implementation of an interface from {@link Invocable#getInterface(Class)} when the
+     * script does not define all of its functions.
+     *
+     * @since 2.1.0
+     */
+    public interface ImportedPathsFunction {
+        void importedPaths(PackageId packageId, ImportedPath[] importedPaths);
+    }
+
+    @Override
+    public EventMask getEventMask() {
+        if (eventMask == null) {
+            eventMask = definesImportedPaths() ? EventMask.ALL.withImportedPathBatches() : EventMask.ALL;
+        }
+        return eventMask;
+    }
+
+    boolean definesImportedPaths() {
+        try {
+            return this.script.getInterface(ImportedPathsFunction.class) != null;
+        } catch (final RuntimeException e) {
+            return false;
+        }
+    }
+
     /**
      * Script handler callback passed to {@link EventHandlerBody}.
      */
@@ -258,6 +316,16 @@ public final class ScriptProgressCheck implements ProgressCheck {
         guardSessionHandler(INVOKE_ON_IMPORTED_PATH, handle -> handle.apply(packageId, path, node, action));
     }
 
+    @Override
+    public void importedPaths(final PackageId packageId, final List<ImportedPath> importedPaths)
+            throws RepositoryException {
+        guardSessionHandler(INVOKE_ON_IMPORTED_PATHS, handle -> handle.apply(packageId,
+                importedPaths.toArray(new ImportedPath[0])));
+        if (handlerMissCache.contains(INVOKE_ON_IMPORTED_PATHS)) {
+            ProgressCheck.super.importedPaths(packageId, importedPaths);
+        }
+    }
+
     @Override
     public void deletedPath(final PackageId packageId, final String path, final Session inspectSession)
             throws RepositoryException {
@@ -274,6 +342,11 @@ public final class ScriptProgressCheck implements ProgressCheck {
         guardHandler(INVOKE_ON_FINISHED_SCAN, HandlerHandle::apply);
     }
 
+    @Override
+    public final boolean setViolationListener(final @Nullable Consumer<Violation> listener) {
+        return this.helper.collector.setViolationListener(listener);
+    }
+
     @Override
     public final Collection<Violation> getReportedViolations() {
         return this.helper.collector.getReportedViolations();
@@ -313,37 +386,279 @@ public final class ScriptProgressCheck implements ProgressCheck {
     }
 
     /**
-     * Internal {@link ProgressCheckFactory} impl for script check creation.
+     * Context options of each GraalJS check instance, so that scripts can call the {@link ScriptHelper}, read the
+     * config map as an object, and refer to Java types the same way as with Nashorn.
+     */
+    static final Map<String, Object> GRAAL_JS_BINDING_OPTIONS;
+
+    static {
+        final Map<String, Object> options = new LinkedHashMap<>();
+        options.put("polyglot.js.allowHostAccess", true);
+        options.put("polyglot.js.allowHostClassLookup", true);
+        options.put("polyglot.js.nashorn-compat", true);
+        GRAAL_JS_BINDING_OPTIONS = Collections.unmodifiableMap(options);
+    }
+
+    /**
+     * Maximum number of compiled scripts shared by the factories of each script engine implementation.
+     */
+    static final int MAX_COMPILED_SCRIPTS = 64;
+
+    /**
+     * Compiled scripts shared by every factory created by {@link #createScriptCheckFactory(URL)} and
+     * {@link #createScriptCheckFactory(String, URL)}, keyed by script engine name, script URL, and a SHA-256 hash of
+     * the script content, so that plans and scans which refer to the same script compile it only once. The least
+     * recently used script is evicted when the map is full. Each map is attached to the class of the
+     * {@link javax.script.ScriptEngineFactory} which created its engines, so it lives only as long as the class loader
+     * which provides the engine, and no static field of this class keeps that class loader reachable.
+     */
+    private static final ClassValue<Map<String, CompiledScript>> COMPILED_SCRIPTS =
+            new ClassValue<Map<String, CompiledScript>>() {
+                @Override
+                protected Map<String, CompiledScript> computeValue(final Class<?> type) {
+                    return Collections.synchronizedMap(new LinkedHashMap<String, CompiledScript>(16, 0.75F, true) {
+                        @Override
+                        protected boolean removeEldestEntry(final Map.Entry<String, CompiledScript> eldest) {
+                            return size() > MAX_COMPILED_SCRIPTS;
+                        }
+                    });
+                }
+            };
+
+    static ScriptEngineManager getScriptEngineManager() {
+        return new ScriptEngineManager(Thread.currentThread().getContextClassLoader());
+    }
+
+    /**
+     * Get the compiled scripts shared by factories for engines of the same implementation. A compiled script may keep
+     * the context class loader of its engine reachable, so the scripts are only shared when the engine factory class
+     * is defined by the context class loader itself, or when the context class loader is the system class loader or
+     * one of its ancestors, which are never collected anyway. Otherwise, each factory compiles its own script.
+     *
+     * @param engine the script engine
+     * @return the shared compiled scripts, or null if they should not be shared for the current context class loader
+     */
+    static @Nullable Map<String, CompiledScript> getCompiledScripts(final @NotNull ScriptEngine engine) {
+        final Class<?> factoryClass = engine.getFactory().getClass();
+        final ClassLoader contextLoader = Thread.currentThread().getContextClassLoader();
+        if (contextLoader == factoryClass.getClassLoader() || isSystemClassLoaderOrAncestor(contextLoader)) {
+            return COMPILED_SCRIPTS.get(factoryClass);
+        }
+        return null;
+    }
+
+    static boolean isSystemClassLoaderOrAncestor(final @Nullable ClassLoader classLoader) {
+        if (classLoader == null) {
+            return true;
+        }
+        for (ClassLoader loader = ClassLoader.getSystemClassLoader(); loader != null; loader = loader.getParent()) {
+            if (loader == classLoader) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Invokes script functions as members of the global object of a single check instance. Instances which share the
+     * same {@link ScriptEngine}, such as instances evaluated from the same {@link CompiledScript}, each have their own
+     * global object, so functions are called in the scope of the instance without switching the context of the
+     * engine, and instances may be used by concurrent scans.
+     */
+    static final class GlobalInvocable implements Invocable {
+        private final Invocable engine;
+        private final Object global;
+
+        GlobalInvocable(final @NotNull Invocable engine, final @NotNull Object global) {
+            this.engine = engine;
+            this.global = global;
+        }
+
+        Object getGlobal() {
+            return global;
+        }
+
+        @Override
+        public Object invokeMethod(final Object thiz, final String name, final Object... args)
+                throws ScriptException, NoSuchMethodException {
+            return engine.invokeMethod(thiz, name, args);
+        }
+
+        @Override
+        public Object invokeFunction(final String name, final Object... args)
+                throws ScriptException, NoSuchMethodException {
+            return engine.invokeMethod(global, name, args);
+        }
+
+        @Override
+        public <T> T getInterface(final Class<T> clasz) {
+            return engine.getInterface(global, clasz);
+        }
+
+        @Override
+        public <T> T getInterface(final Object thiz, final Class<T> clasz) {
+            return engine.getInterface(thiz, clasz);
+        }
+    }
+
+    /**
+     * Returns true if the script engine implements ECMAScript, such as Nashorn and GraalJS, for which each script
+     * context has its own global object.
+     *
+     * @param engine the script engine
+     * @return true for JavaScript engines
+     */
+    static boolean isEcmaScript(final @NotNull ScriptEngine engine) {
+        return engine instanceof Invocable && engine.getFactory() != null
+                && "ECMAScript".equalsIgnoreCase(engine.getFactory().getLanguageName());
+    }
+
+    /**
+     * Returns true if the script engine is the JSR223 engine of GraalJS.
+     *
+     * @param engine the script engine
+     * @return true for GraalJS
+     */
+    static boolean isGraalJs(final @NotNull ScriptEngine engine) {
+        return engine.getFactory() != null
+                && GRAAL_JS_ENGINE_NAME.equalsIgnoreCase(engine.getFactory().getEngineName());
+    }
+
+    /**
+     * Create the global bindings of a new check instance. GraalJS only reads its context options from its own
+     * bindings, before the polyglot context of the bindings is created, so for GraalJS the bindings are created by
+     * the engine, and {@link #GRAAL_JS_BINDING_OPTIONS} are put before any other binding.
+     *
+     * @param engine the script engine
+     * @return new bindings
+     */
+    static Bindings newBindings(final @NotNull ScriptEngine engine) {
+        if (isGraalJs(engine)) {
+            final Bindings bindings = engine.createBindings();
+            bindings.putAll(GRAAL_JS_BINDING_OPTIONS);
+            return bindings;
+        }
+        return new SimpleBindings();
+    }
+
+    /**
+     * Evaluate a compiled script, or the source if the engine does not implement {@link Compilable}, in a new context
+     * for a single check instance, with a new {@link ScriptHelper} and the check config bound to global variables.
+     * Functions of JavaScript instances are invoked on the global object of the new context. Instances of other
+     * engines get their own engine, whose default context is the new context, and the source is evaluated by that
+     * engine instead of the compiled script.
+     *
+     * @param engine   the script engine
+     * @param compiled the compiled script, or null if the engine does not implement {@link Compilable}
+     * @param source   the script source
+     * @param config   the check config
+     * @param url      the script url, or null for an inline script
+     * @return a new check instance
+     * @throws ScriptException for errors evaluating the script
+     */
+    private static ScriptProgressCheck evalInstance(final @NotNull ScriptEngine engine,
+                                                    final @Nullable CompiledScript compiled,
+                                                    final @NotNull String source,
+                                                    final @Nullable JsonObject config,
+                                                    final @Nullable URL url) throws ScriptException {
+        final ScriptEngine instanceEngine = compiled != null ? compiled.getEngine() : engine;
+        final boolean ecmaScript = isEcmaScript(instanceEngine);
+        final ScriptEngine contextEngine = ecmaScript ? instanceEngine : engine.getFactory().getScriptEngine();
+        final Bindings scriptBindings = newBindings(contextEngine);
+        if (config != null) {
+            scriptBindings.put(BINDING_CHECK_CONFIG, JavaxJson.unwrapObject(config));
+        } else {
+            scriptBindings.put(BINDING_CHECK_CONFIG, Collections.<String, Object>emptyMap());
+        }
+        final ScriptHelper helper = new ScriptHelper();
+        scriptBindings.put(BINDING_SCRIPT_HELPER, helper);
+        final ScriptContext context = contextWithBindings(scriptBindings);
+        if (!ecmaScript) {
+            contextEngine.setContext(context);
+            contextEngine.eval(source);
+            return new ScriptProgressCheck((Invocable) contextEngine, helper, url);
+        }
+        if (compiled != null) {
+            compiled.eval(context);
+        } else {
+            instanceEngine.eval(source, context);
+        }
+        final Object global = instanceEngine.eval("this", context);
+        return new ScriptProgressCheck(new GlobalInvocable((Invocable) instanceEngine, global), helper, url);
+    }
+
+    static String readScript(final @NotNull URL scriptUrl) throws IOException {
+        try (InputStream is = scriptUrl.openStream()) {
+            final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            final byte[] buffer = new byte[8192];
+            int read;
+            while ((read = is.read(buffer)) != -1) {
+                bytes.write(buffer, 0, read);
+            }
+            return new String(bytes.toByteArray(), StandardCharsets.UTF_8);
+        }
+    }
+
+    /**
+     * Internal {@link ProgressCheckFactory} impl for script check creation. The script is read and compiled once, on
+     * the first call to {@link #newInstance(JsonObject)}, and each instance is evaluated in its own context.
      */
     static class ScriptProgressCheckFactory implements ProgressCheckFactory {
 
         private final ScriptEngine engine;
         private final URL scriptUrl;
+        private final Map<String, CompiledScript> compiledScripts;
+        private String source;
+        private CompiledScript compiled;
 
-        private ScriptProgressCheckFactory(final @NotNull ScriptEngine engine, final @NotNull URL scriptUrl) {
+        private ScriptProgressCheckFactory(final @NotNull ScriptEngine engine, final @NotNull URL scriptUrl,
+                                           final @Nullable Map<String, CompiledScript> compiledScripts) {
             this.engine = engine;
             this.scriptUrl = scriptUrl;
+            this.compiledScripts = compiledScripts;
         }
 
         ScriptEngine getEngine() {
             return engine;
         }
 
-        @Override
-        public ProgressCheck newInstance(final JsonObject config) throws Exception {
-            try (InputStream is = scriptUrl.openStream()) {
-                Bindings scriptBindings = new SimpleBindings();
-                if (config != null) {
-                    scriptBindings.put(BINDING_CHECK_CONFIG, JavaxJson.unwrapObject(config));
-                } else {
-                    scriptBindings.put(BINDING_CHECK_CONFIG, Collections.<String, Object>emptyMap());
+        /**
+         * Read and compile the script, unless it has already been read. When the engine was not provided by the
+         * caller, a script compiled by another factory for the same engine implementation with the same engine name,
+         * url, and content may be reused.
+         *
+         * @return the compiled script, or null if the engine does not implement {@link Compilable}
+         * @throws Exception for errors reading or compiling the script
+         */
+        synchronized @Nullable CompiledScript compile() throws Exception {
+            if (source == null) {
+                final String read = readScript(scriptUrl);
+                if (engine instanceof Compilable) {
+                    if (compiledScripts != null) {
+                        final MessageDigest digest = BaseCheckpointCache.newDigest();
+                        BaseCheckpointCache.updateDigest(digest, engine.getFactory().getEngineName());
+                        BaseCheckpointCache.updateDigest(digest, scriptUrl.toExternalForm());
+                        BaseCheckpointCache.updateDigest(digest, read);
+                        final String key = BaseCheckpointCache.toHex(digest.digest());
+                        CompiledScript shared = compiledScripts.get(key);
+                        if (shared == null) {
+                            shared = ((Compilable) engine).compile(read);
+                            compiledScripts.put(key, shared);
+                        }
+                        compiled = shared;
+                    } else {
+                        compiled = ((Compilable) engine).compile(read);
+                    }
                 }
-                final ScriptHelper helper = new ScriptHelper();
-                scriptBindings.put(BINDING_SCRIPT_HELPER, helper);
-                engine.setContext(contextWithBindings(scriptBindings));
-                engine.eval(new InputStreamReader(is, StandardCharsets.UTF_8));
-                return new ScriptProgressCheck((Invocable) engine, helper, scriptUrl);
+                source = read;
             }
+            return compiled;
+        }
+
+        @Override
+        public ProgressCheck newInstance(final JsonObject config) throws Exception {
+            final CompiledScript script = compile();
+            return evalInstance(engine, script, source, config, scriptUrl);
         }
     }
 
@@ -355,27 +670,25 @@ public final class ScriptProgressCheck implements ProgressCheck {
     }
 
     private static class InlineScriptProgressCheckFactory implements ProgressCheckFactory {
-        private ScriptEngine engine;
+        private final ScriptEngine engine;
         private final String source;
+        private CompiledScript compiled;
 
         private InlineScriptProgressCheckFactory(final @NotNull ScriptEngine engine, final @NotNull String source) {
             this.engine = engine;
             this.source = source;
         }
 
+        private synchronized @Nullable CompiledScript compile() throws ScriptException {
+            if (compiled == null && engine instanceof Compilable) {
+                compiled = ((Compilable) engine).compile(source);
+            }
+            return compiled;
+        }
+
         @Override
         public ProgressCheck newInstance(final JsonObject config) throws Exception {
-            Bindings scriptBindings = new SimpleBindings();
-            if (config != null) {
-                scriptBindings.put(BINDING_CHECK_CONFIG, JavaxJson.unwrapObject(config));
-            } else {
-                scriptBindings.put(BINDING_CHECK_CONFIG, Collections.<String, Object>emptyMap());
-            }
-            final ScriptHelper helper = new ScriptHelper();
-            scriptBindings.put(BINDING_SCRIPT_HELPER, helper);
-            engine.setContext(contextWithBindings(scriptBindings));
-            engine.eval(this.source);
-            return new ScriptProgressCheck((Invocable) engine, helper, null);
+            return evalInstance(engine, compile(), source, config, null);
         }
     }
 
@@ -387,12 +700,12 @@ public final class ScriptProgressCheck implements ProgressCheck {
         } else {
             ext = scriptUrl.getPath().substring(lastPeriod + 1);
         }
-        ScriptEngine engine = new ScriptEngineManager().getEngineByExtension(ext);
+        ScriptEngine engine = getScriptEngineManager().getEngineByExtension(ext);
         if (engine == null) {
             throw new UnregisteredScriptEngineNameException(ext,
                     "Failed to find a ScriptEngine for URL extension: " + scriptUrl.toString());
         }
-        return createScriptCheckFactory(engine, scriptUrl);
+        return new ScriptProgressCheckFactory(engine, scriptUrl, getCompiledScripts(engine));
     }
 
     @SuppressWarnings("WeakerAccess")
@@ -419,17 +732,17 @@ public final class ScriptProgressCheck implements ProgressCheck {
     public static ProgressCheckFactory createScriptCheckFactory(final @NotNull String engineName,
                                                                 final @NotNull URL scriptUrl)
             throws UnregisteredScriptEngineNameException {
-        final ScriptEngine engine = new ScriptEngineManager().getEngineByName(engineName);
+        final ScriptEngine engine = getScriptEngineManager().getEngineByName(engineName);
         if (engine == null) {
             throw new UnregisteredScriptEngineNameException(engineName);
         }
-        return createScriptCheckFactory(engine, scriptUrl);
+        return new ScriptProgressCheckFactory(engine, scriptUrl, getCompiledScripts(engine));
     }
 
     @SuppressWarnings("WeakerAccess")
     public static ProgressCheckFactory createScriptCheckFactory(final @NotNull ScriptEngine engine,
                                                                 final @NotNull URL scriptUrl) {
-        return new ScriptProgressCheckFactory(engine, scriptUrl);
+        return new ScriptProgressCheckFactory(engine, scriptUrl, null);
     }
 
     @SuppressWarnings("WeakerAccess")
@@ -438,9 +751,9 @@ public final class ScriptProgressCheck implements ProgressCheck {
             throws UnregisteredScriptEngineNameException {
         final ScriptEngine engine;
         if (isEmpty(inlineEngine)) {
-            engine = new ScriptEngineManager().getEngineByExtension(DEFAULT_SCRIPT_ENGINE_EXTENSION);
+            engine = getScriptEngineManager().getEngineByExtension(DEFAULT_SCRIPT_ENGINE_EXTENSION);
         } else {
-            engine = new ScriptEngineManager().getEngineByName(inlineEngine);
+            engine = getScriptEngineManager().getEngineByName(inlineEngine);
         }
         if (engine == null) {
             throw new UnregisteredScriptEngineNameException(inlineEngine);
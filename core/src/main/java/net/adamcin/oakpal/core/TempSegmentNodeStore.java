@@ -0,0 +1,120 @@
+/*
+ * Copyright 2020 Mark Adamcin
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.adamcin.oakpal.core;
+
+import org.apache.jackrabbit.oak.api.CommitFailedException;
+import org.apache.jackrabbit.oak.segment.SegmentNodeStoreBuilders;
+import org.apache.jackrabbit.oak.segment.file.FileStore;
+import org.apache.jackrabbit.oak.segment.file.FileStoreBuilder;
+import org.apache.jackrabbit.oak.segment.file.InvalidFileStoreVersionException;
+import org.apache.jackrabbit.oak.spi.state.NodeState;
+import org.apache.jackrabbit.oak.spi.state.NodeStore;
+import org.apache.jackrabbit.oak.spi.state.ProxyNodeStore;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+
+/**
+ * A segment tar {@link NodeStore} in a new temporary directory, using memory-mapped file access, so that the heap
+ * usage of a scan does not grow with the size of the installed content. The store is closed and its directory is
+ * deleted by {@link #close()}, which {@link OakMachine} calls at the end of each scan.
+ * <p>
+ * This is the implementation of {@link NodeStoreType#SEGMENT}.
+ */
+public final class TempSegmentNodeStore extends ProxyNodeStore implements Closeable {
+    static final String TEMP_DIR_PREFIX = "oakpal-segmentstore";
+
+    private final File tempDir;
+    private final FileStore fileStore;
+    private final NodeStore nodeStore;
+
+    /**
+     * Create an empty store in a new directory under the default temporary directory.
+     *
+     * @throws IOException for errors creating the directory or the file store
+     */
+    public TempSegmentNodeStore() throws IOException {
+        this(null);
+    }
+
+    /**
+     * Create an empty store in a new directory under the provided parent directory.
+     *
+     * @param parentDir the parent directory, or null to use the default temporary directory
+     * @throws IOException for errors creating the directory or the file store
+     */
+    public TempSegmentNodeStore(final @Nullable File parentDir) throws IOException {
+        if (parentDir != null) {
+            Files.createDirectories(parentDir.toPath());
+            this.tempDir = Files.createTempDirectory(parentDir.toPath(), TEMP_DIR_PREFIX).toFile();
+        } else {
+            this.tempDir = Files.createTempDirectory(TEMP_DIR_PREFIX).toFile();
+        }
+        try {
+            this.fileStore = FileStoreBuilder.fileStoreBuilder(tempDir).withMemoryMapping(true).build();
+        } catch (final InvalidFileStoreVersionException | IOException | RuntimeException e) {
+            BaseCheckpointCache.deleteRecursively(tempDir);
+            throw e instanceof IOException ? (IOException) e : new IOException(e);
+        }
+        this.nodeStore = SegmentNodeStoreBuilders.builder(fileStore).build();
+    }
+
+    /**
+     * Create a store in a new directory under the provided parent directory, containing a copy of the provided base
+     * state, such as the root of a {@link BaseCheckpoint}.
+     *
+     * @param parentDir the parent directory, or null to use the default temporary directory
+     * @param base      the base root node state
+     * @throws IOException for errors creating the directory or the file store, or for errors copying the base state
+     */
+    public TempSegmentNodeStore(final @Nullable File parentDir, final @NotNull NodeState base) throws IOException {
+        this(parentDir);
+        try {
+            OakMachine.mergeRoot(nodeStore, base);
+        } catch (final CommitFailedException | RuntimeException e) {
+            close();
+            throw new IOException("failed to copy base state", e);
+        }
+    }
+
+    /**
+     * Get the temporary directory containing the segment store.
+     *
+     * @return the temporary directory
+     */
+    public File getTempDir() {
+        return tempDir;
+    }
+
+    @Override
+    protected NodeStore getNodeStore() {
+        return nodeStore;
+    }
+
+    @Override
+    public void close() {
+        try {
+            fileStore.close();
+        } finally {
+            BaseCheckpointCache.deleteRecursively(tempDir);
+        }
+    }
+}
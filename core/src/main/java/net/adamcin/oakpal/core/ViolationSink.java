@@ -0,0 +1,48 @@
+/*
+ * Copyright 2020 Mark Adamcin
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.adamcin.oakpal.core;
+
+import net.adamcin.oakpal.api.Violation;
+import org.jetbrains.annotations.NotNull;
+import org.osgi.annotation.versioning.ConsumerType;
+
+import java.io.IOException;
+
+/**
+ * Receives each violation reported during a scan performed by an {@link OakMachine} built with
+ * {@link OakMachine.Builder#withViolationSink(ViolationSink)}, while the scan is still running. Violations of the
+ * {@link ErrorListener} and of each progress check are received as soon as they are reported, through
+ * {@link net.adamcin.oakpal.api.ViolationReporter#setViolationListener(java.util.function.Consumer)}, and are not
+ * retained for the reports returned by the scan. Violations of reporters which do not accept a listener are received
+ * once the scan has finished. Use {@link ReportMapper#ndjsonSink(java.io.Writer)} to write each violation as a line
+ * of NDJSON.
+ *
+ * @since 2.1.0
+ */
+@ConsumerType
+@FunctionalInterface
+public interface ViolationSink {
+
+    /**
+     * Receive a single violation.
+     *
+     * @param checkName the name of the reporting check, which is also the check name of its {@link CheckReport}
+     * @param violation the reported violation
+     * @throws IOException for failing to write the violation
+     */
+    void reportedViolation(@NotNull String checkName, @NotNull Violation violation) throws IOException;
+}
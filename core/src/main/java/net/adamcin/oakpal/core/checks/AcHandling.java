@@ -16,6 +16,7 @@
 
 package net.adamcin.oakpal.core.checks;
 
+import net.adamcin.oakpal.api.EventMask;
 import net.adamcin.oakpal.api.ProgressCheck;
 import net.adamcin.oakpal.api.ProgressCheckFactory;
 import net.adamcin.oakpal.api.Severity;
@@ -157,6 +158,7 @@ public final class AcHandling implements ProgressCheckFactory {
     }
 
     static final class Check extends SimpleProgressCheckFactoryCheck<AcHandling> {
+        private static final EventMask EVENT_MASK = EventMask.of(EventMask.Event.BEFORE_EXTRACT);
         final ACHandlingLevelSet levelSet;
         final List<AccessControlHandling> allowedModes;
 
@@ -167,6 +169,11 @@ public final class AcHandling implements ProgressCheckFactory {
             this.allowedModes = allowedModes;
         }
 
+        @Override
+        public EventMask getEventMask() {
+            return EVENT_MASK;
+        }
+
         @Override
         public void beforeExtract(final PackageId packageId, final Session inspectSession,
                                   final PackageProperties packageProperties, final MetaInf metaInf,
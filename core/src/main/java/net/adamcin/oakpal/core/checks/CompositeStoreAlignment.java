@@ -19,6 +19,8 @@
  */
 package net.adamcin.oakpal.core.checks;
 
+import net.adamcin.oakpal.api.CompiledRules;
+import net.adamcin.oakpal.api.EventMask;
 import net.adamcin.oakpal.api.JavaxJson;
 import net.adamcin.oakpal.api.PathAction;
 import net.adamcin.oakpal.api.ProgressCheck;
@@ -141,8 +143,11 @@ public final class CompositeStoreAlignment implements ProgressCheckFactory {
     }
 
     static final class Check extends SimpleProgressCheckFactoryCheck<CompositeStoreAlignment> {
+        private static final EventMask EVENT_MASK = EventMask.of(EventMask.Event.IDENTIFY_PACKAGE,
+                EventMask.Event.IDENTIFY_SUBPACKAGE, EventMask.Event.AFTER_EXTRACT, EventMask.Event.IMPORTED_PATH,
+                EventMask.Event.DELETED_PATH).withoutImportedNode();
         private final Severity severity;
-        private final List<Rule> scopePackageIds;
+        private final CompiledRules scopePackageIds;
         private final MountInfoProvider mounts;
 
         private final Map<PackageId, List<PackageId>> subPackages = new HashMap<>();
@@ -152,10 +157,15 @@ public final class CompositeStoreAlignment implements ProgressCheckFactory {
         Check(final Severity severity, final List<Rule> scopePackageIds, final MountInfoProvider mounts) {
             super(CompositeStoreAlignment.class);
             this.severity = severity;
-            this.scopePackageIds = scopePackageIds;
+            this.scopePackageIds = CompiledRules.compile(scopePackageIds);
             this.mounts = mounts;
         }
 
+        @Override
+        public EventMask getEventMask() {
+            return EVENT_MASK;
+        }
+
         @Override
         public void identifyPackage(final PackageId packageId, final File file) {
             subPackages.put(packageId, new ArrayList<>());
@@ -222,7 +232,7 @@ public final class CompositeStoreAlignment implements ProgressCheckFactory {
         @Override
         public void finishedScan() {
             for (PackageId affectingPackageId : affectedMounts.keySet()) {
-                if (Rules.lastMatch(scopePackageIds, affectingPackageId.toString()).isExclude()) {
+                if (scopePackageIds.lastMatch(affectingPackageId.toString()).isExclude()) {
                     continue;
                 }
                 final Set<Mount> affectedByPackage = getMountsAffectedByPackage(affectingPackageId);
@@ -16,8 +16,10 @@
 
 package net.adamcin.oakpal.core.checks;
 
+import net.adamcin.oakpal.api.EventMask;
 import net.adamcin.oakpal.api.Fun;
 import net.adamcin.oakpal.api.JavaxJson;
+import net.adamcin.oakpal.api.PathAction;
 import net.adamcin.oakpal.api.ProgressCheck;
 import net.adamcin.oakpal.api.ProgressCheckFactory;
 import net.adamcin.oakpal.api.Result;
@@ -35,6 +37,7 @@ import org.osgi.annotation.versioning.ProviderType;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import javax.jcr.Node;
 import javax.jcr.RepositoryException;
 import javax.jcr.Session;
 import javax.jcr.Value;
@@ -44,6 +47,7 @@ import javax.json.JsonObject;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
+import java.util.HashMap;
 import java.util.HashSet;
 import java.util.LinkedHashMap;
 import java.util.LinkedHashSet;
@@ -277,12 +281,26 @@ public final class ExpectAces implements ProgressCheckFactory {
     }
 
     static final class Check extends SimpleProgressCheckFactoryCheck<ExpectAces> {
+        private static final EventMask EVENT_MASK = EventMask.of(
+                EventMask.Event.IMPORTED_PATH,
+                EventMask.Event.DELETED_PATH,
+                EventMask.Event.AFTER_EXTRACT).withoutImportedNode();
+        static final String REP_POLICY_SEGMENT = "/rep:policy";
+        static final String REP_REPO_POLICY_PATH = "/rep:repoPolicy";
         final List<AceCriteria> expectedAces;
         final List<AceCriteria> notExpectedAces;
         final Map<AceCriteria, List<PackageId>> expectedViolators = new LinkedHashMap<>();
         final Map<AceCriteria, List<PackageId>> notExpectedViolators = new LinkedHashMap<>();
         final List<Rule> afterPackageIdRules;
         final Severity severity;
+        final Map<String, List<AceCriteria>> expectedsByPath;
+        final Map<String, List<AceCriteria>> notExpectedsByPath;
+        final Set<String> criteriaPaths;
+        // criteria paths whose policies must be read again at the next evaluated afterExtract
+        final Set<String> changedPaths = new HashSet<>();
+        // results of the last evaluation of each criteria path
+        final Map<String, List<AceCriteria>> unsatisfiedExpectedsByPath = new HashMap<>();
+        final Map<String, List<AceCriteria>> satisfiedNotExpectedsByPath = new HashMap<>();
 
         Check(final @NotNull List<AceCriteria> expectedAces,
               final @NotNull List<AceCriteria> notExpectedAces,
@@ -293,6 +311,17 @@ public final class ExpectAces implements ProgressCheckFactory {
             this.notExpectedAces = notExpectedAces;
             this.afterPackageIdRules = afterPackageIdRules;
             this.severity = severity;
+            this.expectedsByPath = groupCriteriaByPath(expectedAces);
+            this.notExpectedsByPath = groupCriteriaByPath(notExpectedAces);
+            final Set<String> allPaths = new LinkedHashSet<>(expectedsByPath.keySet());
+            allPaths.addAll(notExpectedsByPath.keySet());
+            this.criteriaPaths = Collections.unmodifiableSet(allPaths);
+            this.changedPaths.addAll(criteriaPaths);
+        }
+
+        @Override
+        public EventMask getEventMask() {
+            return EVENT_MASK;
         }
 
         @Override
@@ -300,6 +329,9 @@ public final class ExpectAces implements ProgressCheckFactory {
             super.startedScan();
             expectedViolators.clear();
             notExpectedViolators.clear();
+            unsatisfiedExpectedsByPath.clear();
+            satisfiedNotExpectedsByPath.clear();
+            changedPaths.addAll(criteriaPaths);
         }
 
         static Map<String, List<AceCriteria>> groupCriteriaByPath(final @NotNull List<AceCriteria> criteriaList) {
@@ -318,32 +350,88 @@ public final class ExpectAces implements ProgressCheckFactory {
             return violatorsMap.get(criteria);
         }
 
+        /**
+         * Return the path of the access controlled node that owns the policy node at or above the provided path, or
+         * null if the path is not within a policy node. The repository-level policy is owned by the empty path,
+         * matching the criteria path convention for rep:repoPolicy.
+         *
+         * @param path an imported or deleted path
+         * @return the owning criteria path or null
+         */
+        static @Nullable String getPolicyOwnerPath(final @NotNull String path) {
+            if (path.equals(REP_REPO_POLICY_PATH) || path.startsWith(REP_REPO_POLICY_PATH + "/")) {
+                return "";
+            }
+            for (int idx = path.indexOf(REP_POLICY_SEGMENT); idx >= 0;
+                 idx = path.indexOf(REP_POLICY_SEGMENT, idx + 1)) {
+                final int end = idx + REP_POLICY_SEGMENT.length();
+                if (end == path.length() || path.charAt(end) == '/') {
+                    return idx == 0 ? "/" : path.substring(0, idx);
+                }
+            }
+            return null;
+        }
+
+        void markChanged(final @NotNull String path) {
+            if (criteriaPaths.contains(path)) {
+                changedPaths.add(path);
+            }
+            final String ownerPath = getPolicyOwnerPath(path);
+            if (ownerPath != null && criteriaPaths.contains(ownerPath)) {
+                changedPaths.add(ownerPath);
+            }
+        }
+
+        @Override
+        public void importedPath(final PackageId packageId, final String path, final Node node,
+                                 final PathAction action) throws RepositoryException {
+            markChanged(path);
+        }
+
+        @Override
+        public void deletedPath(final PackageId packageId, final String path, final Session inspectSession)
+                throws RepositoryException {
+            markChanged(path);
+            final String descendantPrefix = path.endsWith("/") ? path : path + "/";
+            for (String criteriaPath : criteriaPaths) {
+                if (criteriaPath.startsWith(descendantPrefix)) {
+                    changedPaths.add(criteriaPath);
+                }
+            }
+        }
+
+        void evaluatePath(final @NotNull JackrabbitAccessControlManager aclManager,
+                          final @NotNull Session inspectSession,
+                          final @NotNull String path) throws RepositoryException {
+            final JackrabbitAccessControlList[] policiesAtPath =
+                    // provide null path for rep:repoPolicy evaluation
+                    (path.isEmpty() ? Stream.of(aclManager.getPolicies((String) null))
+                            : (inspectSession.nodeExists(path) ? Stream.of(aclManager.getPolicies(path))
+                            : Stream.empty()))
+                            .filter(JackrabbitAccessControlList.class::isInstance)
+                            .map(JackrabbitAccessControlList.class::cast)
+                            .toArray(JackrabbitAccessControlList[]::new);
+            unsatisfiedExpectedsByPath.put(path, expectedsByPath.getOrDefault(path, Collections.emptyList()).stream()
+                    .filter(criteria -> Stream.of(policiesAtPath).noneMatch(criteria::satisfiedBy))
+                    .collect(Collectors.toList()));
+            satisfiedNotExpectedsByPath.put(path, notExpectedsByPath.getOrDefault(path, Collections.emptyList()).stream()
+                    .filter(criteria -> Stream.of(policiesAtPath).anyMatch(criteria::satisfiedBy))
+                    .collect(Collectors.toList()));
+        }
+
         @Override
         public void afterExtract(final PackageId packageId, final Session inspectSession) throws RepositoryException {
             if (shouldExpectAfterExtract(packageId)) {
                 final JackrabbitAccessControlManager aclManager = (JackrabbitAccessControlManager) inspectSession.getAccessControlManager();
-                final Map<String, List<AceCriteria>> expectedsByPath = groupCriteriaByPath(expectedAces);
-                final Map<String, List<AceCriteria>> notExpectedsByPath = groupCriteriaByPath(notExpectedAces);
-                final Set<String> allPaths = new LinkedHashSet<>(expectedsByPath.keySet());
-                allPaths.addAll(notExpectedsByPath.keySet());
-                for (String path : allPaths) {
-                    final JackrabbitAccessControlList[] policiesAtPath =
-                            // provide null path for rep:repoPolicy evaluation
-                            (path.isEmpty() ? Stream.of(aclManager.getPolicies((String) null))
-                                    : (inspectSession.nodeExists(path) ? Stream.of(aclManager.getPolicies(path))
-                                    : Stream.empty()))
-                                    .filter(JackrabbitAccessControlList.class::isInstance)
-                                    .map(JackrabbitAccessControlList.class::cast)
-                                    .toArray(JackrabbitAccessControlList[]::new);
-                    for (AceCriteria criteria : expectedsByPath.getOrDefault(path, Collections.emptyList())) {
-                        if (Stream.of(policiesAtPath).noneMatch(criteria::satisfiedBy)) {
-                            getViolatorListForExpectedCriteria(expectedViolators, criteria).add(packageId);
-                        }
+                for (String path : criteriaPaths) {
+                    if (changedPaths.remove(path)) {
+                        evaluatePath(aclManager, inspectSession, path);
+                    }
+                    for (AceCriteria criteria : unsatisfiedExpectedsByPath.getOrDefault(path, Collections.emptyList())) {
+                        getViolatorListForExpectedCriteria(expectedViolators, criteria).add(packageId);
                     }
-                    for (AceCriteria criteria : notExpectedsByPath.getOrDefault(path, Collections.emptyList())) {
-                        if (Stream.of(policiesAtPath).anyMatch(criteria::satisfiedBy)) {
-                            getViolatorListForExpectedCriteria(notExpectedViolators, criteria).add(packageId);
-                        }
+                    for (AceCriteria criteria : satisfiedNotExpectedsByPath.getOrDefault(path, Collections.emptyList())) {
+                        getViolatorListForExpectedCriteria(notExpectedViolators, criteria).add(packageId);
                     }
                 }
             }
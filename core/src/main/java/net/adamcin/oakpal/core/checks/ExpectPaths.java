@@ -16,6 +16,7 @@
 
 package net.adamcin.oakpal.core.checks;
 
+import net.adamcin.oakpal.api.EventMask;
 import net.adamcin.oakpal.api.JavaxJson;
 import net.adamcin.oakpal.api.ProgressCheck;
 import net.adamcin.oakpal.api.ProgressCheckFactory;
@@ -23,6 +24,10 @@ import net.adamcin.oakpal.api.Rule;
 import net.adamcin.oakpal.api.Rules;
 import net.adamcin.oakpal.api.Severity;
 import net.adamcin.oakpal.api.SimpleProgressCheckFactoryCheck;
+import net.adamcin.oakpal.core.NodeStateCheck;
+import org.apache.jackrabbit.oak.commons.PathUtils;
+import org.apache.jackrabbit.oak.spi.state.NodeState;
+import org.apache.jackrabbit.oak.spi.state.NodeStateUtils;
 import org.apache.jackrabbit.vault.packaging.PackageId;
 import org.jetbrains.annotations.NotNull;
 import org.osgi.annotation.versioning.ProviderType;
@@ -117,7 +122,8 @@ public final class ExpectPaths implements ProgressCheckFactory {
         return new Check(expectedPaths, notExpectedPaths, afterPackageIdRules, severity);
     }
 
-    static final class Check extends SimpleProgressCheckFactoryCheck<ExpectPaths> {
+    static final class Check extends SimpleProgressCheckFactoryCheck<ExpectPaths> implements NodeStateCheck {
+        private static final EventMask EVENT_MASK = EventMask.of(EventMask.Event.AFTER_EXTRACT);
 
         final List<String> expectedPaths;
         final List<String> notExpectedPaths;
@@ -137,6 +143,11 @@ public final class ExpectPaths implements ProgressCheckFactory {
             this.severity = severity;
         }
 
+        @Override
+        public EventMask getEventMask() {
+            return EVENT_MASK;
+        }
+
         @Override
         public void startedScan() {
             super.startedScan();
@@ -172,6 +183,42 @@ public final class ExpectPaths implements ProgressCheckFactory {
             }
         }
 
+        @Override
+        public void afterExtractState(final PackageId packageId, final NodeState root) {
+            if (shouldExpectAfterExtract(packageId)) {
+                for (final String expectedPath : expectedPaths) {
+                    if (!itemExists(root, expectedPath)) {
+                        getViolatorListForExpectedPath(expectedViolators, expectedPath).add(packageId);
+                    }
+                }
+                for (final String notExpectedPath : notExpectedPaths) {
+                    if (itemExists(root, notExpectedPath)) {
+                        getViolatorListForExpectedPath(notExpectedViolators, notExpectedPath).add(packageId);
+                    }
+                }
+            }
+        }
+
+        /**
+         * The node state equivalent of {@link Session#itemExists(String)}, which is true if the path is absolute and
+         * either a node or a property exists at the path. Hidden items are not visible to a session, so they do not
+         * exist.
+         *
+         * @param root the root node state
+         * @param path the expected path
+         * @return true if an item exists at the path
+         */
+        static boolean itemExists(final @NotNull NodeState root, final @NotNull String path) {
+            if (!PathUtils.isAbsolute(path) || NodeStateUtils.isHiddenPath(path)) {
+                return false;
+            } else if (PathUtils.denotesRoot(path)) {
+                return root.exists();
+            }
+            final NodeState parent = NodeStateUtils.getNode(root, PathUtils.getParentPath(path));
+            final String name = PathUtils.getName(path);
+            return parent.hasChildNode(name) || parent.hasProperty(name);
+        }
+
         @Override
         public void finishedScan() {
             for (Map.Entry<String, List<PackageId>> violatorsEntry : expectedViolators.entrySet()) {
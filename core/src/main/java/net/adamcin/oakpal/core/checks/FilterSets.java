@@ -16,6 +16,7 @@
 
 package net.adamcin.oakpal.core.checks;
 
+import net.adamcin.oakpal.api.EventMask;
 import net.adamcin.oakpal.api.ProgressCheck;
 import net.adamcin.oakpal.api.ProgressCheckFactory;
 import net.adamcin.oakpal.api.Severity;
@@ -111,6 +112,7 @@ public final class FilterSets implements ProgressCheckFactory {
     }
 
     static final class Check extends SimpleProgressCheckFactoryCheck<FilterSets> {
+        private static final EventMask EVENT_MASK = EventMask.of(EventMask.Event.BEFORE_EXTRACT);
         final Severity importModeSeverity;
         final boolean allowEmptyFilter;
         final boolean allowRootFilter;
@@ -122,6 +124,11 @@ public final class FilterSets implements ProgressCheckFactory {
             this.allowRootFilter = allowRootFilter;
         }
 
+        @Override
+        public EventMask getEventMask() {
+            return EVENT_MASK;
+        }
+
         @Override
         public void beforeExtract(final PackageId packageId, final Session inspectSession,
                                   final PackageProperties packageProperties, final MetaInf metaInf,
@@ -16,6 +16,8 @@
 
 package net.adamcin.oakpal.core.checks;
 
+import net.adamcin.oakpal.api.CompiledRules;
+import net.adamcin.oakpal.api.EventMask;
 import net.adamcin.oakpal.api.PathAction;
 import net.adamcin.oakpal.api.ProgressCheck;
 import net.adamcin.oakpal.api.ProgressCheckFactory;
@@ -24,6 +26,10 @@ import net.adamcin.oakpal.api.RuleType;
 import net.adamcin.oakpal.api.Rules;
 import net.adamcin.oakpal.api.Severity;
 import net.adamcin.oakpal.api.SimpleProgressCheckFactoryCheck;
+import net.adamcin.oakpal.core.NodeStateCheck;
+import org.apache.jackrabbit.oak.plugins.nodetype.TypePredicate;
+import org.apache.jackrabbit.oak.spi.state.NodeState;
+import org.apache.jackrabbit.oak.spi.state.NodeStateUtils;
 import org.apache.jackrabbit.vault.fs.api.WorkspaceFilter;
 import org.apache.jackrabbit.vault.fs.config.MetaInf;
 import org.apache.jackrabbit.vault.packaging.PackageId;
@@ -175,13 +181,19 @@ public final class JcrProperties implements ProgressCheckFactory {
         }
     }
 
-    static final class Check extends SimpleProgressCheckFactoryCheck<JcrProperties> {
+    static final class Check extends SimpleProgressCheckFactoryCheck<JcrProperties> implements NodeStateCheck {
+        private static final EventMask EVENT_MASK = EventMask.of(EventMask.Event.BEFORE_EXTRACT,
+                EventMask.Event.IMPORTED_PATH);
         private final List<Rule> scopePaths;
+        private final CompiledRules compiledScopePaths;
         private final List<String> denyNodeTypes;
         private final List<String> scopeNodeTypes;
         private final List<JcrPropertyConstraints> propertyChecks;
         private final ResourceBundleHolder resourceBundleHolder;
         private WorkspaceFilter wspFilter;
+        private NodeState typeRoot;
+        private List<TypePredicate> denyNodeTypePredicates;
+        private List<TypePredicate> scopeNodeTypePredicates;
 
         Check(final List<Rule> scopePaths,
               final List<String> denyNodeTypes,
@@ -190,12 +202,18 @@ public final class JcrProperties implements ProgressCheckFactory {
               final ResourceBundleHolder resourceBundleHolder) {
             super(JcrProperties.class);
             this.scopePaths = scopePaths;
+            this.compiledScopePaths = CompiledRules.compile(scopePaths);
             this.denyNodeTypes = denyNodeTypes;
             this.scopeNodeTypes = scopeNodeTypes;
             this.propertyChecks = propertyChecks;
             this.resourceBundleHolder = resourceBundleHolder;
         }
 
+        @Override
+        public EventMask getEventMask() {
+            return EVENT_MASK;
+        }
+
         @Override
         public void setResourceBundle(final ResourceBundle resourceBundle) {
             super.setResourceBundle(resourceBundle);
@@ -221,12 +239,64 @@ public final class JcrProperties implements ProgressCheckFactory {
                 return;
             }
 
-            final Rule lastMatch = Rules.lastMatch(scopePaths, path);
+            final Rule lastMatch = compiledScopePaths.lastMatch(path);
             if (lastMatch.isInclude()) {
                 this.checkNode(packageId, node);
             }
         }
 
+        @Override
+        public void importedPathState(final PackageId packageId, final String path, final NodeState nodeState,
+                                      final PathAction action, final NodeState root) {
+            if (!wspFilter.contains(path)) {
+                return;
+            }
+
+            final Rule lastMatch = compiledScopePaths.lastMatch(path);
+            if (lastMatch.isInclude()) {
+                this.checkNodeState(packageId, path, nodeState, root);
+            }
+        }
+
+        void checkNodeState(final PackageId packageId, final String path, final NodeState nodeState,
+                            final NodeState root) {
+            // the type predicates read the node type registry, which only changes between packages
+            if (root != typeRoot) {
+                typeRoot = root;
+                denyNodeTypePredicates = denyNodeTypes.stream()
+                        .map(nodeType -> new TypePredicate(root, nodeType))
+                        .collect(Collectors.toList());
+                scopeNodeTypePredicates = scopeNodeTypes.stream()
+                        .map(nodeType -> new TypePredicate(root, nodeType))
+                        .collect(Collectors.toList());
+            }
+
+            for (int i = 0; i < denyNodeTypes.size(); i++) {
+                if (denyNodeTypePredicates.get(i).test(nodeState)) {
+                    final Object[] arguments = new Object[]{
+                            path,
+                            NodeStateUtils.getPrimaryTypeName(nodeState),
+                            JcrPropertyConstraints.getMixinTypeNames(nodeState),
+                            denyNodeTypes.get(i)
+                    };
+                    reporting(violation -> violation
+                            .withSeverity(Severity.MAJOR)
+                            .withDescription("{0} (t: {1}, m: {2}): denied node type {3}")
+                            .withArgument(arguments)
+                            .withPackage(packageId));
+                    return;
+                }
+            }
+
+            final boolean isInScope = scopeNodeTypePredicates.isEmpty()
+                    || scopeNodeTypePredicates.stream().anyMatch(predicate -> predicate.test(nodeState));
+            if (isInScope) {
+                for (JcrPropertyConstraints check : propertyChecks) {
+                    check.evaluate(packageId, path, nodeState).ifPresent(collector::reportViolation);
+                }
+            }
+        }
+
         void checkNode(final PackageId packageId, final Node node) throws RepositoryException {
             for (String denyNodeType : denyNodeTypes) {
                 if (node.isNodeType(denyNodeType)) {
@@ -16,11 +16,17 @@
 
 package net.adamcin.oakpal.core.checks;
 
+import net.adamcin.oakpal.api.CompiledRules;
 import net.adamcin.oakpal.api.Rule;
 import net.adamcin.oakpal.api.Rules;
 import net.adamcin.oakpal.api.Severity;
 import net.adamcin.oakpal.api.SimpleViolation;
 import net.adamcin.oakpal.api.Violation;
+import org.apache.jackrabbit.JcrConstants;
+import org.apache.jackrabbit.oak.api.PropertyState;
+import org.apache.jackrabbit.oak.api.Type;
+import org.apache.jackrabbit.oak.spi.state.NodeState;
+import org.apache.jackrabbit.oak.spi.state.NodeStateUtils;
 import org.apache.jackrabbit.vault.packaging.PackageId;
 import org.jetbrains.annotations.NotNull;
 import org.osgi.annotation.versioning.ProviderType;
@@ -180,6 +186,7 @@ public final class JcrPropertyConstraints {
     private final boolean denyIfMultivalued;
     private final String requireType;
     private final List<Rule> valueRules;
+    private final CompiledRules compiledValueRules;
     private final Severity severity;
     private final Supplier<ResourceBundle> resourceBundleSupplier;
 
@@ -197,6 +204,7 @@ public final class JcrPropertyConstraints {
         this.denyIfMultivalued = denyIfMultivalued;
         this.requireType = requireType;
         this.valueRules = valueRules;
+        this.compiledValueRules = CompiledRules.compile(valueRules);
         this.severity = severity;
         this.resourceBundleSupplier = resourceBundleSupplier;
     }
@@ -253,6 +261,24 @@ public final class JcrPropertyConstraints {
                 packageId);
     }
 
+    Violation constructViolation(final PackageId packageId, final String path, final NodeState nodeState,
+                                 final String reason) {
+        return new SimpleViolation(getSeverity(),
+                MessageFormat.format("{0} (t: {1}, m: {2}): {3} -> {4}",
+                        path,
+                        NodeStateUtils.getPrimaryTypeName(nodeState),
+                        getMixinTypeNames(nodeState),
+                        reason,
+                        getName()),
+                packageId);
+    }
+
+    static List<String> getMixinTypeNames(final NodeState nodeState) {
+        final List<String> mixinTypeNames = new ArrayList<>();
+        nodeState.getNames(JcrConstants.JCR_MIXINTYPES).forEach(mixinTypeNames::add);
+        return mixinTypeNames;
+    }
+
     Optional<Violation> evaluate(final PackageId packageId, final Node node) throws RepositoryException {
         if (!node.hasProperty(getName())) {
             if (isDenyIfAbsent()) {
@@ -286,7 +312,7 @@ public final class JcrPropertyConstraints {
             }
 
             for (String value : values) {
-                final Rule lastMatch = Rules.lastMatch(getValueRules(), value);
+                final Rule lastMatch = compiledValueRules.lastMatch(value);
                 if (lastMatch.isDeny()) {
                     return Optional.of(constructViolation(packageId, node,
                             MessageFormat.format(getString("value {0} denied by pattern {1}"),
@@ -297,4 +323,49 @@ public final class JcrPropertyConstraints {
 
         return Optional.empty();
     }
+
+    /**
+     * Evaluate the constraints against a node state, with the same result as {@link #evaluate(PackageId, Node)}
+     * against the node at the same path.
+     *
+     * @param packageId the package id
+     * @param path      the node path
+     * @param nodeState the node state
+     * @return a violation if the node state violates a constraint
+     */
+    Optional<Violation> evaluate(final PackageId packageId, final String path, final NodeState nodeState) {
+        final PropertyState property = nodeState.getProperty(getName());
+        if (property == null) {
+            if (isDenyIfAbsent()) {
+                return Optional.of(constructViolation(packageId, path, nodeState, getString("property absent")));
+            }
+        } else {
+            if (isDenyIfPresent()) {
+                return Optional.of(constructViolation(packageId, path, nodeState, getString("property present")));
+            }
+
+            if (isDenyIfMultivalued() && property.isArray()) {
+                return Optional.of(constructViolation(packageId, path, nodeState,
+                        getString("property is multivalued")));
+            }
+
+            final String typeName = PropertyType.nameFromValue(property.getType().tag());
+            if (getRequireType() != null && !getRequireType().isEmpty() && !getRequireType().equals(typeName)) {
+                return Optional.of(constructViolation(packageId, path, nodeState,
+                        MessageFormat.format(getString("required type mismatch: {0} != {1}"),
+                                typeName, getRequireType())));
+            }
+
+            for (String value : property.getValue(Type.STRINGS)) {
+                final Rule lastMatch = compiledValueRules.lastMatch(value);
+                if (lastMatch.isDeny()) {
+                    return Optional.of(constructViolation(packageId, path, nodeState,
+                            MessageFormat.format(getString("value {0} denied by pattern {1}"),
+                                    value, lastMatch.getPattern().pattern())));
+                }
+            }
+        }
+
+        return Optional.empty();
+    }
 }
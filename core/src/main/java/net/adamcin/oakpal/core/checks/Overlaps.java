@@ -16,12 +16,15 @@
 
 package net.adamcin.oakpal.core.checks;
 
+import net.adamcin.oakpal.api.EventMask;
 import net.adamcin.oakpal.api.PathAction;
 import net.adamcin.oakpal.api.ProgressCheck;
 import net.adamcin.oakpal.api.ProgressCheckFactory;
 import net.adamcin.oakpal.api.Severity;
 import net.adamcin.oakpal.api.SimpleProgressCheckFactoryCheck;
+import org.apache.jackrabbit.vault.fs.api.PathFilterSet;
 import org.apache.jackrabbit.vault.fs.api.WorkspaceFilter;
+import org.apache.jackrabbit.vault.fs.config.DefaultWorkspaceFilter;
 import org.apache.jackrabbit.vault.fs.config.MetaInf;
 import org.apache.jackrabbit.vault.packaging.PackageId;
 import org.apache.jackrabbit.vault.packaging.PackageProperties;
@@ -33,9 +36,10 @@ import javax.jcr.RepositoryException;
 import javax.jcr.Session;
 import javax.json.JsonObject;
 import java.util.HashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
-import java.util.function.Predicate;
+import java.util.Set;
 import java.util.stream.Collectors;
 
 import static net.adamcin.oakpal.api.JavaxJson.hasNonNull;
@@ -87,8 +91,11 @@ public final class Overlaps implements ProgressCheckFactory {
     }
 
     static final class Check extends SimpleProgressCheckFactoryCheck<Overlaps> {
+        private static final EventMask EVENT_MASK = EventMask.of(EventMask.Event.BEFORE_EXTRACT,
+                EventMask.Event.IMPORTED_PATH, EventMask.Event.DELETED_PATH).withoutImportedNode();
 
         final Map<PackageId, WorkspaceFilter> filters = new HashMap<>();
+        final FilterRootIndex filterRoots = new FilterRootIndex();
         final Map<PackageId, Severity> reported = new HashMap<>();
 
         final boolean reportAllOverlaps;
@@ -98,10 +105,16 @@ public final class Overlaps implements ProgressCheckFactory {
             this.reportAllOverlaps = reportAllOverlaps;
         }
 
+        @Override
+        public EventMask getEventMask() {
+            return EVENT_MASK;
+        }
+
         @Override
         public void startedScan() {
             super.startedScan();
             filters.clear();
+            filterRoots.clear();
             reported.clear();
         }
 
@@ -109,11 +122,9 @@ public final class Overlaps implements ProgressCheckFactory {
         public void beforeExtract(final PackageId packageId, final Session inspectSession,
                                   final PackageProperties packageProperties, final MetaInf metaInf,
                                   final List<PackageId> subpackages) throws RepositoryException {
-            filters.put(packageId, metaInf.getFilter());
-        }
-
-        Predicate<? super Map.Entry<PackageId, WorkspaceFilter>> overlaps(final String path) {
-            return entry -> entry.getValue().contains(path);
+            final WorkspaceFilter filter = metaInf.getFilter();
+            filters.put(packageId, filter);
+            filterRoots.put(packageId, filter);
         }
 
         void findOverlaps(final PackageId currentPackageId, final String path,
@@ -125,23 +136,27 @@ public final class Overlaps implements ProgressCheckFactory {
                 return;
             }
 
-            // find any overlapping filters, looking forward.
-            List<PackageId> overlapping = filters.entrySet().stream()
-                    .filter(entry -> !entry.getKey().equals(currentPackageId))
-                    .filter(overlaps(path))
-                    .map(Map.Entry::getKey)
+            // find any overlapping filters, looking forward. only filters with a root covering the path can
+            // contain it.
+            final Set<PackageId> containing = filterRoots.candidates(path).stream()
+                    .filter(packageId -> !packageId.equals(currentPackageId))
+                    .filter(packageId -> filters.get(packageId).contains(path))
+                    .collect(Collectors.toSet());
+            if (containing.isEmpty()) {
+                return;
+            }
+            // report the packages in the same order as the filters map.
+            List<PackageId> overlapping = filters.keySet().stream()
+                    .filter(containing::contains)
                     .collect(Collectors.toList());
 
-
-            if (!overlapping.isEmpty()) {
-                if (!reportAllOverlaps) {
-                    reported.put(currentPackageId, severity);
-                }
-                reporting(violation -> violation.withSeverity(severity)
-                        .withPackage(currentPackageId)
-                        .withDescription("affected path {0} overlaps {1}")
-                        .withArgument(path, overlapping));
+            if (!reportAllOverlaps) {
+                reported.put(currentPackageId, severity);
             }
+            reporting(violation -> violation.withSeverity(severity)
+                    .withPackage(currentPackageId)
+                    .withDescription("affected path {0} overlaps {1}")
+                    .withArgument(path, overlapping));
         }
 
         @Override
@@ -161,4 +176,70 @@ public final class Overlaps implements ProgressCheckFactory {
             findOverlaps(packageId, path, Severity.MAJOR);
         }
     }
+
+    /**
+     * Indexes package filters by the root paths of their filter sets, so that only the filters of packages with a
+     * root at or above a path need to be evaluated for it. Filters that are not plain {@link DefaultWorkspaceFilter}s
+     * are always evaluated.
+     */
+    static final class FilterRootIndex {
+        static final class TrieNode {
+            final Map<String, TrieNode> children = new HashMap<>();
+            final Set<PackageId> packageIds = new LinkedHashSet<>();
+        }
+
+        private final TrieNode root = new TrieNode();
+        private final Set<PackageId> unindexed = new LinkedHashSet<>();
+
+        void clear() {
+            root.children.clear();
+            root.packageIds.clear();
+            unindexed.clear();
+        }
+
+        void put(final @NotNull PackageId packageId, final @NotNull WorkspaceFilter filter) {
+            if (filter.getClass() != DefaultWorkspaceFilter.class || !filter.getFilterSets().stream()
+                    .allMatch(filterSet -> filterSet.getClass() == PathFilterSet.class
+                            && isIndexable(filterSet.getRoot()))) {
+                unindexed.add(packageId);
+                return;
+            }
+            for (PathFilterSet filterSet : filter.getFilterSets()) {
+                TrieNode node = root;
+                for (String segment : segments(filterSet.getRoot())) {
+                    node = node.children.computeIfAbsent(segment, key -> new TrieNode());
+                }
+                node.packageIds.add(packageId);
+            }
+        }
+
+        /**
+         * Collect the ids of packages that have a filter root at or above the path, and of unindexed packages.
+         *
+         * @param path the affected path
+         * @return the candidate package ids
+         */
+        Set<PackageId> candidates(final @NotNull String path) {
+            final Set<PackageId> candidates = new LinkedHashSet<>(unindexed);
+            TrieNode node = root;
+            candidates.addAll(node.packageIds);
+            for (String segment : segments(path)) {
+                node = node.children.get(segment);
+                if (node == null) {
+                    break;
+                }
+                candidates.addAll(node.packageIds);
+            }
+            return candidates;
+        }
+
+        static boolean isIndexable(final String rootPath) {
+            return rootPath != null && rootPath.startsWith("/")
+                    && (rootPath.length() == 1 || !rootPath.endsWith("/")) && !rootPath.contains("//");
+        }
+
+        static String[] segments(final @NotNull String path) {
+            return path.length() <= 1 ? new String[0] : path.substring(1).split("/", -1);
+        }
+    }
 }
@@ -16,6 +16,8 @@
 
 package net.adamcin.oakpal.core.checks;
 
+import net.adamcin.oakpal.api.CompiledRules;
+import net.adamcin.oakpal.api.EventMask;
 import net.adamcin.oakpal.api.PathAction;
 import net.adamcin.oakpal.api.ProgressCheck;
 import net.adamcin.oakpal.api.ProgressCheckFactory;
@@ -124,23 +126,32 @@ public final class Paths implements ProgressCheckFactory {
     }
 
     static final class Check extends SimpleProgressCheckFactoryCheck<Paths> {
+        private static final EventMask EVENT_MASK = EventMask.of(EventMask.Event.IMPORTED_PATH,
+                EventMask.Event.DELETED_PATH).withoutImportedNode();
         private final List<Rule> rules;
+        private final CompiledRules compiledRules;
         private final boolean denyAllDeletes;
         private final Severity severity;
 
         Check(final List<Rule> rules, final boolean denyAllDeletes, final Severity severity) {
             super(Paths.class);
             this.rules = rules;
+            this.compiledRules = CompiledRules.compile(rules);
             this.denyAllDeletes = denyAllDeletes;
             this.severity = severity;
         }
 
+        @Override
+        public EventMask getEventMask() {
+            return EVENT_MASK;
+        }
+
         @Override
         public void importedPath(final PackageId packageId, final String path, final Node node,
                                  final PathAction action)
                 throws RepositoryException {
 
-            Rule lastMatch = Rules.lastMatch(rules, path);
+            Rule lastMatch = compiledRules.lastMatch(path);
             if (lastMatch.isDeny()) {
                 reporting(violation -> violation
                         .withSeverity(severity)
@@ -160,7 +171,7 @@ public final class Paths implements ProgressCheckFactory {
                         .withDescription("deleted path {0}. All deletions are denied.")
                         .withArgument(path));
             } else {
-                final Rule lastMatch = Rules.lastMatch(rules, path);
+                final Rule lastMatch = compiledRules.lastMatch(path);
                 if (lastMatch.isDeny()) {
                     reporting(violation -> violation
                             .withSeverity(severity)
@@ -16,6 +16,8 @@
 
 package net.adamcin.oakpal.core.checks;
 
+import net.adamcin.oakpal.api.CompiledRules;
+import net.adamcin.oakpal.api.EventMask;
 import net.adamcin.oakpal.api.ProgressCheck;
 import net.adamcin.oakpal.api.ProgressCheckFactory;
 import net.adamcin.oakpal.api.Rule;
@@ -102,15 +104,21 @@ public final class Subpackages implements ProgressCheckFactory {
     }
 
     static final class Check extends SimpleProgressCheckFactoryCheck<Subpackages> {
-        private final List<Rule> rules;
+        private static final EventMask EVENT_MASK = EventMask.of(EventMask.Event.IDENTIFY_SUBPACKAGE);
+        private final CompiledRules compiledRules;
         private final boolean denyAll;
 
         Check(final List<Rule> rules, final boolean denyAll) {
             super(Subpackages.class);
-            this.rules = rules;
+            this.compiledRules = CompiledRules.compile(rules);
             this.denyAll = denyAll;
         }
 
+        @Override
+        public EventMask getEventMask() {
+            return EVENT_MASK;
+        }
+
         @Override
         public void identifySubpackage(final PackageId packageId, final PackageId parentId) {
             if (denyAll) {
@@ -120,7 +128,7 @@ public final class Subpackages implements ProgressCheckFactory {
                         .withDescription("subpackage {0} included by {1}. no subpackages are allowed.")
                         .withArgument(packageId, parentId));
             } else {
-                final Rule lastMatch = Rules.lastMatch(rules, packageId.toString());
+                final Rule lastMatch = compiledRules.lastMatch(packageId.toString());
                 if (lastMatch.isDeny()) {
                     reporting(violation -> violation
                             .withSeverity(Severity.MAJOR)
@@ -0,0 +1,154 @@
+/*
+ * Copyright 2020 Mark Adamcin
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.adamcin.oakpal.core;
+
+import net.adamcin.oakpal.api.Severity;
+import net.adamcin.oakpal.testing.TestPackageUtil;
+import org.apache.commons.io.FileUtils;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.net.URL;
+import java.util.Collections;
+import java.util.List;
+import java.util.function.Supplier;
+
+import static net.adamcin.oakpal.api.Fun.uncheck0;
+import static net.adamcin.oakpal.api.JavaxJson.key;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class BaseCheckpointCacheTest {
+    private final File testOutDir = new File("target/test-out/BaseCheckpointCacheTest");
+
+    @Before
+    public void setUp() throws Exception {
+        FileUtils.deleteDirectory(testOutDir);
+        testOutDir.mkdirs();
+    }
+
+    @Test
+    public void testGetOrPrepare() throws Exception {
+        final File cacheDir = new File(testOutDir, "testGetOrPrepare");
+        final File preInstallPackage = TestPackageUtil.prepareTestPackage("tmp_foo_bar.zip");
+        final File testPackage = TestPackageUtil.prepareTestPackage("subsubtest.zip");
+        final Supplier<OakMachine> machineSupplier = uncheck0(() -> new OakMachine.Builder()
+                .withInitStage(new InitStage.Builder().withNs("foo", "http://foo.com").build())
+                .withInitStage(new InitStage.Builder().withNs("bar", "http://foo.com").build())
+                .withPreInstallUrl(preInstallPackage.toURI().toURL())
+                .build());
+        final String key = "testGetOrPrepare";
+
+        final List<CheckReport> coldReports = machineSupplier.get().scanPackage(testPackage);
+
+        try (BaseCheckpointCache cache = new BaseCheckpointCache(cacheDir)) {
+            assertNull("expect no cached checkpoint before prepare", cache.load(key));
+            final BaseCheckpoint prepared = cache.getOrPrepare(key, machineSupplier.get());
+            assertTrue("expect key dir", new File(cacheDir, key).isDirectory());
+            assertTrue("checkpoint should contain preinstall path",
+                    prepared.getRoot().getChildNode("tmp").getChildNode("foo").hasChildNode("bar"));
+            assertEquals("expect same reports as cold scan", coldReports,
+                    machineSupplier.get().scanPackages(prepared, Collections.singletonList(testPackage)));
+        }
+
+        try (BaseCheckpointCache cache = new BaseCheckpointCache(cacheDir)) {
+            final BaseCheckpoint loaded = cache.load(key);
+            assertNotNull("expect cached checkpoint", loaded);
+            assertEquals("expect checkpoint keyed by cache key", key, loaded.getKey());
+            assertEquals("expect session namespaces", Collections.singletonMap("bar", "http://foo.com"),
+                    loaded.getSessionNamespaces());
+            assertTrue("loaded checkpoint should contain preinstall path",
+                    loaded.getRoot().getChildNode("tmp").getChildNode("foo").hasChildNode("bar"));
+            assertEquals("expect same reports as cold scan", coldReports,
+                    machineSupplier.get().scanPackages(loaded, Collections.singletonList(testPackage)));
+            assertFalse("test package should not leak into cached checkpoint",
+                    cache.getOrPrepare(key, machineSupplier.get()).getRoot().getChildNode("etc")
+                            .getChildNode("packages").getChildNode("my_packages")
+                            .hasChildNode("subsubtest.zip"));
+        }
+    }
+
+    @Test
+    public void testGetOrPrepareWithErrors() throws Exception {
+        final File cacheDir = new File(testOutDir, "testGetOrPrepareWithErrors");
+        final File testPackage = TestPackageUtil.prepareTestPackage("tmp_foo_bar.zip");
+        final Supplier<OakMachine> machineSupplier = uncheck0(() -> new OakMachine.Builder()
+                .withInitStage(new InitStage.Builder().withNs("nt", "http://nt.foo.com").build())
+                .build());
+        final String key = "testGetOrPrepareWithErrors";
+        final List<CheckReport> coldReports = machineSupplier.get().scanPackage(testPackage);
+        assertFalse("cold scan should report a namespace error", coldReports.get(0).getViolations().isEmpty());
+
+        try (BaseCheckpointCache cache = new BaseCheckpointCache(cacheDir)) {
+            final BaseCheckpoint prepared = cache.getOrPrepare(key, machineSupplier.get());
+            assertTrue("expect error events", prepared.hasErrorEvents());
+            assertFalse("checkpoint with errors should not be cached", new File(cacheDir, key).exists());
+            assertEquals("expect same reports as cold scan", coldReports,
+                    machineSupplier.get().scanPackages(prepared, Collections.singletonList(testPackage)));
+        }
+        final File[] leftovers = cacheDir.listFiles();
+        assertNotNull("expect cache dir", leftovers);
+        assertEquals("expect temp dir cleanup on close", 0, leftovers.length);
+    }
+
+    @Test
+    public void testComputeKey() throws Exception {
+        final URL preInstallUrl = TestPackageUtil.prepareTestPackage("tmp_foo_bar.zip").toURI().toURL();
+        final URL otherPreInstallUrl = TestPackageUtil.prepareTestPackage("subsubtest.zip").toURI().toURL();
+        final ClassLoader classLoader = getClass().getClassLoader();
+        final OakpalPlan plan = new OakpalPlan.Builder(null, null)
+                .withPreInstallUrls(Collections.singletonList(preInstallUrl))
+                .withForcedRoots(Collections.singletonList(new ForcedRoot().withPath("/apps/foo")))
+                .build();
+        final String key = BaseCheckpointCache.computeKey(plan, classLoader);
+        assertEquals("expect sha-256 hex", 64, key.length());
+        assertEquals("expect stable key", key, BaseCheckpointCache.computeKey(
+                new OakpalPlan.Builder(null, null).startingWithPlan(plan).build(), classLoader));
+        assertEquals("expect checks to be excluded", key, BaseCheckpointCache.computeKey(
+                new OakpalPlan.Builder(null, null).startingWithPlan(plan)
+                        .withChecks(Collections.singletonList(CheckSpec.fromJson(
+                                key("name", "foo").get())))
+                        .build(), classLoader));
+        assertEquals("expect scan options to be excluded", key, BaseCheckpointCache.computeKey(
+                new OakpalPlan.Builder(null, null).startingWithPlan(plan)
+                        .withNodeStoreType(NodeStoreType.SEGMENT)
+                        .withDirectInstall(true)
+                        .withFailFastSeverity(Severity.MAJOR)
+                        .build(), classLoader));
+        assertNotEquals("expect different key for different forced roots", key, BaseCheckpointCache.computeKey(
+                new OakpalPlan.Builder(null, null).startingWithPlan(plan)
+                        .withForcedRoots(Collections.emptyList()).build(), classLoader));
+        assertNotEquals("expect different key for different preinstall", key, BaseCheckpointCache.computeKey(
+                new OakpalPlan.Builder(null, null).startingWithPlan(plan)
+                        .withPreInstallUrls(Collections.singletonList(otherPreInstallUrl)).build(), classLoader));
+    }
+
+    @Test
+    public void testGetVersions() {
+        assertNotEquals("expect oakpal version", BaseCheckpointCache.UNKNOWN_VERSION,
+                BaseCheckpointCache.getOakpalVersion());
+        assertNotEquals("expect vault version", BaseCheckpointCache.UNKNOWN_VERSION,
+                BaseCheckpointCache.getVaultVersion());
+        assertEquals("expect unknown for missing resource", BaseCheckpointCache.UNKNOWN_VERSION,
+                BaseCheckpointCache.readVersion(getClass(), "missing.properties", "version"));
+    }
+}
@@ -0,0 +1,82 @@
+/*
+ * Copyright 2020 Mark Adamcin
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.adamcin.oakpal.core;
+
+import net.adamcin.oakpal.api.ProgressCheck;
+import net.adamcin.oakpal.api.SimpleProgressCheck;
+import org.junit.Test;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class CheckBudgetTest {
+
+    static long millis(final long millis) {
+        return TimeUnit.MILLISECONDS.toNanos(millis);
+    }
+
+    @Test
+    public void testLimits() {
+        final CheckBudget budget = new CheckBudget(10L, -1L);
+        assertEquals("callback", 10L, budget.getCallbackMillis());
+        assertEquals("negative total is unlimited", 0L, budget.getTotalMillis());
+        assertEquals("callback limit", 10L, budget.getMillis(CheckBudget.Limit.CALLBACK));
+        assertEquals("total limit", 0L, budget.getMillis(CheckBudget.Limit.TOTAL));
+        assertFalse("not unlimited", budget.isUnlimited());
+        assertTrue("unlimited", new CheckBudget(0L, 0L).isUnlimited());
+        assertNull("ofMillis unlimited", CheckBudget.ofMillis(0L, 0L));
+        assertNotNull("ofMillis total", CheckBudget.ofMillis(0L, 1000L));
+    }
+
+    @Test
+    public void testTracker_callbackLimit() {
+        final CheckBudget.Tracker tracker = new CheckBudget.Tracker(new CheckBudget(10L, 0L));
+        final ProgressCheck check = new SimpleProgressCheck();
+        final ProgressCheck other = new SimpleProgressCheck();
+        assertNull("within budget", tracker.charge(check, millis(10L)));
+        assertNull("many callbacks within budget", tracker.charge(check, millis(10L)));
+        assertFalse("not quarantined", tracker.isQuarantined(check));
+        assertFalse("none quarantined", tracker.hasQuarantined());
+        assertSame("exceeded callback", CheckBudget.Limit.CALLBACK, tracker.charge(check, millis(11L)));
+        assertTrue("quarantined", tracker.isQuarantined(check));
+        assertTrue("some quarantined", tracker.hasQuarantined());
+        assertFalse("other not quarantined", tracker.isQuarantined(other));
+        assertNull("reported once", tracker.charge(check, millis(11L)));
+        assertEquals("elapsed", millis(42L), tracker.getElapsedNanos(check));
+        tracker.reset();
+        assertFalse("not quarantined after reset", tracker.isQuarantined(check));
+        assertFalse("none quarantined after reset", tracker.hasQuarantined());
+        assertEquals("no elapsed after reset", 0L, tracker.getElapsedNanos(check));
+    }
+
+    @Test
+    public void testTracker_totalLimit() {
+        final CheckBudget.Tracker tracker = new CheckBudget.Tracker(new CheckBudget(0L, 100L));
+        final ProgressCheck check = new SimpleProgressCheck();
+        for (int i = 0; i < 10; i++) {
+            assertNull("within total budget " + i, tracker.charge(check, millis(10L)));
+        }
+        assertSame("exceeded total", CheckBudget.Limit.TOTAL, tracker.charge(check, 1L));
+        assertTrue("quarantined", tracker.isQuarantined(check));
+    }
+}
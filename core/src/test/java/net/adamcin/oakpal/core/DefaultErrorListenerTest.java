@@ -16,8 +16,11 @@
 
 package net.adamcin.oakpal.core;
 
+import net.adamcin.oakpal.api.ProgressCheck;
 import net.adamcin.oakpal.api.Severity;
+import net.adamcin.oakpal.api.SimpleProgressCheck;
 import net.adamcin.oakpal.api.SimpleViolation;
+import net.adamcin.oakpal.api.Violation;
 import org.junit.Test;
 
 import java.net.URL;
@@ -26,8 +29,10 @@ import java.util.Locale;
 import java.util.ResourceBundle;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.assertNotSame;
 import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
 
 public class DefaultErrorListenerTest {
 
@@ -110,6 +115,24 @@ public class DefaultErrorListenerTest {
         new DefaultErrorListener().onInstallHookError(simpleCause, null);
     }
 
+    @Test
+    public void testOnCheckBudgetExceeded() {
+        final DefaultErrorListener errorListener = new DefaultErrorListener();
+        errorListener.onCheckBudgetExceeded(null, null, null, CheckBudget.Limit.TOTAL, 0L, 0L);
+        final ProgressCheck check = new SimpleProgressCheck();
+        errorListener.onCheckBudgetExceeded(check, null, ScanMetrics.Callback.IMPORTED_PATH,
+                CheckBudget.Limit.CALLBACK, 250L, 100L);
+        assertEquals("should have reported", 2, errorListener.getReportedViolations().size());
+        final Violation violation = errorListener.getReportedViolations().stream()
+                .skip(1).findFirst().orElse(null);
+        assertNotNull("violation", violation);
+        assertEquals("severity", Severity.MAJOR, violation.getSeverity());
+        assertTrue("description contains check name: " + violation.getDescription(),
+                violation.getDescription().contains(check.getCheckName()));
+        assertTrue("description contains callback: " + violation.getDescription(),
+                violation.getDescription().contains("importedPath"));
+    }
+
     @Test
     public void testOnProhibitedInstallHookRegistration() {
         new DefaultErrorListener().onProhibitedInstallHookRegistration(null);
@@ -44,6 +44,7 @@ public class ErrorListenerTest {
         mock.onSubpackageException(null, null);
         mock.onInstallHookError(null, null);
         mock.onProhibitedInstallHookRegistration(null);
+        mock.onCheckBudgetExceeded(null, null, null, null, 0L, 0L);
         mock.finishedScan();
     }
 }
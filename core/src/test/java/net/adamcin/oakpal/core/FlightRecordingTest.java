@@ -0,0 +1,106 @@
+/*
+ * Copyright 2020 Mark Adamcin
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.adamcin.oakpal.core;
+
+import jdk.jfr.Recording;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
+import net.adamcin.oakpal.api.ProgressCheck;
+import net.adamcin.oakpal.api.SimpleProgressCheck;
+import net.adamcin.oakpal.testing.TestPackageUtil;
+import org.apache.jackrabbit.vault.packaging.PackageId;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assume.assumeTrue;
+
+public class FlightRecordingTest {
+    private final File baseDir = new File("target/test-output/FlightRecordingTest");
+
+    @Before
+    public void setUp() throws Exception {
+        baseDir.mkdirs();
+        assumeTrue("flight recorder is available", FlightRecording.isAvailable());
+    }
+
+    @Test
+    public void testNoopWithoutRecording() {
+        assertSame("expect noop extract", FlightRecording.NOOP,
+                FlightRecording.packageExtract(PackageId.fromString("my_packages:test:1.0"), false));
+        assertSame("expect noop callback", FlightRecording.NOOP,
+                FlightRecording.checkCallback(new SimpleProgressCheck(), ScanMetrics.Callback.IMPORTED_PATH,
+                        null, "/tmp"));
+    }
+
+    @Test
+    public void testScanEvents() throws Exception {
+        final File packageFile = TestPackageUtil.prepareTestPackage("subsubtest.zip");
+        final ProgressCheck check = new SimpleProgressCheck();
+        final Path dump = new File(baseDir, "testScanEvents.jfr").toPath();
+        try (Recording recording = new Recording()) {
+            recording.enable("net.adamcin.oakpal.RepositoryInit");
+            recording.enable("net.adamcin.oakpal.CndRegistration");
+            recording.enable("net.adamcin.oakpal.PackageUpload");
+            recording.enable("net.adamcin.oakpal.PackageExtract");
+            recording.enable("net.adamcin.oakpal.PackageSave");
+            recording.enable("net.adamcin.oakpal.Subpackage");
+            recording.enable("net.adamcin.oakpal.CheckCallback").withThreshold(Duration.ZERO);
+            recording.start();
+            new OakMachine.Builder().withProgressCheck(check).build().scanPackage(packageFile);
+            recording.stop();
+            recording.dump(dump);
+        }
+
+        final List<RecordedEvent> events = RecordingFile.readAllEvents(dump);
+        final List<String> names = events.stream().map(event -> event.getEventType().getName())
+                .distinct().collect(Collectors.toList());
+        assertTrue("expect repository init: " + names, names.contains("net.adamcin.oakpal.RepositoryInit"));
+        assertTrue("expect cnd registration: " + names, names.contains("net.adamcin.oakpal.CndRegistration"));
+        assertTrue("expect upload: " + names, names.contains("net.adamcin.oakpal.PackageUpload"));
+        assertTrue("expect save: " + names, names.contains("net.adamcin.oakpal.PackageSave"));
+
+        final List<String> extracted = events.stream()
+                .filter(event -> "net.adamcin.oakpal.PackageExtract".equals(event.getEventType().getName()))
+                .map(event -> event.getString("packageId"))
+                .collect(Collectors.toList());
+        assertEquals("expect extract per package", 4, extracted.size());
+        assertEquals("expect subpackage events", 3, events.stream()
+                .filter(event -> "net.adamcin.oakpal.Subpackage".equals(event.getEventType().getName()))
+                .count());
+
+        final List<RecordedEvent> callbacks = events.stream()
+                .filter(event -> "net.adamcin.oakpal.CheckCallback".equals(event.getEventType().getName()))
+                .collect(Collectors.toList());
+        assertFalse("expect callbacks", callbacks.isEmpty());
+        assertTrue("expect check name", callbacks.stream()
+                .allMatch(event -> check.getCheckName().equals(event.getString("checkName"))));
+        assertTrue("expect importedPath with path", callbacks.stream()
+                .anyMatch(event -> "importedPath".equals(event.getString("callback"))
+                        && event.getString("path") != null
+                        && extracted.contains(event.getString("packageId"))));
+    }
+}
@@ -17,17 +17,30 @@
 package net.adamcin.oakpal.core;
 
 import junitx.util.PrivateAccessor;
+import net.adamcin.oakpal.api.EventMask;
+import net.adamcin.oakpal.api.ImportedPath;
 import net.adamcin.oakpal.api.PathAction;
 import net.adamcin.oakpal.api.ProgressCheck;
+import net.adamcin.oakpal.api.Severity;
 import net.adamcin.oakpal.api.SimpleProgressCheck;
+import net.adamcin.oakpal.api.SimpleViolation;
+import net.adamcin.oakpal.api.Violation;
+import net.adamcin.oakpal.core.checks.Paths;
+import net.adamcin.oakpal.core.jcrfacade.NodeFacade;
+import net.adamcin.oakpal.core.jcrfacade.SessionFacade;
+import net.adamcin.oakpal.testing.SyntheticPackage;
 import net.adamcin.oakpal.testing.TestPackageUtil;
 import org.apache.commons.io.FileUtils;
+import org.apache.jackrabbit.oak.api.PropertyState;
+import org.apache.jackrabbit.oak.plugins.memory.EmptyNodeState;
 import org.apache.jackrabbit.oak.plugins.memory.MemoryNodeStore;
 import org.apache.jackrabbit.oak.security.SecurityProviderImpl;
 import org.apache.jackrabbit.oak.spi.security.ConfigurationParameters;
 import org.apache.jackrabbit.oak.spi.security.user.UserConfiguration;
 import org.apache.jackrabbit.oak.spi.security.user.UserConstants;
+import org.apache.jackrabbit.oak.spi.state.NodeBuilder;
 import org.apache.jackrabbit.oak.spi.state.NodeState;
+import org.apache.jackrabbit.oak.spi.state.NodeStateUtils;
 import org.apache.jackrabbit.oak.spi.state.NodeStore;
 import org.apache.jackrabbit.oak.spi.state.ProxyNodeStore;
 import org.apache.jackrabbit.vault.fs.api.ProgressTrackerListener;
@@ -40,6 +53,7 @@ import org.apache.jackrabbit.vault.packaging.PackageException;
 import org.apache.jackrabbit.vault.packaging.PackageId;
 import org.apache.jackrabbit.vault.packaging.PackageProperties;
 import org.apache.jackrabbit.vault.packaging.Packaging;
+import org.apache.jackrabbit.vault.packaging.VaultPackage;
 import org.apache.jackrabbit.vault.packaging.impl.PackagingImpl;
 import org.jetbrains.annotations.NotNull;
 import org.junit.Before;
@@ -50,6 +64,7 @@ import org.mockito.junit.MockitoJUnitRunner;
 import javax.jcr.Binary;
 import javax.jcr.NamespaceRegistry;
 import javax.jcr.Node;
+import javax.jcr.NodeIterator;
 import javax.jcr.RepositoryException;
 import javax.jcr.Session;
 import java.io.ByteArrayInputStream;
@@ -68,26 +83,33 @@ import java.util.List;
 import java.util.Map;
 import java.util.Properties;
 import java.util.concurrent.CompletableFuture;
+import java.util.function.Supplier;
 import java.util.jar.Manifest;
 import java.util.stream.Collectors;
 import java.util.stream.Stream;
 
 import static net.adamcin.oakpal.api.Fun.compose1;
 import static net.adamcin.oakpal.api.Fun.toEntry;
+import static net.adamcin.oakpal.api.Fun.uncheck0;
 import static net.adamcin.oakpal.api.Fun.uncheck1;
 import static net.adamcin.oakpal.api.Fun.uncheckVoid1;
+import static net.adamcin.oakpal.api.JavaxJson.obj;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
 import static org.junit.Assert.assertSame;
 import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
 import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.ArgumentMatchers.anyString;
 import static org.mockito.Mockito.anyBoolean;
 import static org.mockito.Mockito.doAnswer;
 import static org.mockito.Mockito.doThrow;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.nullable;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 import static org.mockito.Mockito.withSettings;
 
@@ -594,6 +616,420 @@ public class OakMachineTest {
         assertEquals("expect ids", expectIds, subToParent);
     }
 
+    @Test
+    public void testDirectInstall() throws Exception {
+        final List<File> testPackages = Arrays.asList(
+                TestPackageUtil.prepareTestPackage("null-dependency-test.zip"),
+                TestPackageUtil.prepareTestPackage("tmp_foo_bar.zip"));
+        final class EventsCheck extends SimpleProgressCheck {
+            final List<String> events = new ArrayList<>();
+            final List<Boolean> packageNodeExists = new ArrayList<>();
+
+            @Override
+            public void identifyPackage(final PackageId packageId, final File file) {
+                events.add("identifyPackage " + packageId + " " + file.getName());
+            }
+
+            @Override
+            public void readManifest(final PackageId packageId, final Manifest manifest) {
+                events.add("readManifest " + packageId + " "
+                        + Util.getManifestHeaderValues(manifest, "Content-Package-Id"));
+            }
+
+            @Override
+            public void beforeExtract(final PackageId packageId, final Session inspectSession,
+                                      final PackageProperties packageProperties, final MetaInf metaInf,
+                                      final List<PackageId> subpackages) {
+                events.add("beforeExtract " + packageId + " " + subpackages);
+            }
+
+            @Override
+            public void importedPath(final PackageId packageId, final String path, final Node node,
+                                     final PathAction action) {
+                events.add("importedPath " + packageId + " " + path);
+            }
+
+            @Override
+            public void afterExtract(final PackageId packageId, final Session inspectSession)
+                    throws RepositoryException {
+                events.add("afterExtract " + packageId);
+                packageNodeExists.add(inspectSession.nodeExists("/etc/packages/my_packages"));
+            }
+        }
+
+        final EventsCheck uploaded = new EventsCheck();
+        builder().withProgressCheck(uploaded).build().scanPackages(testPackages);
+        final EventsCheck direct = new EventsCheck();
+        builder().withProgressCheck(direct).withDirectInstall(true).build().scanPackages(testPackages);
+        assertEquals("expect same events", uploaded.events, direct.events);
+        assertEquals("expect package nodes when uploaded", Arrays.asList(true, true), uploaded.packageNodeExists);
+        assertEquals("expect no package nodes when direct", Arrays.asList(false, false), direct.packageNodeExists);
+
+        final File subsubtest = TestPackageUtil.prepareTestPackage("subsubtest.zip");
+        final List<PackageId> subpackageIds = new ArrayList<>();
+        final ProgressCheck check = mock(ProgressCheck.class);
+        doAnswer(call -> subpackageIds.add(call.getArgument(0)))
+                .when(check).identifySubpackage(any(PackageId.class), any(PackageId.class));
+        builder().withProgressCheck(check).withDirectInstall(true).build().scanPackage(subsubtest);
+        assertEquals("expect subpackages from uploaded fallback", 3, subpackageIds.size());
+    }
+
+    static int countDescendants(final Node node) throws RepositoryException {
+        int count = 0;
+        for (NodeIterator children = node.getNodes(); children.hasNext(); ) {
+            count += 1 + countDescendants(children.nextNode());
+        }
+        return count;
+    }
+
+    @Test
+    public void testScanSyntheticPackage() throws Exception {
+        final SyntheticPackage sub = new SyntheticPackage.Builder()
+                .withName("sub").withRootPath("/tmp/oakpal-sub").withNodeCount(25).build();
+        final File packageFile = TestPackageUtil.prepareSyntheticPackage(new SyntheticPackage.Builder()
+                .withName("testScanSyntheticPackage").withNodeCount(2000).withFanOut(8).withMaxDepth(4)
+                .withPropertiesPerNode(4).withBinaries(2, 1024).withAclEntries(3)
+                .withFilterRoots(2).withFilterRules(5).withSubpackage(sub).build());
+        final Map<String, Integer> counts = new LinkedHashMap<>();
+        final List<PackageId> subpackageIds = new ArrayList<>();
+        final ProgressCheck check = new SimpleProgressCheck() {
+            @Override
+            public void identifySubpackage(final PackageId packageId, final PackageId parentId) {
+                subpackageIds.add(packageId);
+            }
+
+            @Override
+            public void afterExtract(final PackageId packageId, final Session inspectSession)
+                    throws RepositoryException {
+                if ("testScanSyntheticPackage".equals(packageId.getName())) {
+                    final Node root = inspectSession.getNode("/tmp/oakpal-synthetic");
+                    counts.put("binaries", (int) root.getNode("binaries").getNodes().getSize());
+                    counts.put("aces", (int) root.getNode("rep:policy").getNodes().getSize());
+                    counts.put("nodes", countDescendants(root) - countDescendants(root.getNode("binaries"))
+                            - countDescendants(root.getNode("rep:policy")) - 2);
+                    counts.put("extra", inspectSession.nodeExists("/tmp/oakpal-synthetic-1") ? 1 : 0);
+                } else {
+                    counts.put(packageId.getName(), countDescendants(inspectSession.getNode("/tmp/oakpal-sub")));
+                }
+            }
+        };
+        builder().withProgressCheck(check).build().scanPackage(packageFile);
+        assertEquals("expect subpackage", Collections.singletonList(PackageId.fromString(sub.getPackageId())),
+                subpackageIds);
+        assertEquals("expect counts", 2000, counts.get("nodes").intValue());
+        assertEquals("expect binaries", 2, counts.get("binaries").intValue());
+        assertEquals("expect aces", 3, counts.get("aces").intValue());
+        assertEquals("expect extra root", 1, counts.get("extra").intValue());
+        assertEquals("expect subpackage nodes", 25, counts.get("sub").intValue());
+    }
+
+    @Test
+    public void testScanMetrics() throws Exception {
+        final File packageFile = TestPackageUtil.prepareSyntheticPackage(new SyntheticPackage.Builder()
+                .withName("testScanMetrics").withNodeCount(50).build());
+        final ProgressCheck check = new SimpleProgressCheck();
+        final ScanMetrics metrics = new ScanMetrics();
+        final OakMachine machine = builder().withProgressCheck(check).withScanMetrics(metrics).build();
+        assertSame("same metrics", metrics, machine.getScanMetrics());
+        machine.scanPackage(packageFile);
+
+        assertEquals("one check", 1, metrics.getChecks().size());
+        final ScanMetrics.CheckMetrics checkMetrics = metrics.getChecks().get(0);
+        assertEquals("check name", check.getCheckName(), checkMetrics.getCheckName());
+        assertEquals("startedScan", 1L, checkMetrics.getTimer(ScanMetrics.Callback.STARTED_SCAN).getCount());
+        assertEquals("identifyPackage", 1L, checkMetrics.getTimer(ScanMetrics.Callback.IDENTIFY_PACKAGE).getCount());
+        assertEquals("afterExtract", 1L, checkMetrics.getTimer(ScanMetrics.Callback.AFTER_EXTRACT).getCount());
+        assertEquals("finishedScan", 1L, checkMetrics.getTimer(ScanMetrics.Callback.FINISHED_SCAN).getCount());
+        assertTrue("importedPath", checkMetrics.getTimer(ScanMetrics.Callback.IMPORTED_PATH).getCount() >= 50L);
+
+        assertEquals("one package", 1, metrics.getPackages().size());
+        final ScanMetrics.PackageMetrics packageMetrics = metrics.getPackages().get(0);
+        assertEquals("package name", "testScanMetrics", packageMetrics.getPackageId().getName());
+        assertEquals("extract", 1L, packageMetrics.getTimer(ScanMetrics.ImporterPhase.EXTRACT).getCount());
+        assertEquals("save", 1L, packageMetrics.getTimer(ScanMetrics.ImporterPhase.SAVE).getCount());
+        assertTrue("extract time", packageMetrics.getTimer(ScanMetrics.ImporterPhase.EXTRACT).getTotalNanos() > 0L);
+    }
+
+    @Test
+    public void testScanMetrics_throwingCallbacks() throws Exception {
+        final File packageFile = TestPackageUtil.prepareSyntheticPackage(new SyntheticPackage.Builder()
+                .withName("testScanMetrics_throwingCallbacks").withNodeCount(10).build());
+        final ProgressCheck check = new SimpleProgressCheck() {
+            @Override
+            public void importedPath(final PackageId packageId, final String path, final Node node,
+                                     final PathAction action) throws RepositoryException {
+                throw new RepositoryException("importedPath");
+            }
+
+            @Override
+            public void afterExtract(final PackageId packageId, final Session inspectSession) {
+                try {
+                    Thread.sleep(20L);
+                } catch (final InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                throw new IllegalStateException("afterExtract");
+            }
+        };
+        final ScanMetrics metrics = new ScanMetrics();
+        final List<ScanMetrics.Callback> exceeded = new ArrayList<>();
+        final ErrorListener errorListener = new DefaultErrorListener() {
+            @Override
+            public String getResourceBundleBaseName() {
+                return DefaultErrorListener.class.getName();
+            }
+
+            @Override
+            public void onCheckBudgetExceeded(final ProgressCheck budgetCheck, final PackageId packageId,
+                                              final ScanMetrics.Callback callback, final CheckBudget.Limit limit,
+                                              final long elapsedMillis, final long limitMillis) {
+                exceeded.add(callback);
+            }
+        };
+        builder().withProgressCheck(check).withScanMetrics(metrics).withErrorListener(errorListener)
+                .withCheckBudget(CheckBudget.ofMillis(10L, 0L)).build().scanPackage(packageFile);
+
+        final ScanMetrics.CheckMetrics checkMetrics = metrics.getChecks().get(0);
+        assertTrue("expect timed importedPath",
+                checkMetrics.getTimer(ScanMetrics.Callback.IMPORTED_PATH).getCount() >= 10L);
+        assertEquals("expect timed afterExtract", 1L,
+                checkMetrics.getTimer(ScanMetrics.Callback.AFTER_EXTRACT).getCount());
+        assertEquals("expect budget charged for throwing callback",
+                Collections.singletonList(ScanMetrics.Callback.AFTER_EXTRACT), exceeded);
+    }
+
+    @Test
+    public void testCheckBudget() throws Exception {
+        final File packageFile = TestPackageUtil.prepareSyntheticPackage(new SyntheticPackage.Builder()
+                .withName("testCheckBudget").withNodeCount(20).build());
+        final List<String> slowPaths = new ArrayList<>();
+        final List<String> afterExtracts = new ArrayList<>();
+        final ProgressCheck slowCheck = new SimpleProgressCheck() {
+            @Override
+            public String getCheckName() {
+                return "slowCheck";
+            }
+
+            @Override
+            public void importedPath(final PackageId packageId, final String path, final Node node,
+                                     final PathAction action) throws RepositoryException {
+                slowPaths.add(path);
+                if (slowPaths.size() == 3) {
+                    uncheckVoid1((Long millis) -> Thread.sleep(millis)).accept(50L);
+                }
+            }
+
+            @Override
+            public void afterExtract(final PackageId packageId, final Session inspectSession) {
+                afterExtracts.add("slowCheck");
+            }
+        };
+        final List<String> fastPaths = new ArrayList<>();
+        final ProgressCheck fastCheck = new SimpleProgressCheck() {
+            @Override
+            public void importedPath(final PackageId packageId, final String path, final Node node,
+                                     final PathAction action) {
+                fastPaths.add(path);
+            }
+        };
+        final DefaultErrorListener errorListener = new DefaultErrorListener();
+        final CheckBudget budget = new CheckBudget(20L, 0L);
+        final OakMachine machine = builder().withErrorListener(errorListener)
+                .withProgressChecks(slowCheck, fastCheck).withCheckBudget(budget).build();
+        assertSame("same budget", budget, machine.getCheckBudget());
+        assertFalse("no quarantined checks before scan", machine.hasQuarantinedChecks());
+
+        machine.scanPackage(packageFile);
+        assertTrue("has quarantined checks", machine.hasQuarantinedChecks());
+        assertEquals("slow check quarantined after third path", 3, slowPaths.size());
+        assertTrue("slow check receives no afterExtract", afterExtracts.isEmpty());
+        assertTrue("fast check receives every path", fastPaths.size() > 3);
+        assertEquals("one quarantine violation", 1, errorListener.getReportedViolations().size());
+        final Violation violation = errorListener.getReportedViolations().iterator().next();
+        assertTrue("violation names check: " + violation.getDescription(),
+                violation.getDescription().contains("slowCheck"));
+        assertEquals("violation package", "testCheckBudget",
+                violation.getPackages().iterator().next().getName());
+
+        slowPaths.clear();
+        machine.scanPackage(packageFile);
+        assertEquals("quarantine is reset for each scan", 3, slowPaths.size());
+
+        assertNull("unlimited budget", builder().withCheckBudget(new CheckBudget(0L, 0L)).build().getCheckBudget());
+        assertFalse("no quarantined checks without budget", builder().build().hasQuarantinedChecks());
+    }
+
+    @Test
+    public void testFailFastSeverity() throws Exception {
+        final File first = TestPackageUtil.prepareSyntheticPackage(new SyntheticPackage.Builder()
+                .withName("testFailFastSeverity_first").withNodeCount(5).build());
+        final File second = TestPackageUtil.prepareSyntheticPackage(new SyntheticPackage.Builder()
+                .withName("testFailFastSeverity_second").withNodeCount(5).build());
+        final File subsubtest = TestPackageUtil.prepareTestPackage("subsubtest.zip");
+        final List<PackageId> extracted = new ArrayList<>();
+        final List<Severity> finishedScans = new ArrayList<>();
+        final Severity[] reportSeverity = new Severity[]{Severity.MINOR};
+        final ProgressCheck check = new SimpleProgressCheck() {
+            @Override
+            public void startedScan() {
+                collector.clearViolations();
+                extracted.clear();
+            }
+
+            @Override
+            public void afterExtract(final PackageId packageId, final Session inspectSession) {
+                extracted.add(packageId);
+                reportViolation(new SimpleViolation(reportSeverity[0], "violation", packageId));
+            }
+
+            @Override
+            public void finishedScan() {
+                finishedScans.add(reportSeverity[0]);
+            }
+        };
+        final OakMachine machine = builder().withProgressCheck(check).withFailFastSeverity(Severity.MAJOR).build();
+        assertSame("same severity", Severity.MAJOR, machine.getFailFastSeverity());
+
+        machine.scanPackage(first, second);
+        assertEquals("minor violations do not stop the scan", 2, extracted.size());
+
+        reportSeverity[0] = Severity.MAJOR;
+        final List<CheckReport> reports = machine.scanPackage(first, second);
+        assertEquals("major violation skips the second package", 1, extracted.size());
+        assertEquals("finishedScan is still dispatched", Arrays.asList(Severity.MINOR, Severity.MAJOR), finishedScans);
+        assertEquals("partial reports", 1, reports.stream()
+                .filter(report -> check.getCheckName().equals(report.getCheckName()))
+                .mapToInt(report -> report.getViolations().size()).sum());
+
+        machine.scanPackage(subsubtest);
+        assertEquals("major violation skips the subpackages", 1, extracted.size());
+
+        builder().withProgressCheck(check).build().scanPackage(subsubtest);
+        assertTrue("subpackages are extracted without fail-fast", extracted.size() > 1);
+    }
+
+    @Test
+    public void testViolationSink() throws Exception {
+        final File first = TestPackageUtil.prepareSyntheticPackage(new SyntheticPackage.Builder()
+                .withName("testViolationSink_first").withNodeCount(5).build());
+        final File second = TestPackageUtil.prepareSyntheticPackage(new SyntheticPackage.Builder()
+                .withName("testViolationSink_second").withNodeCount(5).build());
+        final List<String> sent = new ArrayList<>();
+        final List<Integer> sentBeforeExtract = new ArrayList<>();
+        final ProgressCheck check = new SimpleProgressCheck() {
+            @Override
+            public String getCheckName() {
+                return "testViolationSink";
+            }
+
+            @Override
+            public void beforeExtract(final PackageId packageId, final Session inspectSession,
+                                      final PackageProperties packageProperties, final MetaInf metaInf,
+                                      final List<PackageId> subpackages) {
+                sentBeforeExtract.add(sent.size());
+            }
+
+            @Override
+            public void afterExtract(final PackageId packageId, final Session inspectSession) {
+                reportViolation(new SimpleViolation(Severity.MINOR, "extracted", packageId));
+            }
+
+            @Override
+            public void finishedScan() {
+                reportViolation(new SimpleViolation(Severity.MINOR, "finished"));
+            }
+        };
+        final ViolationSink sink = (checkName, violation) -> sent.add(checkName + ":" + violation.getDescription());
+        final OakMachine machine = builder().withProgressCheck(check).withViolationSink(sink).build();
+        assertSame("same sink", sink, machine.getViolationSink());
+
+        final List<CheckReport> reports = machine.scanPackage(first, second);
+        assertEquals("violations of the first package are sent before the second package", Arrays.asList(0, 1),
+                sentBeforeExtract);
+        assertEquals("each violation is sent once",
+                Arrays.asList("testViolationSink:extracted", "testViolationSink:extracted",
+                        "testViolationSink:finished"), sent);
+        assertEquals("sent violations are not retained in the reports", 0, reports.stream()
+                .filter(report -> "testViolationSink".equals(report.getCheckName()))
+                .mapToInt(report -> report.getViolations().size()).sum());
+
+        sent.clear();
+        machine.scanPackage(first);
+        assertEquals("each scan sends its own violations",
+                Arrays.asList("testViolationSink:extracted", "testViolationSink:finished"), sent);
+
+        sent.clear();
+        check.finishedScan();
+        assertTrue("listener is removed after the scan", sent.isEmpty());
+        assertEquals("violations are retained after the scan", 1, check.getReportedViolations().size());
+    }
+
+    @Test
+    public void testViolationSink_unlistened() throws Exception {
+        final File first = TestPackageUtil.prepareSyntheticPackage(new SyntheticPackage.Builder()
+                .withName("testViolationSink_unlistened").withNodeCount(5).build());
+        final List<String> sent = new ArrayList<>();
+        final List<Violation> violations = new ArrayList<>();
+        final ProgressCheck check = new ProgressCheck() {
+            @Override
+            public String getCheckName() {
+                return "testViolationSink_unlistened";
+            }
+
+            @Override
+            public void afterExtract(final PackageId packageId, final Session inspectSession) {
+                violations.add(new SimpleViolation(Severity.MINOR, "extracted", packageId));
+            }
+
+            @Override
+            public Collection<Violation> getReportedViolations() {
+                return violations;
+            }
+        };
+        final ViolationSink sink = (checkName, violation) -> sent.add(checkName + ":" + violation.getDescription());
+        final List<CheckReport> reports = builder().withProgressCheck(check).withViolationSink(sink).build()
+                .scanPackage(first);
+        assertEquals("violations are sent once at the end of the scan",
+                Collections.singletonList("testViolationSink_unlistened:extracted"), sent);
+        assertEquals("violations are still in the reports", 1, reports.stream()
+                .filter(report -> "testViolationSink_unlistened".equals(report.getCheckName()))
+                .mapToInt(report -> report.getViolations().size()).sum());
+    }
+
+    @Test
+    public void testViolationSink_failFast() throws Exception {
+        final File first = TestPackageUtil.prepareSyntheticPackage(new SyntheticPackage.Builder()
+                .withName("testViolationSink_failFast_first").withNodeCount(5).build());
+        final File second = TestPackageUtil.prepareSyntheticPackage(new SyntheticPackage.Builder()
+                .withName("testViolationSink_failFast_second").withNodeCount(5).build());
+        final List<PackageId> extracted = new ArrayList<>();
+        final ProgressCheck check = new SimpleProgressCheck() {
+            @Override
+            public void afterExtract(final PackageId packageId, final Session inspectSession) {
+                extracted.add(packageId);
+                reportViolation(new SimpleViolation(Severity.MAJOR, "violation", packageId));
+            }
+        };
+        final List<Violation> sent = new ArrayList<>();
+        builder().withProgressCheck(check).withFailFastSeverity(Severity.MAJOR)
+                .withViolationSink((checkName, violation) -> sent.add(violation)).build()
+                .scanPackage(first, second);
+        assertEquals("sent violation skips the second package", 1, extracted.size());
+        assertEquals("one violation sent", 1, sent.size());
+    }
+
+    @Test
+    public void testHasSubpackageEntries() throws Exception {
+        final Packaging packaging = OakMachine.newOakpalPackagingService();
+        try (VaultPackage tmpFooBar = packaging.getPackageManager()
+                .open(TestPackageUtil.prepareTestPackage("tmp_foo_bar.zip"), true);
+             VaultPackage subsubtest = packaging.getPackageManager()
+                     .open(TestPackageUtil.prepareTestPackage("subsubtest.zip"), true)) {
+            assertFalse("expect no subpackages", OakMachine.hasSubpackageEntries(tmpFooBar.getArchive()));
+            assertTrue("expect subpackages", OakMachine.hasSubpackageEntries(subsubtest.getArchive()));
+        }
+    }
+
     @Test
     public void testProcessSubpackage_onSubpackageException() throws Exception {
         final JcrPackageManager manager = mock(JcrPackageManager.class);
@@ -849,6 +1285,488 @@ public class OakMachineTest {
         assertEquals("blobChildren is not empty @>4k", 1, blobChildren.length);
     }
 
+    @Test
+    public void testPrepareBase() throws Exception {
+        final File preInstallPackage = TestPackageUtil.prepareTestPackage("tmp_foo_bar.zip");
+        final File testPackage = TestPackageUtil.prepareTestPackage("subsubtest.zip");
+        final List<String> paths = new ArrayList<>();
+        final ProgressCheck check = new SimpleProgressCheck() {
+            @Override
+            public void importedPath(final PackageId packageId, final String path, final Node node,
+                                     final PathAction action) throws RepositoryException {
+                paths.add(path);
+            }
+
+            @Override
+            public void afterExtract(final PackageId packageId, final Session inspectSession)
+                    throws RepositoryException {
+                assertTrue("preinstall path should exist", inspectSession.nodeExists("/tmp/foo/bar"));
+                assertEquals("expect session namespace remapping", "http://foo.com",
+                        inspectSession.getNamespaceURI("bar"));
+            }
+        };
+        final Supplier<OakMachine> machineSupplier = uncheck0(() -> builder()
+                .withInitStage(new InitStage.Builder().withNs("foo", "http://foo.com").build())
+                .withInitStage(new InitStage.Builder().withNs("bar", "http://foo.com")
+                        .withNs("nt", "http://nt.foo.com").build())
+                .withPreInstallUrl(preInstallPackage.toURI().toURL())
+                .withProgressCheck(check)
+                .build());
+
+        final List<CheckReport> coldReports = machineSupplier.get().scanPackage(testPackage);
+        assertFalse("cold scan should report a namespace error",
+                coldReports.get(0).getViolations().isEmpty());
+        final List<String> coldPaths = new ArrayList<>(paths);
+        assertFalse("expect imported paths", coldPaths.isEmpty());
+
+        final BaseCheckpoint base = machineSupplier.get().prepareBase();
+        assertTrue("checkpoint should contain preinstall path",
+                base.getRoot().getChildNode("tmp").getChildNode("foo").hasChildNode("bar"));
+        assertEquals("expect session namespaces", Collections.singletonMap("bar", "http://foo.com"),
+                base.getSessionNamespaces());
+
+        for (int i = 0; i < 2; i++) {
+            paths.clear();
+            final List<CheckReport> warmReports = machineSupplier.get()
+                    .scanPackages(base, Collections.singletonList(testPackage));
+            assertEquals("expect same reports as cold scan", coldReports, warmReports);
+            assertEquals("expect same imported paths", coldPaths, paths);
+        }
+        assertFalse("test package should not leak into checkpoint",
+                base.getRoot().getChildNode("etc").getChildNode("packages")
+                        .getChildNode("my_packages").hasChildNode("subsubtest.zip"));
+    }
+
+    @Test
+    public void testPrepareBase_closesOwnedNodeStore() throws Exception {
+        final File testPackage = TestPackageUtil.prepareTestPackage("tmp_foo_bar.zip");
+        final List<TempSegmentNodeStore> stores = new ArrayList<>();
+        final OakMachine machine = builder()
+                .withNodeStoreSupplier(uncheck0(() -> {
+                    final TempSegmentNodeStore store = new TempSegmentNodeStore();
+                    stores.add(store);
+                    return store;
+                }))
+                .withNodeStoreForkFunction(uncheck1(root -> new TempSegmentNodeStore(null, root)))
+                .build();
+        final BaseCheckpoint base = machine.prepareBase();
+        assertEquals("expect one supplied store", 1, stores.size());
+        final File baseDir = stores.get(0).getTempDir();
+        machine.scanPackages(base, Collections.singletonList(testPackage));
+        assertTrue("expect base store open after scan", baseDir.isDirectory());
+        base.close();
+        assertFalse("expect base store closed with checkpoint", baseDir.exists());
+        base.close();
+
+        try (TempSegmentNodeStore provided = new TempSegmentNodeStore()) {
+            machine.prepareBase(provided).close();
+            assertTrue("expect provided store left open", provided.getTempDir().isDirectory());
+        }
+    }
+
+    @Test
+    public void testPrepareBaseWithNodeStoreForkFunction() throws Exception {
+        final File blobStoreFile = new File(testOutDir, "testPrepareBaseWithNodeStoreForkFunction/datastore");
+        if (blobStoreFile.isDirectory()) {
+            FileUtils.deleteDirectory(blobStoreFile);
+        }
+        final File testPackage = TestPackageUtil.prepareTestPackage("tmp_foo_bar.zip");
+        final CompletableFuture<NodeStore> forkLatch = new CompletableFuture<>();
+        final OakMachine machine = builder().withNodeStoreForkFunction(base -> {
+            final NodeStore fork = new FileBlobMemoryNodeStore(blobStoreFile.getAbsolutePath(), base);
+            forkLatch.complete(fork);
+            return fork;
+        }).build();
+        final BaseCheckpoint base = machine.prepareBase();
+        machine.scanPackages(base, Collections.singletonList(testPackage));
+        assertTrue("fork function was used", forkLatch.getNow(null) instanceof FileBlobMemoryNodeStore);
+        assertTrue("fork should contain scanned path",
+                forkLatch.getNow(null).getRoot().getChildNode("tmp").getChildNode("foo").hasChildNode("bar"));
+        assertFalse("checkpoint should not contain scanned path", base.getRoot().hasChildNode("tmp"));
+    }
+
+    @Test
+    public void testEventMask() throws Exception {
+        final File testPackage = TestPackageUtil.prepareTestPackage("tmp_foo_bar.zip");
+        final List<String> nodePaths = new ArrayList<>();
+        final List<String> nullNodePaths = new ArrayList<>();
+        final List<String> maskedEvents = new ArrayList<>();
+        final ProgressCheck pathsWithoutNode = new SimpleProgressCheck() {
+            @Override
+            public EventMask getEventMask() {
+                return EventMask.of(EventMask.Event.IMPORTED_PATH).withoutImportedNode();
+            }
+
+            @Override
+            public void importedPath(final PackageId packageId, final String path, final Node node,
+                                     final PathAction action) {
+                (node == null ? nullNodePaths : nodePaths).add(path);
+            }
+
+            @Override
+            public void afterExtract(final PackageId packageId, final Session inspectSession) {
+                maskedEvents.add("afterExtract");
+            }
+        };
+        final ProgressCheck afterExtractOnly = new SimpleProgressCheck() {
+            @Override
+            public EventMask getEventMask() {
+                return EventMask.of(EventMask.Event.AFTER_EXTRACT);
+            }
+
+            @Override
+            public void importedPath(final PackageId packageId, final String path, final Node node,
+                                     final PathAction action) {
+                maskedEvents.add("importedPath");
+            }
+
+            @Override
+            public void readManifest(final PackageId packageId, final Manifest manifest) {
+                maskedEvents.add("readManifest");
+            }
+        };
+        final Session session = mock(Session.class);
+        final OakMachine machine = builder().withProgressCheck(pathsWithoutNode, afterExtractOnly).build();
+        assertEquals("expect subscribers for afterExtract", Collections.singletonList(afterExtractOnly),
+                machine.subscribersOf(EventMask.Event.AFTER_EXTRACT));
+        machine.new ImporterListenerAdapter(PackageId.fromString("my_packages:tmp_foo_bar"),
+                machine.getProgressChecks(), session, false)
+                .onMessage(ProgressTrackerListener.Mode.PATHS, "A", "/tmp/foo");
+        verify(session, never()).getNode(anyString());
+
+        machine.scanPackage(testPackage);
+        assertTrue("expect no nodes", nodePaths.isEmpty());
+        assertTrue("expect null node paths", nullNodePaths.contains("/tmp/foo/bar"));
+        assertEquals("expect no masked events", Collections.emptyList(), maskedEvents);
+    }
+
+    @Test
+    public void testEventMaskPathScope() throws Exception {
+        final File testPackage = TestPackageUtil.prepareTestPackage("tmp_foo_bar.zip");
+        final List<String> allPaths = new ArrayList<>();
+        final List<String> scopedPaths = new ArrayList<>();
+        final ProgressCheck unscoped = new SimpleProgressCheck() {
+            @Override
+            public void importedPath(final PackageId packageId, final String path, final Node node,
+                                     final PathAction action) {
+                allPaths.add(path);
+            }
+        };
+        final ProgressCheck scoped = new SimpleProgressCheck() {
+            @Override
+            public EventMask getEventMask() {
+                return EventMask.of(EventMask.Event.IMPORTED_PATH).withIncludedRoots("/tmp/foo");
+            }
+
+            @Override
+            public void importedPath(final PackageId packageId, final String path, final Node node,
+                                     final PathAction action) {
+                assertNotNull("expect node", node);
+                scopedPaths.add(path);
+            }
+        };
+        builder().withProgressCheck(unscoped, scoped).build().scanPackage(testPackage);
+        assertEquals("expect only paths in scope",
+                allPaths.stream().filter(path -> path.startsWith("/tmp/foo")).collect(Collectors.toList()),
+                scopedPaths);
+        assertTrue("expect /tmp/foo/bar in scope", scopedPaths.contains("/tmp/foo/bar"));
+        assertTrue("expect /tmp for unscoped", allPaths.contains("/tmp"));
+    }
+
+    @Test
+    public void testImportedPathBatches() throws Exception {
+        final File testPackage = TestPackageUtil.prepareTestPackage("tmp_foo_bar.zip");
+        final List<String> unbatchedPaths = new ArrayList<>();
+        final List<List<String>> batches = new ArrayList<>();
+        final ProgressCheck unbatched = new SimpleProgressCheck() {
+            @Override
+            public void importedPath(final PackageId packageId, final String path, final Node node,
+                                     final PathAction action) {
+                unbatchedPaths.add(path);
+            }
+        };
+        final ProgressCheck batched = new SimpleProgressCheck() {
+            @Override
+            public EventMask getEventMask() {
+                return EventMask.ALL.withImportedPathBatches();
+            }
+
+            @Override
+            public void importedPath(final PackageId packageId, final String path, final Node node,
+                                     final PathAction action) {
+                fail("expect no importedPath call for batched check: " + path);
+            }
+
+            @Override
+            public void importedPaths(final PackageId packageId, final List<ImportedPath> importedPaths)
+                    throws RepositoryException {
+                final List<String> paths = new ArrayList<>();
+                for (ImportedPath importedPath : importedPaths) {
+                    assertEquals("expect node path", importedPath.getPath(), importedPath.getNode().getPath());
+                    paths.add(importedPath.getPath());
+                }
+                batches.add(paths);
+            }
+        };
+        final OakMachine machine = builder().withProgressCheck(unbatched, batched).build();
+        machine.scanPackage(testPackage);
+        assertEquals("expect one batch", 1, batches.size());
+        assertEquals("expect same paths in same order", unbatchedPaths, batches.get(0));
+
+        final Session session = mock(Session.class);
+        when(session.nodeExists(anyString())).thenReturn(true);
+        final PackageId packageId = PackageId.fromString("my_packages:tmp_foo_bar");
+        batches.clear();
+        final OakMachine.ImporterListenerAdapter adapter = machine.new ImporterListenerAdapter(packageId,
+                Collections.singletonList(new SimpleProgressCheck() {
+                    @Override
+                    public EventMask getEventMask() {
+                        return EventMask.of(EventMask.Event.IMPORTED_PATH).withImportedPathBatches();
+                    }
+
+                    @Override
+                    public void importedPaths(final PackageId packageId, final List<ImportedPath> importedPaths) {
+                        batches.add(importedPaths.stream().map(ImportedPath::getPath).collect(Collectors.toList()));
+                    }
+                }), session, false);
+        for (int i = 0; i < OakMachine.IMPORTED_PATHS_BATCH_SIZE + 1; i++) {
+            adapter.onMessage(ProgressTrackerListener.Mode.PATHS, "A", "/tmp/foo" + i);
+        }
+        adapter.onMessage(ProgressTrackerListener.Mode.PATHS, "D", "/tmp/bar");
+        adapter.onMessage(ProgressTrackerListener.Mode.PATHS, "U", "/tmp/foo");
+        adapter.flushImportedPaths();
+        adapter.flushImportedPaths();
+        assertEquals("expect batches flushed at size, before delete, and at end",
+                Arrays.asList(OakMachine.IMPORTED_PATHS_BATCH_SIZE, 1, 1),
+                batches.stream().map(List::size).collect(Collectors.toList()));
+        verify(session, never()).getNode(anyString());
+    }
+
+    @Test
+    public void testTrustedCheck() throws Exception {
+        final ProgressCheck builtIn = new Paths().newInstance(obj().get());
+        assertTrue("expect built-in check trusted", OakMachine.isTrustedCheck(builtIn));
+        assertTrue("expect aliased built-in check trusted",
+                OakMachine.isTrustedCheck(new ProgressCheckAliasFacade(builtIn, "aliased")));
+        assertTrue("expect built-in check class", OakMachine.isBuiltInCheck(builtIn.getClass()));
+        assertFalse("expect check class outside of checks package", OakMachine.isBuiltInCheck(getClass()));
+        final Session inspectSession = mock(Session.class);
+        final Session trustedSession = mock(Session.class);
+        assertSame("expect trusted session for built-in check", trustedSession,
+                OakMachine.sessionFor(builtIn, inspectSession, trustedSession));
+        assertSame("expect inspect session for other check", inspectSession,
+                OakMachine.sessionFor(new SimpleProgressCheck(), inspectSession, trustedSession));
+    }
+
+    @Test
+    public void testTrustedCheck_externalCheckGetsFacades() throws Exception {
+        final File testPackage = TestPackageUtil.prepareTestPackage("tmp_foo_bar.zip");
+        final List<Object> items = new ArrayList<>();
+        class External extends SimpleProgressCheck {
+            @Override
+            public void importedPath(final PackageId packageId, final String path, final Node node,
+                                     final PathAction action) {
+                items.add(node);
+            }
+
+            @Override
+            public void afterExtract(final PackageId packageId, final Session inspectSession) {
+                items.add(inspectSession);
+            }
+        }
+        final ProgressCheck aliased = new ProgressCheckAliasFacade(new External(), "aliased");
+        assertFalse("expect external check untrusted", OakMachine.isTrustedCheck(new External()));
+        assertFalse("expect aliased external check untrusted", OakMachine.isTrustedCheck(aliased));
+
+        builder().withProgressCheck(aliased).build().scanPackage(testPackage);
+        assertFalse("expect items", items.isEmpty());
+        assertTrue("expect facades for external check", items.stream()
+                .allMatch(item -> item instanceof NodeFacade || item instanceof SessionFacade));
+    }
+
+    @Test
+    public void testNodeStateCheck() throws Exception {
+        final File testPackage = TestPackageUtil.prepareTestPackage("tmp_foo_bar_test.zip");
+        final List<String> statePaths = new ArrayList<>();
+        final List<String> jcrPaths = new ArrayList<>();
+        final List<NodeState> roots = new ArrayList<>();
+        final List<NodeState> afterExtractRoots = new ArrayList<>();
+        class StateCheck extends SimpleProgressCheck implements NodeStateCheck {
+            @Override
+            public EventMask getEventMask() {
+                return EventMask.of(EventMask.Event.IMPORTED_PATH, EventMask.Event.AFTER_EXTRACT)
+                        .withIncludedRoots("/tmp/foo/bar");
+            }
+
+            @Override
+            public void importedPath(final PackageId packageId, final String path, final Node node,
+                                     final PathAction action) {
+                jcrPaths.add(path);
+            }
+
+            @Override
+            public void afterExtract(final PackageId packageId, final Session inspectSession) {
+                jcrPaths.add("afterExtract");
+            }
+
+            @Override
+            public void importedPathState(final PackageId packageId, final String path, final NodeState nodeState,
+                                          final PathAction action, final NodeState root) {
+                assertTrue("expect existing state for " + path, nodeState.exists());
+                assertEquals("expect state at path " + path, NodeStateUtils.getNode(root, path), nodeState);
+                statePaths.add(path);
+                roots.add(root);
+            }
+
+            @Override
+            public void afterExtractState(final PackageId packageId, final NodeState root) {
+                afterExtractRoots.add(root);
+            }
+        }
+        final ProgressCheck aliased = new ProgressCheckAliasFacade(new StateCheck(), "aliased");
+        assertTrue("expect state check", OakMachine.isNodeStateCheck(new StateCheck()));
+        assertTrue("expect aliased state check", OakMachine.isNodeStateCheck(aliased));
+        assertFalse("expect jcr check", OakMachine.isNodeStateCheck(new SimpleProgressCheck()));
+        assertFalse("expect jcr check behind alias", OakMachine.isNodeStateCheck(
+                new ProgressCheckAliasFacade(new SimpleProgressCheck(), "aliased")));
+
+        final ScanMetrics metrics = new ScanMetrics();
+        builder().withProgressCheck(aliased).withScanMetrics(metrics).build().scanPackage(testPackage);
+        assertTrue("expect no jcr events", jcrPaths.isEmpty());
+        assertEquals("expect in-scope state paths", Arrays.asList("/tmp/foo/bar", "/tmp/foo/bar/test.txt",
+                "/tmp/foo/bar/test.txt/jcr:content"), statePaths);
+        assertEquals("expect one afterExtractState", 1, afterExtractRoots.size());
+        assertTrue("expect same root for all events", roots.stream().allMatch(afterExtractRoots.get(0)::equals));
+        assertEquals("expect state callbacks recorded", 3L, metrics.getChecks().get(0)
+                .getTimer(ScanMetrics.Callback.IMPORTED_PATH_STATE).getCount());
+    }
+
+    /**
+     * Records each diff event as a string of the form {@code +/path} for an added node, {@code -/path} for a deleted
+     * node, {@code ~/path} for a changed node, and the same with {@code @name} appended for properties.
+     */
+    static class DiffRecordingCheck extends SimpleProgressCheck implements NodeStateDiffCheck {
+        final EventMask eventMask;
+        final List<String> events = new ArrayList<>();
+        final List<String> importedPaths = new ArrayList<>();
+
+        DiffRecordingCheck(final EventMask eventMask) {
+            this.eventMask = eventMask;
+        }
+
+        static String prefix(final boolean before, final boolean after) {
+            return !before ? "+" : !after ? "-" : "~";
+        }
+
+        @Override
+        public EventMask getEventMask() {
+            return eventMask;
+        }
+
+        @Override
+        public void importedPath(final PackageId packageId, final String path, final Node node,
+                                 final PathAction action) {
+            importedPaths.add(path);
+        }
+
+        @Override
+        public void importedPathState(final PackageId packageId, final String path, final NodeState nodeState,
+                                      final PathAction action, final NodeState root) {
+            importedPaths.add(path);
+        }
+
+        @Override
+        public void nodeChanged(final PackageId packageId, final String path, final NodeState before,
+                                final NodeState after) {
+            events.add(prefix(before.exists(), after.exists()) + path);
+        }
+
+        @Override
+        public void propertyChanged(final PackageId packageId, final String parentPath,
+                                    final PropertyState before, final PropertyState after) {
+            events.add(prefix(before != null, after != null) + parentPath + "@"
+                    + (before != null ? before : after).getName());
+        }
+    }
+
+    @Test
+    public void testChangeDiff() throws Exception {
+        final NodeBuilder beforeBuilder = EmptyNodeState.EMPTY_NODE.builder();
+        beforeBuilder.child("changed").setProperty("changed", "before");
+        beforeBuilder.child("changed").setProperty("deleted", "before");
+        beforeBuilder.child("changed").child(":hidden");
+        beforeBuilder.child("deleted").child("child").setProperty("prop", "before");
+        beforeBuilder.child("unchanged").setProperty("prop", "same");
+        final NodeState before = beforeBuilder.getNodeState();
+        final NodeBuilder afterBuilder = before.builder();
+        afterBuilder.child("changed").setProperty("changed", "after");
+        afterBuilder.child("changed").removeProperty("deleted");
+        afterBuilder.child("changed").setProperty("added", "after");
+        afterBuilder.child("changed").child(":hidden").setProperty("prop", "after");
+        afterBuilder.child("deleted").remove();
+        afterBuilder.child("added").child("child").setProperty("prop", "after");
+        final NodeState after = afterBuilder.getNodeState();
+
+        final DiffRecordingCheck allCheck = new DiffRecordingCheck(EventMask.ALL);
+        final DiffRecordingCheck scopedCheck = new DiffRecordingCheck(EventMask.ALL
+                .withIncludedRoots("/added/child").withExcludedRoots("/changed"));
+        final OakMachine machine = builder().withProgressCheck(allCheck, scopedCheck).build();
+        after.compareAgainstBaseState(before, machine.new ChangeDiff(PackageId.fromString("foo"), "/",
+                Arrays.asList(allCheck, scopedCheck)));
+
+        assertEquals("expect all changes", Stream.of(
+                "~/changed", "~/changed@changed", "+/changed@added", "-/changed@deleted",
+                "-/deleted", "-/deleted/child", "-/deleted/child@prop",
+                "+/added", "+/added/child", "+/added/child@prop").sorted().collect(Collectors.toList()),
+                allCheck.events.stream().sorted().collect(Collectors.toList()));
+        assertTrue("expect depth-first order: " + allCheck.events,
+                allCheck.events.indexOf("+/added") < allCheck.events.indexOf("+/added/child")
+                        && allCheck.events.indexOf("+/added/child") < allCheck.events.indexOf("+/added/child@prop")
+                        && allCheck.events.indexOf("~/changed") < allCheck.events.indexOf("~/changed@changed"));
+        assertEquals("expect scoped changes", Arrays.asList("+/added/child", "+/added/child@prop"),
+                scopedCheck.events);
+    }
+
+    @Test
+    public void testNodeStateDiffCheck() throws Exception {
+        final File tmpFoo = TestPackageUtil.prepareTestPackage("tmp_foo.zip");
+        final File tmpFooBarTest = TestPackageUtil.prepareTestPackage("tmp_foo_bar_test.zip");
+        final DiffRecordingCheck check = new DiffRecordingCheck(EventMask.of(EventMask.Event.IMPORTED_PATH)
+                .withIncludedRoots("/tmp"));
+        final ProgressCheck aliased = new ProgressCheckAliasFacade(check, "aliased");
+        assertTrue("expect diff check", OakMachine.isNodeStateDiffCheck(aliased));
+        assertFalse("expect no diff check", OakMachine.isNodeStateDiffCheck(new SimpleProgressCheck()));
+
+        builder().withProgressCheck(aliased).build().scanPackages(Arrays.asList(tmpFoo, tmpFooBarTest));
+        assertTrue("expect no imported path events", check.importedPaths.isEmpty());
+        assertTrue("expect /tmp/foo added: " + check.events, check.events.contains("+/tmp/foo"));
+        assertTrue("expect /tmp/foo/bar primary type: " + check.events,
+                check.events.contains("+/tmp/foo/bar@jcr:primaryType"));
+        assertTrue("expect /tmp/foo/bar changed: " + check.events, check.events.contains("~/tmp/foo/bar"));
+        assertTrue("expect test.txt added: " + check.events, check.events.contains("+/tmp/foo/bar/test.txt"));
+        assertTrue("expect only paths in scope: " + check.events, check.events.stream()
+                .allMatch(event -> event.substring(1).matches("^/tmp([/@].*)?$")));
+    }
+
+    @Test
+    public void testIsSubtreeInScope() {
+        final EventMask mask = EventMask.ALL.withIncludedRoots("/apps/foo").withExcludedRoots("/apps/foo/bar");
+        assertTrue("expect ancestor of included root", OakMachine.isSubtreeInScope(mask, "/apps"));
+        assertTrue("expect included root", OakMachine.isSubtreeInScope(mask, "/apps/foo"));
+        assertFalse("expect excluded root", OakMachine.isSubtreeInScope(mask, "/apps/foo/bar"));
+        assertFalse("expect sibling", OakMachine.isSubtreeInScope(mask, "/apps/fo"));
+        assertFalse("expect other root", OakMachine.isSubtreeInScope(mask, "/content"));
+    }
+
+    @Test
+    public void testEventMaskOf() {
+        final ProgressCheck check = mock(ProgressCheck.class);
+        assertSame("expect all for null mask", EventMask.ALL, OakMachine.eventMaskOf(check));
+        final EventMask mask = EventMask.of(EventMask.Event.DELETED_PATH);
+        when(check.getEventMask()).thenReturn(mask);
+        assertSame("expect same mask", mask, OakMachine.eventMaskOf(check));
+    }
+
     private static Binary alphaFill(final @NotNull Session session, final int bufSize) throws RepositoryException {
         final byte[] buffer = new byte[bufSize];
         final String fillString = "abcdefghijklmnopqrstuvwxyz";
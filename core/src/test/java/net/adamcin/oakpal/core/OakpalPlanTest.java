@@ -18,6 +18,8 @@ package net.adamcin.oakpal.core;
 
 import net.adamcin.oakpal.api.ProgressCheck;
 import net.adamcin.oakpal.api.Result;
+import net.adamcin.oakpal.api.Severity;
+import net.adamcin.oakpal.testing.TestPackageUtil;
 import org.apache.jackrabbit.api.JackrabbitWorkspace;
 import org.apache.jackrabbit.api.security.authorization.PrivilegeManager;
 import org.apache.jackrabbit.spi.PrivilegeDefinition;
@@ -206,6 +208,71 @@ public class OakpalPlanTest {
         }
     }
 
+    @Test
+    public void testBuilder_withNodeStoreType() {
+        assertNull("implicit null", builder().build().getNodeStoreType());
+        for (NodeStoreType nodeStoreType : NodeStoreType.values()) {
+            assertSame("same type", nodeStoreType,
+                    builder().withNodeStoreType(nodeStoreType).build().getNodeStoreType());
+            assertSame("same type from derived plan", nodeStoreType, builder()
+                    .startingWithPlan(builder().withNodeStoreType(nodeStoreType).build())
+                    .build().getNodeStoreType());
+        }
+    }
+
+    @Test
+    public void testFromJson_nodeStoreType() {
+        final OakpalPlan plan = builder().withNodeStoreType(NodeStoreType.SEGMENT).build();
+        assertEquals("expect json", "SEGMENT", plan.toJson().getString(OakpalPlan.keys().nodeStoreType()));
+        assertSame("expect segment", NodeStoreType.SEGMENT, OakpalPlan.fromJson(
+                key(OakpalPlan.keys().nodeStoreType(), "segment").get()).getNodeStoreType());
+        assertNull("expect null for unknown type", OakpalPlan.fromJson(
+                key(OakpalPlan.keys().nodeStoreType(), "foo").get()).getNodeStoreType());
+    }
+
+    @Test
+    public void testBuilder_withDirectInstall() {
+        assertFalse("implicit false", builder().build().isDirectInstall());
+        assertTrue("explicit true", builder().withDirectInstall(true).build().isDirectInstall());
+        assertTrue("true from derived plan", builder()
+                .startingWithPlan(builder().withDirectInstall(true).build())
+                .build().isDirectInstall());
+    }
+
+    @Test
+    public void testFromJson_directInstall() {
+        final OakpalPlan plan = builder().withDirectInstall(true).build();
+        assertTrue("expect json", plan.toJson().getBoolean(OakpalPlan.keys().directInstall()));
+        assertTrue("expect direct install", OakpalPlan.fromJson(
+                key(OakpalPlan.keys().directInstall(), true).get()).isDirectInstall());
+        assertFalse("expect no key when false",
+                builder().build().toJson().containsKey(OakpalPlan.keys().directInstall()));
+    }
+
+    @Test
+    public void testBuilder_withFailFastSeverity() {
+        assertNull("implicit null", builder().build().getFailFastSeverity());
+        for (Severity severity : Severity.values()) {
+            assertSame("same severity", severity,
+                    builder().withFailFastSeverity(severity).build().getFailFastSeverity());
+            assertSame("same severity from derived plan", severity, builder()
+                    .startingWithPlan(builder().withFailFastSeverity(severity).build())
+                    .build().getFailFastSeverity());
+        }
+    }
+
+    @Test
+    public void testFromJson_failFastSeverity() throws Exception {
+        final OakpalPlan plan = builder().withFailFastSeverity(Severity.MAJOR).build();
+        assertEquals("expect json", "MAJOR", plan.toJson().getString(OakpalPlan.keys().failFastSeverity()));
+        assertSame("expect severe", Severity.SEVERE, OakpalPlan.fromJson(
+                key(OakpalPlan.keys().failFastSeverity(), "severe").get()).getFailFastSeverity());
+        assertFalse("expect no key when null",
+                builder().build().toJson().containsKey(OakpalPlan.keys().failFastSeverity()));
+        assertSame("expect machine severity", Severity.MAJOR,
+                plan.toOakMachineBuilder(null, getClass().getClassLoader()).build().getFailFastSeverity());
+    }
+
     @Test
     public void testBuilder_startingWithPlan_defaults() {
         final OakpalPlan derived = builder().startingWithPlan(builder().build()).build();
@@ -500,6 +567,20 @@ public class OakpalPlanTest {
         assertEquals("expect preInstallUrls", expectPreInstallUrls, machine.getPreInstallUrls());
     }
 
+    @Test
+    public void testToOakMachineBuilder_segmentNodeStore() throws Exception {
+        final File testPackage = TestPackageUtil.prepareTestPackage("tmp_foo_bar.zip");
+        final List<CheckReport> expectReports = builder().build()
+                .toOakMachineBuilder(null, Util.getDefaultClassLoader()).build()
+                .scanPackage(testPackage);
+        final OakpalPlan plan = builder().withNodeStoreType(NodeStoreType.SEGMENT).build();
+        final OakMachine machine = plan.toOakMachineBuilder(null, Util.getDefaultClassLoader()).build();
+        assertEquals("expect same reports with segment node store", expectReports,
+                machine.scanPackage(testPackage));
+        assertEquals("expect same reports from base with segment node store", expectReports,
+                machine.scanPackages(machine.prepareBase(), Collections.singletonList(testPackage)));
+    }
+
     @SuppressWarnings("WeakerAccess")
     static class NotACheck {
 
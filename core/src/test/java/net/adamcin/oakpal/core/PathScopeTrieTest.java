@@ -0,0 +1,89 @@
+/*
+ * Copyright 2020 Mark Adamcin
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.adamcin.oakpal.core;
+
+import net.adamcin.oakpal.api.EventMask;
+import net.adamcin.oakpal.api.ProgressCheck;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+public class PathScopeTrieTest {
+
+    private static ProgressCheck checkWithMask(final EventMask mask) {
+        final ProgressCheck check = mock(ProgressCheck.class);
+        when(check.getEventMask()).thenReturn(mask);
+        return check;
+    }
+
+    @Test
+    public void testUnscoped() {
+        final List<ProgressCheck> checks = Arrays.asList(mock(ProgressCheck.class), checkWithMask(EventMask.ALL));
+        final PathScopeTrie trie = new PathScopeTrie(checks);
+        assertEquals("expect all checks", checks, trie.getChecks());
+        assertSame("expect same list for unscoped checks", trie.getChecks(), trie.checksInScope("/apps/foo"));
+        assertTrue("expect empty for no checks",
+                new PathScopeTrie(Collections.emptyList()).checksInScope("/apps").isEmpty());
+    }
+
+    @Test
+    public void testChecksInScope() {
+        final ProgressCheck unscoped = checkWithMask(EventMask.ALL);
+        final ProgressCheck apps = checkWithMask(EventMask.ALL.withIncludedRoots("/apps"));
+        final ProgressCheck appsNotSystem = checkWithMask(EventMask.ALL.withIncludedRoots("/apps")
+                .withExcludedRoots("/apps/system"));
+        final ProgressCheck confAndHome = checkWithMask(EventMask.ALL.withIncludedRoots("/conf", "/home/users"));
+        final ProgressCheck notVar = checkWithMask(EventMask.ALL.withExcludedRoots("/var"));
+        final PathScopeTrie trie = new PathScopeTrie(
+                Arrays.asList(unscoped, apps, appsNotSystem, confAndHome, notVar));
+
+        assertEquals("expect checks for root", Arrays.asList(unscoped, notVar), trie.checksInScope("/"));
+        assertEquals("expect checks for /apps", Arrays.asList(unscoped, apps, appsNotSystem, notVar),
+                trie.checksInScope("/apps"));
+        assertEquals("expect checks for /apps/foo/bar", Arrays.asList(unscoped, apps, appsNotSystem, notVar),
+                trie.checksInScope("/apps/foo/bar"));
+        assertEquals("expect checks for /apps/system/foo", Arrays.asList(unscoped, apps, notVar),
+                trie.checksInScope("/apps/system/foo"));
+        assertEquals("expect checks for /apps2", Arrays.asList(unscoped, notVar), trie.checksInScope("/apps2"));
+        assertEquals("expect checks for /conf/foo", Arrays.asList(unscoped, confAndHome, notVar),
+                trie.checksInScope("/conf/foo"));
+        assertEquals("expect checks for /home", Arrays.asList(unscoped, notVar), trie.checksInScope("/home"));
+        assertEquals("expect checks for /home/users/a", Arrays.asList(unscoped, confAndHome, notVar),
+                trie.checksInScope("/home/users/a"));
+        assertEquals("expect checks for /var/foo", Collections.singletonList(unscoped),
+                trie.checksInScope("/var/foo"));
+        assertEquals("expect checks for excluded property path",
+                Collections.singletonList(unscoped), trie.checksInScope("/var/foo/jcr:content/jcr:data"));
+    }
+
+    @Test
+    public void testChecksInScopeSlashRoot() {
+        final ProgressCheck everything = checkWithMask(EventMask.ALL.withIncludedRoots("/"));
+        final ProgressCheck nothing = checkWithMask(EventMask.ALL.withExcludedRoots("/"));
+        final PathScopeTrie trie = new PathScopeTrie(Arrays.asList(everything, nothing));
+        assertEquals("expect only slash included check", Collections.singletonList(everything),
+                trie.checksInScope("/content/foo"));
+    }
+}
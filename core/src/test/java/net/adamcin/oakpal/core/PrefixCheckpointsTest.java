@@ -0,0 +1,527 @@
+/*
+ * Copyright 2020 Mark Adamcin
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.adamcin.oakpal.core;
+
+import net.adamcin.oakpal.api.EventMask;
+import net.adamcin.oakpal.api.PathAction;
+import net.adamcin.oakpal.api.Severity;
+import net.adamcin.oakpal.api.SimpleProgressCheck;
+import net.adamcin.oakpal.api.SimpleViolation;
+import net.adamcin.oakpal.core.checks.Overlaps;
+import net.adamcin.oakpal.testing.TestPackageUtil;
+import org.apache.jackrabbit.oak.api.PropertyState;
+import org.apache.jackrabbit.oak.plugins.memory.MemoryNodeStore;
+import org.apache.jackrabbit.oak.spi.state.NodeState;
+import org.apache.jackrabbit.oak.spi.state.NodeStateUtils;
+import org.apache.jackrabbit.vault.fs.config.MetaInf;
+import org.apache.jackrabbit.vault.packaging.PackageId;
+import org.apache.jackrabbit.vault.packaging.PackageProperties;
+import org.junit.Test;
+
+import javax.jcr.Node;
+import javax.jcr.RepositoryException;
+import javax.jcr.Session;
+import java.io.Closeable;
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static net.adamcin.oakpal.api.JavaxJson.obj;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class PrefixCheckpointsTest {
+
+    /**
+     * Reports violations that depend on the order of events and on the repository state passed with them.
+     */
+    static final class StatefulCheck extends SimpleProgressCheck {
+        int paths;
+
+        @Override
+        public void startedScan() {
+            super.startedScan();
+            paths = 0;
+        }
+
+        @Override
+        public void beforeExtract(final PackageId packageId, final Session inspectSession,
+                                  final PackageProperties packageProperties, final MetaInf metaInf,
+                                  final List<PackageId> subpackages) throws RepositoryException {
+            if (inspectSession.nodeExists("/tmp/foo")) {
+                reportViolation(new SimpleViolation(Severity.MINOR, "foo before " + packageId, packageId));
+            }
+        }
+
+        @Override
+        public void importedPath(final PackageId packageId, final String path, final Node node,
+                                 final PathAction action) throws RepositoryException {
+            paths++;
+            if ("/tmp/foo/bar".equals(path)) {
+                reportViolation(new SimpleViolation(Severity.MINOR,
+                        paths + " " + node.getPrimaryNodeType().getName(), packageId));
+            }
+        }
+
+        @Override
+        public void afterExtract(final PackageId packageId, final Session inspectSession)
+                throws RepositoryException {
+            if (inspectSession.nodeExists("/tmp/foo/bar/test")) {
+                reportViolation(new SimpleViolation(Severity.MINOR, "test after " + packageId, packageId));
+            }
+        }
+    }
+
+    /**
+     * Reports violations that depend on the order of events and on the node states passed with them.
+     */
+    static final class StatefulStateCheck extends SimpleProgressCheck implements NodeStateCheck {
+        int paths;
+
+        @Override
+        public void startedScan() {
+            super.startedScan();
+            paths = 0;
+        }
+
+        @Override
+        public void importedPathState(final PackageId packageId, final String path, final NodeState nodeState,
+                                      final PathAction action, final NodeState root) {
+            paths++;
+            if ("/tmp/foo/bar".equals(path)) {
+                reportViolation(new SimpleViolation(Severity.MINOR,
+                        paths + " " + NodeStateUtils.getPrimaryTypeName(nodeState), packageId));
+            }
+        }
+
+        @Override
+        public void afterExtractState(final PackageId packageId, final NodeState root) {
+            if (NodeStateUtils.getNode(root, "/tmp/foo/bar/test.txt").exists()) {
+                reportViolation(new SimpleViolation(Severity.MINOR, "test after " + packageId, packageId));
+            }
+        }
+    }
+
+    /**
+     * Reports violations that depend on the order of diff events and on the states passed with them.
+     */
+    static final class StatefulDiffCheck extends SimpleProgressCheck implements NodeStateDiffCheck {
+        int changes;
+
+        @Override
+        public void startedScan() {
+            super.startedScan();
+            changes = 0;
+        }
+
+        @Override
+        public void nodeChanged(final PackageId packageId, final String path, final NodeState before,
+                                final NodeState after) {
+            changes++;
+            if (path.startsWith("/tmp/foo/bar") && !before.exists()) {
+                reportViolation(new SimpleViolation(Severity.MINOR,
+                        changes + " " + path + " " + NodeStateUtils.getPrimaryTypeName(after), packageId));
+            }
+        }
+
+        @Override
+        public void propertyChanged(final PackageId packageId, final String parentPath,
+                                    final PropertyState before, final PropertyState after) {
+            changes++;
+        }
+    }
+
+    /**
+     * Reports every imported path, and exceeds the check budget during the tmp_foo_bar package.
+     */
+    static final class QuarantinedCheck extends SimpleProgressCheck {
+        @Override
+        public String getCheckName() {
+            return "quarantined";
+        }
+
+        @Override
+        public void importedPath(final PackageId packageId, final String path, final Node node,
+                                 final PathAction action) {
+            reportViolation(new SimpleViolation(Severity.MINOR, path, packageId));
+            if ("tmp_foo_bar".equals(packageId.getName())) {
+                try {
+                    Thread.sleep(100L);
+                } catch (final InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+        }
+    }
+
+    /**
+     * Reports every imported path within its event mask.
+     */
+    static final class MaskedCheck extends SimpleProgressCheck {
+        private final EventMask eventMask;
+
+        MaskedCheck(final EventMask eventMask) {
+            this.eventMask = eventMask;
+        }
+
+        @Override
+        public String getCheckName() {
+            return "masked";
+        }
+
+        @Override
+        public EventMask getEventMask() {
+            return eventMask;
+        }
+
+        @Override
+        public void importedPath(final PackageId packageId, final String path, final Node node,
+                                 final PathAction action) {
+            reportViolation(new SimpleViolation(Severity.MINOR, path, packageId));
+        }
+    }
+
+    private static OakMachine newMachine(final PrefixCheckpoints prefixCheckpoints) throws Exception {
+        return new OakMachine.Builder()
+                .withProgressCheck(new StatefulCheck(), new StatefulStateCheck(), new StatefulDiffCheck(),
+                        new Overlaps().newInstance(obj().key(Overlaps.keys().reportAllOverlaps(), true).get()))
+                .withPrefixCheckpoints(prefixCheckpoints)
+                .build();
+    }
+
+    @Test
+    public void testScanPackages() throws Exception {
+        final File tmpFoo = TestPackageUtil.prepareTestPackage("tmp_foo.zip");
+        final File tmpFooBar = TestPackageUtil.prepareTestPackage("tmp_foo_bar.zip");
+        final File tmpFooBarTest = TestPackageUtil.prepareTestPackage("tmp_foo_bar_test.zip");
+        final File subsubtest = TestPackageUtil.prepareTestPackage("subsubtest.zip");
+        final List<File> first = Arrays.asList(tmpFoo, tmpFooBar, tmpFooBarTest);
+        final List<File> second = Arrays.asList(tmpFoo, tmpFooBar, subsubtest);
+
+        final List<CheckReport> expectFirst = newMachine(null).scanPackages(first);
+        final List<CheckReport> expectSecond = newMachine(null).scanPackages(second);
+        assertNotEquals("expect different reports for different sequences", expectFirst, expectSecond);
+
+        final PrefixCheckpoints prefixCheckpoints = new PrefixCheckpoints();
+        assertEquals("expect same reports for first scan", expectFirst,
+                newMachine(prefixCheckpoints).scanPackages(first));
+        assertEquals("expect initial checkpoint and one per package", 4, prefixCheckpoints.size());
+
+        assertEquals("expect same reports when resuming from full prefix", expectFirst,
+                newMachine(prefixCheckpoints).scanPackages(first));
+        assertEquals("expect no new checkpoints", 4, prefixCheckpoints.size());
+
+        assertEquals("expect same reports when resuming from shared prefix", expectSecond,
+                newMachine(prefixCheckpoints).scanPackages(second));
+        assertEquals("expect one new checkpoint", 5, prefixCheckpoints.size());
+
+        prefixCheckpoints.clear();
+        assertEquals("expect no checkpoints after clear", 0, prefixCheckpoints.size());
+    }
+
+    @Test
+    public void testScanPackagesWithBase() throws Exception {
+        final File tmpFoo = TestPackageUtil.prepareTestPackage("tmp_foo.zip");
+        final File tmpFooBar = TestPackageUtil.prepareTestPackage("tmp_foo_bar.zip");
+        final File tmpFooBarTest = TestPackageUtil.prepareTestPackage("tmp_foo_bar_test.zip");
+        final List<File> files = Arrays.asList(tmpFooBar, tmpFooBarTest);
+        final OakMachine.Builder builder = new OakMachine.Builder()
+                .withPreInstallUrl(tmpFoo.toURI().toURL())
+                .withProgressCheck(new StatefulCheck());
+        final List<CheckReport> expected = builder.build().scanPackages(files);
+
+        final PrefixCheckpoints prefixCheckpoints = new PrefixCheckpoints();
+        final OakMachine machine = builder.withPrefixCheckpoints(prefixCheckpoints).build();
+        final BaseCheckpoint base = machine.prepareBase();
+        assertEquals("expect same reports for first scan", expected, machine.scanPackages(base, files));
+        assertEquals("expect same reports for resumed scan", expected, machine.scanPackages(base, files));
+        assertEquals("expect initial checkpoint and one per package", 3, prefixCheckpoints.size());
+    }
+
+    static final class CloseableNodeStore extends MemoryNodeStore implements Closeable {
+        boolean closed;
+
+        CloseableNodeStore() {
+            super();
+        }
+
+        CloseableNodeStore(final NodeState base) {
+            super(base);
+        }
+
+        @Override
+        public void close() {
+            closed = true;
+        }
+    }
+
+    @Test
+    public void testScanPackagesClosesStores() throws Exception {
+        final File tmpFoo = TestPackageUtil.prepareTestPackage("tmp_foo.zip");
+        final File tmpFooBar = TestPackageUtil.prepareTestPackage("tmp_foo_bar.zip");
+        final File tmpFooBarTest = TestPackageUtil.prepareTestPackage("tmp_foo_bar_test.zip");
+        final List<CloseableNodeStore> stores = new ArrayList<>();
+        final PrefixCheckpoints prefixCheckpoints = new PrefixCheckpoints();
+        final OakMachine machine = new OakMachine.Builder()
+                .withProgressCheck(new StatefulCheck())
+                .withNodeStoreSupplier(() -> {
+                    final CloseableNodeStore store = new CloseableNodeStore();
+                    stores.add(store);
+                    return store;
+                })
+                .withNodeStoreForkFunction(base -> {
+                    final CloseableNodeStore store = new CloseableNodeStore(base);
+                    stores.add(store);
+                    return store;
+                })
+                .withPrefixCheckpoints(prefixCheckpoints)
+                .build();
+
+        machine.scanPackages(Arrays.asList(tmpFoo, tmpFooBar));
+        assertEquals("expect one store", 1, stores.size());
+        assertFalse("expect store of stored checkpoints to remain open", stores.get(0).closed);
+
+        machine.scanPackages(Arrays.asList(tmpFoo, tmpFooBar));
+        assertEquals("expect forked store", 2, stores.size());
+        assertTrue("expect forked store without checkpoints to be closed", stores.get(1).closed);
+
+        machine.scanPackages(Arrays.asList(tmpFoo, tmpFooBar, tmpFooBarTest));
+        assertEquals("expect another forked store", 3, stores.size());
+        assertFalse("expect forked store with a checkpoint to remain open", stores.get(2).closed);
+
+        prefixCheckpoints.clear();
+        assertTrue("expect all stores closed after clear",
+                stores.stream().allMatch(store -> store.closed));
+    }
+
+    @Test
+    public void testMaxSize() throws Exception {
+        final File tmpFoo = TestPackageUtil.prepareTestPackage("tmp_foo.zip");
+        final File tmpFooBar = TestPackageUtil.prepareTestPackage("tmp_foo_bar.zip");
+        final File tmpFooBarTest = TestPackageUtil.prepareTestPackage("tmp_foo_bar_test.zip");
+        final List<File> files = Arrays.asList(tmpFoo, tmpFooBar, tmpFooBarTest);
+        assertEquals("expect default max size", PrefixCheckpoints.DEFAULT_MAX_SIZE,
+                new PrefixCheckpoints().getMaxSize());
+
+        final List<CheckReport> expected = newMachine(null).scanPackages(files);
+        final PrefixCheckpoints prefixCheckpoints = new PrefixCheckpoints(2);
+        assertEquals("expect same reports for first scan", expected,
+                newMachine(prefixCheckpoints).scanPackages(files));
+        assertEquals("expect size bounded by max size", 2, prefixCheckpoints.size());
+        final List<String> keys = OakMachine.computePrefixKeys(newMachine(null).computeInitialPrefixKey(null), files);
+        assertNull("expect least recently used checkpoint to be evicted", prefixCheckpoints.get(keys.get(0)));
+        assertNotNull("expect most recent checkpoint", prefixCheckpoints.get(keys.get(3)));
+        assertEquals("expect same reports when resuming after eviction", expected,
+                newMachine(prefixCheckpoints).scanPackages(files));
+    }
+
+    @Test
+    public void testScanPackagesAfterQuarantine() throws Exception {
+        final File tmpFoo = TestPackageUtil.prepareTestPackage("tmp_foo.zip");
+        final File tmpFooBar = TestPackageUtil.prepareTestPackage("tmp_foo_bar.zip");
+        final File tmpFooBarTest = TestPackageUtil.prepareTestPackage("tmp_foo_bar_test.zip");
+        final List<File> files = Arrays.asList(tmpFoo, tmpFooBar, tmpFooBarTest);
+        final OakMachine.Builder builder = new OakMachine.Builder().withProgressCheck(new QuarantinedCheck())
+                .withCheckBudget(new CheckBudget(20L, 0L));
+        final OakMachine coldMachine = builder.build();
+        final List<CheckReport> expected = coldMachine.scanPackages(files);
+        assertTrue("expect check quarantined by cold scan", coldMachine.hasQuarantinedChecks());
+
+        final PrefixCheckpoints prefixCheckpoints = new PrefixCheckpoints();
+        builder.withPrefixCheckpoints(prefixCheckpoints).build().scanPackages(Arrays.asList(tmpFoo, tmpFooBar));
+        assertEquals("expect no checkpoint stored from the package where the check was quarantined", 2,
+                prefixCheckpoints.size());
+        final OakMachine resumedMachine = builder.build();
+        final List<CheckReport> resumed = resumedMachine.scanPackages(files);
+        assertTrue("expect check quarantined again after resuming", resumedMachine.hasQuarantinedChecks());
+        assertEquals("expect same check report as cold scan", reportOf(expected, "quarantined"),
+                reportOf(resumed, "quarantined"));
+        assertEquals("expect no more checkpoints stored", 2, prefixCheckpoints.size());
+    }
+
+    private static CheckReport reportOf(final List<CheckReport> reports, final String checkName) {
+        return reports.stream().filter(report -> checkName.equals(report.getCheckName())).findFirst().orElse(null);
+    }
+
+    @Test
+    public void testScanPackagesDifferentEventMasksDoNotResume() throws Exception {
+        final File tmpFoo = TestPackageUtil.prepareTestPackage("tmp_foo.zip");
+        final File tmpFooBar = TestPackageUtil.prepareTestPackage("tmp_foo_bar.zip");
+        final List<File> files = Arrays.asList(tmpFoo, tmpFooBar);
+        final EventMask excludingTobi = EventMask.ALL.withExcludedRoots("/tmp/foo/bar/tobi");
+        final OakMachine allMachine = new OakMachine.Builder().withProgressCheck(new MaskedCheck(EventMask.ALL))
+                .build();
+        final OakMachine excludingMachine = new OakMachine.Builder()
+                .withProgressCheck(new MaskedCheck(excludingTobi)).build();
+        assertNotEquals("expect different key for same check with a different event mask",
+                allMachine.computeInitialPrefixKey(null), excludingMachine.computeInitialPrefixKey(null));
+
+        final List<CheckReport> expected = excludingMachine.scanPackages(files);
+        final PrefixCheckpoints prefixCheckpoints = new PrefixCheckpoints();
+        new OakMachine.Builder().withProgressCheck(new MaskedCheck(EventMask.ALL))
+                .withPrefixCheckpoints(prefixCheckpoints).build().scanPackages(files);
+        assertEquals("expect same reports as a cold scan with the other mask", expected,
+                new OakMachine.Builder().withProgressCheck(new MaskedCheck(excludingTobi))
+                        .withPrefixCheckpoints(prefixCheckpoints).build().scanPackages(files));
+        assertEquals("expect new checkpoints for the other mask", 6, prefixCheckpoints.size());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testMaxSizeNotPositive() {
+        new PrefixCheckpoints(0);
+    }
+
+    @Test
+    public void testMaxSizeClosesEvictedStores() throws Exception {
+        final File tmpFoo = TestPackageUtil.prepareTestPackage("tmp_foo.zip");
+        final File tmpFooBar = TestPackageUtil.prepareTestPackage("tmp_foo_bar.zip");
+        final List<CloseableNodeStore> stores = new ArrayList<>();
+        final PrefixCheckpoints prefixCheckpoints = new PrefixCheckpoints(1);
+        final OakMachine machine = new OakMachine.Builder()
+                .withNodeStoreSupplier(() -> {
+                    final CloseableNodeStore store = new CloseableNodeStore();
+                    stores.add(store);
+                    return store;
+                })
+                .withPrefixCheckpoints(prefixCheckpoints)
+                .build();
+
+        machine.scanPackages(Arrays.asList(tmpFoo));
+        machine.scanPackages(Arrays.asList(tmpFooBar));
+        assertEquals("expect two stores", 2, stores.size());
+        assertTrue("expect store of evicted checkpoint to be closed", stores.get(0).closed);
+        assertFalse("expect store of stored checkpoint to remain open", stores.get(1).closed);
+    }
+
+    @Test
+    public void testFailFast() throws Exception {
+        final File tmpFoo = TestPackageUtil.prepareTestPackage("tmp_foo.zip");
+        final File tmpFooBar = TestPackageUtil.prepareTestPackage("tmp_foo_bar.zip");
+        final File tmpFooBarTest = TestPackageUtil.prepareTestPackage("tmp_foo_bar_test.zip");
+        final List<File> files = Arrays.asList(tmpFoo, tmpFooBar, tmpFooBarTest);
+        final List<CheckReport> expectFailFast = new OakMachine.Builder().withProgressCheck(new StatefulCheck())
+                .withFailFastSeverity(Severity.MINOR).build().scanPackages(files);
+        final List<CheckReport> expectFull = new OakMachine.Builder().withProgressCheck(new StatefulCheck())
+                .build().scanPackages(files);
+
+        final PrefixCheckpoints prefixCheckpoints = new PrefixCheckpoints();
+        final OakMachine.Builder failFast = new OakMachine.Builder().withProgressCheck(new StatefulCheck())
+                .withFailFastSeverity(Severity.MINOR).withPrefixCheckpoints(prefixCheckpoints);
+        assertEquals("expect same reports as cold fail-fast scan", expectFailFast,
+                failFast.build().scanPackages(files));
+        assertEquals("expect no checkpoint stored from the package which triggered fail-fast", 1,
+                prefixCheckpoints.size());
+        assertEquals("expect same reports when resuming fail-fast scan", expectFailFast,
+                failFast.build().scanPackages(files));
+
+        assertEquals("expect full scan not to resume from fail-fast checkpoints", expectFull,
+                new OakMachine.Builder().withProgressCheck(new StatefulCheck())
+                        .withPrefixCheckpoints(prefixCheckpoints).build().scanPackages(files));
+        assertEquals("expect full scan checkpoints stored under other keys", 5, prefixCheckpoints.size());
+    }
+
+    @Test(expected = AbortedScanException.class)
+    public void testComputePrefixKeysMissingFile() throws Exception {
+        OakMachine.computePrefixKeys("", Arrays.asList(
+                new File("target/test-out/PrefixCheckpointsTest/missing.zip")));
+    }
+
+    @Test
+    public void testComputePrefixKeys() throws Exception {
+        final File tmpFoo = TestPackageUtil.prepareTestPackage("tmp_foo.zip");
+        final File tmpFooBar = TestPackageUtil.prepareTestPackage("tmp_foo_bar.zip");
+        final List<String> keys = OakMachine.computePrefixKeys("initial", Arrays.asList(tmpFoo, tmpFooBar));
+        assertEquals("expect one more key than files", 3, keys.size());
+        assertEquals("expect initial key", "initial", keys.get(0));
+        assertEquals("expect same key for same prefix", keys.subList(0, 2),
+                OakMachine.computePrefixKeys("initial", Arrays.asList(tmpFoo)));
+        assertNotEquals("expect different key for different order", keys.get(2),
+                OakMachine.computePrefixKeys("initial", Arrays.asList(tmpFooBar, tmpFoo)).get(2));
+        assertNotEquals("expect different key for different initial key", keys.get(1),
+                OakMachine.computePrefixKeys("other", Arrays.asList(tmpFoo)).get(1));
+    }
+
+    @Test
+    public void testComputeInitialPrefixKey() throws Exception {
+        final OakMachine machine = newMachine(null);
+        assertEquals("expect same key for equivalent machines", machine.computeInitialPrefixKey(null),
+                newMachine(null).computeInitialPrefixKey(null));
+        assertNotEquals("expect different key for different checks", machine.computeInitialPrefixKey(null),
+                new OakMachine.Builder().withProgressCheck(new StatefulCheck()).build()
+                        .computeInitialPrefixKey(null));
+        assertNotEquals("expect different key for different init stages", machine.computeBaseKey(),
+                new OakMachine.Builder().withInitStage(new InitStage.Builder()
+                        .withForcedRoot(new ForcedRoot().withPath("/tmp/forced")).build()).build()
+                        .computeBaseKey());
+        assertNotEquals("expect different key for different install hook policy",
+                machine.computeInitialPrefixKey(null),
+                new OakMachine.Builder().withProgressCheck(new StatefulCheck(), new StatefulStateCheck(),
+                        new StatefulDiffCheck(), new Overlaps().newInstance(
+                                obj().key(Overlaps.keys().reportAllOverlaps(), true).get()))
+                        .withInstallHookPolicy(InstallHookPolicy.SKIP).build()
+                        .computeInitialPrefixKey(null));
+
+        assertNotEquals("expect different key for different fail-fast severity",
+                machine.computeInitialPrefixKey(null),
+                new OakMachine.Builder().withProgressCheck(new StatefulCheck(), new StatefulStateCheck(),
+                        new StatefulDiffCheck(), new Overlaps().newInstance(
+                                obj().key(Overlaps.keys().reportAllOverlaps(), true).get()))
+                        .withFailFastSeverity(Severity.MAJOR).build()
+                        .computeInitialPrefixKey(null));
+        assertNotEquals("expect different key for different check budget",
+                machine.computeInitialPrefixKey(null),
+                new OakMachine.Builder().withProgressCheck(new StatefulCheck(), new StatefulStateCheck(),
+                        new StatefulDiffCheck(), new Overlaps().newInstance(
+                                obj().key(Overlaps.keys().reportAllOverlaps(), true).get()))
+                        .withCheckBudget(new CheckBudget(1000L, 0L)).build()
+                        .computeInitialPrefixKey(null));
+
+        try (BaseCheckpoint base = machine.prepareBase();
+             BaseCheckpoint sameBase = newMachine(null).prepareBase()) {
+            assertEquals("expect base prepared by machine to be keyed by its configuration",
+                    machine.computeBaseKey(), base.getKey());
+            assertEquals("expect same initial key for equivalent bases", machine.computeInitialPrefixKey(base),
+                    machine.computeInitialPrefixKey(sameBase));
+            assertEquals("expect same initial key for base and cold scan", machine.computeInitialPrefixKey(null),
+                    machine.computeInitialPrefixKey(base));
+        }
+        final BaseCheckpoint otherBase = machine.prepareBase(new MemoryNodeStore());
+        assertNotEquals("expect base prepared in a provided node store to have its own key",
+                machine.computeInitialPrefixKey(null), machine.computeInitialPrefixKey(otherBase));
+    }
+
+    @Test
+    public void testScanPackagesDifferentChecksDoNotResume() throws Exception {
+        final File tmpFoo = TestPackageUtil.prepareTestPackage("tmp_foo.zip");
+        final File tmpFooBar = TestPackageUtil.prepareTestPackage("tmp_foo_bar.zip");
+        final List<File> files = Arrays.asList(tmpFoo, tmpFooBar);
+        final PrefixCheckpoints prefixCheckpoints = new PrefixCheckpoints();
+        newMachine(prefixCheckpoints).scanPackages(files);
+        assertEquals("expect initial checkpoint and one per package", 3, prefixCheckpoints.size());
+
+        final OakMachine.Builder otherChecks = new OakMachine.Builder().withProgressCheck(new StatefulCheck());
+        final List<CheckReport> expected = otherChecks.build().scanPackages(files);
+        assertEquals("expect same reports as a cold scan with the other checks", expected,
+                otherChecks.withPrefixCheckpoints(prefixCheckpoints).build().scanPackages(files));
+        assertEquals("expect new checkpoints for the other checks", 6, prefixCheckpoints.size());
+    }
+}
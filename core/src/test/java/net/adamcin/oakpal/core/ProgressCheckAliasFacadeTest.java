@@ -16,6 +16,8 @@
 
 package net.adamcin.oakpal.core;
 
+import net.adamcin.oakpal.api.EventMask;
+import net.adamcin.oakpal.api.ImportedPath;
 import net.adamcin.oakpal.api.PathAction;
 import net.adamcin.oakpal.api.ProgressCheck;
 import net.adamcin.oakpal.api.Violation;
@@ -31,9 +33,11 @@ import javax.jcr.Session;
 import java.io.File;
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.List;
 import java.util.ResourceBundle;
 import java.util.concurrent.CompletableFuture;
+import java.util.function.Consumer;
 import java.util.jar.Manifest;
 
 import static org.junit.Assert.*;
@@ -42,6 +46,7 @@ import static org.mockito.ArgumentMatchers.nullable;
 import static org.mockito.Mockito.doAnswer;
 import static org.mockito.Mockito.doThrow;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
 public class ProgressCheckAliasFacadeTest {
@@ -78,6 +83,26 @@ public class ProgressCheckAliasFacadeTest {
         assertSame("same value", violations, alias.getReportedViolations());
     }
 
+    @Test
+    public void testSetViolationListener() {
+        final Consumer<Violation> listener = violation -> {
+        };
+        final ProgressCheck delegate = mock(ProgressCheck.class);
+        when(delegate.setViolationListener(listener)).thenReturn(true);
+        final ProgressCheckAliasFacade alias = new ProgressCheckAliasFacade(delegate, null);
+        assertTrue("expect delegate result", alias.setViolationListener(listener));
+        verify(delegate).setViolationListener(listener);
+    }
+
+    @Test
+    public void testGetEventMask() {
+        final EventMask mask = EventMask.of(EventMask.Event.AFTER_EXTRACT);
+        final ProgressCheck delegate = mock(ProgressCheck.class);
+        when(delegate.getEventMask()).thenReturn(mask);
+        final ProgressCheckAliasFacade alias = new ProgressCheckAliasFacade(delegate, null);
+        assertSame("same value", mask, alias.getEventMask());
+    }
+
     @Test
     public void testFinishedScan() {
         final CompletableFuture<Boolean> didIt = new CompletableFuture<>();
@@ -278,6 +303,30 @@ public class ProgressCheckAliasFacadeTest {
         assertSame("same arg3", arg3, slot3.getNow(null));
     }
 
+    @Test
+    public void testImportedPaths() throws Exception {
+        final PackageId arg0 = PackageId.fromString("my_packages:example:1.0");
+        final List<ImportedPath> arg1 = Collections.singletonList(
+                new ImportedPath("/correct/path", PathAction.MODIFIED, mock(Session.class), null));
+
+        final CompletableFuture<PackageId> slot0 = new CompletableFuture<>();
+        final CompletableFuture<List<ImportedPath>> slot1 = new CompletableFuture<>();
+
+        final ProgressCheck delegate = mock(ProgressCheck.class);
+
+        doAnswer(call -> {
+            slot0.complete(call.getArgument(0));
+            slot1.complete(call.getArgument(1));
+            return true;
+        }).when(delegate).importedPaths(any(PackageId.class), any());
+
+        final ProgressCheckAliasFacade alias = new ProgressCheckAliasFacade(delegate, null);
+        alias.importedPaths(arg0, arg1);
+
+        assertSame("same arg0", arg0, slot0.getNow(null));
+        assertSame("same arg1", arg1, slot1.getNow(null));
+    }
+
     @Test(expected = RepositoryException.class)
     public void testDeletedPath_throws() throws Exception {
         final PackageId arg0 = PackageId.fromString("my_packages:example:1.0");
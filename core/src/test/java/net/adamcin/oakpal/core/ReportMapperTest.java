@@ -17,17 +17,25 @@
 package net.adamcin.oakpal.core;
 
 import static java.util.Arrays.asList;
+import static java.util.Collections.emptyList;
 import static java.util.Collections.singletonList;
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
 
 import java.io.File;
+import java.io.FileOutputStream;
+import java.io.OutputStreamWriter;
 import java.io.StringReader;
 import java.io.StringWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
 import java.util.ArrayList;
 import java.util.List;
 
 import net.adamcin.oakpal.api.Severity;
 import net.adamcin.oakpal.api.SimpleViolation;
+import net.adamcin.oakpal.api.Violation;
 import org.apache.jackrabbit.vault.packaging.PackageId;
 import org.junit.Before;
 import org.junit.Test;
@@ -98,4 +106,67 @@ public class ReportMapperTest {
                 new ArrayList<>(ReportMapper.readReportsFromFile(jsonFile)));
 
     }
+
+    @Test
+    public void testReportsToJsonObject_metrics() throws Exception {
+        final List<CheckReport> reports = singletonList(new SimpleReport("test/first", emptyList()));
+        assertFalse("null metrics omitted", ReportMapper.reportsToJsonObject(reports, null)
+                .containsKey(ReportMapper.keys().metrics()));
+        final ScanMetrics metrics = new ScanMetrics();
+        assertFalse("empty metrics omitted", ReportMapper.reportsToJsonObject(reports, metrics)
+                .containsKey(ReportMapper.keys().metrics()));
+        metrics.recordImporter(PackageId.fromString("test:first"), ScanMetrics.ImporterPhase.EXTRACT, 1000L);
+        assertEquals("metrics section", metrics.toJson(), ReportMapper.reportsToJsonObject(reports, metrics)
+                .getJsonObject(ReportMapper.keys().metrics()));
+
+        final File jsonFile = new File(baseDir, "reports-metrics.json");
+        ReportMapper.writeReportsToFile(reports, metrics, jsonFile);
+        assertEquals("reports should still be readable", reports,
+                new ArrayList<>(ReportMapper.readReportsFromFile(jsonFile)));
+    }
+
+    @Test
+    public void testWriteThenReadNdjson() throws Exception {
+        final File ndjsonFile = new File(baseDir, "violations.ndjson");
+        final List<CheckReport> originalReports = asList(
+                new SimpleReport("test/first",
+                        singletonList(
+                                new SimpleViolation(Severity.MINOR,
+                                        "one",
+                                        PackageId.fromString("test:first")))
+                ),
+                new SimpleReport("test/second",
+                        asList(
+                                new SimpleViolation(Severity.MAJOR,
+                                        "one\ntwo", PackageId.fromString("test:first")),
+                                new SimpleViolation(Severity.MINOR,
+                                        "two",
+                                        PackageId.fromString("test:first"),
+                                        PackageId.fromString("test:second"))
+                        )
+                )
+        );
+
+        try (Writer writer = new OutputStreamWriter(new FileOutputStream(ndjsonFile), StandardCharsets.UTF_8)) {
+            final ViolationSink sink = ReportMapper.ndjsonSink(writer);
+            for (CheckReport report : originalReports) {
+                for (Violation violation : report.getViolations()) {
+                    sink.reportedViolation(report.getCheckName(), violation);
+                }
+            }
+        }
+        assertEquals("one line per violation", 3,
+                Files.readAllLines(ndjsonFile.toPath(), StandardCharsets.UTF_8).size());
+        assertEquals("CheckReports should round trip",
+                new ArrayList<>(originalReports),
+                new ArrayList<>(ReportMapper.readReportsFromNdjsonFile(ndjsonFile)));
+        assertEquals("blank lines are ignored", emptyList(),
+                ReportMapper.readReportsFromNdjson(() -> new StringReader("\n  \n")));
+
+        final List<String> lines = new ArrayList<>();
+        ReportMapper.readViolationsFromNdjsonFile(ndjsonFile, (checkName, violation) ->
+                lines.add(checkName + ":" + violation.getDescription()));
+        assertEquals("each line is passed to the sink in order",
+                asList("test/first:one", "test/second:one\ntwo", "test/second:two"), lines);
+    }
 }
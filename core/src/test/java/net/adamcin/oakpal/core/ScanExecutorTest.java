@@ -0,0 +1,156 @@
+/*
+ * Copyright 2020 Mark Adamcin
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.adamcin.oakpal.core;
+
+import net.adamcin.oakpal.api.PathAction;
+import net.adamcin.oakpal.api.ProgressCheck;
+import net.adamcin.oakpal.api.Result;
+import net.adamcin.oakpal.api.Severity;
+import net.adamcin.oakpal.api.SimpleProgressCheck;
+import net.adamcin.oakpal.api.SimpleViolation;
+import net.adamcin.oakpal.testing.TestPackageUtil;
+import org.apache.jackrabbit.vault.packaging.PackageId;
+import org.junit.Test;
+
+import javax.jcr.Node;
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Collectors;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class ScanExecutorTest {
+
+    static final class PathCountCheck extends SimpleProgressCheck {
+        int paths;
+
+        @Override
+        public void startedScan() {
+            super.startedScan();
+            paths = 0;
+        }
+
+        @Override
+        public void importedPath(final PackageId packageId, final String path, final Node node,
+                                 final PathAction action) {
+            paths++;
+            if (paths == 1) {
+                reportViolation(new SimpleViolation(Severity.MINOR, "first path " + path, packageId));
+            }
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testConstructorBadParallelism() {
+        new ScanExecutor(() -> new OakMachine.Builder().build(), 0);
+    }
+
+    @Test
+    public void testScanAll() throws Exception {
+        final File tmpFooBar = TestPackageUtil.prepareTestPackage("tmp_foo_bar.zip");
+        final File subsubtest = TestPackageUtil.prepareTestPackage("subsubtest.zip");
+        final List<List<File>> scans = Arrays.asList(
+                Collections.singletonList(tmpFooBar),
+                Collections.singletonList(subsubtest),
+                Arrays.asList(tmpFooBar, subsubtest),
+                Collections.singletonList(subsubtest));
+
+        final List<List<CheckReport>> expected = new ArrayList<>();
+        for (List<File> scan : scans) {
+            expected.add(new OakMachine.Builder().withProgressCheck(new PathCountCheck()).build()
+                    .scanPackages(scan));
+        }
+
+        final Map<ProgressCheck, Boolean> checks = Collections.synchronizedMap(new IdentityHashMap<>());
+        final Map<String, Boolean> threadNames = new ConcurrentHashMap<>();
+        final ScanExecutor executor = new ScanExecutor(() -> {
+            final PathCountCheck check = new PathCountCheck();
+            checks.put(check, true);
+            threadNames.put(Thread.currentThread().getName(), true);
+            return new OakMachine.Builder().withProgressCheck(check).build();
+        }, 2);
+        assertEquals("expect parallelism", 2, executor.getParallelism());
+
+        final List<Result<List<CheckReport>>> results = executor.scanAll(scans);
+        assertEquals("expect one result per scan", scans.size(), results.size());
+        assertEquals("expect reports in scan order", expected,
+                results.stream().map(result -> result.getOrDefault(null)).collect(Collectors.toList()));
+        assertEquals("expect new check for every scan", scans.size(), checks.size());
+        assertTrue("expect no more threads than parallelism", threadNames.size() <= 2);
+        assertTrue("expect scan threads",
+                threadNames.keySet().stream().allMatch(name -> name.startsWith("oakpal-scan-")));
+        assertEquals("expect empty results for no scans", Collections.emptyList(),
+                executor.scanAll(Collections.emptyList()));
+    }
+
+    @Test
+    public void testScanAllWithBase() throws Exception {
+        final File tmpFooBar = TestPackageUtil.prepareTestPackage("tmp_foo_bar.zip");
+        final File subsubtest = TestPackageUtil.prepareTestPackage("subsubtest.zip");
+        final ScanExecutor.MachineFactory factory = () -> new OakMachine.Builder()
+                .withPreInstallUrl(tmpFooBar.toURI().toURL())
+                .withProgressCheck(new PathCountCheck())
+                .build();
+        final List<CheckReport> expected = factory.newMachine().scanPackage(subsubtest);
+        final BaseCheckpoint base = factory.newMachine().prepareBase();
+
+        final List<Result<List<CheckReport>>> results = new ScanExecutor(factory, 3)
+                .scanAll(base, Collections.nCopies(3, Collections.singletonList(subsubtest)));
+        for (Result<List<CheckReport>> result : results) {
+            assertEquals("expect same reports as cold scan", expected, result.getOrDefault(null));
+        }
+    }
+
+    @Test
+    public void testScanAllWithFailure() throws Exception {
+        final File subsubtest = TestPackageUtil.prepareTestPackage("subsubtest.zip");
+        final File notAPackage = new File("target/test-out/ScanExecutorTest/notAPackage.zip");
+        final List<Result<List<CheckReport>>> results = new ScanExecutor(() -> new OakMachine.Builder().build(), 2)
+                .scanAll(Arrays.asList(
+                        Collections.singletonList(notAPackage),
+                        Collections.singletonList(subsubtest)));
+        assertTrue("expect failure for missing package", results.get(0).isFailure());
+        assertTrue("expect success for other scan", results.get(1).isSuccess());
+
+        final List<Result<List<CheckReport>>> factoryFailures = new ScanExecutor(() -> {
+            throw new Exception("failed to load checks");
+        }, 1).scanAll(Collections.singletonList(Collections.singletonList(subsubtest)));
+        assertTrue("expect failure for factory exception", factoryFailures.get(0).isFailure());
+    }
+
+    @Test
+    public void testFromPlan() throws Exception {
+        final File subsubtest = TestPackageUtil.prepareTestPackage("subsubtest.zip");
+        final OakpalPlan plan = OakpalPlan.fromJson(OakpalPlan.BASIC_PLAN_URL).getOrDefault(null);
+        final ClassLoader classLoader = getClass().getClassLoader();
+        final List<CheckReport> expected = plan.toOakMachineBuilder(new DefaultErrorListener(), classLoader)
+                .build().scanPackage(subsubtest);
+        final List<Result<List<CheckReport>>> results = ScanExecutor
+                .fromPlan(plan, DefaultErrorListener::new, classLoader, 2)
+                .scanAll(Collections.nCopies(2, Collections.singletonList(subsubtest)));
+        for (Result<List<CheckReport>> result : results) {
+            assertEquals("expect same reports as sequential scan", expected, result.getOrDefault(null));
+        }
+    }
+}
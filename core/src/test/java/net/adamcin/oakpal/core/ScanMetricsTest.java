@@ -0,0 +1,96 @@
+/*
+ * Copyright 2020 Mark Adamcin
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.adamcin.oakpal.core;
+
+import net.adamcin.oakpal.api.ProgressCheck;
+import net.adamcin.oakpal.api.SimpleProgressCheck;
+import org.apache.jackrabbit.vault.packaging.PackageId;
+import org.junit.Test;
+
+import javax.json.JsonObject;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class ScanMetricsTest {
+
+    @Test
+    public void testTimer_buckets() {
+        for (long nanos : new long[]{0L, 1L, 7L, 8L, 9L, 15L, 16L, 1000L, 123456789L, Long.MAX_VALUE}) {
+            final int index = ScanMetrics.Timer.bucketIndex(nanos);
+            assertTrue("index in range for " + nanos, index >= 0 && index < ScanMetrics.Timer.BUCKETS);
+            assertTrue("upper bound at least value for " + nanos,
+                    ScanMetrics.Timer.bucketUpperBound(index) >= nanos);
+            if (index > 0) {
+                assertTrue("previous upper bound less than value for " + nanos,
+                        ScanMetrics.Timer.bucketUpperBound(index - 1) < nanos);
+            }
+        }
+        assertEquals("negative clamps to zero", 0, ScanMetrics.Timer.bucketIndex(-5L));
+    }
+
+    @Test
+    public void testTimer_percentiles() {
+        final ScanMetrics.Timer timer = new ScanMetrics.Timer();
+        assertEquals("empty percentile", 0L, timer.getPercentileNanos(50.0D));
+        for (long nanos = 1L; nanos <= 1000L; nanos++) {
+            timer.record(nanos * 1000L);
+        }
+        assertEquals("count", 1000L, timer.getCount());
+        assertEquals("total", 500500L * 1000L, timer.getTotalNanos());
+        assertEquals("max", 1000000L, timer.getMaxNanos());
+        final long p50 = timer.getPercentileNanos(50.0D);
+        assertTrue("p50 within bucket error: " + p50, p50 >= 500000L && p50 < 500000L * 9 / 8 + 1);
+        final long p99 = timer.getPercentileNanos(99.0D);
+        assertTrue("p99 within bucket error: " + p99, p99 >= 990000L && p99 <= 1000000L);
+        assertEquals("p100 is max", 1000000L, timer.getPercentileNanos(100.0D));
+    }
+
+    @Test
+    public void testToJson() {
+        final ScanMetrics metrics = new ScanMetrics();
+        assertTrue("empty", metrics.isEmpty());
+        final ProgressCheck first = new SimpleProgressCheck();
+        final ProgressCheck second = new SimpleProgressCheck();
+        metrics.recordCallback(first, ScanMetrics.Callback.IMPORTED_PATH, 2000000L);
+        metrics.recordCallback(first, ScanMetrics.Callback.IMPORTED_PATH, 1000000L);
+        metrics.recordCallback(second, ScanMetrics.Callback.AFTER_EXTRACT, 1500L);
+        metrics.recordImporter(PackageId.fromString("my_packages:test:1.0"),
+                ScanMetrics.ImporterPhase.SAVE, 3000000L);
+        assertFalse("not empty", metrics.isEmpty());
+        assertEquals("same name, separate checks", 2, metrics.getChecks().size());
+
+        final JsonObject json = metrics.toJson();
+        final JsonObject importedPath = json.getJsonArray(ScanMetrics.keys().checks()).getJsonObject(0)
+                .getJsonObject(ScanMetrics.keys().callbacks()).getJsonObject("importedPath");
+        assertEquals("count", 2, importedPath.getInt(ScanMetrics.keys().count()));
+        assertEquals("total", 3.0D, importedPath.getJsonNumber(ScanMetrics.keys().totalMillis()).doubleValue(), 0.0D);
+        assertEquals("max", 2.0D, importedPath.getJsonNumber(ScanMetrics.keys().maxMillis()).doubleValue(), 0.0D);
+        final JsonObject secondCallbacks = json.getJsonArray(ScanMetrics.keys().checks()).getJsonObject(1)
+                .getJsonObject(ScanMetrics.keys().callbacks());
+        assertEquals("only invoked callbacks", 1, secondCallbacks.size());
+        assertEquals("micros precision", 0.002D, secondCallbacks.getJsonObject("afterExtract")
+                .getJsonNumber(ScanMetrics.keys().totalMillis()).doubleValue(), 0.0D);
+        final JsonObject packageJson = json.getJsonArray(ScanMetrics.keys().packages()).getJsonObject(0);
+        assertEquals("package id", "my_packages:test:1.0", packageJson.getString(ScanMetrics.keys().packageId()));
+        assertEquals("save count", 1, packageJson.getJsonObject(ScanMetrics.keys().importer())
+                .getJsonObject("save").getInt(ScanMetrics.keys().count()));
+        assertEquals("extract count", 0, packageJson.getJsonObject(ScanMetrics.keys().importer())
+                .getJsonObject("extract").getInt(ScanMetrics.keys().count()));
+    }
+}
@@ -0,0 +1,191 @@
+/*
+ * Copyright 2020 Mark Adamcin
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.adamcin.oakpal.core;
+
+import net.adamcin.oakpal.api.Severity;
+import net.adamcin.oakpal.api.SimpleViolation;
+import net.adamcin.oakpal.core.checks.Paths;
+import net.adamcin.oakpal.testing.TestPackageUtil;
+import org.apache.commons.io.FileUtils;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static net.adamcin.oakpal.api.JavaxJson.key;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class ScanResultCacheTest {
+    private final File testOutDir = new File("target/test-out/ScanResultCacheTest");
+
+    @Before
+    public void setUp() throws Exception {
+        FileUtils.deleteDirectory(testOutDir);
+        testOutDir.mkdirs();
+    }
+
+    @Test
+    public void testGetOrScan() throws Exception {
+        final File cacheDir = new File(testOutDir, "testGetOrScan");
+        final ScanResultCache cache = new ScanResultCache(cacheDir);
+        final String key = "testGetOrScan";
+        final List<CheckReport> reports = Collections.singletonList(new SimpleReport("check",
+                Collections.singletonList(new SimpleViolation(Severity.MAJOR, "violation"))));
+        final AtomicInteger scanCount = new AtomicInteger(0);
+
+        assertNull("expect no cached reports", cache.load(key));
+        assertEquals("expect scanned reports", reports, cache.getOrScan(key, () -> {
+            scanCount.incrementAndGet();
+            return reports;
+        }));
+        assertEquals("expect cached reports", ReportMapper.reportsToJson(reports),
+                ReportMapper.reportsToJson(cache.getOrScan(key, () -> {
+                    scanCount.incrementAndGet();
+                    return Collections.emptyList();
+                })));
+        assertEquals("expect one scan", 1, scanCount.get());
+        assertEquals("expect one cache file", 1, cacheDir.listFiles().length);
+    }
+
+    @Test(expected = AbortedScanException.class)
+    public void testGetOrScanFailure() throws Exception {
+        final File cacheDir = new File(testOutDir, "testGetOrScanFailure");
+        final ScanResultCache cache = new ScanResultCache(cacheDir);
+        try {
+            cache.getOrScan("testGetOrScanFailure", () -> {
+                throw new AbortedScanException(new Exception("failed"));
+            });
+        } finally {
+            assertNull("expect no cached reports", cache.load("testGetOrScanFailure"));
+        }
+    }
+
+    @Test
+    public void testComputeKey() throws Exception {
+        final File tmpFooBar = TestPackageUtil.prepareTestPackage("tmp_foo_bar.zip");
+        final File subsubtest = TestPackageUtil.prepareTestPackage("subsubtest.zip");
+        final ClassLoader classLoader = getClass().getClassLoader();
+        final OakpalPlan plan = OakpalPlan.fromJson(OakpalPlan.BASIC_PLAN_URL).getOrDefault(null);
+        final List<File> scanFiles = Arrays.asList(tmpFooBar, subsubtest);
+
+        final String key = ScanResultCache.computeKey(plan, classLoader, scanFiles);
+        assertEquals("expect sha-256 hex", 64, key.length());
+        assertEquals("expect stable key", key, ScanResultCache.computeKey(plan, classLoader, scanFiles));
+        assertNotEquals("expect different key for different scan order", key,
+                ScanResultCache.computeKey(plan, classLoader, Arrays.asList(subsubtest, tmpFooBar)));
+        assertNotEquals("expect different key for scan options", key,
+                ScanResultCache.computeKey(plan, classLoader, scanFiles, "silenceAllSubpackages=true"));
+        assertNotEquals("expect different key for different checks", key, ScanResultCache.computeKey(
+                new OakpalPlan.Builder(null, null).startingWithPlan(plan)
+                        .withChecks(Collections.singletonList(CheckSpec.fromJson(
+                                key("name", "foo").get())))
+                        .build(), classLoader, scanFiles));
+
+        final File classDir = new File(testOutDir, "testComputeKey/classes");
+        final File unrelatedFile = new File(classDir, "unrelated.txt");
+        final File scriptFile = new File(classDir, "checks/script.js");
+        FileUtils.write(unrelatedFile, "one", StandardCharsets.UTF_8);
+        FileUtils.write(scriptFile, "function afterExtract(packageId) {}", StandardCharsets.UTF_8);
+        try (URLClassLoader extended = new URLClassLoader(new URL[]{classDir.toURI().toURL()}, classLoader)) {
+            final OakpalPlan scriptPlan = new OakpalPlan.Builder(null, null).startingWithPlan(plan)
+                    .withChecks(Collections.singletonList(CheckSpec.fromJson(
+                            key("impl", "checks/script.js").get())))
+                    .build();
+            final String scriptKey = ScanResultCache.computeKey(scriptPlan, extended, scanFiles);
+            FileUtils.write(scriptFile, "function afterExtract(packageId) { }", StandardCharsets.UTF_8);
+            final String changedScriptKey = ScanResultCache.computeKey(scriptPlan, extended, scanFiles);
+            assertNotEquals("expect different key for changed script", scriptKey, changedScriptKey);
+            FileUtils.write(unrelatedFile, "two", StandardCharsets.UTF_8);
+            assertNotEquals("expect different key for other classpath resource change", changedScriptKey,
+                    ScanResultCache.computeKey(scriptPlan, extended, scanFiles));
+        }
+
+        final File jarFile = new File(testOutDir, "testComputeKey/lib.jar");
+        FileUtils.write(jarFile, "one", StandardCharsets.UTF_8);
+        try (URLClassLoader extended = new URLClassLoader(new URL[]{jarFile.toURI().toURL()}, classLoader)) {
+            final String jarKey = ScanResultCache.computeKey(plan, extended, scanFiles);
+            assertNotEquals("expect different key for extra classpath jar", key, jarKey);
+            FileUtils.write(jarFile, "two", StandardCharsets.UTF_8);
+            assertNotEquals("expect different key for changed classpath jar", jarKey,
+                    ScanResultCache.computeKey(plan, extended, scanFiles));
+        }
+    }
+
+    @Test
+    public void testGetClassPathUrls() throws Exception {
+        final ClassLoader classLoader = getClass().getClassLoader();
+        final URL first = new File(testOutDir, "first").toURI().toURL();
+        final URL second = new File(testOutDir, "second").toURI().toURL();
+        try (URLClassLoader parent = new URLClassLoader(new URL[]{first}, classLoader);
+             URLClassLoader child = new URLClassLoader(new URL[]{second}, parent)) {
+            assertEquals("expect urls of ancestors first", Arrays.asList(first, second),
+                    ScanResultCache.getClassPathUrls(child));
+        }
+    }
+
+    @Test
+    public void testFindImplUrl() throws Exception {
+        final ClassLoader classLoader = getClass().getClassLoader();
+        final URL dirCheckUrl = ScanResultCache.findImplUrl(Paths.class.getName(), classLoader);
+        assertNotNull("expect url for core check class", dirCheckUrl);
+        assertEquals("expect classpath root url for class in directory",
+                Paths.class.getProtectionDomain().getCodeSource().getLocation().toExternalForm(),
+                dirCheckUrl.toExternalForm());
+        final URL jarCheckUrl = ScanResultCache.findImplUrl(Test.class.getName(), classLoader);
+        assertNotNull("expect url for class in jar", jarCheckUrl);
+        assertTrue("expect jar file url", jarCheckUrl.getPath().endsWith(".jar"));
+        assertNotNull("expect url for script resource",
+                ScanResultCache.findImplUrl("simpleHandler.js", classLoader));
+        assertNull("expect null for missing impl",
+                ScanResultCache.findImplUrl("com.example.NotACheck", classLoader));
+    }
+
+    @Test
+    public void testUpdateDigestWithContent() throws Exception {
+        final File classDir = new File(testOutDir, "testUpdateDigestWithContent/classes");
+        final File classFile = new File(classDir, "com/example/Check.class");
+        final File helperFile = new File(classDir, "com/example/Check$Helper.class");
+        FileUtils.write(classFile, "check", StandardCharsets.UTF_8);
+        FileUtils.write(helperFile, "one", StandardCharsets.UTF_8);
+        final URL classDirUrl = classDir.toURI().toURL();
+
+        final String dirHash = digestOf(classDirUrl);
+        assertEquals("expect stable hash", dirHash, digestOf(classDirUrl));
+        FileUtils.write(helperFile, "two", StandardCharsets.UTF_8);
+        assertNotEquals("expect different hash for changed helper class", dirHash, digestOf(classDirUrl));
+        final URL missingUrl = new File(testOutDir, "missing").toURI().toURL();
+        assertEquals("expect stable hash for missing file", digestOf(missingUrl), digestOf(missingUrl));
+    }
+
+    private static String digestOf(final URL url) throws Exception {
+        final MessageDigest digest = BaseCheckpointCache.newDigest();
+        ScanResultCache.updateDigestWithContent(digest, url);
+        return BaseCheckpointCache.toHex(digest.digest());
+    }
+}
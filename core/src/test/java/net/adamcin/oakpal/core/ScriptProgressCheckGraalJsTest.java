@@ -0,0 +1,107 @@
+/*
+ * Copyright 2020 Mark Adamcin
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.adamcin.oakpal.core;
+
+import net.adamcin.oakpal.api.EventMask;
+import net.adamcin.oakpal.api.ImportedPath;
+import net.adamcin.oakpal.api.PathAction;
+import net.adamcin.oakpal.api.ProgressCheck;
+import net.adamcin.oakpal.api.ProgressCheckFactory;
+import net.adamcin.oakpal.api.Violation;
+import org.apache.jackrabbit.vault.packaging.PackageId;
+import org.junit.Before;
+import org.junit.Test;
+
+import javax.jcr.Node;
+import javax.jcr.Session;
+import javax.script.ScriptEngine;
+import java.io.File;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import static net.adamcin.oakpal.api.JavaxJson.key;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assume.assumeTrue;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * Runs script checks on GraalJS. These tests are skipped unless the GraalJS script engine is on the test classpath,
+ * e.g. with the graaljs profile.
+ */
+public class ScriptProgressCheckGraalJsTest {
+    final File srcDir = new File("src/test/resources/ScriptProgressCheckTest");
+    final PackageId packageId = PackageId.fromString("my_packages:example:1.0");
+
+    @Before
+    public void setUp() {
+        final ScriptEngine engine = ScriptProgressCheck.getScriptEngineManager()
+                .getEngineByName(ScriptProgressCheck.GRAAL_JS_ENGINE_NAME);
+        assumeTrue("graal.js script engine is available", engine != null);
+        assertTrue("expect graal.js", ScriptProgressCheck.isGraalJs(engine));
+    }
+
+    static List<String> descriptions(final ProgressCheck check) {
+        return check.getReportedViolations().stream().map(Violation::getDescription).collect(Collectors.toList());
+    }
+
+    @Test
+    public void testImportedPaths() throws Exception {
+        final ProgressCheckFactory factory = ScriptProgressCheck.createScriptCheckFactory(
+                ScriptProgressCheck.GRAAL_JS_ENGINE_NAME,
+                new File(srcDir, "importedPathsFromConfig.js").toURI().toURL());
+        final ProgressCheck foo = factory.newInstance(key("checkNameForTest", "foo").get());
+        final ProgressCheck bar = factory.newInstance(key("checkNameForTest", "bar").get());
+        assertEquals("foo keeps its own config", "foo", foo.getCheckName());
+        assertEquals("bar keeps its own config", "bar", bar.getCheckName());
+        assertTrue("expect batched mask from getInterface", foo.getEventMask().isImportedPathsBatched());
+
+        final Session session = mock(Session.class);
+        final List<ImportedPath> importedPaths = Arrays.asList(
+                new ImportedPath("/a", PathAction.ADDED, session, null),
+                new ImportedPath("/b", PathAction.MODIFIED, session, null));
+        foo.startedScan();
+        bar.startedScan();
+        foo.importedPaths(packageId, importedPaths);
+        bar.importedPaths(packageId, importedPaths.subList(0, 1));
+        assertEquals("foo keeps its own globals", Arrays.asList("foo 1 /a", "foo 2 /b"), descriptions(foo));
+        assertEquals("bar keeps its own globals", Collections.singletonList("bar 1 /a"), descriptions(bar));
+    }
+
+    @Test
+    public void testImportedPath_unbatched() throws Exception {
+        final ProgressCheck check = ScriptProgressCheck.createInlineScriptCheckFactory(
+                "function importedPath(packageId, path, node, action) { oakpal.minorViolation(path + ' ' "
+                        + "+ node.getName(), packageId); }", ScriptProgressCheck.GRAAL_JS_ENGINE_NAME)
+                .newInstance(null);
+        assertSame("expect default mask from getInterface", EventMask.ALL, check.getEventMask());
+
+        final Session session = mock(Session.class);
+        final Node node = mock(Node.class);
+        when(node.getName()).thenReturn("path");
+        when(session.getNode("/correct/path")).thenReturn(node);
+        check.startedScan();
+        check.importedPaths(packageId, Collections.singletonList(
+                new ImportedPath("/correct/path", PathAction.MODIFIED, session, null)));
+        assertEquals("expect fallback to importedPath", Collections.singletonList("/correct/path path"),
+                descriptions(check));
+    }
+}
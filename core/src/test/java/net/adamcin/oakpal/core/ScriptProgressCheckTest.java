@@ -16,6 +16,8 @@
 
 package net.adamcin.oakpal.core;
 
+import net.adamcin.oakpal.api.EventMask;
+import net.adamcin.oakpal.api.ImportedPath;
 import net.adamcin.oakpal.api.PathAction;
 import net.adamcin.oakpal.api.ProgressCheck;
 import net.adamcin.oakpal.api.ProgressCheckFactory;
@@ -29,13 +31,20 @@ import org.junit.Test;
 import javax.jcr.Node;
 import javax.jcr.RepositoryException;
 import javax.jcr.Session;
+import javax.script.Bindings;
+import javax.script.CompiledScript;
 import javax.script.Invocable;
+import javax.script.ScriptContext;
+import javax.script.ScriptEngine;
+import javax.script.ScriptEngineFactory;
 import javax.script.ScriptEngineManager;
 import javax.script.ScriptException;
+import javax.script.SimpleBindings;
 import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
 import java.net.URL;
+import java.net.URLClassLoader;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
@@ -46,13 +55,17 @@ import java.util.Map;
 import java.util.PropertyResourceBundle;
 import java.util.ResourceBundle;
 import java.util.jar.Manifest;
+import java.util.stream.Collectors;
 
 import static net.adamcin.oakpal.api.Fun.toEntry;
 import static net.adamcin.oakpal.api.Fun.tryOrDefault1;
 import static net.adamcin.oakpal.api.JavaxJson.key;
 import static net.adamcin.oakpal.api.JavaxJson.obj;
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
 import static org.junit.Assert.assertSame;
 import static org.junit.Assert.assertTrue;
 import static org.mockito.ArgumentMatchers.any;
@@ -60,6 +73,10 @@ import static org.mockito.ArgumentMatchers.anyString;
 import static org.mockito.Mockito.doAnswer;
 import static org.mockito.Mockito.doThrow;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+import static org.mockito.Mockito.withSettings;
 
 public class ScriptProgressCheckTest {
     final File srcDir = new File("src/test/resources/ScriptProgressCheckTest");
@@ -86,6 +103,146 @@ public class ScriptProgressCheckTest {
                 "foobar", checkConfigFactory.newInstance(key("checkNameForTest", "foobar").get()).getCheckName());
     }
 
+    @Test
+    public void testNewInstance_separateContexts() throws Exception {
+        final ProgressCheckFactory inlineFactory = ScriptProgressCheck
+                .createInlineScriptCheckFactory("function getCheckName() { return config.checkNameForTest; }", "js");
+        final ProgressCheck inlineFoo = inlineFactory.newInstance(key("checkNameForTest", "foo").get());
+        final ProgressCheck inlineBar = inlineFactory.newInstance(key("checkNameForTest", "bar").get());
+        assertEquals("inline foo keeps its own config", "foo", inlineFoo.getCheckName());
+        assertEquals("inline bar keeps its own config", "bar", inlineBar.getCheckName());
+
+        final Map<String, CompiledScript> compiledScripts = ScriptProgressCheck.getCompiledScripts(
+                ScriptProgressCheck.getScriptEngineManager().getEngineByExtension("js"));
+        assertNotNull("scripts are shared for the test class loader", compiledScripts);
+        compiledScripts.clear();
+        final ProgressCheck foo = ScriptProgressCheck.createScriptCheckFactory(testScriptUrl("checkNameFromConfig.js"))
+                .newInstance(key("checkNameForTest", "foo").get());
+        final ProgressCheck bar = ScriptProgressCheck.createScriptCheckFactory(testScriptUrl("checkNameFromConfig.js"))
+                .newInstance(key("checkNameForTest", "bar").get());
+        assertEquals("script compiled once for both factories", 1, compiledScripts.size());
+        assertEquals("foo keeps its own config", "foo", foo.getCheckName());
+        assertEquals("bar keeps its own config", "bar", bar.getCheckName());
+
+        ScriptProgressCheck.createScriptCheckFactory(new ScriptEngineManager().getEngineByExtension("js"),
+                testScriptUrl("checkNameFromConfig.js")).newInstance(null);
+        assertEquals("script compiled by a provided engine is not shared", 1, compiledScripts.size());
+    }
+
+    @Test
+    public void testGetScriptEngineManager() {
+        assertNotSame("new manager for each call", ScriptProgressCheck.getScriptEngineManager(),
+                ScriptProgressCheck.getScriptEngineManager());
+    }
+
+    @Test
+    public void testIsSystemClassLoaderOrAncestor() throws Exception {
+        assertTrue("bootstrap", ScriptProgressCheck.isSystemClassLoaderOrAncestor(null));
+        assertTrue("system", ScriptProgressCheck.isSystemClassLoaderOrAncestor(ClassLoader.getSystemClassLoader()));
+        assertTrue("system parent", ScriptProgressCheck
+                .isSystemClassLoaderOrAncestor(ClassLoader.getSystemClassLoader().getParent()));
+        try (URLClassLoader childLoader = new URLClassLoader(new URL[0], ClassLoader.getSystemClassLoader())) {
+            assertFalse("child", ScriptProgressCheck.isSystemClassLoaderOrAncestor(childLoader));
+        }
+    }
+
+    @Test
+    public void testGetCompiledScripts_notSharedForChildClassLoader() throws Exception {
+        final URL scriptUrl = testScriptUrl("checkNameFromConfig.js");
+        final Thread thread = Thread.currentThread();
+        final ClassLoader oldLoader = thread.getContextClassLoader();
+        try (URLClassLoader otherLoader = new URLClassLoader(new URL[0], oldLoader)) {
+            thread.setContextClassLoader(otherLoader);
+            final ScriptEngine engine = ScriptProgressCheck.getScriptEngineManager().getEngineByExtension("js");
+            if (engine.getFactory().getClass().getClassLoader() != otherLoader) {
+                assertNull("engine from a parent loader does not share scripts compiled for a child loader",
+                        ScriptProgressCheck.getCompiledScripts(engine));
+            }
+            final ProgressCheck check = ScriptProgressCheck.createScriptCheckFactory(scriptUrl)
+                    .newInstance(key("checkNameForTest", "other").get());
+            assertEquals("other check works", "other", check.getCheckName());
+        } finally {
+            thread.setContextClassLoader(oldLoader);
+        }
+    }
+
+    @Test
+    public void testNewInstance_concurrentGlobals() throws Exception {
+        final ProgressCheckFactory factory = ScriptProgressCheck.createScriptCheckFactory(
+                testScriptUrl("importedPathsFromConfig.js"));
+        final PackageId packageId = PackageId.fromString("my_packages:example:1.0");
+        final Session session = mock(Session.class);
+        final List<ImportedPath> importedPaths = Collections.singletonList(
+                new ImportedPath("/a", PathAction.ADDED, session, null));
+        final int calls = 200;
+        final List<ProgressCheck> checks = new ArrayList<>();
+        final List<Thread> threads = new ArrayList<>();
+        final List<Throwable> errors = Collections.synchronizedList(new ArrayList<>());
+        for (String name : Arrays.asList("foo", "bar", "baz")) {
+            final ProgressCheck check = factory.newInstance(key("checkNameForTest", name).get());
+            assertTrue("expect batched mask", check.getEventMask().isImportedPathsBatched());
+            checks.add(check);
+            threads.add(new Thread(() -> {
+                try {
+                    for (int i = 0; i < calls; i++) {
+                        check.importedPaths(packageId, importedPaths);
+                    }
+                } catch (final Throwable e) {
+                    errors.add(e);
+                }
+            }));
+        }
+        threads.forEach(Thread::start);
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        assertEquals("expect no errors", Collections.emptyList(), errors);
+        for (ProgressCheck check : checks) {
+            final List<String> descriptions = check.getReportedViolations().stream()
+                    .map(Violation::getDescription).collect(Collectors.toList());
+            assertEquals("expect all calls for " + check.getCheckName(), calls, descriptions.size());
+            assertEquals("expect own counter and config for " + check.getCheckName(),
+                    check.getCheckName() + " " + calls + " /a", descriptions.get(calls - 1));
+        }
+    }
+
+    @Test
+    public void testNewInstance_otherLanguage() throws Exception {
+        final ScriptEngineFactory factory = mock(ScriptEngineFactory.class);
+        when(factory.getLanguageName()).thenReturn("other");
+        final ScriptEngine engine = mock(ScriptEngine.class, withSettings().extraInterfaces(Invocable.class));
+        when(engine.getFactory()).thenReturn(factory);
+        final ScriptEngine instanceEngine = mock(ScriptEngine.class, withSettings().extraInterfaces(Invocable.class));
+        when(factory.getScriptEngine()).thenReturn(instanceEngine);
+        when(((Invocable) instanceEngine).invokeFunction(ScriptProgressCheck.INVOKE_GET_CHECK_NAME))
+                .thenReturn("other");
+
+        final ProgressCheck check = ScriptProgressCheck.createScriptCheckFactory(engine,
+                testScriptUrl("checkNameFromConfig.js")).newInstance(null);
+        verify(instanceEngine).setContext(any(ScriptContext.class));
+        verify(instanceEngine).eval(anyString());
+        assertEquals("expect instance engine", "other", check.getCheckName());
+    }
+
+    @Test
+    public void testNewBindings_graalJs() {
+        final ScriptEngine nashorn = new ScriptEngineManager().getEngineByExtension("js");
+        assertFalse("js is not graal.js on this jdk", ScriptProgressCheck.isGraalJs(nashorn));
+        assertTrue("simple bindings for other engines",
+                ScriptProgressCheck.newBindings(nashorn) instanceof SimpleBindings);
+
+        final ScriptEngineFactory graalFactory = mock(ScriptEngineFactory.class);
+        when(graalFactory.getEngineName()).thenReturn("Graal.js");
+        final ScriptEngine graalJs = mock(ScriptEngine.class);
+        when(graalJs.getFactory()).thenReturn(graalFactory);
+        final Bindings graalBindings = new SimpleBindings();
+        when(graalJs.createBindings()).thenReturn(graalBindings);
+        assertTrue("is graal.js", ScriptProgressCheck.isGraalJs(graalJs));
+        assertSame("engine bindings for graal.js", graalBindings, ScriptProgressCheck.newBindings(graalJs));
+        assertEquals("expect host access and nashorn compat options",
+                ScriptProgressCheck.GRAAL_JS_BINDING_OPTIONS, graalBindings);
+    }
+
     @Test(expected = ScriptProgressCheck.UnregisteredScriptEngineNameException.class)
     public void testCreateInlineScriptCheckFactory_unregisteredEngine() throws Exception {
         ScriptProgressCheck.createInlineScriptCheckFactory("", "foobar");
@@ -363,6 +520,38 @@ public class ScriptProgressCheckTest {
         assertSame("same arg4", arg4, call.getValue()[4]);
     }
 
+    @Test
+    public void testImportedPaths() throws Exception {
+        final ProgressCheck batched = ScriptProgressCheck.createInlineScriptCheckFactory(
+                "function importedPaths(packageId, importedPaths) { for (var i = 0; i < importedPaths.length; i++) "
+                        + "{ oakpal.minorViolation(importedPaths[i].path + ' ' + importedPaths[i].action, packageId); }"
+                        + " }", "js").newInstance(null);
+        assertTrue("expect batched mask", batched.getEventMask().isImportedPathsBatched());
+        final ProgressCheck unbatched = ScriptProgressCheck.createInlineScriptCheckFactory(
+                "function importedPath(packageId, path, node, action) { oakpal.minorViolation(path + ' ' "
+                        + "+ node.getName(), packageId); }", "js").newInstance(null);
+        assertSame("expect default mask", EventMask.ALL, unbatched.getEventMask());
+
+        final PackageId packageId = PackageId.fromString("my_packages:example:1.0");
+        final Session session = mock(Session.class);
+        final Node node = mock(Node.class);
+        when(node.getName()).thenReturn("path");
+        when(session.getNode("/correct/path")).thenReturn(node);
+        final List<ImportedPath> importedPaths = Collections.singletonList(
+                new ImportedPath("/correct/path", PathAction.MODIFIED, session, null));
+        batched.importedPaths(packageId, importedPaths);
+        assertEquals("expect batch received by script", Collections.singletonList("/correct/path U"),
+                batched.getReportedViolations().stream().map(Violation::getDescription)
+                        .collect(Collectors.toList()));
+        verify(session, never()).getNode(anyString());
+
+        unbatched.importedPaths(packageId, importedPaths);
+        unbatched.importedPaths(packageId, importedPaths);
+        assertEquals("expect fallback to importedPath", Arrays.asList("/correct/path path", "/correct/path path"),
+                unbatched.getReportedViolations().stream().map(Violation::getDescription)
+                        .collect(Collectors.toList()));
+    }
+
     @Test
     public void testDeletedPath() throws Exception {
         final Invocable delegate = mock(Invocable.class);
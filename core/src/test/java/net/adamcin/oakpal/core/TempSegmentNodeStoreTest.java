@@ -0,0 +1,90 @@
+/*
+ * Copyright 2020 Mark Adamcin
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.adamcin.oakpal.core;
+
+import net.adamcin.oakpal.testing.TestPackageUtil;
+import org.apache.jackrabbit.oak.plugins.memory.MemoryNodeStore;
+import org.apache.jackrabbit.oak.spi.commit.CommitInfo;
+import org.apache.jackrabbit.oak.spi.commit.EmptyHook;
+import org.apache.jackrabbit.oak.spi.state.NodeBuilder;
+import org.apache.jackrabbit.oak.spi.state.NodeStore;
+import org.junit.Test;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class TempSegmentNodeStoreTest {
+    private final File testOutDir = new File("target/test-out/TempSegmentNodeStoreTest");
+
+    @Test
+    public void testCloseDeletesTempDir() throws Exception {
+        final TempSegmentNodeStore store = new TempSegmentNodeStore(testOutDir);
+        assertTrue("expect temp dir under parent",
+                store.getTempDir().getParentFile().getAbsoluteFile().equals(testOutDir.getAbsoluteFile()));
+        final NodeBuilder builder = store.getRoot().builder();
+        builder.child("foo").setProperty("bar", "baz");
+        store.merge(builder, EmptyHook.INSTANCE, CommitInfo.EMPTY);
+        assertEquals("expect property", "baz",
+                store.getRoot().getChildNode("foo").getString("bar"));
+        assertTrue("expect temp dir", store.getTempDir().isDirectory());
+        store.close();
+        assertFalse("expect temp dir deleted", store.getTempDir().exists());
+    }
+
+    @Test
+    public void testForkBase() throws Exception {
+        final NodeStore memoryStore = new MemoryNodeStore();
+        final NodeBuilder builder = memoryStore.getRoot().builder();
+        builder.child("foo").child("bar").setProperty("baz", 42L);
+        memoryStore.merge(builder, EmptyHook.INSTANCE, CommitInfo.EMPTY);
+
+        final TempSegmentNodeStore fork = new TempSegmentNodeStore(testOutDir, memoryStore.getRoot());
+        try {
+            assertEquals("expect copied property", 42L,
+                    fork.getRoot().getChildNode("foo").getChildNode("bar").getLong("baz"));
+        } finally {
+            fork.close();
+        }
+    }
+
+    @Test
+    public void testScanClosesStore() throws Exception {
+        final File testPackage = TestPackageUtil.prepareTestPackage("tmp_foo_bar.zip");
+        final List<TempSegmentNodeStore> stores = new ArrayList<>();
+        final OakMachine machine = new OakMachine.Builder()
+                .withNodeStoreSupplier(() -> {
+                    try {
+                        final TempSegmentNodeStore store = new TempSegmentNodeStore(testOutDir);
+                        stores.add(store);
+                        return store;
+                    } catch (final Exception e) {
+                        throw new IllegalStateException(e);
+                    }
+                })
+                .build();
+        final List<CheckReport> expectReports = new OakMachine.Builder().build().scanPackage(testPackage);
+        assertEquals("expect same reports", expectReports, machine.scanPackages(Collections.singletonList(testPackage)));
+        assertEquals("expect one store", 1, stores.size());
+        assertFalse("expect temp dir deleted after scan", stores.get(0).getTempDir().exists());
+    }
+}
@@ -16,12 +16,17 @@
 
 package net.adamcin.oakpal.core.checks;
 
+import net.adamcin.oakpal.api.PathAction;
+import net.adamcin.oakpal.api.ProgressCheck;
 import net.adamcin.oakpal.api.Result;
 import net.adamcin.oakpal.api.Rule;
 import net.adamcin.oakpal.api.RuleType;
 import net.adamcin.oakpal.api.Severity;
+import net.adamcin.oakpal.api.Violation;
 import net.adamcin.oakpal.core.JsonCnd;
 import net.adamcin.oakpal.core.OakMachine;
+import net.adamcin.oakpal.testing.TestPackageUtil;
+import org.apache.commons.io.FileUtils;
 import org.apache.jackrabbit.api.JackrabbitWorkspace;
 import org.apache.jackrabbit.api.security.JackrabbitAccessControlEntry;
 import org.apache.jackrabbit.api.security.JackrabbitAccessControlList;
@@ -33,12 +38,14 @@ import org.apache.jackrabbit.spi.commons.conversion.DefaultNamePathResolver;
 import org.apache.jackrabbit.spi.commons.conversion.NamePathResolver;
 import org.apache.jackrabbit.spi.commons.name.NameConstants;
 import org.apache.jackrabbit.value.ValueFactoryImpl;
+import org.apache.jackrabbit.vault.fs.io.AccessControlHandling;
 import org.apache.jackrabbit.vault.packaging.PackageId;
 import org.jetbrains.annotations.NotNull;
 import org.junit.Assert;
 import org.junit.Test;
 
 import javax.jcr.Node;
+import javax.jcr.RepositoryException;
 import javax.jcr.Session;
 import javax.jcr.Value;
 import javax.jcr.security.AccessControlEntry;
@@ -46,14 +53,20 @@ import javax.jcr.security.AccessControlPolicy;
 import javax.jcr.security.AccessControlPolicyIterator;
 import javax.jcr.security.Privilege;
 import javax.json.JsonObject;
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
 import java.security.Principal;
 import java.util.Arrays;
+import java.util.Collection;
 import java.util.Collections;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Objects;
 import java.util.regex.Pattern;
+import java.util.stream.Collectors;
 import java.util.stream.Stream;
 
 import static net.adamcin.oakpal.api.Fun.compose1;
@@ -61,10 +74,16 @@ import static net.adamcin.oakpal.api.Fun.uncheck1;
 import static net.adamcin.oakpal.api.JavaxJson.arr;
 import static net.adamcin.oakpal.api.JavaxJson.key;
 import static net.adamcin.oakpal.api.JavaxJson.obj;
+import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotEquals;
 import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
 import static org.junit.Assert.assertTrue;
+import static org.mockito.ArgumentMatchers.anyString;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
 public class ExpectAcesTest {
@@ -248,6 +267,172 @@ public class ExpectAcesTest {
                                 && viol.getDescription().endsWith("jcr:read")).count());
     }
 
+    @Test
+    public void testCheck_getPolicyOwnerPath() {
+        assertNull("not a policy", ExpectAces.Check.getPolicyOwnerPath("/foo1"));
+        assertNull("policy prefix", ExpectAces.Check.getPolicyOwnerPath("/foo1/rep:policyx"));
+        assertEquals("policy", "/foo1", ExpectAces.Check.getPolicyOwnerPath("/foo1/rep:policy"));
+        assertEquals("ace", "/foo1", ExpectAces.Check.getPolicyOwnerPath("/foo1/rep:policy/allow"));
+        assertEquals("root policy", "/", ExpectAces.Check.getPolicyOwnerPath("/rep:policy/allow"));
+        assertEquals("repo policy", "", ExpectAces.Check.getPolicyOwnerPath("/rep:repoPolicy/allow"));
+    }
+
+    @Test
+    public void testCheck_onlyChangedPathsEvaluated() throws Exception {
+        ExpectAces.Check check = checkFor(obj()
+                .key(ExpectAces.keys().principal(), "nouser")
+                .key(ExpectAces.keys().expectedAces(), arr()
+                        .val("type=allow;path=/foo1;privileges=jcr:read")
+                        .val("type=allow;path=/foo2;privileges=jcr:read")
+                )
+                .key(ExpectAces.keys().notExpectedAces(), arr()
+                        .val("type=allow;path=/foo2;privileges=rep:write")
+                )
+                .get());
+
+        final Session session = mock(Session.class);
+        final JackrabbitAccessControlManager accessControlManager = mock(JackrabbitAccessControlManager.class);
+        when(session.getAccessControlManager()).thenReturn(accessControlManager);
+        when(session.nodeExists(anyString())).thenReturn(true);
+        when(accessControlManager.getPolicies(anyString())).thenReturn(new AccessControlPolicy[0]);
+
+        check.startedScan();
+        check.afterExtract(PackageId.fromString("foo:one:1.0"), session);
+        verify(accessControlManager, times(1)).getPolicies("/foo1");
+        verify(accessControlManager, times(1)).getPolicies("/foo2");
+
+        check.importedPath(PackageId.fromString("foo:two:1.0"), "/foo1", null, PathAction.MODIFIED);
+        check.importedPath(PackageId.fromString("foo:two:1.0"), "/foo3/rep:policy", null, PathAction.ADDED);
+        check.afterExtract(PackageId.fromString("foo:two:1.0"), session);
+        verify(accessControlManager, times(2)).getPolicies("/foo1");
+        verify(accessControlManager, times(1)).getPolicies("/foo2");
+
+        check.importedPath(PackageId.fromString("foo:three:1.0"), "/foo2/rep:policy/allow", null, PathAction.ADDED);
+        check.afterExtract(PackageId.fromString("foo:three:1.0"), session);
+        verify(accessControlManager, times(2)).getPolicies("/foo1");
+        verify(accessControlManager, times(2)).getPolicies("/foo2");
+
+        check.deletedPath(PackageId.fromString("foo:four:1.0"), "/", session);
+        check.afterExtract(PackageId.fromString("foo:four:1.0"), session);
+        verify(accessControlManager, times(3)).getPolicies("/foo1");
+        verify(accessControlManager, times(3)).getPolicies("/foo2");
+
+        check.finishedScan();
+        assertEquals("expected violation count", 2, check.getReportedViolations().stream()
+                .filter(viol -> viol.getDescription().startsWith("expected: ")).count());
+        assertTrue("unchanged paths should still report every package", check.getReportedViolations().stream()
+                .allMatch(viol -> viol.getPackages().size() == 4));
+    }
+
+    /**
+     * Evaluates every criteria path after every package, which was the behavior before only changed paths were
+     * evaluated.
+     */
+    static final class FullEvaluationCheck implements ProgressCheck {
+        final ExpectAces.Check check;
+
+        FullEvaluationCheck(final @NotNull ExpectAces.Check check) {
+            this.check = check;
+        }
+
+        @Override
+        public String getCheckName() {
+            return "full:" + check.getCheckName();
+        }
+
+        @Override
+        public void startedScan() {
+            check.startedScan();
+        }
+
+        @Override
+        public void afterExtract(final PackageId packageId, final Session inspectSession)
+                throws RepositoryException {
+            check.changedPaths.addAll(check.criteriaPaths);
+            check.afterExtract(packageId, inspectSession);
+        }
+
+        @Override
+        public void finishedScan() {
+            check.finishedScan();
+        }
+
+        @Override
+        public Collection<Violation> getReportedViolations() {
+            return check.getReportedViolations();
+        }
+    }
+
+    static File prepareAclPackage(final @NotNull String name, final @NotNull AccessControlHandling acHandling,
+                                  final @NotNull String privilege) throws Exception {
+        final File srcDir = new File("target/test-out/ExpectAcesTest/" + name);
+        FileUtils.deleteDirectory(srcDir);
+        final File vaultDir = new File(srcDir, "META-INF/vault");
+        final File contentDir = new File(srcDir, "jcr_root/tmp/acl_test");
+        vaultDir.mkdirs();
+        contentDir.mkdirs();
+        FileUtils.writeStringToFile(new File(vaultDir, "properties.xml"),
+                "<?xml version=\"1.0\" encoding=\"UTF-8\" standalone=\"no\"?>\n"
+                        + "<!DOCTYPE properties SYSTEM \"http://java.sun.com/dtd/properties.dtd\">\n"
+                        + "<properties>\n"
+                        + "<entry key=\"group\">ExpectAcesTest</entry>\n"
+                        + "<entry key=\"name\">" + name + "</entry>\n"
+                        + "<entry key=\"version\">1.0</entry>\n"
+                        + "<entry key=\"acHandling\">" + acHandling.name().toLowerCase() + "</entry>\n"
+                        + "</properties>\n", StandardCharsets.UTF_8);
+        FileUtils.writeStringToFile(new File(vaultDir, "filter.xml"),
+                "<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n"
+                        + "<workspaceFilter version=\"1.0\">\n"
+                        + "    <filter root=\"/tmp/acl_test\"/>\n"
+                        + "</workspaceFilter>\n", StandardCharsets.UTF_8);
+        FileUtils.writeStringToFile(new File(contentDir, ".content.xml"),
+                "<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n"
+                        + "<jcr:root xmlns:jcr=\"http://www.jcp.org/jcr/1.0\""
+                        + " xmlns:nt=\"http://www.jcp.org/jcr/nt/1.0\" xmlns:rep=\"internal\"\n"
+                        + "    jcr:mixinTypes=\"[rep:AccessControllable]\"\n"
+                        + "    jcr:primaryType=\"nt:folder\">\n"
+                        + "    <rep:policy jcr:primaryType=\"rep:ACL\">\n"
+                        + "        <allow jcr:primaryType=\"rep:GrantACE\" rep:principalName=\"everyone\"\n"
+                        + "            rep:privileges=\"{Name}[" + privilege + "]\"/>\n"
+                        + "    </rep:policy>\n"
+                        + "</jcr:root>\n", StandardCharsets.UTF_8);
+        final File packageFile = new File("target/test-out/ExpectAcesTest/" + name + ".zip");
+        Files.deleteIfExists(packageFile.toPath());
+        TestPackageUtil.buildJarFromDir(srcDir, packageFile, Collections.emptyMap());
+        return packageFile;
+    }
+
+    @Test
+    public void testCheck_changedPathsMatchFullEvaluationForEachAcHandling() throws Exception {
+        final JsonObject config = obj()
+                .key(ExpectAces.keys().principal(), "everyone")
+                .key(ExpectAces.keys().expectedAces(), arr()
+                        .val("type=allow;path=/tmp/acl_test;privileges=jcr:write"))
+                .key(ExpectAces.keys().notExpectedAces(), arr()
+                        .val("type=allow;path=/tmp/acl_test;privileges=jcr:read"))
+                .get();
+        final File initial = prepareAclPackage("initial", AccessControlHandling.OVERWRITE, "jcr:read");
+        final Map<AccessControlHandling, List<String>> violationsByMode = new LinkedHashMap<>();
+        for (AccessControlHandling acHandling : AccessControlHandling.values()) {
+            final File changed = prepareAclPackage("changed_" + acHandling.name().toLowerCase(), acHandling,
+                    "jcr:write");
+            final ExpectAces.Check incremental = checkFor(config);
+            final FullEvaluationCheck full = new FullEvaluationCheck(checkFor(config));
+            new OakMachine.Builder().withProgressChecks(incremental, full).build()
+                    .scanPackages(Arrays.asList(initial, changed));
+            final List<String> incrementalViolations = incremental.getReportedViolations().stream()
+                    .map(Object::toString).collect(Collectors.toList());
+            final List<String> fullViolations = full.getReportedViolations().stream()
+                    .map(Object::toString).collect(Collectors.toList());
+            assertEquals("expect same violations as full evaluation for acHandling " + acHandling,
+                    fullViolations, incrementalViolations);
+            violationsByMode.put(acHandling, incrementalViolations);
+        }
+        assertNotEquals("expect acHandling modes to produce different violations",
+                violationsByMode.get(AccessControlHandling.IGNORE),
+                violationsByMode.get(AccessControlHandling.OVERWRITE));
+    }
+
     @Test
     public void testCheck_getViolatorListForExpectedCriteria() {
         final Map<ExpectAces.AceCriteria, List<PackageId>> violators = new HashMap<>();
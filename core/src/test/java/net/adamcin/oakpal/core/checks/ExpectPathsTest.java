@@ -20,6 +20,8 @@ import net.adamcin.oakpal.api.Rule;
 import net.adamcin.oakpal.api.RuleType;
 import net.adamcin.oakpal.api.Severity;
 import net.adamcin.oakpal.api.Violation;
+import org.apache.jackrabbit.oak.spi.state.NodeBuilder;
+import org.apache.jackrabbit.oak.spi.state.NodeState;
 import org.apache.jackrabbit.vault.packaging.PackageId;
 import org.junit.Assert;
 import org.junit.Test;
@@ -34,6 +36,7 @@ import java.util.regex.Pattern;
 import static net.adamcin.oakpal.api.JavaxJson.arr;
 import static net.adamcin.oakpal.api.JavaxJson.key;
 import static net.adamcin.oakpal.api.JavaxJson.obj;
+import static org.apache.jackrabbit.oak.plugins.memory.EmptyNodeState.EMPTY_NODE;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertTrue;
@@ -144,6 +147,46 @@ public class ExpectPathsTest {
         assertTrue("ends with /foo1: " + violation2.getDescription(), violation2.getDescription().endsWith(foo1));
     }
 
+    @Test
+    public void testItemExists() {
+        final NodeBuilder builder = EMPTY_NODE.builder();
+        builder.child("foo").setProperty("prop", "value");
+        builder.child(":hidden");
+        final NodeState root = builder.getNodeState();
+        assertTrue("expect root", ExpectPaths.Check.itemExists(root, "/"));
+        assertTrue("expect node", ExpectPaths.Check.itemExists(root, "/foo"));
+        assertTrue("expect property", ExpectPaths.Check.itemExists(root, "/foo/prop"));
+        assertFalse("expect missing", ExpectPaths.Check.itemExists(root, "/foo/missing"));
+        assertFalse("expect missing parent", ExpectPaths.Check.itemExists(root, "/bar/prop"));
+        assertFalse("expect hidden", ExpectPaths.Check.itemExists(root, "/:hidden"));
+        assertFalse("expect relative", ExpectPaths.Check.itemExists(root, "foo"));
+    }
+
+    @Test
+    public void testAfterExtractState() {
+        final NodeBuilder builder = EMPTY_NODE.builder();
+        builder.child("foo1");
+        final NodeState root = builder.getNodeState();
+        final String foo1 = "/foo1";
+        final String foo2 = "/foo2";
+
+        ExpectPaths.Check check1 = checkFor(key("expectedPaths", arr(foo1, foo2)).get());
+        check1.afterExtractState(PackageId.fromString("some"), root);
+        check1.finishedScan();
+        Collection<Violation> violations1 = check1.getReportedViolations();
+        assertEquals("expect 1 violation", 1, violations1.size());
+        final Violation violation1 = violations1.iterator().next();
+        assertTrue("ends with /foo2: " + violation1.getDescription(), violation1.getDescription().endsWith(foo2));
+
+        ExpectPaths.Check check2 = checkFor(key("notExpectedPaths", arr(foo1, foo2)).get());
+        check2.afterExtractState(PackageId.fromString("some"), root);
+        check2.finishedScan();
+        Collection<Violation> violations2 = check2.getReportedViolations();
+        assertEquals("expect 1 violation", 1, violations2.size());
+        final Violation violation2 = violations2.iterator().next();
+        assertTrue("ends with /foo1: " + violation2.getDescription(), violation2.getDescription().endsWith(foo1));
+    }
+
     @Test
     public void testStartedScan() throws Exception {
         ExpectPaths.Check check = checkFor(key(ExpectPaths.keys().expectedPaths(), arr("/foo")).get());
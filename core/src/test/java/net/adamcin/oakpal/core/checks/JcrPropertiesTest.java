@@ -16,25 +16,38 @@
 
 package net.adamcin.oakpal.core.checks;
 
+import net.adamcin.oakpal.api.EventMask;
+import net.adamcin.oakpal.api.PathAction;
 import net.adamcin.oakpal.api.ProgressCheck;
 import net.adamcin.oakpal.api.Rule;
 import net.adamcin.oakpal.api.RuleType;
 import net.adamcin.oakpal.api.Severity;
+import net.adamcin.oakpal.api.Violation;
 import net.adamcin.oakpal.core.CheckReport;
 import net.adamcin.oakpal.testing.TestPackageUtil;
 import net.adamcin.oakpal.testing.TestUtil;
+import org.apache.jackrabbit.vault.fs.config.MetaInf;
+import org.apache.jackrabbit.vault.packaging.PackageId;
+import org.apache.jackrabbit.vault.packaging.PackageProperties;
 import org.junit.Assert;
 import org.junit.Test;
 
+import javax.jcr.Node;
+import javax.jcr.RepositoryException;
+import javax.jcr.Session;
 import java.io.File;
+import java.util.Collection;
 import java.util.Collections;
+import java.util.List;
 import java.util.ResourceBundle;
 import java.util.regex.Pattern;
+import java.util.stream.Collectors;
 
 import static java.util.Collections.emptyList;
 import static net.adamcin.oakpal.api.JavaxJson.arr;
 import static net.adamcin.oakpal.api.JavaxJson.key;
 import static net.adamcin.oakpal.api.JavaxJson.obj;
+import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertSame;
 import static org.junit.Assert.assertTrue;
 
@@ -264,6 +277,62 @@ public class JcrPropertiesTest extends ProgressCheckTestBase {
         });
     }
 
+    @Test
+    public void testNodeStateParity() throws Exception {
+        File playground = TestPackageUtil.prepareTestPackageFromFolder("playground.zip",
+                new File("src/test/resources/jcr_prop_constraints_playground"));
+        final JcrProperties.Check check = (JcrProperties.Check) new JcrProperties().newInstance(obj()
+                .key("scopeNodeTypes", arr("nt:unstructured", "sling:Folder"))
+                .key("properties", arr()
+                        .val(obj().key("name", "jcr:title")
+                                .key("valueRules", arr(new Rule(RuleType.DENY, Pattern.compile("Acme")))))
+                        .val(obj().key("name", "multiString").key("requireType", "Long"))
+                        .val(obj().key("name", "singleString").key("denyIfAbsent", true))
+                )
+                .get());
+        // hide the node state methods to compare with the reports of the original jcr implementation
+        final ProgressCheck jcrCheck = new ProgressCheck() {
+            @Override
+            public String getCheckName() {
+                return check.getCheckName();
+            }
+
+            @Override
+            public EventMask getEventMask() {
+                return check.getEventMask();
+            }
+
+            @Override
+            public void startedScan() {
+                check.startedScan();
+            }
+
+            @Override
+            public void beforeExtract(final PackageId packageId, final Session inspectSession,
+                                      final PackageProperties packageProperties, final MetaInf metaInf,
+                                      final List<PackageId> subpackages) throws RepositoryException {
+                check.beforeExtract(packageId, inspectSession, packageProperties, metaInf, subpackages);
+            }
+
+            @Override
+            public void importedPath(final PackageId packageId, final String path, final Node node,
+                                     final PathAction action) throws RepositoryException {
+                check.importedPath(packageId, path, node, action);
+            }
+
+            @Override
+            public Collection<Violation> getReportedViolations() {
+                return check.getReportedViolations();
+            }
+        };
+        final List<String> jcrViolations = scanWithCheck(jcrCheck, playground).getViolations().stream()
+                .map(Violation::getDescription).collect(Collectors.toList());
+        final List<String> stateViolations = scanWithCheck(check, playground).getViolations().stream()
+                .map(Violation::getDescription).collect(Collectors.toList());
+        assertFalse("expect violations", jcrViolations.isEmpty());
+        Assert.assertEquals("expect same violations", jcrViolations, stateViolations);
+    }
+
     @Test
     public void testSetResourceBundle() {
         final JcrProperties.ResourceBundleHolder resourceBundleHolder =
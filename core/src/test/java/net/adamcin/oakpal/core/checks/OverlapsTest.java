@@ -19,11 +19,20 @@ package net.adamcin.oakpal.core.checks;
 import net.adamcin.oakpal.api.ProgressCheck;
 import net.adamcin.oakpal.core.CheckReport;
 import net.adamcin.oakpal.testing.TestUtil;
+import org.apache.jackrabbit.vault.fs.api.PathFilterSet;
+import org.apache.jackrabbit.vault.fs.api.WorkspaceFilter;
+import org.apache.jackrabbit.vault.fs.config.DefaultWorkspaceFilter;
+import org.apache.jackrabbit.vault.packaging.PackageId;
 import org.junit.Assert;
 import org.junit.Test;
 
+import java.util.Arrays;
+import java.util.HashSet;
+
 import static net.adamcin.oakpal.api.JavaxJson.obj;
+import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.mock;
 
 public class OverlapsTest extends ProgressCheckTestBase {
     @Test
@@ -61,4 +70,37 @@ public class OverlapsTest extends ProgressCheckTestBase {
                     .allMatch(viol -> !viol.getPackages().isEmpty()));
         });
     }
+
+    @Test
+    public void testFilterRootIndex() throws Exception {
+        final PackageId fooId = PackageId.fromString("my_packages:foo:1.0");
+        final PackageId fooBarId = PackageId.fromString("my_packages:foo_bar:1.0");
+        final PackageId rootId = PackageId.fromString("my_packages:root:1.0");
+        final PackageId otherId = PackageId.fromString("my_packages:other:1.0");
+        final DefaultWorkspaceFilter fooFilter = new DefaultWorkspaceFilter();
+        fooFilter.add(new PathFilterSet("/tmp/foo"));
+        final DefaultWorkspaceFilter fooBarFilter = new DefaultWorkspaceFilter();
+        fooBarFilter.add(new PathFilterSet("/tmp/foo/bar"));
+        fooBarFilter.add(new PathFilterSet("/apps/bar"));
+        final DefaultWorkspaceFilter rootFilter = new DefaultWorkspaceFilter();
+        rootFilter.add(new PathFilterSet("/"));
+
+        final Overlaps.FilterRootIndex index = new Overlaps.FilterRootIndex();
+        index.put(fooId, fooFilter);
+        index.put(fooBarId, fooBarFilter);
+        index.put(rootId, rootFilter);
+        index.put(otherId, mock(WorkspaceFilter.class));
+
+        assertEquals("root", new HashSet<>(Arrays.asList(rootId, otherId)), index.candidates("/"));
+        assertEquals("tmp", new HashSet<>(Arrays.asList(rootId, otherId)), index.candidates("/tmp"));
+        assertEquals("foo", new HashSet<>(Arrays.asList(rootId, otherId, fooId)), index.candidates("/tmp/foo"));
+        assertEquals("foobar", new HashSet<>(Arrays.asList(rootId, otherId)), index.candidates("/tmp/foobar"));
+        assertEquals("foo/bar/baz", new HashSet<>(Arrays.asList(rootId, otherId, fooId, fooBarId)),
+                index.candidates("/tmp/foo/bar/baz"));
+        assertEquals("apps/bar", new HashSet<>(Arrays.asList(rootId, otherId, fooBarId)),
+                index.candidates("/apps/bar/jcr:content"));
+
+        index.clear();
+        assertTrue("empty after clear", index.candidates("/tmp/foo").isEmpty());
+    }
 }
@@ -89,12 +89,26 @@ abstract class AbstractITestMojo extends AbstractCommonMojo {
     }
 
     protected void reactToReports(final @NotNull List<CheckReport> reports) throws MojoFailureException {
+        reactToReports(reports, false);
+    }
+
+    /**
+     * Log the non-empty reports, and fail if any of their violations, or any violation already logged by
+     * {@link #logViolation(Violation)}, is at or above {@link #failOnSeverity}.
+     *
+     * @param reports       the reports to log
+     * @param alreadyFailed true if a violation at or above the severity has already been logged
+     * @throws MojoFailureException if any violation is at or above the severity
+     */
+    void reactToReports(final @NotNull List<CheckReport> reports, final boolean alreadyFailed)
+            throws MojoFailureException {
         String errorMessage = String.format("** Violations were reported at or above severity: %s **", failOnSeverity);
 
         List<CheckReport> nonEmptyReports = reports.stream()
                 .filter(r -> !r.getViolations().isEmpty())
                 .collect(Collectors.toList());
-        boolean shouldFail = nonEmptyReports.stream().anyMatch(r -> !r.getViolations(failOnSeverity).isEmpty());
+        boolean shouldFail = alreadyFailed
+                || nonEmptyReports.stream().anyMatch(r -> !r.getViolations(failOnSeverity).isEmpty());
 
         if (!nonEmptyReports.isEmpty()) {
             getLog().info("OakPAL Check Reports");
@@ -102,17 +116,7 @@ abstract class AbstractITestMojo extends AbstractCommonMojo {
         for (CheckReport r : nonEmptyReports) {
             getLog().info(String.format("  %s", String.valueOf(r.getCheckName())));
             for (Violation v : r.getViolations()) {
-                Set<String> packageIds = v.getPackages().stream()
-                        .map(PackageId::getDownloadName)
-                        .collect(Collectors.toSet());
-                String violLog = !packageIds.isEmpty()
-                        ? String.format("   +- <%s> %s %s", v.getSeverity(), v.getDescription(), packageIds)
-                        : String.format("   +- <%s> %s", v.getSeverity(), v.getDescription());
-                if (v.getSeverity().isLessSevereThan(failOnSeverity)) {
-                    getLog().info(" " + violLog);
-                } else {
-                    getLog().error("" + violLog);
-                }
+                logViolation(v);
             }
         }
 
@@ -122,6 +126,28 @@ abstract class AbstractITestMojo extends AbstractCommonMojo {
         }
     }
 
+    /**
+     * Log a single violation, as an error if it is at or above {@link #failOnSeverity}.
+     *
+     * @param v the violation
+     * @return true if the violation is at or above the severity
+     */
+    boolean logViolation(final @NotNull Violation v) {
+        Set<String> packageIds = v.getPackages().stream()
+                .map(PackageId::getDownloadName)
+                .collect(Collectors.toSet());
+        String violLog = !packageIds.isEmpty()
+                ? String.format("   +- <%s> %s %s", v.getSeverity(), v.getDescription(), packageIds)
+                : String.format("   +- <%s> %s", v.getSeverity(), v.getDescription());
+        if (v.getSeverity().isLessSevereThan(failOnSeverity)) {
+            getLog().info(" " + violLog);
+            return false;
+        } else {
+            getLog().error("" + violLog);
+            return true;
+        }
+    }
+
     void executeGuardedIntegrationTest() throws MojoExecutionException, MojoFailureException {
 
     }
@@ -21,9 +21,12 @@ import java.io.IOException;
 import java.util.ArrayList;
 import java.util.List;
 
+import net.adamcin.oakpal.api.Fun;
 import net.adamcin.oakpal.api.ProgressCheck;
 import net.adamcin.oakpal.api.ProgressCheckFactory;
+import net.adamcin.oakpal.api.Severity;
 import net.adamcin.oakpal.core.AbortedScanException;
+import net.adamcin.oakpal.core.CheckBudget;
 import net.adamcin.oakpal.core.CheckReport;
 import net.adamcin.oakpal.core.CheckSpec;
 import net.adamcin.oakpal.core.DefaultErrorListener;
@@ -31,8 +34,12 @@ import net.adamcin.oakpal.core.FileBlobMemoryNodeStore;
 import net.adamcin.oakpal.core.ForcedRoot;
 import net.adamcin.oakpal.core.InstallHookPolicy;
 import net.adamcin.oakpal.core.JcrNs;
+import net.adamcin.oakpal.core.NodeStoreType;
 import net.adamcin.oakpal.core.OakMachine;
+import net.adamcin.oakpal.core.OakpalPlan;
 import net.adamcin.oakpal.core.ReportMapper;
+import net.adamcin.oakpal.core.ScanMetrics;
+import net.adamcin.oakpal.core.ScanResultCache;
 import net.adamcin.oakpal.maven.component.JsonConverter;
 import org.apache.maven.plugin.MojoFailureException;
 import org.apache.maven.plugins.annotations.Parameter;
@@ -293,6 +300,32 @@ abstract class AbstractITestWithPlanMojo extends AbstractITestMojo implements Pl
     @Parameter
     protected InstallHookPolicy installHookPolicy;
 
+    /**
+     * Specify the type of node store to use for the scan.
+     * <dl>
+     * <dt>{@code MEMORY}</dt>
+     * <dd>(default) Keep the repository state in a MemoryNodeStore on the heap, or with binaries in the blob store
+     * configured by {@code storeBlobs} and {@code blobStorePath}.</dd>
+     * <dt>{@code SEGMENT}</dt>
+     * <dd>Use a temporary segment tar node store with memory-mapped files, which is deleted at the end of the scan.
+     * This keeps less repository state on the heap for large scans, and overrides {@code storeBlobs}.</dd>
+     * </dl>
+     *
+     * @since 2.1.0
+     */
+    @Parameter(property = "oakpal.nodeStoreType")
+    protected NodeStoreType nodeStoreType;
+
+    /**
+     * Specify a minimum severity which stops the scan as soon as a violation at or above it has been reported. The
+     * remaining packages and subpackages are skipped, and the partial reports are evaluated against
+     * {@code failOnSeverity} as usual. Set this to the same value as {@code failOnSeverity} to shorten failing builds.
+     *
+     * @since 2.1.0
+     */
+    @Parameter(property = "oakpal.failFastSeverity")
+    protected Severity failFastSeverity;
+
     /**
      * Set to true to suppress progress check events generated by subpackage installation (and the resulting violations)
      * during the scan. Subpackages will still be installed, and fatal package exceptions will still fail the scan.
@@ -332,6 +365,54 @@ abstract class AbstractITestWithPlanMojo extends AbstractITestMojo implements Pl
     @Parameter(defaultValue = "${project.build.directory}/oakpal-plugin/blobs")
     protected String blobStorePath;
 
+    /**
+     * Set to true to disable the scan result cache. By default, check reports are stored as json in the
+     * {@code resultCacheDir}, keyed by a hash of the plan, the check implementations, the pre-install packages, and
+     * the scanned package files. Subsequent scans with the same key return the stored reports without
+     * performing the scan.
+     *
+     * @since 2.1.0
+     */
+    @Parameter(property = "oakpal.noResultCache")
+    protected boolean noResultCache;
+
+    /**
+     * Set to true to record invocation counts and elapsed times of each check callback, and of the extract and save
+     * phases of each scanned package, in a {@code metrics} section of the summary file. The scan result cache is
+     * skipped when metrics are recorded, because cached reports come without any metrics.
+     *
+     * @since 2.1.0
+     */
+    @Parameter(property = "oakpal.metrics")
+    protected boolean metrics;
+
+    /**
+     * Specify a maximum elapsed time in milliseconds for a single check callback. A check which exceeds it receives no
+     * further callbacks for the rest of the scan, and is reported as a MAJOR violation. Set to 0 for no limit.
+     *
+     * @since 2.1.0
+     */
+    @Parameter(property = "oakpal.callbackTimeBudget")
+    protected long callbackTimeBudget;
+
+    /**
+     * Specify a maximum elapsed time in milliseconds for all callbacks of a single check during the scan. A check
+     * which exceeds it receives no further callbacks for the rest of the scan, and is reported as a MAJOR violation.
+     * Set to 0 for no limit.
+     *
+     * @since 2.1.0
+     */
+    @Parameter(property = "oakpal.checkTimeBudget")
+    protected long checkTimeBudget;
+
+    /**
+     * Specify a different scan result cache directory.
+     *
+     * @since 2.1.0
+     */
+    @Parameter(defaultValue = "${project.build.directory}/oakpal-plugin/results")
+    protected File resultCacheDir;
+
     @Override
     public final PlanBuilderParams getPlanBuilderParams() {
         return this;
@@ -392,20 +473,66 @@ abstract class AbstractITestWithPlanMojo extends AbstractITestMojo implements Pl
         return installHookPolicy;
     }
 
+    @Override
+    public NodeStoreType getNodeStoreType() {
+        return nodeStoreType;
+    }
+
+    @Override
+    public Severity getFailFastSeverity() {
+        return failFastSeverity;
+    }
+
+    /**
+     * The result cache is skipped when metrics are recorded, because cached reports come without any metrics.
+     *
+     * @return true if the scan should not use the result cache
+     */
+    boolean isResultCacheDisabled() {
+        return noResultCache || resultCacheDir == null || metrics;
+    }
+
     protected void performScan(final @NotNull List<File> scanFiles) throws MojoFailureException {
         List<CheckReport> reports;
+        final ScanMetrics scanMetrics = metrics ? new ScanMetrics() : null;
+        final CheckBudget checkBudget = CheckBudget.ofMillis(callbackTimeBudget, checkTimeBudget);
         try {
-
-            final OakMachine.Builder machineBuilder = buildPlan().toOakMachineBuilder(new DefaultErrorListener(),
-                    Thread.currentThread().getContextClassLoader());
-            if (storeBlobs && blobStorePath != null && !blobStorePath.isEmpty()) {
-                machineBuilder.withNodeStoreSupplier(() -> new FileBlobMemoryNodeStore(blobStorePath));
-            }
-            if (silenceAllSubpackages) {
-                machineBuilder.withSubpackageSilencer((subpackageId, parentId) -> true);
+            final OakpalPlan plan = buildPlan();
+            final ClassLoader classLoader = Thread.currentThread().getContextClassLoader();
+            final Fun.ThrowingSupplier<OakMachine> machine = () -> {
+                final OakMachine.Builder machineBuilder = plan.toOakMachineBuilder(new DefaultErrorListener(),
+                        classLoader).withScanMetrics(scanMetrics).withCheckBudget(checkBudget);
+                if (plan.getNodeStoreType() != NodeStoreType.SEGMENT
+                        && storeBlobs && blobStorePath != null && !blobStorePath.isEmpty()) {
+                    machineBuilder.withNodeStoreSupplier(() -> new FileBlobMemoryNodeStore(blobStorePath));
+                }
+                if (silenceAllSubpackages) {
+                    machineBuilder.withSubpackageSilencer((subpackageId, parentId) -> true);
+                }
+                return machineBuilder.build();
+            };
+            if (isResultCacheDisabled()) {
+                reports = machine.tryGet().scanPackages(scanFiles);
+            } else {
+                final String key = ScanResultCache.computeKey(plan, classLoader, scanFiles,
+                        "silenceAllSubpackages=" + silenceAllSubpackages,
+                        "checkBudget=" + checkBudget);
+                final ScanResultCache cache = new ScanResultCache(resultCacheDir);
+                final List<CheckReport> cached = cache.load(key);
+                if (cached != null) {
+                    getLog().debug("Using cached check reports for key " + key);
+                    reports = cached;
+                } else {
+                    final OakMachine oak = machine.tryGet();
+                    reports = oak.scanPackages(scanFiles);
+                    if (oak.hasQuarantinedChecks()) {
+                        // the reports of a scan which quarantined any checks depend on timing.
+                        getLog().debug("Not caching check reports with quarantined checks for key " + key);
+                    } else {
+                        cache.store(key, reports);
+                    }
+                }
             }
-            final OakMachine machine = machineBuilder.build();
-            reports = machine.scanPackages(scanFiles);
         } catch (AbortedScanException e) {
             String currentFilePath = e.getCurrentPackageFile()
                     .map(f -> "Failed package: " + f.getAbsolutePath()).orElse("");
@@ -415,7 +542,7 @@ abstract class AbstractITestWithPlanMojo extends AbstractITestMojo implements Pl
         }
 
         try {
-            ReportMapper.writeReportsToFile(reports, summaryFile);
+            ReportMapper.writeReportsToFile(reports, scanMetrics, summaryFile);
             getLog().info("Check report summary written to " + summaryFile.getPath());
         } catch (final IOException e) {
             throw new MojoFailureException("Failed to write summary reports.", e);
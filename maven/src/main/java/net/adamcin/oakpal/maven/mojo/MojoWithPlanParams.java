@@ -166,6 +166,8 @@ interface MojoWithPlanParams extends MojoWithCommonParams, MojoWithRepositoryPar
         planBuilder.withForcedRoots(params.getForcedRoots());
         planBuilder.withEnablePreInstallHooks(params.isEnablePreInstallHooks());
         planBuilder.withInstallHookPolicy(params.getInstallHookPolicy());
+        planBuilder.withNodeStoreType(params.getNodeStoreType());
+        planBuilder.withFailFastSeverity(params.getFailFastSeverity());
 
         // get pre-install files
         final List<File> preInstall = getPreInstallFiles(params);
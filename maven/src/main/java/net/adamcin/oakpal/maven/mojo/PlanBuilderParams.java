@@ -3,10 +3,12 @@ package net.adamcin.oakpal.maven.mojo;
 import java.io.File;
 import java.util.List;
 
+import net.adamcin.oakpal.api.Severity;
 import net.adamcin.oakpal.core.CheckSpec;
 import net.adamcin.oakpal.core.ForcedRoot;
 import net.adamcin.oakpal.core.InstallHookPolicy;
 import net.adamcin.oakpal.core.JcrNs;
+import net.adamcin.oakpal.core.NodeStoreType;
 
 public interface PlanBuilderParams {
     List<DependencyFilter> getPreInstallArtifacts();
@@ -30,4 +32,8 @@ public interface PlanBuilderParams {
     boolean isEnablePreInstallHooks();
 
     InstallHookPolicy getInstallHookPolicy();
+
+    NodeStoreType getNodeStoreType();
+
+    Severity getFailFastSeverity();
 }
@@ -4,10 +4,12 @@ import java.io.File;
 import java.util.Collections;
 import java.util.List;
 
+import net.adamcin.oakpal.api.Severity;
 import net.adamcin.oakpal.core.CheckSpec;
 import net.adamcin.oakpal.core.ForcedRoot;
 import net.adamcin.oakpal.core.InstallHookPolicy;
 import net.adamcin.oakpal.core.JcrNs;
+import net.adamcin.oakpal.core.NodeStoreType;
 
 public final class PlanParams implements PlanBuilderParams {
     private List<DependencyFilter> preInstallArtifacts = Collections.emptyList();
@@ -21,6 +23,8 @@ public final class PlanParams implements PlanBuilderParams {
     private List<String> checklists = Collections.emptyList();
     private boolean enablePreInstallHooks;
     private InstallHookPolicy installHookPolicy;
+    private NodeStoreType nodeStoreType;
+    private Severity failFastSeverity;
 
     @Override
     public List<DependencyFilter> getPreInstallArtifacts() {
@@ -121,6 +125,24 @@ public final class PlanParams implements PlanBuilderParams {
         this.installHookPolicy = installHookPolicy;
     }
 
+    @Override
+    public NodeStoreType getNodeStoreType() {
+        return nodeStoreType;
+    }
+
+    public void setNodeStoreType(final NodeStoreType nodeStoreType) {
+        this.nodeStoreType = nodeStoreType;
+    }
+
+    @Override
+    public Severity getFailFastSeverity() {
+        return failFastSeverity;
+    }
+
+    public void setFailFastSeverity(final Severity failFastSeverity) {
+        this.failFastSeverity = failFastSeverity;
+    }
+
     @Override
     public String toString() {
         return "PlanParams{" +
@@ -135,6 +157,8 @@ public final class PlanParams implements PlanBuilderParams {
                 ", checklists=" + checklists +
                 ", enablePreInstallHooks=" + enablePreInstallHooks +
                 ", installHookPolicy=" + installHookPolicy +
+                ", nodeStoreType=" + nodeStoreType +
+                ", failFastSeverity=" + failFastSeverity +
                 '}';
     }
 }
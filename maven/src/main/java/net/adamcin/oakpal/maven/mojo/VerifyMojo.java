@@ -21,14 +21,17 @@ import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
 
+import net.adamcin.oakpal.api.Violation;
 import net.adamcin.oakpal.core.CheckReport;
 import net.adamcin.oakpal.core.ReportMapper;
+import net.adamcin.oakpal.core.ViolationSink;
 import net.adamcin.oakpal.maven.component.OakpalComponentConfigurator;
 import org.apache.maven.plugin.MojoExecutionException;
 import org.apache.maven.plugin.MojoFailureException;
 import org.apache.maven.plugins.annotations.LifecyclePhase;
 import org.apache.maven.plugins.annotations.Mojo;
 import org.apache.maven.plugins.annotations.Parameter;
+import org.jetbrains.annotations.NotNull;
 
 /**
  * Deferred reporting and reacting to oakpal check reports during the verify phase.
@@ -37,6 +40,7 @@ import org.apache.maven.plugins.annotations.Parameter;
  */
 @Mojo(name = "verify", defaultPhase = LifecyclePhase.VERIFY, configurator = OakpalComponentConfigurator.HINT)
 public class VerifyMojo extends AbstractITestMojo {
+    static final String NDJSON_EXTENSION = ".ndjson";
 
     /**
      * Specifically skip this plugin's execution.
@@ -48,7 +52,9 @@ public class VerifyMojo extends AbstractITestMojo {
 
     /**
      * Specify additional summary files to verify. Non-existent files are ignored, but any failure to read an existing
-     * file will throw a {@link MojoExecutionException}.
+     * file will throw a {@link MojoExecutionException}. Files with the {@code .ndjson} extension, such as those written
+     * by the {@code --ndjson} option of the oakpal CLI, are read and logged one violation per line, without holding
+     * their violations in memory.
      *
      * @since 1.1.0
      */
@@ -62,16 +68,18 @@ public class VerifyMojo extends AbstractITestMojo {
 
     @Override
     void executeGuardedIntegrationTest() throws MojoFailureException {
-        reactToReports(collectReports());
+        final NdjsonViolationLogger ndjsonLogger = new NdjsonViolationLogger();
+        final List<CheckReport> reports = collectReports(ndjsonLogger);
+        reactToReports(reports, ndjsonLogger.isFailed());
     }
 
-    List<CheckReport> collectReports() throws MojoFailureException {
+    List<CheckReport> collectReports(final @NotNull ViolationSink ndjsonSink) throws MojoFailureException {
         List<CheckReport> reports;
         try {
-            reports = new ArrayList<>(readReportsFromFile(summaryFile));
+            reports = new ArrayList<>(readReportsFromFile(summaryFile, ndjsonSink));
             if (summaryFiles != null) {
                 for (File file : summaryFiles) {
-                    reports.addAll(readReportsFromFile(file));
+                    reports.addAll(readReportsFromFile(file, ndjsonSink));
                 }
             }
         } catch (final Exception e) {
@@ -87,4 +95,47 @@ public class VerifyMojo extends AbstractITestMojo {
             return Collections.emptyList();
         }
     }
+
+    /**
+     * Read the reports of a JSON summary file, or pass each violation of an NDJSON summary file to the sink one line
+     * at a time, in which case no reports are returned.
+     *
+     * @param summaryFile the summary file
+     * @param ndjsonSink  the sink to receive the violations of an NDJSON summary file
+     * @return the reports of a JSON summary file
+     * @throws Exception for failing to read the file
+     */
+    static List<CheckReport> readReportsFromFile(final File summaryFile, final @NotNull ViolationSink ndjsonSink)
+            throws Exception {
+        if (summaryFile != null && summaryFile.exists() && summaryFile.getName().endsWith(NDJSON_EXTENSION)) {
+            ReportMapper.readViolationsFromNdjsonFile(summaryFile, ndjsonSink);
+            return Collections.emptyList();
+        }
+        return readReportsFromFile(summaryFile);
+    }
+
+    /**
+     * Logs each violation of the NDJSON summary files as it is read, under its check name whenever the check name
+     * changes, and keeps only whether any of them is at or above the {@link #failOnSeverity}.
+     */
+    final class NdjsonViolationLogger implements ViolationSink {
+        private String lastCheckName;
+        private boolean failed;
+
+        @Override
+        public void reportedViolation(final @NotNull String checkName, final @NotNull Violation violation) {
+            if (lastCheckName == null) {
+                getLog().info("OakPAL Check Violations");
+            }
+            if (!checkName.equals(lastCheckName)) {
+                getLog().info(String.format("  %s", checkName));
+                lastCheckName = checkName;
+            }
+            failed |= logViolation(violation);
+        }
+
+        boolean isFailed() {
+            return failed;
+        }
+    }
 }
@@ -16,22 +16,34 @@
 
 package net.adamcin.oakpal.maven.mojo;
 
+import net.adamcin.oakpal.api.Severity;
 import net.adamcin.oakpal.core.AbortedScanException;
 import net.adamcin.oakpal.core.CheckReport;
 import net.adamcin.oakpal.core.CheckSpec;
 import net.adamcin.oakpal.core.ForcedRoot;
 import net.adamcin.oakpal.core.InstallHookPolicy;
 import net.adamcin.oakpal.core.JcrNs;
+import net.adamcin.oakpal.core.NodeStoreType;
 import net.adamcin.oakpal.api.Nothing;
 import net.adamcin.oakpal.core.ReportMapper;
+import net.adamcin.oakpal.core.ScanMetrics;
+import net.adamcin.oakpal.core.SimpleProgressCheck;
 import net.adamcin.oakpal.testing.TestPackageUtil;
 import org.apache.commons.io.FileUtils;
+import org.apache.jackrabbit.vault.packaging.PackageId;
 import org.apache.maven.plugin.MojoFailureException;
 import org.jetbrains.annotations.NotNull;
 import org.junit.Before;
 import org.junit.Test;
 
+import javax.jcr.Session;
+import javax.json.Json;
+import javax.json.JsonObject;
+import javax.json.JsonReader;
 import java.io.File;
+import java.io.FileInputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
 import java.util.Collections;
 import java.util.List;
 import java.util.Optional;
@@ -146,6 +158,14 @@ public class AbstractITestWithPlanMojoTest {
         assertSame("expect same installHookPolicy",
                 PROHIBIT, mojo.getInstallHookPolicy());
 
+        assertNull("expect null nodeStoreType by default", mojo.getNodeStoreType());
+        mojo.nodeStoreType = NodeStoreType.SEGMENT;
+        assertSame("expect same nodeStoreType", NodeStoreType.SEGMENT, mojo.getNodeStoreType());
+
+        assertNull("expect null failFastSeverity by default", mojo.getFailFastSeverity());
+        mojo.failFastSeverity = Severity.MAJOR;
+        assertSame("expect same failFastSeverity", Severity.MAJOR, mojo.getFailFastSeverity());
+
         PlanBuilderParams params = mojo.getPlanBuilderParams();
         assertEquals("expect param", Collections.singletonList(preInstallArtifact), params.getPreInstallArtifacts());
         assertEquals("expect param", Collections.singletonList(preInstallFile), params.getPreInstallFiles());
@@ -158,6 +178,8 @@ public class AbstractITestWithPlanMojoTest {
         assertEquals("expect param", Collections.singletonList(expectChecklist), params.getChecklists());
         assertTrue("expect param", params.isEnablePreInstallHooks());
         assertEquals("expect param", PROHIBIT, params.getInstallHookPolicy());
+        assertEquals("expect param", NodeStoreType.SEGMENT, params.getNodeStoreType());
+        assertEquals("expect param", Severity.MAJOR, params.getFailFastSeverity());
     }
 
     @Test(expected = AbortedScanException.class)
@@ -239,6 +261,118 @@ public class AbstractITestWithPlanMojoTest {
 
     }
 
+    @Test
+    public void testPerformScan_resultCache() throws Exception {
+        final File testOutDir = new File(testOutBaseDir, "testPerformScan_resultCache");
+        FileUtils.deleteDirectory(testOutDir);
+        testOutDir.mkdirs();
+        final File summaryFile = new File(testOutDir, "summary.json");
+        final File resultCacheDir = new File(testOutDir, "results");
+        AbstractITestWithPlanMojo mojo = newMojo();
+        mojo.deferBuildFailure = true;
+        mojo.resultCacheDir = resultCacheDir;
+        scanWithViolations(mojo, summaryFile);
+        final File[] resultFiles = resultCacheDir.listFiles();
+        assertNotNull("expect result cache dir", resultFiles);
+        assertEquals("expect one cached result", 1, resultFiles.length);
+        assertEquals("expect same reports in cache and summary",
+                ReportMapper.reportsToJson(ReportMapper.readReportsFromFile(summaryFile)),
+                ReportMapper.reportsToJson(ReportMapper.readReportsFromFile(resultFiles[0])));
+
+        // overwrite the cached result to prove that the next scan reads it instead of scanning.
+        ReportMapper.writeReportsToFile(Collections.emptyList(), resultFiles[0]);
+        final File testPackage = TestPackageUtil.prepareTestPackage("tmp_foo_bar.zip");
+        mojo.performScan(Collections.singletonList(testPackage));
+        assertTrue("expect cached empty reports", ReportMapper.readReportsFromFile(summaryFile).isEmpty());
+
+        mojo.noResultCache = true;
+        mojo.performScan(Collections.singletonList(testPackage));
+        assertFalse("expect scanned reports", ReportMapper.readReportsFromFile(summaryFile).isEmpty());
+    }
+
+    /**
+     * A check which always exceeds a 1 ms callback time budget.
+     */
+    public static final class SlowCheck extends SimpleProgressCheck {
+        @Override
+        public void afterExtract(final PackageId packageId, final Session inspectSession) {
+            try {
+                Thread.sleep(50L);
+            } catch (final InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    @Test
+    public void testPerformScan_resultCacheSkippedForQuarantinedChecks() throws Exception {
+        final File testOutDir = new File(testOutBaseDir, "testPerformScan_resultCacheSkippedForQuarantinedChecks");
+        FileUtils.deleteDirectory(testOutDir);
+        testOutDir.mkdirs();
+        final File summaryFile = new File(testOutDir, "summary.json");
+        final File resultCacheDir = new File(testOutDir, "results");
+        AbstractITestWithPlanMojo mojo = newMojo();
+        mojo.deferBuildFailure = true;
+        mojo.resultCacheDir = resultCacheDir;
+        mojo.summaryFile = summaryFile;
+        mojo.checks.add(CheckSpec.fromJson(key("impl", SlowCheck.class.getName()).get()));
+        final File testPackage = TestPackageUtil.prepareTestPackage("tmp_foo_bar.zip");
+
+        mojo.callbackTimeBudget = 1L;
+        mojo.performScan(Collections.singletonList(testPackage));
+        assertTrue("expect budget violation", ReportMapper.readReportsFromFile(summaryFile).stream()
+                .anyMatch(report -> !report.getViolations().isEmpty()));
+        final File[] quarantinedFiles = resultCacheDir.listFiles();
+        assertTrue("expect no cached result for quarantined checks",
+                quarantinedFiles == null || quarantinedFiles.length == 0);
+
+        mojo.callbackTimeBudget = 0L;
+        mojo.performScan(Collections.singletonList(testPackage));
+        final File[] resultFiles = resultCacheDir.listFiles();
+        assertNotNull("expect result cache dir", resultFiles);
+        assertEquals("expect one cached result without a budget", 1, resultFiles.length);
+    }
+
+    @Test
+    public void testIsResultCacheDisabled() throws Exception {
+        AbstractITestWithPlanMojo mojo = newMojo();
+        assertTrue("expect disabled without a result cache dir", mojo.isResultCacheDisabled());
+        mojo.resultCacheDir = new File(testOutBaseDir, "testIsResultCacheDisabled");
+        assertFalse("expect enabled with a result cache dir", mojo.isResultCacheDisabled());
+        mojo.metrics = true;
+        assertTrue("expect disabled with metrics", mojo.isResultCacheDisabled());
+        mojo.metrics = false;
+        mojo.noResultCache = true;
+        assertTrue("expect disabled with noResultCache", mojo.isResultCacheDisabled());
+    }
+
+    @Test
+    public void testPerformScan_metrics() throws Exception {
+        final File testOutDir = new File(testOutBaseDir, "testPerformScan_metrics");
+        FileUtils.deleteDirectory(testOutDir);
+        testOutDir.mkdirs();
+        final File summaryFile = new File(testOutDir, "summary.json");
+        AbstractITestWithPlanMojo mojo = newMojo();
+        mojo.deferBuildFailure = true;
+        scanWithViolations(mojo, summaryFile);
+        assertFalse("expect no metrics by default", readJsonObject(summaryFile)
+                .containsKey(ReportMapper.keys().metrics()));
+
+        mojo.metrics = true;
+        scanWithViolations(mojo, summaryFile);
+        final JsonObject metrics = readJsonObject(summaryFile).getJsonObject(ReportMapper.keys().metrics());
+        assertNotNull("expect metrics", metrics);
+        assertEquals("expect one package", 1, metrics.getJsonArray(ScanMetrics.keys().packages()).size());
+        assertFalse("expect reports still readable", ReportMapper.readReportsFromFile(summaryFile).isEmpty());
+    }
+
+    static JsonObject readJsonObject(final @NotNull File jsonFile) throws Exception {
+        try (JsonReader reader = Json.createReader(new InputStreamReader(new FileInputStream(jsonFile),
+                StandardCharsets.UTF_8))) {
+            return reader.readObject();
+        }
+    }
+
     @Test
     public void testPerformScan_deferBuildFailure() throws Exception {
         final File testOutDir = new File(testOutBaseDir, "testPerformScan_deferBuildFailure");
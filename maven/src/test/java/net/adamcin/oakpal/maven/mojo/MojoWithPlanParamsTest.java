@@ -16,10 +16,12 @@
 
 package net.adamcin.oakpal.maven.mojo;
 
+import net.adamcin.oakpal.api.Severity;
 import net.adamcin.oakpal.core.CheckSpec;
 import net.adamcin.oakpal.core.ForcedRoot;
 import net.adamcin.oakpal.api.Fun;
 import net.adamcin.oakpal.core.InstallHookPolicy;
+import net.adamcin.oakpal.core.NodeStoreType;
 import net.adamcin.oakpal.core.JsonCnd;
 import net.adamcin.oakpal.core.OakpalPlan;
 import net.adamcin.oakpal.core.SlingNodetypesScanner;
@@ -133,6 +135,8 @@ public class MojoWithPlanParamsTest {
         when(params.getForcedRoots()).thenReturn(expectForcedRoots);
         final InstallHookPolicy expectPolicy = InstallHookPolicy.PROHIBIT;
         when(params.getInstallHookPolicy()).thenReturn(expectPolicy);
+        when(params.getNodeStoreType()).thenReturn(NodeStoreType.SEGMENT);
+        when(params.getFailFastSeverity()).thenReturn(Severity.SEVERE);
 
         final OakpalPlan plan = mojo.buildPlan();
         assertNotNull("expect plan", plan);
@@ -142,6 +146,8 @@ public class MojoWithPlanParamsTest {
         assertEquals("expect checks", expectChecks, plan.getChecks());
         assertEquals("expect forcedRoots", expectForcedRoots, plan.getForcedRoots());
         assertSame("expect installHookPolicy", expectPolicy, plan.getInstallHookPolicy());
+        assertSame("expect nodeStoreType", NodeStoreType.SEGMENT, plan.getNodeStoreType());
+        assertSame("expect failFastSeverity", Severity.SEVERE, plan.getFailFastSeverity());
     }
 
     @Test
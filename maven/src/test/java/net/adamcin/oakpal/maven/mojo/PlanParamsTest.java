@@ -16,10 +16,12 @@
 
 package net.adamcin.oakpal.maven.mojo;
 
+import net.adamcin.oakpal.api.Severity;
 import net.adamcin.oakpal.core.CheckSpec;
 import net.adamcin.oakpal.core.ForcedRoot;
 import net.adamcin.oakpal.core.InstallHookPolicy;
 import net.adamcin.oakpal.core.JcrNs;
+import net.adamcin.oakpal.core.NodeStoreType;
 import org.junit.Test;
 
 import java.io.File;
@@ -53,6 +55,8 @@ public class PlanParamsTest {
         assertFalse("expect false slingNodeTypes", params.isSlingNodeTypes());
         assertFalse("expect false enablePreInstallHooks", params.isEnablePreInstallHooks());
         assertNull("expect null installHookPolicy", params.getInstallHookPolicy());
+        assertNull("expect null nodeStoreType", params.getNodeStoreType());
+        assertNull("expect null failFastSeverity", params.getFailFastSeverity());
     }
 
     @Test
@@ -66,6 +70,10 @@ public class PlanParamsTest {
 
         params.setInstallHookPolicy(InstallHookPolicy.PROHIBIT);
         assertSame("expect installHookPolicy", InstallHookPolicy.PROHIBIT, params.getInstallHookPolicy());
+        params.setNodeStoreType(NodeStoreType.SEGMENT);
+        assertSame("expect nodeStoreType", NodeStoreType.SEGMENT, params.getNodeStoreType());
+        params.setFailFastSeverity(Severity.MINOR);
+        assertSame("expect failFastSeverity", Severity.MINOR, params.getFailFastSeverity());
 
         final List<DependencyFilter> expectPreInstallArtifacts = Collections.singletonList(new DependencyFilter());
         params.setPreInstallArtifacts(expectPreInstallArtifacts);
@@ -16,18 +16,29 @@
 
 package net.adamcin.oakpal.maven.mojo;
 
+import net.adamcin.oakpal.api.Severity;
+import net.adamcin.oakpal.api.Violation;
 import net.adamcin.oakpal.core.CheckReport;
+import net.adamcin.oakpal.core.ReportMapper;
+import net.adamcin.oakpal.core.ViolationSink;
 import org.apache.commons.io.FileUtils;
 import org.apache.maven.plugin.MojoFailureException;
 import org.junit.Before;
 import org.junit.Test;
 
 import java.io.File;
+import java.io.FileOutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
 import java.util.List;
+import java.util.stream.Collectors;
 
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
 
 public class VerifyMojoTest {
 
@@ -63,6 +74,47 @@ public class VerifyMojoTest {
         assertEquals("reports not empty", 8, reports.size());
     }
 
+    @Test
+    public void testReadReportsFromFile_ndjson() throws Exception {
+        final File testOutDir = new File(testOutBaseDir, "testReadReportsFromFile_ndjson");
+        FileUtils.deleteDirectory(testOutDir);
+        testOutDir.mkdirs();
+        final File summaryFile = new File(testOutDir, "summary" + VerifyMojo.NDJSON_EXTENSION);
+        final List<CheckReport> reports = VerifyMojo.readReportsFromFile(
+                new File("src/test/resources/unit/justverify/fake-summary.json"));
+        try (Writer writer = new OutputStreamWriter(new FileOutputStream(summaryFile), StandardCharsets.UTF_8)) {
+            final ViolationSink sink = ReportMapper.ndjsonSink(writer);
+            for (CheckReport report : reports) {
+                for (Violation violation : report.getViolations()) {
+                    sink.reportedViolation(report.getCheckName(), violation);
+                }
+            }
+        }
+        final List<Violation> read = new ArrayList<>();
+        assertTrue("no reports from ndjson",
+                VerifyMojo.readReportsFromFile(summaryFile, (checkName, violation) -> read.add(violation)).isEmpty());
+        assertEquals("same violations, one line at a time",
+                reports.stream().flatMap(report -> report.getViolations().stream()).collect(Collectors.toList()),
+                read);
+
+        final VerifyMojo mojo = newMojo();
+        mojo.summaryFile = new File(testOutDir, "summary.json");
+        mojo.summaryFiles.add(summaryFile);
+        mojo.failOnSeverity = Severity.SEVERE;
+        mojo.executeGuardedIntegrationTest();
+        final MockMojoLog log = (MockMojoLog) mojo.getLog();
+        assertEquals("each violation is logged", read.size(),
+                log.entries.stream().filter(entry -> entry.message.contains("+- <")).count());
+
+        mojo.failOnSeverity = Severity.MAJOR;
+        try {
+            mojo.executeGuardedIntegrationTest();
+            fail("expect failure for ndjson violations at or above MAJOR");
+        } catch (final MojoFailureException e) {
+            assertTrue("expect severity message", e.getMessage().contains("MAJOR"));
+        }
+    }
+
     @Test(expected = MojoFailureException.class)
     public void testCollectReports_throws() throws Exception {
         final File testOutDir = new File(testOutBaseDir, "testCollectReports_throws");
@@ -72,7 +124,7 @@ public class VerifyMojoTest {
         final File summaryFile = new File(testOutDir, "summaryDir");
         summaryFile.mkdirs();
         mojo.summaryFile = summaryFile;
-        mojo.collectReports();
+        mojo.collectReports((checkName, violation) -> fail("unexpected violation"));
     }
 
     @Test(expected = MojoFailureException.class)
@@ -86,7 +138,7 @@ public class VerifyMojoTest {
         addSummaryFile.mkdirs();
         mojo.summaryFile = summaryFile;
         mojo.summaryFiles.add(addSummaryFile);
-        mojo.collectReports();
+        mojo.collectReports((checkName, violation) -> fail("unexpected violation"));
     }
 
     @Test
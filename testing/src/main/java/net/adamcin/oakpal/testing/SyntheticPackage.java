@@ -0,0 +1,732 @@
+/*
+ * Copyright 2020 Mark Adamcin
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.adamcin.oakpal.testing;
+
+import org.apache.commons.io.output.CloseShieldOutputStream;
+import org.jetbrains.annotations.NotNull;
+
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import java.util.jar.Attributes;
+import java.util.jar.JarFile;
+import java.util.jar.JarOutputStream;
+import java.util.jar.Manifest;
+import java.util.zip.ZipEntry;
+
+/**
+ * Generates FileVault packages of arbitrary size and shape from parameters, for scale tests and benchmarks that should
+ * not depend on large checked-in fixtures. The same parameters and seed always produce the same package bytes.
+ * <p>
+ * Content is generated as a balanced tree of {@code nt:unstructured} nodes below {@link #getRootPath()}, with one
+ * docview file per top-level child, followed by optional {@code nt:file} binaries, an access control list on the root
+ * node, and embedded subpackages under {@code /etc/packages}. If a maximum depth is set, the first path of the tree is
+ * filled down to that depth before the remaining nodes are spread across the tree, so that the deepest generated
+ * path has exactly the maximum depth, or the node count if it is smaller.
+ *
+ * @since 2.1.0
+ */
+public final class SyntheticPackage {
+    static final String DEFAULT_GROUP = "oakpal-synthetic";
+    static final String DEFAULT_VERSION = "1.0";
+    static final String DEFAULT_ROOT_PATH = "/tmp/oakpal-synthetic";
+    static final String BINARIES_NODE_NAME = "binaries";
+    static final long ENTRY_TIME = 1577836800000L; // 2020-01-01T00:00:00Z
+    private static final String[] ACE_PRIVILEGES = {
+            "jcr:read", "rep:write", "jcr:readAccessControl", "jcr:versionManagement", "jcr:lockManagement"
+    };
+    private static final char[] VALUE_CHARS = "abcdefghijklmnopqrstuvwxyz0123456789".toCharArray();
+
+    private final String group;
+    private final String name;
+    private final String version;
+    private final long seed;
+    private final String rootPath;
+    private final int nodeCount;
+    private final int maxDepth;
+    private final int fanOut;
+    private final int propertiesPerNode;
+    private final int binaryCount;
+    private final int binarySize;
+    private final int aclEntries;
+    private final int filterRoots;
+    private final int filterRules;
+    private final List<SyntheticPackage> subpackages;
+
+    private SyntheticPackage(final @NotNull String group,
+                             final @NotNull String name,
+                             final @NotNull String version,
+                             final long seed,
+                             final @NotNull String rootPath,
+                             final int nodeCount,
+                             final int maxDepth,
+                             final int fanOut,
+                             final int propertiesPerNode,
+                             final int binaryCount,
+                             final int binarySize,
+                             final int aclEntries,
+                             final int filterRoots,
+                             final int filterRules,
+                             final @NotNull List<SyntheticPackage> subpackages) {
+        this.group = group;
+        this.name = name;
+        this.version = version;
+        this.seed = seed;
+        this.rootPath = rootPath;
+        this.nodeCount = nodeCount;
+        this.maxDepth = maxDepth;
+        this.fanOut = fanOut;
+        this.propertiesPerNode = propertiesPerNode;
+        this.binaryCount = binaryCount;
+        this.binarySize = binarySize;
+        this.aclEntries = aclEntries;
+        this.filterRoots = filterRoots;
+        this.filterRules = filterRules;
+        this.subpackages = subpackages;
+    }
+
+    public String getGroup() {
+        return group;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public String getVersion() {
+        return version;
+    }
+
+    public long getSeed() {
+        return seed;
+    }
+
+    public String getRootPath() {
+        return rootPath;
+    }
+
+    public int getNodeCount() {
+        return nodeCount;
+    }
+
+    public int getMaxDepth() {
+        return maxDepth;
+    }
+
+    public int getFanOut() {
+        return fanOut;
+    }
+
+    public int getPropertiesPerNode() {
+        return propertiesPerNode;
+    }
+
+    public int getBinaryCount() {
+        return binaryCount;
+    }
+
+    public int getBinarySize() {
+        return binarySize;
+    }
+
+    public int getAclEntries() {
+        return aclEntries;
+    }
+
+    public int getFilterRoots() {
+        return filterRoots;
+    }
+
+    public int getFilterRules() {
+        return filterRules;
+    }
+
+    public List<SyntheticPackage> getSubpackages() {
+        return subpackages;
+    }
+
+    /**
+     * Get the package id string in the form {@code group:name:version}.
+     *
+     * @return the package id string
+     */
+    public String getPackageId() {
+        return group + ":" + name + ":" + version;
+    }
+
+    /**
+     * Get the conventional package file name in the form {@code name-version.zip}.
+     *
+     * @return the package file name
+     */
+    public String getFileName() {
+        return name + "-" + version + ".zip";
+    }
+
+    /**
+     * Get the repository path of this package when embedded as a subpackage.
+     *
+     * @return the installable path under /etc/packages
+     */
+    String getInstallationPath() {
+        return "/etc/packages/" + group + "/" + getFileName();
+    }
+
+    /**
+     * Get the root paths of the extra filter sets, each of which is created as a single empty node.
+     *
+     * @return the extra filter root paths
+     */
+    List<String> getExtraRootPaths() {
+        final List<String> paths = new ArrayList<>();
+        for (int k = 1; k < filterRoots; k++) {
+            paths.add(rootPath + "-" + k);
+        }
+        return paths;
+    }
+
+    /**
+     * Write this package to a file, replacing it if it exists.
+     *
+     * @param targetFile the file to write
+     * @return the target file
+     * @throws IOException for errors writing the file
+     */
+    public File writeToFile(final @NotNull File targetFile) throws IOException {
+        final File targetDir = targetFile.getAbsoluteFile().getParentFile();
+        if (!targetDir.isDirectory() && !targetDir.mkdirs()) {
+            throw new IOException("failed to create parent target directory: " + targetDir.getAbsolutePath());
+        }
+        try (OutputStream out = new BufferedOutputStream(new FileOutputStream(targetFile))) {
+            writeTo(out);
+        }
+        return targetFile;
+    }
+
+    /**
+     * Write this package to the provided stream. The stream is not closed.
+     *
+     * @param out the stream to write to
+     * @throws IOException for errors writing the stream
+     */
+    public void writeTo(final @NotNull OutputStream out) throws IOException {
+        final Random random = new Random(seed);
+        final Manifest manifest = new Manifest();
+        manifest.getMainAttributes().put(Attributes.Name.MANIFEST_VERSION, "1.0");
+        manifest.getMainAttributes().putValue("Content-Package-Id", getPackageId());
+        manifest.getMainAttributes().putValue("Content-Package-Type", subpackages.isEmpty() ? "content" : "mixed");
+        // the manifest is written as a regular entry so that its timestamp is fixed like the others
+        try (JarOutputStream jarOut = new JarOutputStream(new CloseShieldOutputStream(out));
+             Writer writer = new OutputStreamWriter(jarOut, StandardCharsets.UTF_8)) {
+            putEntry(jarOut, JarFile.MANIFEST_NAME);
+            manifest.write(jarOut);
+            putEntry(jarOut, "META-INF/vault/properties.xml");
+            writeProperties(writer);
+            writer.flush();
+            putEntry(jarOut, "META-INF/vault/filter.xml");
+            writeFilter(writer);
+            writer.flush();
+
+            final String rootDir = "jcr_root" + rootPath;
+            final List<Integer> rootChildren = childSubtreeSizes(nodeCount, getTargetDepth());
+            final List<String> rootChildNames = new ArrayList<>(rootChildren.size());
+            int nextIndex = 1;
+            for (int subtreeSize : rootChildren) {
+                rootChildNames.add("node" + nextIndex);
+                nextIndex += subtreeSize;
+            }
+            putEntry(jarOut, rootDir + "/.content.xml");
+            writeRootDocView(writer, rootChildNames);
+            writer.flush();
+
+            int index = 0;
+            int requiredDepth = getTargetDepth() - 1;
+            for (int subtreeSize : rootChildren) {
+                index++;
+                putEntry(jarOut, rootDir + "/node" + index + "/.content.xml");
+                writer.write("<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n"
+                        + "<jcr:root xmlns:jcr=\"http://www.jcp.org/jcr/1.0\""
+                        + " xmlns:nt=\"http://www.jcp.org/jcr/nt/1.0\"\n"
+                        + "    jcr:primaryType=\"nt:unstructured\"");
+                writeProperties(writer, random);
+                writer.write(">\n");
+                index = writeChildren(writer, random, index, subtreeSize - 1, requiredDepth);
+                requiredDepth = 0;
+                writer.write("</jcr:root>\n");
+                writer.flush();
+            }
+
+            for (int b = 1; b <= binaryCount; b++) {
+                putEntry(jarOut, rootDir + "/" + BINARIES_NODE_NAME + "/file" + b + ".bin");
+                writeBinary(jarOut, random);
+            }
+
+            if (aclEntries > 0) {
+                putEntry(jarOut, rootDir + "/_rep_policy.xml");
+                writePolicy(writer, random, rootChildNames);
+                writer.flush();
+            }
+
+            for (String extraRoot : getExtraRootPaths()) {
+                putEntry(jarOut, "jcr_root" + extraRoot + "/.content.xml");
+                writer.write("<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n"
+                        + "<jcr:root xmlns:jcr=\"http://www.jcp.org/jcr/1.0\""
+                        + " xmlns:nt=\"http://www.jcp.org/jcr/nt/1.0\"\n"
+                        + "    jcr:primaryType=\"nt:unstructured\"/>\n");
+                writer.flush();
+            }
+
+            for (SyntheticPackage subpackage : subpackages) {
+                putEntry(jarOut, "jcr_root" + subpackage.getInstallationPath());
+                subpackage.writeTo(jarOut);
+            }
+        }
+    }
+
+    private static void putEntry(final @NotNull JarOutputStream jarOut, final @NotNull String entryName)
+            throws IOException {
+        final ZipEntry entry = new ZipEntry(entryName);
+        entry.setTime(ENTRY_TIME);
+        jarOut.putNextEntry(entry);
+    }
+
+    private void writeProperties(final @NotNull Writer writer) throws IOException {
+        writer.write("<?xml version=\"1.0\" encoding=\"UTF-8\" standalone=\"no\"?>\n"
+                + "<!DOCTYPE properties SYSTEM \"http://java.sun.com/dtd/properties.dtd\">\n"
+                + "<properties>\n"
+                + "<entry key=\"group\">" + group + "</entry>\n"
+                + "<entry key=\"name\">" + name + "</entry>\n"
+                + "<entry key=\"version\">" + version + "</entry>\n");
+        if (aclEntries > 0) {
+            writer.write("<entry key=\"acHandling\">overwrite</entry>\n");
+        }
+        writer.write("</properties>\n");
+    }
+
+    private void writeFilter(final @NotNull Writer writer) throws IOException {
+        writer.write("<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n"
+                + "<workspaceFilter version=\"1.0\">\n");
+        writer.write("    <filter root=\"" + rootPath + "\">\n");
+        // the include matches all generated content, and the excludes match no generated paths, so that the rules
+        // exercise filter evaluation without changing what is imported.
+        writer.write("        <include pattern=\"" + rootPath + "(/.*)?\"/>\n");
+        for (int r = 1; r < filterRules; r++) {
+            writer.write("        <exclude pattern=\"" + rootPath + "/.*/excluded" + r + "(/.*)?\"/>\n");
+        }
+        writer.write("    </filter>\n");
+        for (String extraRoot : getExtraRootPaths()) {
+            writer.write("    <filter root=\"" + extraRoot + "\"/>\n");
+        }
+        for (SyntheticPackage subpackage : subpackages) {
+            writer.write("    <filter root=\"" + subpackage.getInstallationPath() + "\"/>\n");
+        }
+        writer.write("</workspaceFilter>\n");
+    }
+
+    private void writeRootDocView(final @NotNull Writer writer, final @NotNull List<String> childNames)
+            throws IOException {
+        writer.write("<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n"
+                + "<jcr:root xmlns:jcr=\"http://www.jcp.org/jcr/1.0\""
+                + " xmlns:nt=\"http://www.jcp.org/jcr/nt/1.0\"");
+        if (aclEntries > 0) {
+            writer.write(" xmlns:rep=\"internal\"\n"
+                    + "    jcr:mixinTypes=\"[rep:AccessControllable]\"");
+        }
+        writer.write("\n    jcr:primaryType=\"nt:unstructured\">\n");
+        for (String childName : childNames) {
+            writer.write("    <" + childName + "/>\n");
+        }
+        if (binaryCount > 0) {
+            writer.write("    <" + BINARIES_NODE_NAME + "/>\n");
+        }
+        if (aclEntries > 0) {
+            writer.write("    <rep:policy/>\n");
+        }
+        writer.write("</jcr:root>\n");
+    }
+
+    /**
+     * Get the depth of the deepest generated path below the root node, if a maximum depth is set.
+     *
+     * @return the lesser of the maximum depth and the node count, or 0 if no maximum depth is set
+     */
+    int getTargetDepth() {
+        return maxDepth == Integer.MAX_VALUE ? 0 : Math.min(maxDepth, nodeCount);
+    }
+
+    /**
+     * Split the number of descendants below a node as evenly as possible across at most {@code fanOut} children.
+     *
+     * @param descendants the number of nodes to distribute
+     * @return the size of each child subtree, including the child itself
+     */
+    List<Integer> childSubtreeSizes(final int descendants) {
+        return childSubtreeSizes(descendants, 0);
+    }
+
+    /**
+     * Split the number of descendants below a node as evenly as possible across at most {@code fanOut} children,
+     * except that the first child subtree is given at least enough nodes to reach the required depth below the node.
+     *
+     * @param descendants   the number of nodes to distribute
+     * @param requiredDepth the depth that the first child subtree must reach below the node, or 0
+     * @return the size of each child subtree, including the child itself
+     */
+    List<Integer> childSubtreeSizes(final int descendants, final int requiredDepth) {
+        if (descendants <= 0) {
+            return Collections.emptyList();
+        }
+        final int children = Math.min(fanOut, descendants);
+        final int firstSize = descendants / children + (descendants % children > 0 ? 1 : 0);
+        if (firstSize >= requiredDepth) {
+            return balancedSizes(descendants, children);
+        }
+        final List<Integer> sizes = new ArrayList<>(children);
+        sizes.add(requiredDepth);
+        final int remaining = descendants - requiredDepth;
+        if (remaining > 0) {
+            sizes.addAll(balancedSizes(remaining, Math.min(fanOut - 1, remaining)));
+        }
+        return sizes;
+    }
+
+    private static List<Integer> balancedSizes(final int descendants, final int children) {
+        final List<Integer> sizes = new ArrayList<>(children);
+        for (int c = 0; c < children; c++) {
+            sizes.add(descendants / children + (c < descendants % children ? 1 : 0));
+        }
+        return sizes;
+    }
+
+    /**
+     * Write the docview elements for the descendants of a node, numbering nodes depth-first.
+     *
+     * @return the last node index written
+     */
+    private int writeChildren(final @NotNull Writer writer, final @NotNull Random random,
+                              final int lastIndex, final int descendants, final int requiredDepth)
+            throws IOException {
+        int index = lastIndex;
+        int childRequiredDepth = requiredDepth - 1;
+        for (int subtreeSize : childSubtreeSizes(descendants, requiredDepth)) {
+            index++;
+            final String nodeName = "node" + index;
+            writer.write("<" + nodeName + " jcr:primaryType=\"nt:unstructured\"");
+            writeProperties(writer, random);
+            if (subtreeSize > 1) {
+                writer.write(">\n");
+                index = writeChildren(writer, random, index, subtreeSize - 1, childRequiredDepth);
+                writer.write("</" + nodeName + ">\n");
+            } else {
+                writer.write("/>\n");
+            }
+            childRequiredDepth = 0;
+        }
+        return index;
+    }
+
+    private void writeProperties(final @NotNull Writer writer, final @NotNull Random random) throws IOException {
+        for (int p = 0; p < propertiesPerNode; p++) {
+            writer.write(" prop" + p + "=\"");
+            switch (p % 4) {
+                case 1:
+                    writer.write("{Long}" + random.nextInt(Integer.MAX_VALUE));
+                    break;
+                case 2:
+                    writer.write("{Boolean}" + random.nextBoolean());
+                    break;
+                case 3:
+                    writer.write("[" + randomValue(random) + "," + randomValue(random) + "]");
+                    break;
+                default:
+                    writer.write(randomValue(random));
+                    break;
+            }
+            writer.write("\"");
+        }
+    }
+
+    private static String randomValue(final @NotNull Random random) {
+        final char[] chars = new char[8 + random.nextInt(24)];
+        for (int i = 0; i < chars.length; i++) {
+            chars[i] = VALUE_CHARS[random.nextInt(VALUE_CHARS.length)];
+        }
+        return new String(chars);
+    }
+
+    private void writeBinary(final @NotNull OutputStream out, final @NotNull Random random) throws IOException {
+        final byte[] buffer = new byte[Math.min(binarySize, 8192)];
+        int remaining = binarySize;
+        while (remaining > 0) {
+            final int len = Math.min(remaining, buffer.length);
+            random.nextBytes(buffer);
+            out.write(buffer, 0, len);
+            remaining -= len;
+        }
+    }
+
+    private void writePolicy(final @NotNull Writer writer, final @NotNull Random random,
+                             final @NotNull List<String> childNames) throws IOException {
+        writer.write("<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n"
+                + "<jcr:root xmlns:jcr=\"http://www.jcp.org/jcr/1.0\" xmlns:rep=\"internal\"\n"
+                + "    jcr:primaryType=\"rep:ACL\">\n");
+        for (int a = 1; a <= aclEntries; a++) {
+            final boolean allow = random.nextInt(4) != 0;
+            final String privilege = ACE_PRIVILEGES[random.nextInt(ACE_PRIVILEGES.length)];
+            final String aceName = (allow ? "allow" : "deny") + a;
+            writer.write("    <" + aceName + "\n"
+                    + "        jcr:primaryType=\"" + (allow ? "rep:GrantACE" : "rep:DenyACE") + "\"\n"
+                    + "        rep:principalName=\"everyone\"\n"
+                    + "        rep:privileges=\"{Name}[" + privilege + "]\">\n"
+                    + "        <rep:restrictions\n"
+                    + "            jcr:primaryType=\"rep:Restrictions\"\n"
+                    + "            rep:glob=\"/" + (childNames.isEmpty() ? "*"
+                    : childNames.get(random.nextInt(childNames.size()))) + "/*\"/>\n"
+                    + "    </" + aceName + ">\n");
+        }
+        writer.write("</jcr:root>\n");
+    }
+
+    /**
+     * Builder for {@link SyntheticPackage}. All counts default to producing a small package with ten nodes.
+     */
+    public static final class Builder {
+        private String group = DEFAULT_GROUP;
+        private String name = "synthetic";
+        private String version = DEFAULT_VERSION;
+        private long seed = 0L;
+        private String rootPath = DEFAULT_ROOT_PATH;
+        private int nodeCount = 10;
+        private int maxDepth = Integer.MAX_VALUE;
+        private int fanOut = 10;
+        private int propertiesPerNode = 0;
+        private int binaryCount = 0;
+        private int binarySize = 0;
+        private int aclEntries = 0;
+        private int filterRoots = 1;
+        private int filterRules = 1;
+        private final List<SyntheticPackage> subpackages = new ArrayList<>();
+
+        /**
+         * Set the package group.
+         *
+         * @param group the package group
+         * @return my builder self
+         */
+        public Builder withGroup(final @NotNull String group) {
+            this.group = group;
+            return this;
+        }
+
+        /**
+         * Set the package name.
+         *
+         * @param name the package name
+         * @return my builder self
+         */
+        public Builder withName(final @NotNull String name) {
+            this.name = name;
+            return this;
+        }
+
+        /**
+         * Set the package version.
+         *
+         * @param version the package version
+         * @return my builder self
+         */
+        public Builder withVersion(final @NotNull String version) {
+            this.version = version;
+            return this;
+        }
+
+        /**
+         * Set the seed for generated property values, binary content, and access control entries.
+         *
+         * @param seed the random seed
+         * @return my builder self
+         */
+        public Builder withSeed(final long seed) {
+            this.seed = seed;
+            return this;
+        }
+
+        /**
+         * Set the absolute path of the root node of the generated tree, which is also the main filter root.
+         *
+         * @param rootPath the root path
+         * @return my builder self
+         */
+        public Builder withRootPath(final @NotNull String rootPath) {
+            this.rootPath = rootPath;
+            return this;
+        }
+
+        /**
+         * Set the number of nodes to generate below the root node, not counting binaries.
+         *
+         * @param nodeCount the number of nodes
+         * @return my builder self
+         */
+        public Builder withNodeCount(final int nodeCount) {
+            this.nodeCount = nodeCount;
+            return this;
+        }
+
+        /**
+         * Set the maximum depth of the generated tree below the root node. {@link #build()} fails if the node count
+         * does not fit within this depth at the configured fan-out. The first path of the tree is filled down to this
+         * depth, or to the node count if it is smaller, so that the deepest generated path has exactly this depth. If
+         * no maximum depth is set, the tree is balanced.
+         *
+         * @param maxDepth the maximum depth
+         * @return my builder self
+         */
+        public Builder withMaxDepth(final int maxDepth) {
+            this.maxDepth = maxDepth;
+            return this;
+        }
+
+        /**
+         * Set the maximum number of children per node.
+         *
+         * @param fanOut the maximum number of children per node
+         * @return my builder self
+         */
+        public Builder withFanOut(final int fanOut) {
+            this.fanOut = fanOut;
+            return this;
+        }
+
+        /**
+         * Set the number of generated properties per node, cycling through string, long, boolean, and multivalued
+         * string types.
+         *
+         * @param propertiesPerNode the number of properties per node
+         * @return my builder self
+         */
+        public Builder withPropertiesPerNode(final int propertiesPerNode) {
+            this.propertiesPerNode = propertiesPerNode;
+            return this;
+        }
+
+        /**
+         * Generate {@code nt:file} nodes with random content in a {@code binaries} folder under the root node.
+         *
+         * @param binaryCount the number of files
+         * @param binarySize  the size of each file in bytes
+         * @return my builder self
+         */
+        public Builder withBinaries(final int binaryCount, final int binarySize) {
+            this.binaryCount = binaryCount;
+            this.binarySize = binarySize;
+            return this;
+        }
+
+        /**
+         * Set the number of access control entries for the everyone principal to generate in a policy on the root
+         * node. Any value greater than zero also sets {@code acHandling=overwrite} in the package properties.
+         *
+         * @param aclEntries the number of access control entries
+         * @return my builder self
+         */
+        public Builder withAclEntries(final int aclEntries) {
+            this.aclEntries = aclEntries;
+            return this;
+        }
+
+        /**
+         * Set the number of workspace filter sets. The first set is the root path, and each additional set is a
+         * sibling of the root path containing a single node.
+         *
+         * @param filterRoots the number of filter sets
+         * @return my builder self
+         */
+        public Builder withFilterRoots(final int filterRoots) {
+            this.filterRoots = filterRoots;
+            return this;
+        }
+
+        /**
+         * Set the number of include and exclude rules in the root path filter set. Only the first rule matches
+         * generated content.
+         *
+         * @param filterRules the number of filter rules
+         * @return my builder self
+         */
+        public Builder withFilterRules(final int filterRules) {
+            this.filterRules = filterRules;
+            return this;
+        }
+
+        /**
+         * Embed a subpackage, which may itself contain subpackages.
+         *
+         * @param subpackage the subpackage to embed
+         * @return my builder self
+         */
+        public Builder withSubpackage(final @NotNull SyntheticPackage subpackage) {
+            this.subpackages.add(subpackage);
+            return this;
+        }
+
+        /**
+         * Validate the parameters and construct the package definition.
+         *
+         * @return the package definition
+         * @throws IllegalArgumentException if a parameter is out of range
+         */
+        public SyntheticPackage build() {
+            if (!rootPath.startsWith("/") || rootPath.length() < 2 || rootPath.endsWith("/")) {
+                throw new IllegalArgumentException("rootPath must be an absolute path below the root node: "
+                        + rootPath);
+            }
+            if (nodeCount < 0 || propertiesPerNode < 0 || binaryCount < 0 || binarySize < 0 || aclEntries < 0) {
+                throw new IllegalArgumentException("counts and sizes must not be negative");
+            }
+            if (fanOut < 1 || maxDepth < 1 || filterRoots < 1 || filterRules < 1) {
+                throw new IllegalArgumentException("fanOut, maxDepth, filterRoots, and filterRules must be positive");
+            }
+            if (nodeCount > capacity(fanOut, maxDepth)) {
+                throw new IllegalArgumentException("nodeCount " + nodeCount + " exceeds the capacity of a tree with "
+                        + "fanOut " + fanOut + " and maxDepth " + maxDepth);
+            }
+            return new SyntheticPackage(group, name, version, seed, rootPath, nodeCount, maxDepth, fanOut,
+                    propertiesPerNode, binaryCount, binarySize, aclEntries, filterRoots, filterRules,
+                    Collections.unmodifiableList(new ArrayList<>(subpackages)));
+        }
+
+        static long capacity(final int fanOut, final int maxDepth) {
+            long capacity = 0L;
+            long level = 1L;
+            for (int d = 1; d <= maxDepth && capacity < Integer.MAX_VALUE; d++) {
+                level *= fanOut;
+                capacity += level;
+            }
+            return capacity;
+        }
+    }
+}
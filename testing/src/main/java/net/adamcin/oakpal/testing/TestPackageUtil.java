@@ -101,6 +101,18 @@ public final class TestPackageUtil {
         return file;
     }
 
+    /**
+     * Write a generated package to the test packages directory, replacing any previous file of the same name.
+     *
+     * @param syntheticPackage the package definition
+     * @return the package file
+     * @throws IOException for errors writing the file
+     * @since 2.1.0
+     */
+    public static File prepareSyntheticPackage(final @NotNull SyntheticPackage syntheticPackage) throws IOException {
+        return syntheticPackage.writeToFile(new File(testPackagesRoot.toFile(), syntheticPackage.getFileName()));
+    }
+
     static final IOFileFilter includedEntry = new IOFileFilter() {
         @Override
         public boolean accept(File file) {
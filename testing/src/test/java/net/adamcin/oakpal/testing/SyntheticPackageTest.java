@@ -0,0 +1,222 @@
+/*
+ * Copyright 2020 Mark Adamcin
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.adamcin.oakpal.testing;
+
+import org.apache.commons.io.IOUtils;
+import org.junit.Before;
+import org.junit.Test;
+import org.xml.sax.Attributes;
+import org.xml.sax.helpers.DefaultHandler;
+
+import javax.xml.parsers.SAXParserFactory;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Set;
+import java.util.jar.JarFile;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class SyntheticPackageTest {
+    final File baseDir = new File("target/test-out/SyntheticPackageTest");
+
+    @Before
+    public void setUp() throws Exception {
+        baseDir.mkdirs();
+    }
+
+    static byte[] toBytes(final SyntheticPackage syntheticPackage) throws Exception {
+        final ByteArrayOutputStream out = new ByteArrayOutputStream();
+        syntheticPackage.writeTo(out);
+        return out.toByteArray();
+    }
+
+    static int countNodes(final JarFile jarFile) throws Exception {
+        final Pattern element = Pattern.compile("<node\\d+ jcr:primaryType=|<jcr:root [^>]*jcr:primaryType=");
+        int count = 0;
+        for (String entryName : TestPackageUtilTest.getJarEntrySet(new File(jarFile.getName()))) {
+            if (entryName.matches("jcr_root/tmp/oakpal-synthetic/node\\d+/\\.content\\.xml")) {
+                try (InputStream input = jarFile.getInputStream(jarFile.getJarEntry(entryName))) {
+                    final Matcher matcher = element.matcher(IOUtils.toString(input, StandardCharsets.UTF_8));
+                    while (matcher.find()) {
+                        count++;
+                    }
+                }
+            }
+        }
+        return count;
+    }
+
+    static int maxNodeDepth(final JarFile jarFile) throws Exception {
+        final SAXParserFactory parserFactory = SAXParserFactory.newInstance();
+        final int[] depth = new int[2];
+        final DefaultHandler handler = new DefaultHandler() {
+            @Override
+            public void startElement(final String uri, final String localName, final String qName,
+                                     final Attributes attributes) {
+                depth[0]++;
+                depth[1] = Math.max(depth[0], depth[1]);
+            }
+
+            @Override
+            public void endElement(final String uri, final String localName, final String qName) {
+                depth[0]--;
+            }
+        };
+        for (String entryName : TestPackageUtilTest.getJarEntrySet(new File(jarFile.getName()))) {
+            if (entryName.matches("jcr_root/tmp/oakpal-synthetic/node\\d+/\\.content\\.xml")) {
+                try (InputStream input = jarFile.getInputStream(jarFile.getJarEntry(entryName))) {
+                    // the jcr:root element of each docview is a top-level child at depth 1
+                    depth[0] = 0;
+                    parserFactory.newSAXParser().parse(input, handler);
+                }
+            }
+        }
+        return depth[1];
+    }
+
+    @Test
+    public void testWriteTo_maxDepth() throws Exception {
+        for (int maxDepth : new int[]{2, 3, 5, 20}) {
+            final SyntheticPackage syntheticPackage = new SyntheticPackage.Builder()
+                    .withName("maxDepth" + maxDepth).withNodeCount(100).withFanOut(10).withMaxDepth(maxDepth).build();
+            final File file = syntheticPackage.writeToFile(new File(baseDir, syntheticPackage.getFileName()));
+            try (JarFile jarFile = new JarFile(file)) {
+                assertEquals("node count for maxDepth " + maxDepth, 100, countNodes(jarFile));
+                assertEquals("deepest path for maxDepth " + maxDepth, maxDepth, maxNodeDepth(jarFile));
+            }
+        }
+
+        final SyntheticPackage shallow = new SyntheticPackage.Builder()
+                .withName("shallow").withNodeCount(3).withMaxDepth(5).build();
+        try (JarFile jarFile = new JarFile(shallow.writeToFile(new File(baseDir, shallow.getFileName())))) {
+            assertEquals("deepest path limited by node count", 3, maxNodeDepth(jarFile));
+        }
+
+        final SyntheticPackage balanced = new SyntheticPackage.Builder()
+                .withName("balanced").withNodeCount(100).withFanOut(10).build();
+        try (JarFile jarFile = new JarFile(balanced.writeToFile(new File(baseDir, balanced.getFileName())))) {
+            assertEquals("balanced without maxDepth", 2, maxNodeDepth(jarFile));
+        }
+    }
+
+    @Test
+    public void testWriteTo_sameSeedSameBytes() throws Exception {
+        final SyntheticPackage.Builder builder = new SyntheticPackage.Builder()
+                .withNodeCount(500).withFanOut(7).withPropertiesPerNode(5)
+                .withBinaries(2, 10000).withAclEntries(3).withSeed(42L);
+        final byte[] first = toBytes(builder.build());
+        final byte[] second = toBytes(builder.build());
+        assertArrayEquals("same seed should produce same bytes", first, second);
+        final byte[] otherSeed = toBytes(builder.withSeed(43L).build());
+        assertFalse("different seed should produce different bytes", Arrays.equals(first, otherSeed));
+    }
+
+    @Test
+    public void testWriteToFile_structure() throws Exception {
+        final SyntheticPackage subsub = new SyntheticPackage.Builder()
+                .withName("subsub").withRootPath("/tmp/oakpal-subsub").withNodeCount(3).build();
+        final SyntheticPackage sub = new SyntheticPackage.Builder()
+                .withName("sub").withRootPath("/tmp/oakpal-sub").withSubpackage(subsub).build();
+        final SyntheticPackage syntheticPackage = new SyntheticPackage.Builder()
+                .withNodeCount(1234).withFanOut(5).withMaxDepth(5).withPropertiesPerNode(4)
+                .withBinaries(3, 100).withAclEntries(2).withFilterRoots(3).withFilterRules(4)
+                .withSubpackage(sub).build();
+        final File file = syntheticPackage.writeToFile(new File(baseDir, syntheticPackage.getFileName()));
+        final Set<String> entryNames = TestPackageUtilTest.getJarEntrySet(file);
+        assertTrue("has manifest", entryNames.contains(JarFile.MANIFEST_NAME));
+        assertTrue("has root docview", entryNames.contains("jcr_root/tmp/oakpal-synthetic/.content.xml"));
+        assertTrue("has policy", entryNames.contains("jcr_root/tmp/oakpal-synthetic/_rep_policy.xml"));
+        assertTrue("has binary", entryNames.contains("jcr_root/tmp/oakpal-synthetic/binaries/file3.bin"));
+        assertTrue("has extra root", entryNames.contains("jcr_root/tmp/oakpal-synthetic-2/.content.xml"));
+        assertTrue("has subpackage",
+                entryNames.contains("jcr_root/etc/packages/oakpal-synthetic/sub-1.0.zip"));
+
+        try (JarFile jarFile = new JarFile(file)) {
+            assertEquals("package id", "oakpal-synthetic:synthetic:1.0",
+                    jarFile.getManifest().getMainAttributes().getValue("Content-Package-Id"));
+            assertEquals("node count", 1234, countNodes(jarFile));
+            assertEquals("binary size", 100L,
+                    jarFile.getJarEntry("jcr_root/tmp/oakpal-synthetic/binaries/file1.bin").getSize());
+            try (InputStream input = jarFile.getInputStream(jarFile.getJarEntry("META-INF/vault/filter.xml"))) {
+                final String filter = IOUtils.toString(input, StandardCharsets.UTF_8);
+                assertEquals("filter sets", 4, filter.split("<filter root=").length - 1);
+                assertEquals("filter rules", 4, filter.split("pattern=").length - 1);
+                assertTrue("subpackage filter",
+                        filter.contains("<filter root=\"/etc/packages/oakpal-synthetic/sub-1.0.zip\"/>"));
+            }
+        }
+    }
+
+    @Test
+    public void testChildSubtreeSizes() {
+        final SyntheticPackage syntheticPackage = new SyntheticPackage.Builder().withFanOut(3).build();
+        assertEquals("empty", 0, syntheticPackage.childSubtreeSizes(0).size());
+        assertEquals("fewer than fanOut", Arrays.asList(1, 1), syntheticPackage.childSubtreeSizes(2));
+        assertEquals("balanced", Arrays.asList(4, 3, 3), syntheticPackage.childSubtreeSizes(10));
+        assertEquals("balanced within required depth", Arrays.asList(4, 3, 3),
+                syntheticPackage.childSubtreeSizes(10, 4));
+        assertEquals("first filled to required depth", Arrays.asList(6, 2, 2),
+                syntheticPackage.childSubtreeSizes(10, 6));
+        assertEquals("first filled with one remaining", Arrays.asList(9, 1),
+                syntheticPackage.childSubtreeSizes(10, 9));
+    }
+
+    @Test
+    public void testCapacity() {
+        assertEquals("capacity", 2L + 4L + 8L, SyntheticPackage.Builder.capacity(2, 3));
+        assertTrue("capacity should not overflow",
+                SyntheticPackage.Builder.capacity(Integer.MAX_VALUE, Integer.MAX_VALUE) >= Integer.MAX_VALUE);
+        new SyntheticPackage.Builder().withFanOut(2).withMaxDepth(3).withNodeCount(14).build();
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testBuild_exceedsCapacity() {
+        new SyntheticPackage.Builder().withFanOut(2).withMaxDepth(3).withNodeCount(15).build();
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testBuild_relativeRootPath() {
+        new SyntheticPackage.Builder().withRootPath("tmp/synthetic").build();
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testBuild_negativeCount() {
+        new SyntheticPackage.Builder().withPropertiesPerNode(-1).build();
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testBuild_zeroFanOut() {
+        new SyntheticPackage.Builder().withFanOut(0).build();
+    }
+
+    @Test
+    public void testPrepareSyntheticPackage() throws Exception {
+        final SyntheticPackage syntheticPackage = new SyntheticPackage.Builder()
+                .withName("prepared").withVersion("2.0").build();
+        final File file = TestPackageUtil.prepareSyntheticPackage(syntheticPackage);
+        assertEquals("file name", "prepared-2.0.zip", file.getName());
+        assertTrue("file should exist", file.isFile());
+    }
+}
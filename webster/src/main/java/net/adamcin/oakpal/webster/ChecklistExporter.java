@@ -16,6 +16,7 @@
 
 package net.adamcin.oakpal.webster;
 
+import net.adamcin.oakpal.api.CompiledRules;
 import net.adamcin.oakpal.api.Rules;
 import net.adamcin.oakpal.core.Checklist;
 import net.adamcin.oakpal.core.ForcedRoot;
@@ -243,6 +244,8 @@ public final class ChecklistExporter {
     private final List<String> exportTypeDefs;
     private final List<Rule> pathScopes;
     private final List<Rule> nodeTypeFilters;
+    private final CompiledRules compiledPathScopes;
+    private final CompiledRules compiledNodeTypeFilters;
     private final List<JcrNs> jcrNamespaces;
 
     private ChecklistExporter(final List<Op> operations,
@@ -254,6 +257,8 @@ public final class ChecklistExporter {
         this.exportTypeDefs = exportTypeDefs;
         this.pathScopes = pathScopes;
         this.nodeTypeFilters = nodeTypeFilters;
+        this.compiledPathScopes = CompiledRules.compile(pathScopes);
+        this.compiledNodeTypeFilters = CompiledRules.compile(nodeTypeFilters);
         this.jcrNamespaces = jcrNamespaces;
     }
 
@@ -371,7 +376,7 @@ public final class ChecklistExporter {
                 return root -> false;
             case REPLACE:
                 // only retain roots excluded by the path filter
-                return root -> Rules.lastMatch(pathScopes, root.getPath()).isExclude();
+                return root -> compiledPathScopes.lastMatch(root.getPath()).isExclude();
             case MERGE:
             default:
                 // retain everything
@@ -389,7 +394,7 @@ public final class ChecklistExporter {
                 .collect(Collectors.toSet());
         return (resolver, type) -> {
             final String name = type.getName();
-            return Rules.lastMatch(nodeTypeFilters, name).isInclude()
+            return compiledNodeTypeFilters.lastMatch(name).isInclude()
                     && (singleTypes.contains(name) || Stream.of(type.getSupertypes())
                     .map(NodeType::getName).anyMatch(superTypes::contains));
         };
@@ -650,20 +655,20 @@ public final class ChecklistExporter {
      * @throws RepositoryException when an error occurs
      */
     Optional<ForcedRoot> nodeToRoot(final Node node, final NamespaceMapping mapping) throws RepositoryException {
-        if (Rules.lastMatch(pathScopes, node.getPath()).isExclude()) {
+        if (compiledPathScopes.lastMatch(node.getPath()).isExclude()) {
             return Optional.empty();
         }
 
         ForcedRoot forcedRoot = new ForcedRoot();
         forcedRoot.setPath(node.getPath());
         final String primaryType = node.getPrimaryNodeType().getName();
-        if (Rules.lastMatch(nodeTypeFilters, QName.parseQName(mapping, QName.Type.NODETYPE, primaryType).toString()).isInclude()) {
+        if (compiledNodeTypeFilters.lastMatch(QName.parseQName(mapping, QName.Type.NODETYPE, primaryType).toString()).isInclude()) {
             forcedRoot.setPrimaryType(primaryType);
         }
         final List<String> mixinTypes = Stream.of(node.getMixinNodeTypes())
                 .map(compose1(NodeType::getName,
                         qName -> QName.parseQName(mapping, QName.Type.NODETYPE, qName).toString()))
-                .filter(name -> Rules.lastMatch(nodeTypeFilters, name).isInclude())
+                .filter(name -> compiledNodeTypeFilters.lastMatch(name).isInclude())
                 .collect(Collectors.toList());
         forcedRoot.setMixinTypes(mixinTypes);
         return Optional.of(forcedRoot);